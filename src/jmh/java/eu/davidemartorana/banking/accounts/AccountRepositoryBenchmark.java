@@ -0,0 +1,46 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Map;
+
+/**
+ * The locking methods of {@link AccountRepository}: the single read under lock followed by the conditional updates used
+ * by the transfers.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Benchmark)
+public class AccountRepositoryBenchmark {
+
+    private static final Money VALUE = Money.of(new BigDecimal("1.00"), Currency.getInstance("GBP"));
+
+    private AccountRepository accountRepository;
+
+    @Setup
+    public void setUp(final BenchmarkDatabase database) {
+        accountRepository = new AccountRepository(database.getSessionFactory());
+    }
+
+    @Benchmark
+    public int lockAndUpdate(final BenchmarkDatabase database) {
+        final String debtorAccountUUID = database.randomAccountUUID();
+        final String beneficiaryAccountUUID = database.randomAccountUUIDOtherThan(debtorAccountUUID);
+
+        return database.getUnitOfWorkRunner().inUnitOfWork(() -> {
+            final Map<String, Account> accounts = accountRepository.findAllByUUIDLocking(Arrays.asList(debtorAccountUUID, beneficiaryAccountUUID));
+
+            return accountRepository.decreaseTotalAmount(accounts.get(debtorAccountUUID).getId(), VALUE)
+                    + accountRepository.increaseTotalAmount(accounts.get(beneficiaryAccountUUID).getId(), VALUE);
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * The arithmetic of the balances of a single transfer: validation of the amount, funds check, new totals of debtor and
+ * beneficiary. {@link #bigDecimal(Blackhole)} is the way it was done on {@link BigDecimal}s, {@link #minorUnits(Blackhole)}
+ * the way it is done in minor units. Run it with the {@code gc} profiler to compare the bytes allocated per transfer:
+ *
+ * <pre>
+ *     mvn -Pjmh -DskipTests verify -Djmh.include=BalanceArithmeticBenchmark -Djmh.threads=1 -Djmh.profilers=gc
+ * </pre>
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Thread)
+public class BalanceArithmeticBenchmark {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private static final BigDecimal VALUE = new BigDecimal("1.50");
+
+    private BigDecimal debtorTotal = new BigDecimal("90000.00");
+
+    private BigDecimal beneficiaryTotal = new BigDecimal("90000.00");
+
+    private long debtorMinorUnits = 9_000_000L;
+
+    private long beneficiaryMinorUnits = 9_000_000L;
+
+    @Benchmark
+    public void bigDecimal(final Blackhole blackhole) {
+        final Amount amount = new Amount(VALUE, GBP);
+        final BigDecimal value = amount.getValue();
+        if (value.stripTrailingZeros().scale() > Math.max(amount.getCurrency().getDefaultFractionDigits(), 0)) {
+            throw new IllegalArgumentException();
+        }
+
+        if (debtorTotal.compareTo(value) < 0) {
+            blackhole.consume(value.toPlainString());
+            return;
+        }
+        final BigDecimal newDebtorTotal = debtorTotal.subtract(value);
+        final BigDecimal newBeneficiaryTotal = beneficiaryTotal.add(value);
+
+        // The money goes back and forth, so the balances never run out
+        debtorTotal = newBeneficiaryTotal;
+        beneficiaryTotal = newDebtorTotal;
+        blackhole.consume(newDebtorTotal);
+        blackhole.consume(newBeneficiaryTotal);
+    }
+
+    @Benchmark
+    public void minorUnits(final Blackhole blackhole) {
+        final Money money = new Amount(VALUE, GBP).toMoney();
+        final long value = money.getMinorUnits();
+
+        if (debtorMinorUnits < value) {
+            blackhole.consume(value);
+            return;
+        }
+        final long newDebtorTotal = Math.subtractExact(debtorMinorUnits, value);
+        final long newBeneficiaryTotal = Math.addExact(beneficiaryMinorUnits, value);
+
+        debtorMinorUnits = newBeneficiaryTotal;
+        beneficiaryMinorUnits = newDebtorTotal;
+        blackhole.consume(newDebtorTotal);
+        blackhole.consume(newBeneficiaryTotal);
+    }
+}
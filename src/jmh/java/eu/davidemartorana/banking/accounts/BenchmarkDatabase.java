@@ -0,0 +1,165 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.google.common.io.Resources;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The in-memory database of a benchmark: the schema is created by the Flyway migrations of the application, then
+ * {@link #accounts} accounts are added, each with a balance of {@value #INITIAL_AMOUNT} pence: the benchmarks move money
+ * back and forth between random accounts, so the balances stay around it.
+ *
+ * With 2 accounts all the threads fight for the same rows, with 1000 they rarely meet.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    private static final int FIRST_ACCOUNT_ID = 1_000_000;
+
+    private static final String INITIAL_AMOUNT = "100000000";
+
+    @Param({"derby", "h2"})
+    public String database;
+
+    @Param({"2", "1000"})
+    public int accounts;
+
+    private SessionFactory sessionFactory;
+
+    private UnitOfWorkRunner unitOfWorkRunner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        final String name = "benchmark-" + System.nanoTime();
+        final String url;
+        final Configuration configuration = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Account.class)
+                .addAnnotatedClass(BalanceSlot.class)
+                .addAnnotatedClass(Transaction.class)
+                .addAnnotatedClass(TransferRequestRecord.class);
+        switch (database) {
+            case "derby":
+                url = "jdbc:derby:memory:" + name;
+                Flyway.configure().dataSource(url + ";create=true", "sa", "").load().migrate();
+                configuration.setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.DerbyTenSevenDialect")
+                        .setProperty(AvailableSettings.HBM2DDL_AUTO, "none");
+                break;
+            case "h2":
+                // The migrations are written for Derby: the tables are created by Hibernate, as the DAO tests do
+                url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+                configuration.setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                        .setProperty(AvailableSettings.HBM2DDL_AUTO, "create");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown database: " + database);
+        }
+
+        sessionFactory = configuration
+                .setProperty(AvailableSettings.URL, url)
+                .setProperty(AvailableSettings.USER, "sa")
+                .setProperty(AvailableSettings.PASS, "")
+                .setProperty(AvailableSettings.POOL_SIZE, "80")
+                .setProperty(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, "managed")
+                .setProperty(AvailableSettings.USE_NEW_ID_GENERATOR_MAPPINGS, "true")
+                // the Joda types of the transactions, registered as Dropwizard does
+                .setProperty("jadira.usertype.autoRegisterUserTypes", "true")
+                .buildSessionFactory();
+        unitOfWorkRunner = new UnitOfWorkRunner(sessionFactory);
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            if ("h2".equals(database)) {
+                executeScript(connection, "db/migration/V1.4__CreateIndexes.sql");
+                executeScript(connection, "db/migration/V1.5__CreateTransactionUUIDIndex.sql");
+            }
+            insertAccounts(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private void insertAccounts(final Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO accounts (id, iban_number, uuid, total_amount_minor_units, currency, customer_id, version) VALUES (?, ?, ?, " + INITIAL_AMOUNT + ", 'GBP', 1, 0)")) {
+            for (int index = 0; index < accounts; index++) {
+                statement.setInt(1, FIRST_ACCOUNT_ID + index);
+                statement.setString(2, "GB40REVO" + (FIRST_ACCOUNT_ID + index));
+                statement.setString(3, uuidOf(index));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void executeScript(final Connection connection, final String resource) throws IOException, SQLException {
+        final String content = Resources.toString(Resources.getResource(resource), StandardCharsets.UTF_8);
+        try (Statement statement = connection.createStatement()) {
+            for (final String sql : content.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static String uuidOf(final int index) {
+        return String.format("00000000-0000-0000-0000-%012d", index);
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    public UnitOfWorkRunner getUnitOfWorkRunner() {
+        return unitOfWorkRunner;
+    }
+
+    /**
+     * @return the uuid of an account chosen at random.
+     */
+    public String randomAccountUUID() {
+        return uuidOf(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    /**
+     * @param accountUUID - an account not to be returned
+     *
+     * @return the uuid of an account chosen at random, other than {@code accountUUID}.
+     */
+    public String randomAccountUUIDOtherThan(final String accountUUID) {
+        String uuid = randomAccountUUID();
+        while (uuid.equals(accountUUID)) {
+            uuid = randomAccountUUID();
+        }
+
+        return uuid;
+    }
+}
@@ -0,0 +1,66 @@
+package eu.davidemartorana.banking.accounts;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmarks once per thread count, measuring both the throughput and the latency percentiles. Run it with
+ * the {@code jmh} profile:
+ *
+ * <pre>
+ *     mvn -Pjmh -DskipTests verify -Djmh.include=TransferBenchmark -Djmh.threads=1,8,64
+ * </pre>
+ *
+ * The results of every thread count are written in {@code target/jmh/}, in JSON. {@code -Djmh.profilers=gc} adds the
+ * JMH profilers to every run, e.g. the bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ *
+ * @author Davide Martorana
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_INCLUDE = ".*Benchmark.*";
+
+    private static final String DEFAULT_THREADS = "1,2,4,8,16,32,64";
+
+    public static void main(final String[] args) throws RunnerException {
+        final String include = args.length > 0 && !args[0].isEmpty() ? args[0] : DEFAULT_INCLUDE;
+        final int[] threadCounts = Arrays.stream((args.length > 1 && !args[1].isEmpty() ? args[1] : DEFAULT_THREADS).split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        final String[] profilers = args.length > 2 && !args[2].isEmpty() ? args[2].split(",") : new String[0];
+
+        final File resultDirectory = new File("target/jmh");
+        resultDirectory.mkdirs();
+
+        for (final int threads : threadCounts) {
+            final ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .mode(Mode.Throughput)
+                    .mode(Mode.SampleTime)
+                    .timeUnit(TimeUnit.MICROSECONDS)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .warmupTime(TimeValue.seconds(5))
+                    .measurementIterations(5)
+                    .measurementTime(TimeValue.seconds(5))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDirectory, "result-" + threads + "-threads.json").getPath());
+            for (final String profiler : profilers) {
+                builder.addProfiler(profiler.trim());
+            }
+
+            new Runner(builder.build()).run();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package eu.davidemartorana.banking.accounts;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the operations of a benchmark that failed, e.g. because the database could not grant a lock in time. They are
+ * reported next to the results, as {@code failures}, so a throughput made of failures is easy to spot.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Failures {
+
+    public long failures;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        failures = 0;
+    }
+}
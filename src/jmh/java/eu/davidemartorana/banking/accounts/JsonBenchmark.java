@@ -0,0 +1,90 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import eu.davidemartorana.banking.accounts.config.JsonCodecType;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.rest.json.TransferJsonModule;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import io.dropwizard.jackson.Jackson;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * The JSON reading of a {@link TransferRequest} and writing of a {@link TransferResponse}, with the object mapper
+ * configured as the one of Dropwizard, for each {@link JsonCodecType}. With the {@code gc} profiler it reports the bytes
+ * allocated by the two codecs.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private static final String TRANSFER_REQUEST = "{\"amount\":{\"value\":100.00,\"currency\":\"GBP\"},"
+            + "\"beneficiaryAccountId\":\"85216e45-8dd1-41d7-a890-3cf71acd2630\"}";
+
+    @Param({"REFLECTION", "STREAMING"})
+    private JsonCodecType codec;
+
+    private ObjectReader transferRequestReader;
+
+    private ObjectWriter transferResponseWriter;
+
+    private TransferResponse transferResponse;
+
+    private static Account createAccount(final Long id, final String uuid, final String iban) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setIbanNumber(iban);
+        account.setCurrency(Currency.getInstance("GBP"));
+        account.setTotalAmount(new BigDecimal("20.00"));
+
+        return account;
+    }
+
+    @Setup
+    public void setUp() {
+        final ObjectMapper objectMapper = Jackson.newObjectMapper();
+        if (codec == JsonCodecType.STREAMING) {
+            objectMapper.registerModule(new TransferJsonModule());
+        }
+        transferRequestReader = objectMapper.readerFor(TransferRequest.class);
+        transferResponseWriter = objectMapper.writerFor(TransferResponse.class);
+
+        final Account debtorAccount = createAccount(1L, "7f9adf98-93fb-4868-8cd8-cfe0f53628c1", "GB40REVO60161331926819");
+        final Account beneficiaryAccount = createAccount(2L, "85216e45-8dd1-41d7-a890-3cf71acd2630", "GB40REVO00991232026772");
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+
+        final TransferResult transferResult = new TransferResult();
+        transferResult.setDebtorAccount(debtorAccount);
+        transferResult.setBeneficiaryAccount(beneficiaryAccount);
+        transferResult.addTransaction(Transaction.create(amount.toMoney(), debtorAccount, TransactionType.DEBIT, DateTime.now()));
+        transferResult.addTransaction(Transaction.create(amount.toMoney(), beneficiaryAccount, TransactionType.CREDIT, DateTime.now()));
+        transferResponse = TransferResponse.of(transferResult);
+    }
+
+    @Benchmark
+    public TransferRequest readTransferRequest() throws IOException {
+        return transferRequestReader.readValue(TRANSFER_REQUEST);
+    }
+
+    @Benchmark
+    public byte[] writeTransferResponse() throws IOException {
+        return transferResponseWriter.writeValueAsBytes(transferResponse);
+    }
+}
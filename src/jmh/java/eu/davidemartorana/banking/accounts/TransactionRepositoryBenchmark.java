@@ -0,0 +1,52 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import org.hibernate.exception.LockAcquisitionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * The insert of a transaction with {@link TransactionRepository#addTransaction(Money, Account, TransactionType)}, in
+ * its own unit of work.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Benchmark)
+public class TransactionRepositoryBenchmark {
+
+    private static final Money AMOUNT = Money.of(new BigDecimal("1.00"), Currency.getInstance("GBP"));
+
+    private TransactionRepository transactionRepository;
+
+    private Account account;
+
+    @Setup
+    public void setUp(final BenchmarkDatabase database) {
+        transactionRepository = new TransactionRepository(database.getSessionFactory());
+
+        final AccountRepository accountRepository = new AccountRepository(database.getSessionFactory());
+        account = database.getUnitOfWorkRunner().inUnitOfWork(() -> accountRepository.findByUUID(database.randomAccountUUID()).get());
+    }
+
+    /**
+     * @return the transaction or, when Derby gives up generating its id because of the other threads, the error.
+     */
+    @Benchmark
+    public Object addTransaction(final BenchmarkDatabase database, final Failures failures) {
+        try {
+            return database.getUnitOfWorkRunner().inUnitOfWork(() -> transactionRepository.addTransaction(AMOUNT, account, TransactionType.DEBIT));
+        } catch (final LockAcquisitionException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.cache.SplitAccountIndex;
+import eu.davidemartorana.banking.accounts.config.AdaptiveConfig;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.HibernateTransferEngine;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.OptimisticTransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.jackson.Jackson;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.ws.rs.WebApplicationException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A whole funds transfer, as executed by {@link AccountsService#transferAmount(String, TransferRequest)} with the
+ * {@code HIBERNATE} or the {@code OPTIMISTIC} engine, in its own unit of work. The optimistic transfers conflicting with
+ * a concurrent update are retried as by the {@link TransferRetry}, with the default settings.
+ *
+ * @author Davide Martorana
+ */
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    private static final Amount AMOUNT = new Amount(new BigDecimal("1.00"), Currency.getInstance("GBP"));
+
+    @Param({"HIBERNATE", "OPTIMISTIC"})
+    public String engine;
+
+    private AccountsService accountsService;
+
+    private TransferRetry transferRetry;
+
+    @Setup
+    public void setUp(final BenchmarkDatabase database) {
+        final SessionFactory sessionFactory = database.getSessionFactory();
+        final AccountRepository accountRepository = new AccountRepository(sessionFactory);
+        final TransactionRepository transactionRepository = new TransactionRepository(sessionFactory);
+
+        final TransferMetrics transferMetrics = new TransferMetrics(new MetricRegistry(), sessionFactory);
+        final TransferEngine transferEngine = "OPTIMISTIC".equals(engine)
+                ? new OptimisticTransferEngine(accountRepository, transactionRepository, transferMetrics)
+                : new HibernateTransferEngine(accountRepository, transactionRepository, transferMetrics);
+        transferRetry = new TransferRetry(database.getUnitOfWorkRunner(), new RetryConfig(), new MetricRegistry());
+
+        accountsService = new AccountsService(accountRepository, transactionRepository, transferEngine,
+                new AccountCache(new ApplicationConfig(), new MetricRegistry(), sessionFactory),
+                new IdempotencyService(new IdempotencyIndex(new ApplicationConfig(), new MetricRegistry()), new TransferRequestRepository(sessionFactory),
+                        database.getUnitOfWorkRunner(), Jackson.newObjectMapper()),
+                new HotAccountDetector(new AdaptiveConfig(), false, new MetricRegistry()),
+                new SplitAccountIndex(accountRepository, database.getUnitOfWorkRunner(), sessionFactory), transferMetrics);
+    }
+
+    /**
+     * @return the transfer result or, when the accounts could not be locked in time or kept changing, the error.
+     */
+    @Benchmark
+    public Object transferAmount(final BenchmarkDatabase database, final Failures failures) {
+        final String debtorAccountUUID = database.randomAccountUUID();
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAmount(AMOUNT);
+        transferRequest.setBeneficiaryAccountId(database.randomAccountUUIDOtherThan(debtorAccountUUID));
+
+        try {
+            return transferRetry.inUnitOfWork(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest));
+        } catch (final WebApplicationException e) {
+            failures.failures++;
+            return e;
+        }
+    }
+}
@@ -1,21 +1,35 @@
 package eu.davidemartorana.banking.accounts;
 
+import eu.davidemartorana.banking.accounts.boot.DatabaseBoot;
+import eu.davidemartorana.banking.accounts.boot.StartupTimings;
 import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
 import eu.davidemartorana.banking.accounts.config.DatabaseBundles;
 import eu.davidemartorana.banking.accounts.config.DatabaseModule;
+import eu.davidemartorana.banking.accounts.config.JsonCodecType;
+import eu.davidemartorana.banking.accounts.config.TransferModule;
+import eu.davidemartorana.banking.accounts.dao.DatabaseIndexCheck;
+import eu.davidemartorana.banking.accounts.dao.HibernateStatisticsMetrics;
+import eu.davidemartorana.banking.accounts.ledger.LedgerJournalRecovery;
+import eu.davidemartorana.banking.accounts.load.LoadCommand;
+import eu.davidemartorana.banking.accounts.rest.json.TransferJsonModule;
 import eu.davidemartorana.banking.accounts.rest.resources.AccountRestResource;
 import eu.davidemartorana.banking.accounts.rest.resources.CustomerRestResource;
 import eu.davidemartorana.banking.accounts.rest.resources.HealthCheckFundsTransfer;
 import eu.davidemartorana.banking.accounts.rest.resources.StatusRestResource;
+import eu.davidemartorana.banking.accounts.server.ConcurrencyLimitFilter;
+import eu.davidemartorana.banking.accounts.server.VirtualThreadServerFactory;
 import io.dropwizard.Application;
 import io.dropwizard.db.ManagedDataSource;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
-import org.flywaydb.core.Flyway;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.vyarus.dropwizard.guice.GuiceBundle;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterRegistration;
+import java.util.EnumSet;
+
 /**
  * Main Class / Application Starter.
  *
@@ -49,22 +63,60 @@ public class FundsTransferApplication extends Application<ApplicationConfig> {
         LOGGER.info("Scanning the package to find all the needed Beans, including the resources in Jersey.");
         bootstrap.addBundle(GuiceBundle.builder()
                 .enableAutoConfig(FundsTransferApplication.class.getPackage().getName())
-                .modules(DatabaseModule.getInstance())
+                .modules(DatabaseModule.getInstance(), new TransferModule())
                 .build());
 
+        bootstrap.addCommand(new LoadCommand());
     }
 
     @Override
     public void run(final ApplicationConfig applicationConfig, final Environment environment) throws Exception {
+        final StartupTimings timings = new StartupTimings(environment.metrics());
+        timings.record("bootstrap", StartupTimings.uptime());
+
         LOGGER.info("Database initialisation");
         final ManagedDataSource dataSource = applicationConfig.getDataSourceFactory().build(environment.metrics(), "flyway-migration");
-        final Flyway flyway = applicationConfig.getFlywayFactory().build(dataSource);
-        flyway.migrate();
+        new DatabaseBoot(applicationConfig.getFlywayFactory(), applicationConfig.getStartup(), timings).boot(dataSource);
+
+        LOGGER.info("Database indexes check");
+        timings.run("indexCheck", () -> DatabaseIndexCheck.verify(dataSource));
+        // Needed only at start-up: the application uses the pool of the Hibernate bundle
+        dataSource.stop();
+
+        if (applicationConfig.getTransfers().getJournal().getWriteAheadLog().isEnabled()) {
+            LOGGER.info("Ledger journal recovery");
+            timings.run("journalRecovery", () -> LedgerJournalRecovery.of(DatabaseBundles.HIBERNATE_BUNDLE.getSessionFactory())
+                    .recover(applicationConfig.getTransfers().getJournal()));
+        }
+
+        environment.lifecycle().addServerLifecycleListener(server -> {
+            final long total = StartupTimings.uptime();
+            timings.record("total", total);
+            LOGGER.info("Started in {} ms, phases in ms: {}", total, timings.getPhases());
+        });
+
+        LOGGER.info("Registration: Hibernate statistics");
+        environment.metrics().register("hibernate", new HibernateStatisticsMetrics(DatabaseBundles.HIBERNATE_BUNDLE.getSessionFactory().getStatistics()));
 
         LOGGER.info("Registration: healthCheck");
         environment.healthChecks().register("simpleHealthCheck", new HealthCheckFundsTransfer());
 
+        if (applicationConfig.getTransfers().getJsonCodec() == JsonCodecType.STREAMING) {
+            LOGGER.info("Registration: streaming JSON codec of the transfers");
+            environment.getObjectMapper().registerModule(new TransferJsonModule());
+        }
 
+        if (applicationConfig.getServerFactory() instanceof VirtualThreadServerFactory) {
+            final VirtualThreadServerFactory serverFactory = (VirtualThreadServerFactory) applicationConfig.getServerFactory();
+            final int maxConcurrentRequests = serverFactory.getMaxConcurrentRequests() > 0
+                    ? serverFactory.getMaxConcurrentRequests() : applicationConfig.getDataSourceFactory().getMaxSize();
 
+            LOGGER.info("Registration: limit of {} concurrent requests", maxConcurrentRequests);
+            final FilterRegistration.Dynamic concurrencyLimit = environment.servlets()
+                    .addFilter("concurrency-limit", new ConcurrencyLimitFilter(maxConcurrentRequests, serverFactory.getMaxWaitForPermit(), environment.metrics()));
+            // The suspended requests of the /async endpoints release their permit as soon as they are suspended
+            concurrencyLimit.setAsyncSupported(true);
+            concurrencyLimit.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+        }
     }
 }
@@ -0,0 +1,122 @@
+package eu.davidemartorana.banking.accounts.boot;
+
+import eu.davidemartorana.banking.accounts.config.StartupConfig;
+import io.dropwizard.flyway.FlywayFactory;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.Location;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationInfoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Brings the database to the latest schema version at start-up, either running all the migrations (cold boot) or,
+ * with the {@link StartupConfig#isWarmBoot() warm boot}, running only the schema migrations and restoring the seed data
+ * from a {@link DatabaseSnapshot}.
+ *
+ * The warm boot takes place only on an empty database and with a snapshot of the latest schema version: otherwise the
+ * database is booted cold and, if it was empty, a new snapshot is written for the next boot. The history of a database
+ * booted warm misses the seed migrations, so it is meant for a database created at every start, as the in-memory one.
+ *
+ * The phases are timed in the {@link StartupTimings}: {@code migration}, then {@code restore} or {@code snapshot}.
+ *
+ * @author Davide Martorana
+ */
+public class DatabaseBoot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseBoot.class);
+
+    private final FlywayFactory flywayFactory;
+
+    private final StartupConfig startupConfig;
+
+    private final StartupTimings timings;
+
+    public DatabaseBoot(final FlywayFactory flywayFactory, final StartupConfig startupConfig, final StartupTimings timings) {
+        this.flywayFactory = flywayFactory;
+        this.startupConfig = startupConfig;
+        this.timings = timings;
+    }
+
+    /**
+     * @param dataSource - the database
+     *
+     * @return {@code true} if the database has been booted warm, {@code false} if all the migrations have been run.
+     *
+     * @throws Exception if the migrations fail, or the snapshot cannot be restored or written.
+     */
+    public boolean boot(final DataSource dataSource) throws Exception {
+        final Flyway flyway = flywayFactory.build(dataSource);
+        if (!startupConfig.isWarmBoot()) {
+            timings.time("migration", flyway::migrate);
+            return false;
+        }
+
+        final MigrationInfoService info = flyway.info();
+        final boolean empty = info.current() == null;
+        final String schemaVersion = latestVersion(info);
+        final Path snapshot = Paths.get(startupConfig.getSnapshotFile());
+
+        if (empty && isSnapshotOf(snapshot, schemaVersion)) {
+            final Flyway schemaFlyway = Flyway.configure()
+                    .configuration(flyway.getConfiguration())
+                    .locations(schemaLocations(flyway))
+                    .load();
+            timings.time("migration", schemaFlyway::migrate);
+
+            final int rows = timings.time("restore", () -> DatabaseSnapshot.restore(snapshot, dataSource));
+            LOGGER.info("Warm boot: {} rows restored from {}, schema version {}.", rows, snapshot, schemaVersion);
+            return true;
+        }
+
+        timings.time("migration", flyway::migrate);
+        if (empty) {
+            final int rows = timings.time("snapshot", () -> DatabaseSnapshot.write(snapshot, schemaVersion, dataSource));
+            LOGGER.info("Boot snapshot written to {}: {} rows, schema version {}.", snapshot, rows, schemaVersion);
+        }
+        return false;
+    }
+
+    private static boolean isSnapshotOf(final Path snapshot, final String schemaVersion) {
+        if (!Files.isRegularFile(snapshot)) {
+            LOGGER.info("No boot snapshot in {}: running all the migrations.", snapshot);
+            return false;
+        }
+
+        try {
+            final String snapshotVersion = DatabaseSnapshot.readSchemaVersion(snapshot);
+            if (!schemaVersion.equals(snapshotVersion)) {
+                LOGGER.info("The boot snapshot {} is of the schema version {}, not {}: running all the migrations.", snapshot, snapshotVersion, schemaVersion);
+                return false;
+            }
+            return true;
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to read the boot snapshot {}: running all the migrations.", snapshot, e);
+            return false;
+        }
+    }
+
+    private static String latestVersion(final MigrationInfoService info) {
+        final MigrationInfo[] migrations = info.all();
+        return migrations.length == 0 ? "" : migrations[migrations.length - 1].getVersion().getVersion();
+    }
+
+    private Location[] schemaLocations(final Flyway flyway) {
+        final Set<String> seedLocations = startupConfig.getSeedLocations().stream()
+                .map(location -> new Location(location).getDescriptor())
+                .collect(Collectors.toSet());
+
+        return Arrays.stream(flyway.getConfiguration().getLocations())
+                .filter(location -> !seedLocations.contains(location.getDescriptor()))
+                .toArray(Location[]::new);
+    }
+}
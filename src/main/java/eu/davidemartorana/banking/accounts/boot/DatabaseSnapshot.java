@@ -0,0 +1,294 @@
+package eu.davidemartorana.banking.accounts.boot;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary copy of the seed data of the database, restored by the warm boot in place of running the seed
+ * migrations again. The file is gzipped and made of:
+ *
+ * <pre>
+ *     int magic | int format | UTF schema version | int tables | tables
+ * </pre>
+ *
+ * where every table has its name, its columns with their JDBC type and identity flag, and then its rows, each one
+ * preceded by a {@code true} and the last one followed by a {@code false}. Every value is preceded by a null flag.
+ *
+ * The times are kept as local date times, so the snapshot does not depend on the time zone of the JVM. The identity
+ * columns are restarted after the highest value restored.
+ *
+ * @author Davide Martorana
+ */
+public final class DatabaseSnapshot {
+
+    /**
+     * The tables of the snapshot, in the order they are restored.
+     */
+    public static final List<String> TABLES = Arrays.asList("customers", "accounts", "account_balance_slots", "account_transactions");
+
+    private static final int MAGIC = 0x46544253;
+
+    private static final int FORMAT = 1;
+
+    private static final int BATCH_SIZE = 500;
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * @param file - the snapshot
+     *
+     * @return the version of the schema the snapshot has been written with.
+     *
+     * @throws IOException if the file cannot be read or it is not a snapshot.
+     */
+    public static String readSchemaVersion(final Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            return readHeader(in);
+        }
+    }
+
+    /**
+     * Writes the rows of the {@link #TABLES} to {@code file}, replaced only once completely written.
+     *
+     * @param file - the snapshot
+     * @param schemaVersion - the version of the schema of the database
+     * @param dataSource - the database
+     *
+     * @return the number of rows written.
+     *
+     * @throws IOException if the file cannot be written.
+     * @throws SQLException if the tables cannot be read.
+     */
+    public static int write(final Path file, final String schemaVersion, final DataSource dataSource) throws IOException, SQLException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int rows = 0;
+
+        try (Connection connection = dataSource.getConnection();
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(schemaVersion);
+            out.writeInt(TABLES.size());
+
+            for (final String table : TABLES) {
+                rows += writeTable(connection, table, out);
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Inserts the rows of the snapshot in their tables, which must be empty, in a single transaction.
+     *
+     * @param file - the snapshot
+     * @param dataSource - the database
+     *
+     * @return the number of rows restored.
+     *
+     * @throws IOException if the file cannot be read or it is not a snapshot.
+     * @throws SQLException if the rows cannot be inserted.
+     */
+    public static int restore(final Path file, final DataSource dataSource) throws IOException, SQLException {
+        int rows = 0;
+
+        try (DataInputStream in = open(file); Connection connection = dataSource.getConnection()) {
+            readHeader(in);
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                final int tables = in.readInt();
+                for (int i = 0; i < tables; i++) {
+                    rows += restoreTable(connection, in);
+                }
+                connection.commit();
+            } catch (final IOException | SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        return rows;
+    }
+
+    private static int writeTable(final Connection connection, final String table, final DataOutputStream out) throws IOException, SQLException {
+        int rows = 0;
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table + " ORDER BY 1")) {
+            final ResultSetMetaData metaData = resultSet.getMetaData();
+            final int columns = metaData.getColumnCount();
+
+            out.writeUTF(table);
+            out.writeInt(columns);
+            for (int column = 1; column <= columns; column++) {
+                out.writeUTF(metaData.getColumnName(column).toLowerCase());
+                out.writeInt(metaData.getColumnType(column));
+                out.writeBoolean(metaData.isAutoIncrement(column));
+            }
+
+            while (resultSet.next()) {
+                out.writeBoolean(true);
+                for (int column = 1; column <= columns; column++) {
+                    writeValue(out, metaData.getColumnType(column), resultSet.getObject(column));
+                }
+                rows++;
+            }
+            out.writeBoolean(false);
+        }
+
+        return rows;
+    }
+
+    private static int restoreTable(final Connection connection, final DataInputStream in) throws IOException, SQLException {
+        final String table = in.readUTF();
+        if (!TABLES.contains(table)) {
+            throw new IOException("Unexpected table in the boot snapshot: " + table);
+        }
+
+        final int columns = in.readInt();
+        final List<String> names = new ArrayList<>(columns);
+        final int[] types = new int[columns];
+        final List<String> identities = new ArrayList<>();
+        for (int column = 0; column < columns; column++) {
+            names.add(in.readUTF());
+            types[column] = in.readInt();
+            if (in.readBoolean()) {
+                identities.add(names.get(column));
+            }
+        }
+
+        final String insert = "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+        int rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(insert)) {
+            while (in.readBoolean()) {
+                for (int column = 0; column < columns; column++) {
+                    statement.setObject(column + 1, readValue(in, types[column]), types[column]);
+                }
+                statement.addBatch();
+                if (++rows % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+
+        for (final String identity : identities) {
+            restartIdentity(connection, table, identity);
+        }
+
+        return rows;
+    }
+
+    private static void restartIdentity(final Connection connection, final String table, final String column) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            final long next;
+            try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table)) {
+                resultSet.next();
+                next = resultSet.getLong(1);
+            }
+            statement.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + next);
+        }
+    }
+
+    private static void writeValue(final DataOutputStream out, final int type, final Object value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value == null) {
+            return;
+        }
+
+        switch (type) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                out.writeInt(((Number) value).intValue());
+                break;
+            case Types.BIGINT:
+                out.writeLong(((Number) value).longValue());
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                out.writeUTF(((BigDecimal) value).toPlainString());
+                break;
+            case Types.CHAR:
+            case Types.VARCHAR:
+                out.writeUTF(value.toString());
+                break;
+            case Types.TIMESTAMP:
+                final LocalDateTime dateTime = ((Timestamp) value).toLocalDateTime();
+                out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(dateTime.getNano());
+                break;
+            default:
+                throw new IllegalStateException("Column type not supported by the boot snapshot: " + type);
+        }
+    }
+
+    private static Object readValue(final DataInputStream in, final int type) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        switch (type) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return in.readInt();
+            case Types.BIGINT:
+                return in.readLong();
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new BigDecimal(in.readUTF());
+            case Types.CHAR:
+            case Types.VARCHAR:
+                return in.readUTF();
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            default:
+                throw new IOException("Column type not supported by the boot snapshot: " + type);
+        }
+    }
+
+    private static DataInputStream open(final Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))));
+    }
+
+    private static String readHeader(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a boot snapshot.");
+        }
+        final int format = in.readInt();
+        if (format != FORMAT) {
+            throw new IOException("Boot snapshot format not supported: " + format);
+        }
+
+        return in.readUTF();
+    }
+}
@@ -0,0 +1,104 @@
+package eu.davidemartorana.banking.accounts.boot;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the phases of the start-up, in milliseconds, published in the metrics as
+ * {@code eu.davidemartorana.banking.accounts.boot.StartupTimings.<phase>}.
+ *
+ * @author Davide Martorana
+ */
+public class StartupTimings {
+
+    private final MetricRegistry metricRegistry;
+
+    private final Map<String, Long> phases = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public StartupTimings(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * @return the milliseconds since the start of the JVM.
+     */
+    public static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * Runs {@code work}, recording its duration as the one of {@code phase}, even if it fails.
+     *
+     * @param phase - the name of the phase
+     * @param work - the work of the phase
+     * @param <T> - type of the result
+     *
+     * @return the result of {@code work}.
+     *
+     * @throws Exception if {@code work} fails.
+     */
+    public <T> T time(final String phase, final Phase<T> work) throws Exception {
+        final long start = System.nanoTime();
+        try {
+            return work.run();
+        } finally {
+            record(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Runs {@code work}, recording its duration as the one of {@code phase}, even if it fails.
+     *
+     * @param phase - the name of the phase
+     * @param work - the work of the phase
+     *
+     * @throws Exception if {@code work} fails.
+     */
+    public void run(final String phase, final Step work) throws Exception {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @param phase - the name of the phase
+     * @param millis - its duration, in milliseconds
+     */
+    public void record(final String phase, final long millis) {
+        if (phases.put(phase, millis) == null) {
+            metricRegistry.register(MetricRegistry.name(StartupTimings.class, phase), (Gauge<Long>) () -> phases.get(phase));
+        }
+    }
+
+    /**
+     * @return the durations of the phases recorded so far, in the order they have been recorded first.
+     */
+    public Map<String, Long> getPhases() {
+        synchronized (phases) {
+            return new LinkedHashMap<>(phases);
+        }
+    }
+
+    /**
+     * A phase of the start-up with a result.
+     */
+    @FunctionalInterface
+    public interface Phase<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * A phase of the start-up without result.
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+}
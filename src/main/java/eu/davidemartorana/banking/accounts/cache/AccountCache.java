@@ -0,0 +1,65 @@
+package eu.davidemartorana.banking.accounts.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import org.hibernate.SessionFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.Collection;
+
+/**
+ * Cache of the accounts by uuid. The accounts are invalidated by the transfers changing their balance, see
+ * {@link #invalidateOnCompletion(Collection)}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class AccountCache extends ReadThroughCache<Account> {
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public AccountCache(final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry, final SessionFactory sessionFactory) {
+        super(applicationConfig.getCaches().getAccounts(), metricRegistry);
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Invalidates the accounts changed by the transaction of the current session when it commits, as
+     * {@link #invalidationOf(Collection)} describes.
+     *
+     * @param uuids - the uuids of the accounts changed
+     */
+    public void invalidateOnCompletion(final Collection<String> uuids) {
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(invalidationOf(uuids));
+    }
+
+    /**
+     * Returns the callback invalidating the accounts changed by a database transaction. The accounts are invalidated
+     * right before the commit, so nothing cached earlier is served after it, and again once the transaction is
+     * completed, so the balances read while committing are not kept either.
+     *
+     * @param uuids - the uuids of the accounts changed
+     *
+     * @return the callback to register on the transaction.
+     */
+    public Synchronization invalidationOf(final Collection<String> uuids) {
+        return new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                invalidate(uuids);
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status != Status.STATUS_ROLLEDBACK) {
+                    invalidate(uuids);
+                }
+            }
+        };
+    }
+}
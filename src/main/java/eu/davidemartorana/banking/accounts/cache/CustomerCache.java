@@ -0,0 +1,22 @@
+package eu.davidemartorana.banking.accounts.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Cache of the customers by uuid. The customers are never changed by the application.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class CustomerCache extends ReadThroughCache<Customer> {
+
+    @Inject
+    public CustomerCache(final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        super(applicationConfig.getCaches().getCustomers(), metricRegistry);
+    }
+}
@@ -0,0 +1,140 @@
+package eu.davidemartorana.banking.accounts.cache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded index of the transfers requested with an {@code Idempotency-Key}, by key. A key is added when its transfer
+ * starts, completed with the response once the transfer is committed and removed if the transfer fails, so the
+ * retries of a transfer are recognised with a single hash lookup.
+ *
+ * The keys are evicted by size and some time after they were added: the index is not the record of the keys, the
+ * {@code transfer_requests} table is.
+ *
+ * Hits, misses, evictions and size are published in the metrics as {@code IdempotencyIndex.hits} and so on.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class IdempotencyIndex {
+
+    private final ConcurrentMap<String, Entry> entries;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    @Inject
+    public IdempotencyIndex(final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this(applicationConfig.getCaches().getIdempotencyKeys(), metricRegistry);
+    }
+
+    public IdempotencyIndex(final CacheConfig cacheConfig, final MetricRegistry metricRegistry) {
+        final Cache<String, Entry> cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .expireAfterWrite(cacheConfig.getExpireAfterWrite().toNanoseconds(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .build();
+        this.entries = cache.asMap();
+
+        this.hits = metricRegistry.counter(MetricRegistry.name(IdempotencyIndex.class, "hits"));
+        this.misses = metricRegistry.counter(MetricRegistry.name(IdempotencyIndex.class, "misses"));
+        metricRegistry.register(MetricRegistry.name(IdempotencyIndex.class, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(MetricRegistry.name(IdempotencyIndex.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * Adds the {@code entry} of a transfer about to start, unless the key is already in the index.
+     *
+     * @param idempotencyKey - the key sent by the client
+     * @param entry - the transfer, still without response
+     *
+     * @return the entry already in the index with the same key, {@code null} if {@code entry} has been added.
+     */
+    public Entry putIfAbsent(final String idempotencyKey, final Entry entry) {
+        final Entry existing = entries.putIfAbsent(idempotencyKey, entry);
+        (existing == null ? misses : hits).inc();
+
+        return existing;
+    }
+
+    /**
+     * Adds the {@code entry} of a transfer already committed, replacing any other entry with the same key.
+     */
+    public void put(final String idempotencyKey, final Entry entry) {
+        entries.put(idempotencyKey, entry);
+    }
+
+    /**
+     * Removes the {@code entry} of a transfer that failed, if it is still the one of its key.
+     */
+    public void remove(final String idempotencyKey, final Entry entry) {
+        entries.remove(idempotencyKey, entry);
+    }
+
+    /**
+     * A transfer requested with an {@code Idempotency-Key}: its accounts and amount, to tell a retry from a different
+     * transfer reusing the key, and its response once committed.
+     */
+    public static final class Entry {
+
+        private final String debtorAccountUUID;
+
+        private final String beneficiaryAccountUUID;
+
+        private final Money amount;
+
+        private volatile TransferResponse response;
+
+        public Entry(final String debtorAccountUUID, final String beneficiaryAccountUUID, final Money amount) {
+            this.debtorAccountUUID = debtorAccountUUID;
+            this.beneficiaryAccountUUID = beneficiaryAccountUUID;
+            this.amount = amount;
+        }
+
+        public String getDebtorAccountUUID() {
+            return debtorAccountUUID;
+        }
+
+        public String getBeneficiaryAccountUUID() {
+            return beneficiaryAccountUUID;
+        }
+
+        public Money getAmount() {
+            return amount;
+        }
+
+        /**
+         * @return the response of the transfer, {@code null} while it is in progress.
+         */
+        public TransferResponse getResponse() {
+            return response;
+        }
+
+        public void complete(final TransferResponse response) {
+            this.response = response;
+        }
+
+        /**
+         * @return {@code true} if {@code other} is a transfer with the same accounts and amount.
+         */
+        public boolean isSameTransfer(final Entry other) {
+            return debtorAccountUUID.equals(other.debtorAccountUUID)
+                    && Objects.equals(beneficiaryAccountUUID, other.beneficiaryAccountUUID)
+                    && amount.equals(other.amount);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package eu.davidemartorana.banking.accounts.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of entities by uuid, filled on the first read. The entries are evicted by size and some time after
+ * they were loaded.
+ *
+ * An entry being loaded while its key is {@link #invalidate(Collection) invalidated} is not kept: every key has a
+ * version, increased by each invalidation, and a value is discarded when the version of its key changed during the
+ * load. Hence, after an invalidation returned, the cache never serves a value read before it.
+ *
+ * Hits, misses, evictions and size are published in the metrics as {@code <cache class>.hits} and so on.
+ *
+ * @param <V> - type of the cached entities
+ *
+ * @author Davide Martorana
+ */
+public class ReadThroughCache<V> {
+
+    private static final int VERSION_STRIPES = 256;
+
+    private final Cache<String, V> cache;
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public ReadThroughCache(final CacheConfig cacheConfig, final MetricRegistry metricRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .expireAfterWrite(cacheConfig.getExpireAfterWrite().toNanoseconds(), TimeUnit.NANOSECONDS)
+                .recordStats()
+                .build();
+
+        metricRegistry.register(MetricRegistry.name(getClass(), "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metricRegistry.register(MetricRegistry.name(getClass(), "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        metricRegistry.register(MetricRegistry.name(getClass(), "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(MetricRegistry.name(getClass(), "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * Returns the entity with the given {@code key}, loading it with {@code loader} if it is not cached. Entities not
+     * found are not cached.
+     *
+     * @param key - the uuid of the entity
+     * @param loader - reads the entity from the database
+     *
+     * @return the entity, if it exists.
+     */
+    public Optional<V> get(final String key, final Function<String, Optional<V>> loader) {
+        final V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        final int stripe = stripe(key);
+        final long version = versions.get(stripe);
+        final Optional<V> loaded = loader.apply(key);
+        loaded.ifPresent(value -> {
+            cache.put(key, value);
+            // Invalidated while loading: the value may be older than the change that invalidated it
+            if (versions.get(stripe) != version) {
+                cache.invalidate(key);
+            }
+        });
+
+        return loaded;
+    }
+
+    /**
+     * Returns the entity with the given {@code key} as {@link #get(String, Function)} does, loading it asynchronously
+     * with {@code loader} if it is not cached.
+     *
+     * @param key - the uuid of the entity
+     * @param loader - reads the entity from the database, without blocking
+     *
+     * @return the entity, if it exists.
+     */
+    public CompletionStage<Optional<V>> getAsync(final String key, final Function<String, CompletionStage<Optional<V>>> loader) {
+        final V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        final int stripe = stripe(key);
+        final long version = versions.get(stripe);
+        return loader.apply(key).thenApply(loaded -> {
+            loaded.ifPresent(value -> {
+                cache.put(key, value);
+                // Invalidated while loading: the value may be older than the change that invalidated it
+                if (versions.get(stripe) != version) {
+                    cache.invalidate(key);
+                }
+            });
+
+            return loaded;
+        });
+    }
+
+    /**
+     * Removes the entities with the given {@code keys}, and prevents the values being loaded right now from being
+     * cached.
+     *
+     * @param keys - the uuids of the entities changed
+     */
+    public void invalidate(final Collection<String> keys) {
+        keys.stream().filter(Objects::nonNull).forEach(key -> {
+            versions.incrementAndGet(stripe(key));
+            cache.invalidate(key);
+        });
+    }
+
+    private static int stripe(final String key) {
+        return key.hashCode() & (VERSION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,89 @@
+package eu.davidemartorana.banking.accounts.cache;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import io.dropwizard.lifecycle.Managed;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the uuids of the accounts split in balance slots, loaded at start-up and updated by every split once
+ * committed. The accounts in the index are read without locking them, so their transfers do not wait on each other
+ * before reaching their slots.
+ *
+ * An account is never merged back into a single slot, so the index can only be behind the database for a moment: an
+ * account split but not yet in the index is just locked as before.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class SplitAccountIndex implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SplitAccountIndex.class);
+
+    private final AccountRepository accountRepository;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final SessionFactory sessionFactory;
+
+    private final Set<String> uuids = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public SplitAccountIndex(final AccountRepository accountRepository, final UnitOfWorkRunner unitOfWorkRunner, final SessionFactory sessionFactory) {
+        this.accountRepository = accountRepository;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * @param uuid - the uuid of the account
+     *
+     * @return whether the account is split in balance slots.
+     */
+    public boolean isSplit(final String uuid) {
+        return uuids.contains(uuid);
+    }
+
+    /**
+     * Adds the account split by the transaction of the current session once it commits.
+     *
+     * @param uuid - the uuid of the account split
+     */
+    public void addOnCommit(final String uuid) {
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // Added only once committed
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    uuids.add(uuid);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        final List<String> splitUUIDs = unitOfWorkRunner.inUnitOfWork(accountRepository::findSplitAccountUUIDs);
+        LOGGER.info("Accounts split in balance slots: {}", splitUUIDs.size());
+        uuids.addAll(splitUUIDs);
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,103 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the {@link TransferExecutionType#ADAPTIVE adaptive} transfer execution: how the contention of the
+ * accounts is tracked and when an account is considered hot.
+ *
+ * @author Davide Martorana
+ */
+public class AdaptiveConfig {
+
+    @Min(16)
+    @JsonProperty
+    private int sketchWidth = 1024;
+
+    @Min(1)
+    @JsonProperty
+    private int sketchDepth = 4;
+
+    @NotNull
+    @JsonProperty
+    private Duration decayInterval = Duration.seconds(10);
+
+    @Min(1)
+    @JsonProperty
+    private long minTransfers = 50;
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    @JsonProperty
+    private double conflictRate = 0.05;
+
+    @NotNull
+    @JsonProperty
+    private Duration lockWait = Duration.milliseconds(5);
+
+    @Min(1)
+    @JsonProperty
+    private int maxHotAccounts = 64;
+
+    public int getSketchWidth() {
+        return sketchWidth;
+    }
+
+    public void setSketchWidth(int sketchWidth) {
+        this.sketchWidth = sketchWidth;
+    }
+
+    public int getSketchDepth() {
+        return sketchDepth;
+    }
+
+    public void setSketchDepth(int sketchDepth) {
+        this.sketchDepth = sketchDepth;
+    }
+
+    public Duration getDecayInterval() {
+        return decayInterval;
+    }
+
+    public void setDecayInterval(Duration decayInterval) {
+        this.decayInterval = decayInterval;
+    }
+
+    public long getMinTransfers() {
+        return minTransfers;
+    }
+
+    public void setMinTransfers(long minTransfers) {
+        this.minTransfers = minTransfers;
+    }
+
+    public double getConflictRate() {
+        return conflictRate;
+    }
+
+    public void setConflictRate(double conflictRate) {
+        this.conflictRate = conflictRate;
+    }
+
+    public Duration getLockWait() {
+        return lockWait;
+    }
+
+    public void setLockWait(Duration lockWait) {
+        this.lockWait = lockWait;
+    }
+
+    public int getMaxHotAccounts() {
+        return maxHotAccounts;
+    }
+
+    public void setMaxHotAccounts(int maxHotAccounts) {
+        this.maxHotAccounts = maxHotAccounts;
+    }
+}
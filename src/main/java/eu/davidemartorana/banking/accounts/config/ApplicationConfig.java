@@ -20,6 +20,26 @@ public class ApplicationConfig extends Configuration {
     @JsonProperty("flyway")
     private FlywayFactory flywayFactory = new FlywayFactory();
 
+    @Valid
+    @NotNull
+    @JsonProperty("startup")
+    private StartupConfig startup = new StartupConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("transfers")
+    private TransfersConfig transfers = new TransfersConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("caches")
+    private CachesConfig caches = new CachesConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("asyncDatabase")
+    private AsyncDatabaseConfig asyncDatabase = new AsyncDatabaseConfig();
+
     public DataSourceFactory getDataSourceFactory() {
         return database;
     }
@@ -27,4 +47,20 @@ public class ApplicationConfig extends Configuration {
     public FlywayFactory getFlywayFactory() {
         return flywayFactory;
     }
+
+    public StartupConfig getStartup() {
+        return startup;
+    }
+
+    public TransfersConfig getTransfers() {
+        return transfers;
+    }
+
+    public CachesConfig getCaches() {
+        return caches;
+    }
+
+    public AsyncDatabaseConfig getAsyncDatabase() {
+        return asyncDatabase;
+    }
 }
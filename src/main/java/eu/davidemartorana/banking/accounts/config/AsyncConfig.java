@@ -0,0 +1,125 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Settings of the transfers submitted asynchronously, executed by the
+ * {@link eu.davidemartorana.banking.accounts.jobs.TransferJobQueue}.
+ *
+ * @author Davide Martorana
+ */
+public class AsyncConfig {
+
+    @Min(1)
+    @JsonProperty
+    private int workers = 4;
+
+    @Min(1)
+    @JsonProperty
+    private int queueCapacity = 10000;
+
+    @NotNull
+    @JsonProperty
+    private Duration callbackTimeout = Duration.seconds(5);
+
+    @Min(1)
+    @JsonProperty
+    private int callbackWorkers = 2;
+
+    @Min(1)
+    @JsonProperty
+    private int callbackQueueCapacity = 1000;
+
+    @NotNull
+    @JsonProperty
+    private Set<String> callbackHosts = new HashSet<>();
+
+    @JsonProperty
+    private boolean privateCallbackAddresses = false;
+
+    @Min(1)
+    @JsonProperty
+    private int maxAttempts = 5;
+
+    @NotNull
+    @JsonProperty
+    private Duration retryBackoff = Duration.milliseconds(100);
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getCallbackTimeout() {
+        return callbackTimeout;
+    }
+
+    public void setCallbackTimeout(Duration callbackTimeout) {
+        this.callbackTimeout = callbackTimeout;
+    }
+
+    public int getCallbackWorkers() {
+        return callbackWorkers;
+    }
+
+    public void setCallbackWorkers(int callbackWorkers) {
+        this.callbackWorkers = callbackWorkers;
+    }
+
+    public int getCallbackQueueCapacity() {
+        return callbackQueueCapacity;
+    }
+
+    public void setCallbackQueueCapacity(int callbackQueueCapacity) {
+        this.callbackQueueCapacity = callbackQueueCapacity;
+    }
+
+    public Set<String> getCallbackHosts() {
+        return callbackHosts;
+    }
+
+    public void setCallbackHosts(Set<String> callbackHosts) {
+        this.callbackHosts = callbackHosts;
+    }
+
+    public boolean isPrivateCallbackAddresses() {
+        return privateCallbackAddresses;
+    }
+
+    public void setPrivateCallbackAddresses(boolean privateCallbackAddresses) {
+        this.privateCallbackAddresses = privateCallbackAddresses;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+}
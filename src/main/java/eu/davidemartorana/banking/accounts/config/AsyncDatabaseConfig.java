@@ -0,0 +1,38 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Settings of the {@link eu.davidemartorana.banking.accounts.dao.async.JdbcExecutor}, running the queries of the
+ * non-blocking endpoints.
+ *
+ * @author Davide Martorana
+ */
+public class AsyncDatabaseConfig {
+
+    @Min(1)
+    @JsonProperty
+    private int threads = 16;
+
+    @Min(1)
+    @JsonProperty
+    private int queueCapacity = 1024;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
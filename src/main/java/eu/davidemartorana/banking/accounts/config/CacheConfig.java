@@ -0,0 +1,47 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of a cache of entities read by uuid.
+ *
+ * @author Davide Martorana
+ */
+public class CacheConfig {
+
+    @Min(0)
+    @JsonProperty
+    private long maximumSize = 10_000;
+
+    @NotNull
+    @JsonProperty
+    private Duration expireAfterWrite = Duration.minutes(1);
+
+    public CacheConfig() {
+    }
+
+    public CacheConfig(final long maximumSize, final Duration expireAfterWrite) {
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+}
@@ -0,0 +1,54 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the caches of the entities read by uuid and of the index of the {@code Idempotency-Key}s.
+ *
+ * @author Davide Martorana
+ */
+public class CachesConfig {
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private CacheConfig accounts = new CacheConfig(10_000, Duration.minutes(1));
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private CacheConfig customers = new CacheConfig(10_000, Duration.minutes(10));
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private CacheConfig idempotencyKeys = new CacheConfig(100_000, Duration.hours(24));
+
+    public CacheConfig getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(CacheConfig accounts) {
+        this.accounts = accounts;
+    }
+
+    public CacheConfig getCustomers() {
+        return customers;
+    }
+
+    public void setCustomers(CacheConfig customers) {
+        this.customers = customers;
+    }
+
+    public CacheConfig getIdempotencyKeys() {
+        return idempotencyKeys;
+    }
+
+    public void setIdempotencyKeys(CacheConfig idempotencyKeys) {
+        this.idempotencyKeys = idempotencyKeys;
+    }
+}
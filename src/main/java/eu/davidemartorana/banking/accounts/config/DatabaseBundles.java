@@ -1,16 +1,32 @@
 package eu.davidemartorana.banking.accounts.config;
 
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSnapshot;
 import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+import eu.davidemartorana.banking.accounts.domain.internal.JournalCheckpoint;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJob;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.flyway.FlywayBundle;
 import io.dropwizard.flyway.FlywayFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import org.hibernate.cfg.Configuration;
+
+import java.net.URISyntaxException;
+import java.net.URL;
 
 public class DatabaseBundles {
 
-    public static final HibernateBundle<ApplicationConfig> HIBERNATE_BUNDLE = new HibernateBundle<>(Customer.class, Account.class, Transaction.class ) {
+    /**
+     * Location of the configuration of the JCache provider of the second-level cache.
+     */
+    public static final String CACHE_CONFIG_URI = "hibernate.javax.cache.uri";
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    public static final HibernateBundle<ApplicationConfig> HIBERNATE_BUNDLE = new HibernateBundle<>(Customer.class, Account.class, BalanceSlot.class, BalanceSnapshot.class, JournalCheckpoint.class, Transaction.class, TransferRequestRecord.class, TransferJob.class) {
         @Override
         public DataSourceFactory getDataSourceFactory(ApplicationConfig configuration) {
             return configuration.getDataSourceFactory();
@@ -20,6 +36,27 @@ public class DatabaseBundles {
         protected String name() {
             return "hibernate.customer";
         }
+
+        /**
+         * The JCache provider needs the absolute URI of its configuration: a {@code classpath:} location is resolved
+         * here, so the configuration can be packaged with the application.
+         */
+        @Override
+        protected void configure(final Configuration configuration) {
+            final String cacheConfigUri = configuration.getProperty(CACHE_CONFIG_URI);
+            if (cacheConfigUri != null && cacheConfigUri.startsWith(CLASSPATH_PREFIX)) {
+                final String resource = cacheConfigUri.substring(CLASSPATH_PREFIX.length());
+                final URL url = DatabaseBundles.class.getClassLoader().getResource(resource);
+                if (url == null) {
+                    throw new IllegalStateException("Cache configuration not found: " + cacheConfigUri);
+                }
+                try {
+                    configuration.setProperty(CACHE_CONFIG_URI, url.toURI().toString());
+                } catch (final URISyntaxException e) {
+                    throw new IllegalStateException("Invalid cache configuration location: " + url, e);
+                }
+            }
+        }
     };
 
 }
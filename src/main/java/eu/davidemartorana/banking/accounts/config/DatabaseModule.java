@@ -1,6 +1,12 @@
 package eu.davidemartorana.banking.accounts.config;
 
 import com.google.inject.AbstractModule;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncAccountRepository;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncCustomerRepository;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncTransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.async.ExecutorAccountRepository;
+import eu.davidemartorana.banking.accounts.dao.async.ExecutorCustomerRepository;
+import eu.davidemartorana.banking.accounts.dao.async.ExecutorTransactionRepository;
 import org.hibernate.SessionFactory;
 
 public class DatabaseModule extends AbstractModule {
@@ -16,5 +22,10 @@ public class DatabaseModule extends AbstractModule {
     @Override
     protected void configure() {
         this.bind(SessionFactory.class).toInstance(DatabaseBundles.HIBERNATE_BUNDLE.getSessionFactory());
+
+        // The blocking repositories on the JDBC executor, until an asynchronous driver replaces them
+        this.bind(AsyncAccountRepository.class).to(ExecutorAccountRepository.class);
+        this.bind(AsyncTransactionRepository.class).to(ExecutorTransactionRepository.class);
+        this.bind(AsyncCustomerRepository.class).to(ExecutorCustomerRepository.class);
     }
 }
@@ -0,0 +1,39 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the balance snapshots taken by the {@link TransferEngineType#EVENT_SOURCED event-sourced} engine.
+ *
+ * @author Davide Martorana
+ */
+public class EventSourcedConfig {
+
+    @NotNull
+    @JsonProperty
+    private Duration snapshotInterval = Duration.seconds(30);
+
+    @Min(1)
+    @JsonProperty
+    private int snapshotEntries = 100;
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getSnapshotEntries() {
+        return snapshotEntries;
+    }
+
+    public void setSnapshotEntries(int snapshotEntries) {
+        this.snapshotEntries = snapshotEntries;
+    }
+}
@@ -0,0 +1,26 @@
+package eu.davidemartorana.banking.accounts.config;
+
+/**
+ * When the records appended to the write-ahead log of the ledger journal are forced to the disk.
+ *
+ * @author Davide Martorana
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every record is forced before its transfer is acknowledged: no acknowledged transfer is lost in a crash, but
+     * every transfer waits for the disk.
+     */
+    EVERY_WRITE,
+
+    /**
+     * The records are forced once per batch, before the journal writer persists it to the database: a crash loses the
+     * transfers acknowledged since the previous batch.
+     */
+    BATCH,
+
+    /**
+     * The records are forced every {@code fsyncInterval}: a crash loses the transfers acknowledged in the last interval.
+     */
+    PERIODIC
+}
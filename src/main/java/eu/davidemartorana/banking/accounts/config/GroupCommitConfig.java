@@ -0,0 +1,63 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the {@link TransferExecutionType#GROUP_COMMIT group commit} transfer execution.
+ *
+ * @author Davide Martorana
+ */
+public class GroupCommitConfig {
+
+    @NotNull
+    @JsonProperty
+    private Duration window = Duration.microseconds(500);
+
+    @Min(1)
+    @JsonProperty
+    private int maxBatchSize = 64;
+
+    @Min(1)
+    @JsonProperty
+    private int queueCapacity = 4096;
+
+    @NotNull
+    @JsonProperty
+    private Duration submitTimeout = Duration.seconds(1);
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getSubmitTimeout() {
+        return submitTimeout;
+    }
+
+    public void setSubmitTimeout(Duration submitTimeout) {
+        this.submitTimeout = submitTimeout;
+    }
+}
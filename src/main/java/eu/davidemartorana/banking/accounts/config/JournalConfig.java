@@ -0,0 +1,77 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the journal used by the {@link TransferEngineType#IN_MEMORY in-memory} ledger to persist the transfers.
+ *
+ * @author Davide Martorana
+ */
+public class JournalConfig {
+
+    @Min(1)
+    @JsonProperty
+    private int capacity = 65536;
+
+    @Min(1)
+    @JsonProperty
+    private int batchSize = 512;
+
+    @NotNull
+    @JsonProperty
+    private Duration flushInterval = Duration.milliseconds(10);
+
+    @NotNull
+    @JsonProperty
+    private Duration appendTimeout = Duration.seconds(1);
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private WriteAheadLogConfig writeAheadLog = new WriteAheadLogConfig();
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Duration getAppendTimeout() {
+        return appendTimeout;
+    }
+
+    public void setAppendTimeout(Duration appendTimeout) {
+        this.appendTimeout = appendTimeout;
+    }
+
+    public WriteAheadLogConfig getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    public void setWriteAheadLog(WriteAheadLogConfig writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+}
@@ -0,0 +1,20 @@
+package eu.davidemartorana.banking.accounts.config;
+
+/**
+ * Available ways of reading the transfer requests and writing the transfer responses in JSON.
+ *
+ * @author Davide Martorana
+ */
+public enum JsonCodecType {
+
+    /**
+     * The bean serializers of Jackson, built by introspection of the representations.
+     */
+    REFLECTION,
+
+    /**
+     * The hand-written serializers of {@link eu.davidemartorana.banking.accounts.rest.json.TransferJsonModule}, writing
+     * and reading the tokens directly. The output is the same, byte for byte.
+     */
+    STREAMING
+}
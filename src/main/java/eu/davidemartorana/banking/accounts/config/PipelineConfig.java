@@ -0,0 +1,59 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the {@link TransferExecutionType#PIPELINE transfer pipeline}.
+ *
+ * @author Davide Martorana
+ */
+public class PipelineConfig {
+
+    @Min(2)
+    @JsonProperty
+    private int ringSize = 1024;
+
+    @NotNull
+    @JsonProperty
+    private WaitStrategyType waitStrategy = WaitStrategyType.BLOCKING;
+
+    @NotNull
+    @JsonProperty
+    private Duration publishTimeout = Duration.seconds(1);
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+
+    public WaitStrategyType getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategyType waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public Duration getPublishTimeout() {
+        return publishTimeout;
+    }
+
+    public void setPublishTimeout(Duration publishTimeout) {
+        this.publishTimeout = publishTimeout;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "ringSize must be a power of two")
+    public boolean isRingSizePowerOfTwo() {
+        return Integer.bitCount(ringSize) == 1;
+    }
+}
@@ -0,0 +1,52 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the retries of the transfers failed because of a concurrent update of their accounts, see
+ * {@link TransferEngineType#OPTIMISTIC}.
+ *
+ * @author Davide Martorana
+ */
+public class RetryConfig {
+
+    @Min(1)
+    @JsonProperty
+    private int maxAttempts = 5;
+
+    @NotNull
+    @JsonProperty
+    private Duration initialBackoff = Duration.milliseconds(1);
+
+    @NotNull
+    @JsonProperty
+    private Duration maxBackoff = Duration.milliseconds(50);
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
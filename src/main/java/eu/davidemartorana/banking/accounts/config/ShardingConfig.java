@@ -0,0 +1,51 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the {@link TransferExecutionType#SHARDED sharded} transfer execution.
+ *
+ * @author Davide Martorana
+ */
+public class ShardingConfig {
+
+    @Min(1)
+    @JsonProperty
+    private int shards = 8;
+
+    @Min(1)
+    @JsonProperty
+    private int queueCapacity = 1024;
+
+    @NotNull
+    @JsonProperty
+    private Duration submitTimeout = Duration.seconds(1);
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getSubmitTimeout() {
+        return submitTimeout;
+    }
+
+    public void setSubmitTimeout(Duration submitTimeout) {
+        this.submitTimeout = submitTimeout;
+    }
+}
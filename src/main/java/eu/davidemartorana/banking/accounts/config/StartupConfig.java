@@ -0,0 +1,52 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the start-up of the application: how an empty database is populated, either running all the migrations
+ * or, with the warm boot, restoring the seed data from a {@link eu.davidemartorana.banking.accounts.boot.DatabaseSnapshot}.
+ *
+ * @author Davide Martorana
+ */
+public class StartupConfig {
+
+    @JsonProperty
+    private boolean warmBoot = false;
+
+    @NotNull
+    @JsonProperty
+    private String snapshotFile = "boot-snapshot.bin";
+
+    @NotNull
+    @JsonProperty
+    private List<String> seedLocations = new ArrayList<>(Collections.singletonList("db/seed"));
+
+    public boolean isWarmBoot() {
+        return warmBoot;
+    }
+
+    public void setWarmBoot(boolean warmBoot) {
+        this.warmBoot = warmBoot;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public List<String> getSeedLocations() {
+        return seedLocations;
+    }
+
+    public void setSeedLocations(List<String> seedLocations) {
+        this.seedLocations = seedLocations;
+    }
+}
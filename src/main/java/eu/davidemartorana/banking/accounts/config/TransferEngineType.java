@@ -0,0 +1,31 @@
+package eu.davidemartorana.banking.accounts.config;
+
+/**
+ * Available implementations of the {@link eu.davidemartorana.banking.accounts.services.TransferEngine}.
+ *
+ * @author Davide Martorana
+ */
+public enum TransferEngineType {
+
+    /**
+     * Balances are updated in the database, under a {@link javax.persistence.LockModeType#PESSIMISTIC_WRITE} lock.
+     */
+    HIBERNATE,
+
+    /**
+     * Balances are updated in the database only if the accounts have not changed since they were read, without locks;
+     * the transfers conflicting with a concurrent update are retried.
+     */
+    OPTIMISTIC,
+
+    /**
+     * Balances are held in memory and persisted asynchronously through the ledger journal.
+     */
+    IN_MEMORY,
+
+    /**
+     * Transfers only append their debit and credit transactions, without updating the accounts: the balances are
+     * derived from the latest balance snapshot plus the transactions coming after it.
+     */
+    EVENT_SOURCED
+}
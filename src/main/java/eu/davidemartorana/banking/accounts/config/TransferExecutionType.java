@@ -0,0 +1,36 @@
+package eu.davidemartorana.banking.accounts.config;
+
+/**
+ * Available implementations of the {@link eu.davidemartorana.banking.accounts.services.TransferExecutor}.
+ *
+ * @author Davide Martorana
+ */
+public enum TransferExecutionType {
+
+    /**
+     * The transfer is executed by the request thread.
+     */
+    DIRECT,
+
+    /**
+     * The transfer is published into a ring buffer and executed by a single business-logic thread.
+     */
+    PIPELINE,
+
+    /**
+     * The transfer is executed by the worker of the shard owning the accounts. Each account always belongs to the
+     * same shard, and a transfer between two shards holds the locks of both, acquired in ascending shard order.
+     */
+    SHARDED,
+
+    /**
+     * The transfers arriving together are collected for a short window and committed in a single database transaction.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * The transfers touching a hot account, one with a high contention, are executed by the shard workers as in
+     * {@link #SHARDED}; all the others by the request thread as in {@link #DIRECT}.
+     */
+    ADAPTIVE
+}
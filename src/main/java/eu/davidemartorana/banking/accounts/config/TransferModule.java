@@ -0,0 +1,63 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.eventsourced.EventSourcedTransferEngine;
+import eu.davidemartorana.banking.accounts.ledger.LedgerTransferEngine;
+import eu.davidemartorana.banking.accounts.pipeline.AdaptiveTransferExecutor;
+import eu.davidemartorana.banking.accounts.pipeline.GroupCommitTransferExecutor;
+import eu.davidemartorana.banking.accounts.pipeline.ShardedTransferExecutor;
+import eu.davidemartorana.banking.accounts.pipeline.TransferPipeline;
+import eu.davidemartorana.banking.accounts.services.DirectTransferExecutor;
+import eu.davidemartorana.banking.accounts.services.HibernateTransferEngine;
+import eu.davidemartorana.banking.accounts.services.OptimisticTransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import ru.vyarus.dropwizard.guice.module.support.DropwizardAwareModule;
+
+/**
+ * Binds the transfer processing components selected in the {@link TransfersConfig configuration}.
+ *
+ * @author Davide Martorana
+ */
+public class TransferModule extends DropwizardAwareModule<ApplicationConfig> {
+
+    @Override
+    protected void configure() {
+        final TransfersConfig transfersConfig = configuration().getTransfers();
+
+        this.bind(MetricRegistry.class).toInstance(environment().metrics());
+
+        switch (transfersConfig.getEngine()) {
+            case IN_MEMORY:
+                this.bind(TransferEngine.class).to(LedgerTransferEngine.class);
+                break;
+            case EVENT_SOURCED:
+                this.bind(TransferEngine.class).to(EventSourcedTransferEngine.class);
+                break;
+            case OPTIMISTIC:
+                this.bind(TransferEngine.class).to(OptimisticTransferEngine.class);
+                break;
+            case HIBERNATE:
+            default:
+                this.bind(TransferEngine.class).to(HibernateTransferEngine.class);
+        }
+
+        switch (transfersConfig.getExecution()) {
+            case PIPELINE:
+                this.bind(TransferExecutor.class).to(TransferPipeline.class);
+                break;
+            case SHARDED:
+                this.bind(TransferExecutor.class).to(ShardedTransferExecutor.class);
+                break;
+            case GROUP_COMMIT:
+                this.bind(TransferExecutor.class).to(GroupCommitTransferExecutor.class);
+                break;
+            case ADAPTIVE:
+                this.bind(TransferExecutor.class).to(AdaptiveTransferExecutor.class);
+                break;
+            case DIRECT:
+            default:
+                this.bind(TransferExecutor.class).to(DirectTransferExecutor.class);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the funds transfer processing.
+ *
+ * @author Davide Martorana
+ */
+public class TransfersConfig {
+
+    @NotNull
+    @JsonProperty
+    private TransferEngineType engine = TransferEngineType.HIBERNATE;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private JournalConfig journal = new JournalConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RetryConfig retry = new RetryConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private EventSourcedConfig eventSourced = new EventSourcedConfig();
+
+    @NotNull
+    @JsonProperty
+    private TransferExecutionType execution = TransferExecutionType.DIRECT;
+
+    @NotNull
+    @JsonProperty
+    private Duration executionTimeout = Duration.seconds(30);
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private PipelineConfig pipeline = new PipelineConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ShardingConfig sharding = new ShardingConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private GroupCommitConfig groupCommit = new GroupCommitConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AdaptiveConfig adaptive = new AdaptiveConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AsyncConfig async = new AsyncConfig();
+
+    @NotNull
+    @JsonProperty
+    private JsonCodecType jsonCodec = JsonCodecType.REFLECTION;
+
+    public TransferEngineType getEngine() {
+        return engine;
+    }
+
+    public void setEngine(TransferEngineType engine) {
+        this.engine = engine;
+    }
+
+    public JournalConfig getJournal() {
+        return journal;
+    }
+
+    public void setJournal(JournalConfig journal) {
+        this.journal = journal;
+    }
+
+    public RetryConfig getRetry() {
+        return retry;
+    }
+
+    public void setRetry(RetryConfig retry) {
+        this.retry = retry;
+    }
+
+    public EventSourcedConfig getEventSourced() {
+        return eventSourced;
+    }
+
+    public void setEventSourced(EventSourcedConfig eventSourced) {
+        this.eventSourced = eventSourced;
+    }
+
+    public TransferExecutionType getExecution() {
+        return execution;
+    }
+
+    public void setExecution(TransferExecutionType execution) {
+        this.execution = execution;
+    }
+
+    public Duration getExecutionTimeout() {
+        return executionTimeout;
+    }
+
+    public void setExecutionTimeout(Duration executionTimeout) {
+        this.executionTimeout = executionTimeout;
+    }
+
+    public PipelineConfig getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(PipelineConfig pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public ShardingConfig getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(ShardingConfig sharding) {
+        this.sharding = sharding;
+    }
+
+    public GroupCommitConfig getGroupCommit() {
+        return groupCommit;
+    }
+
+    public void setGroupCommit(GroupCommitConfig groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public AdaptiveConfig getAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(AdaptiveConfig adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public AsyncConfig getAsync() {
+        return async;
+    }
+
+    public void setAsync(AsyncConfig async) {
+        this.async = async;
+    }
+
+    public JsonCodecType getJsonCodec() {
+        return jsonCodec;
+    }
+
+    public void setJsonCodec(JsonCodecType jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
+
+    /**
+     * A failed group commit is committed again one transfer at a time: the in-memory ledger journals a transfer right
+     * before the commit, so a group whose commit fails afterwards would be applied twice.
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "the GROUP_COMMIT execution cannot be used with the IN_MEMORY engine")
+    public boolean isExecutionSupportedByEngine() {
+        return execution != TransferExecutionType.GROUP_COMMIT || engine != TransferEngineType.IN_MEMORY;
+    }
+}
@@ -0,0 +1,29 @@
+package eu.davidemartorana.banking.accounts.config;
+
+/**
+ * The ways the transfer pipeline consumer waits for new transfers.
+ *
+ * @author Davide Martorana
+ */
+public enum WaitStrategyType {
+
+    /**
+     * Parks the consumer until a producer signals a new transfer. Lowest CPU usage, highest latency.
+     */
+    BLOCKING,
+
+    /**
+     * Spins, then yields, then parks for short periods.
+     */
+    SLEEPING,
+
+    /**
+     * Spins, then yields the CPU to the other threads.
+     */
+    YIELDING,
+
+    /**
+     * Spins continuously. Lowest latency, but it keeps a CPU core busy.
+     */
+    BUSY_SPIN
+}
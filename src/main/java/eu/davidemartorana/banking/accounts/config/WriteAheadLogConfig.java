@@ -0,0 +1,80 @@
+package eu.davidemartorana.banking.accounts.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the write-ahead log of the ledger journal: the memory-mapped files the transfers of the
+ * {@link TransferEngineType#IN_MEMORY in-memory} ledger are appended to before being acknowledged.
+ *
+ * @author Davide Martorana
+ */
+public class WriteAheadLogConfig {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @NotNull
+    @JsonProperty
+    private String directory = "journal";
+
+    @NotNull
+    @MinSize(value = 64, unit = SizeUnit.KILOBYTES)
+    @MaxSize(value = 1, unit = SizeUnit.GIGABYTES)
+    @JsonProperty
+    private Size segmentSize = Size.megabytes(64);
+
+    @NotNull
+    @JsonProperty
+    private FsyncPolicy fsync = FsyncPolicy.BATCH;
+
+    @NotNull
+    @JsonProperty
+    private Duration fsyncInterval = Duration.milliseconds(100);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public Size getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(Size segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public FsyncPolicy getFsync() {
+        return fsync;
+    }
+
+    public void setFsync(FsyncPolicy fsync) {
+        this.fsync = fsync;
+    }
+
+    public Duration getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public void setFsyncInterval(Duration fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+}
@@ -0,0 +1,155 @@
+package eu.davidemartorana.banking.accounts.contention;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch of the contention of the accounts: for every account it counts the transfers, the transfers
+ * failed because of a conflict and the time spent waiting for the locks, in a fixed amount of memory however many
+ * accounts there are.
+ *
+ * Each account is counted in one cell of every row, chosen by hash of its uuid. An estimate is the minimum across the
+ * rows, so it is never lower than the real count and only higher when all the cells of the account are shared with
+ * other accounts. {@link #decay()} halves all the counts, so the older contention weighs less and less.
+ *
+ * @author Davide Martorana
+ */
+public class ContentionSketch {
+
+    private final int depth;
+
+    private final int mask;
+
+    private final AtomicLongArray transfers;
+
+    private final AtomicLongArray conflicts;
+
+    private final AtomicLongArray lockWaitMicros;
+
+    /**
+     * @param width - the cells of every row, rounded up to a power of two
+     * @param depth - the number of rows
+     */
+    public ContentionSketch(final int width, final int depth) {
+        final int rowSize = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = rowSize - 1;
+        this.transfers = new AtomicLongArray(rowSize * depth);
+        this.conflicts = new AtomicLongArray(rowSize * depth);
+        this.lockWaitMicros = new AtomicLongArray(rowSize * depth);
+    }
+
+    /**
+     * Counts a transfer of the account.
+     *
+     * @param accountUUID - unique identifier of the account
+     * @param lockWaitMicros - the time the transfer waited for the locks, in microseconds
+     * @param conflict - whether the transfer failed because of a conflict
+     */
+    public void add(final String accountUUID, final long lockWaitMicros, final boolean conflict) {
+        final long hash = hash(accountUUID);
+        for (int row = 0; row < depth; row++) {
+            final int cell = cell(hash, row);
+            this.transfers.incrementAndGet(cell);
+            if (conflict) {
+                this.conflicts.incrementAndGet(cell);
+            }
+            if (lockWaitMicros > 0) {
+                this.lockWaitMicros.addAndGet(cell, lockWaitMicros);
+            }
+        }
+    }
+
+    /**
+     * @param accountUUID - unique identifier of the account
+     *
+     * @return the estimated contention of the account.
+     */
+    public Estimate estimate(final String accountUUID) {
+        final long hash = hash(accountUUID);
+        long transfers = Long.MAX_VALUE;
+        long conflicts = Long.MAX_VALUE;
+        long lockWaitMicros = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            final int cell = cell(hash, row);
+            transfers = Math.min(transfers, this.transfers.get(cell));
+            conflicts = Math.min(conflicts, this.conflicts.get(cell));
+            lockWaitMicros = Math.min(lockWaitMicros, this.lockWaitMicros.get(cell));
+        }
+
+        return new Estimate(transfers, conflicts, lockWaitMicros);
+    }
+
+    /**
+     * Halves all the counts. A count incremented at the same time may not be halved, which only makes it a little
+     * higher than it should.
+     */
+    public void decay() {
+        for (int cell = 0; cell < transfers.length(); cell++) {
+            transfers.updateAndGet(cell, count -> count >> 1);
+            conflicts.updateAndGet(cell, count -> count >> 1);
+            lockWaitMicros.updateAndGet(cell, count -> count >> 1);
+        }
+    }
+
+    private static long hash(final String accountUUID) {
+        final HashCode hashCode = Hashing.murmur3_128().hashString(accountUUID, StandardCharsets.UTF_8);
+
+        return hashCode.asLong();
+    }
+
+    private int cell(final long hash, final int row) {
+        // Double hashing: the two halves of the hash give an independent cell in every row
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32);
+
+        return row * (mask + 1) + ((first + row * second) & mask);
+    }
+
+    /**
+     * The contention of an account, as estimated by the sketch.
+     */
+    public static final class Estimate {
+
+        private final long transfers;
+
+        private final long conflicts;
+
+        private final long lockWaitMicros;
+
+        Estimate(final long transfers, final long conflicts, final long lockWaitMicros) {
+            this.transfers = transfers;
+            this.conflicts = conflicts;
+            this.lockWaitMicros = lockWaitMicros;
+        }
+
+        public long getTransfers() {
+            return transfers;
+        }
+
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        public long getLockWaitMicros() {
+            return lockWaitMicros;
+        }
+
+        /**
+         * @return the share of the transfers failed because of a conflict.
+         */
+        public double getConflictRate() {
+            return transfers == 0 ? 0 : (double) conflicts / transfers;
+        }
+
+        /**
+         * @return the average time a transfer waited for the locks, in microseconds.
+         */
+        public long getAverageLockWaitMicros() {
+            return transfers == 0 ? 0 : lockWaitMicros / transfers;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package eu.davidemartorana.banking.accounts.contention;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.AdaptiveConfig;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the contention of the accounts in a {@link ContentionSketch} and keeps the set of the hot ones.
+ *
+ * An account becomes hot when it has at least {@link AdaptiveConfig#getMinTransfers()} transfers and either their
+ * conflict rate reaches {@link AdaptiveConfig#getConflictRate()} or their average lock wait reaches
+ * {@link AdaptiveConfig#getLockWait()}. Every {@link AdaptiveConfig#getDecayInterval()} the counts are halved, and a
+ * hot account with less than half the minimum transfers left goes back to cold: once its transfers are serialized
+ * its contention disappears, so only the drop of its traffic makes it cold again.
+ *
+ * The size of the hot set and the accounts becoming hot or cold are published in the {@link MetricRegistry}; the last
+ * decisions are kept for the {@link HotAccountsTask}.
+ *
+ * The contention is tracked only when the {@link TransferExecutionType#ADAPTIVE adaptive} execution is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class HotAccountDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotAccountDetector.class);
+
+    private static final int MAX_DECISIONS = 100;
+
+    private final boolean enabled;
+
+    private final ContentionSketch sketch;
+
+    private final long minTransfers;
+
+    private final double conflictRate;
+
+    private final long lockWaitMicros;
+
+    private final int maxHotAccounts;
+
+    private final long decayIntervalNanos;
+
+    private final AtomicLong lastDecay = new AtomicLong(System.nanoTime());
+
+    private final Map<String, SwitchDecision> hotAccounts = new ConcurrentHashMap<>();
+
+    private final Deque<SwitchDecision> decisions = new ArrayDeque<>();
+
+    private final Meter promotions;
+
+    private final Meter demotions;
+
+    @Inject
+    public HotAccountDetector(final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this(applicationConfig.getTransfers().getAdaptive(), applicationConfig.getTransfers().getExecution() == TransferExecutionType.ADAPTIVE, metricRegistry);
+    }
+
+    public HotAccountDetector(final AdaptiveConfig adaptiveConfig, final boolean enabled, final MetricRegistry metricRegistry) {
+        this.enabled = enabled;
+        this.sketch = enabled ? new ContentionSketch(adaptiveConfig.getSketchWidth(), adaptiveConfig.getSketchDepth()) : null;
+        this.minTransfers = adaptiveConfig.getMinTransfers();
+        this.conflictRate = adaptiveConfig.getConflictRate();
+        this.lockWaitMicros = adaptiveConfig.getLockWait().toMicroseconds();
+        this.maxHotAccounts = adaptiveConfig.getMaxHotAccounts();
+        this.decayIntervalNanos = adaptiveConfig.getDecayInterval().toNanoseconds();
+
+        if (enabled) {
+            metricRegistry.register(MetricRegistry.name(HotAccountDetector.class, "hot-accounts"), (Gauge<Integer>) hotAccounts::size);
+            this.promotions = metricRegistry.meter(MetricRegistry.name(HotAccountDetector.class, "promotions"));
+            this.demotions = metricRegistry.meter(MetricRegistry.name(HotAccountDetector.class, "demotions"));
+        } else {
+            this.promotions = new Meter();
+            this.demotions = new Meter();
+        }
+    }
+
+    /**
+     * Counts a transfer, or a batch of transfers, on the accounts and makes hot the ones now above the thresholds.
+     *
+     * @param accountUUIDs - unique identifiers of the accounts of the transfer
+     * @param lockWaitNanos - the time waited for the locks of the accounts, in nanoseconds
+     * @param conflict - whether the transfer failed because of a conflict
+     */
+    public void record(final Collection<String> accountUUIDs, final long lockWaitNanos, final boolean conflict) {
+        if (!enabled) {
+            return;
+        }
+
+        decayIfDue();
+        final long lockWaitMicros = TimeUnit.NANOSECONDS.toMicros(lockWaitNanos);
+        for (final String accountUUID : accountUUIDs) {
+            if (accountUUID == null) {
+                continue;
+            }
+
+            sketch.add(accountUUID, lockWaitMicros, conflict);
+            if (!hotAccounts.containsKey(accountUUID)) {
+                final ContentionSketch.Estimate estimate = sketch.estimate(accountUUID);
+                if (isContended(estimate)) {
+                    promote(accountUUID, estimate);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param accountUUID - unique identifier of the account
+     *
+     * @return whether the account is currently hot.
+     */
+    public boolean isHot(final String accountUUID) {
+        if (!enabled || accountUUID == null) {
+            return false;
+        }
+
+        decayIfDue();
+        return hotAccounts.containsKey(accountUUID);
+    }
+
+    /**
+     * @return the accounts currently hot, each one with the decision that made it so.
+     */
+    public List<SwitchDecision> getHotAccounts() {
+        return new ArrayList<>(hotAccounts.values());
+    }
+
+    /**
+     * @return the last accounts become hot or cold, the most recent first.
+     */
+    public List<SwitchDecision> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    /**
+     * Halves the counts of the sketch and makes cold again the hot accounts whose traffic has dropped. It runs by
+     * itself every {@link AdaptiveConfig#getDecayInterval()}, on the first transfer coming after it.
+     */
+    public void decay() {
+        if (!enabled) {
+            return;
+        }
+
+        sketch.decay();
+        for (final String accountUUID : hotAccounts.keySet()) {
+            final ContentionSketch.Estimate estimate = sketch.estimate(accountUUID);
+            if (estimate.getTransfers() < minTransfers / 2 && hotAccounts.remove(accountUUID) != null) {
+                demotions.mark();
+                decided(new SwitchDecision(accountUUID, false, Instant.now(), estimate));
+            }
+        }
+    }
+
+    private boolean isContended(final ContentionSketch.Estimate estimate) {
+        return estimate.getTransfers() >= minTransfers
+                && (estimate.getConflictRate() >= conflictRate || estimate.getAverageLockWaitMicros() >= lockWaitMicros);
+    }
+
+    private void promote(final String accountUUID, final ContentionSketch.Estimate estimate) {
+        if (hotAccounts.size() >= maxHotAccounts) {
+            LOGGER.debug("Account uuid [{}] contended, but already {} hot accounts.", accountUUID, maxHotAccounts);
+            return;
+        }
+
+        final SwitchDecision decision = new SwitchDecision(accountUUID, true, Instant.now(), estimate);
+        if (hotAccounts.putIfAbsent(accountUUID, decision) == null) {
+            promotions.mark();
+            decided(decision);
+        }
+    }
+
+    private void decided(final SwitchDecision decision) {
+        LOGGER.info("Account uuid [{}] now {}: {}", decision.getAccountId(), decision.isHot() ? "hot" : "cold", decision);
+        synchronized (decisions) {
+            decisions.addFirst(decision);
+            if (decisions.size() > MAX_DECISIONS) {
+                decisions.removeLast();
+            }
+        }
+    }
+
+    private void decayIfDue() {
+        final long last = lastDecay.get();
+        final long now = System.nanoTime();
+        if (now - last >= decayIntervalNanos && lastDecay.compareAndSet(last, now)) {
+            decay();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package eu.davidemartorana.banking.accounts.contention;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import io.dropwizard.setup.Environment;
+
+import javax.inject.Inject;
+import java.io.PrintWriter;
+
+/**
+ * Admin task, {@code POST /tasks/hot-accounts} on the admin port, printing as JSON the accounts currently hot and the
+ * last decisions of the {@link HotAccountDetector}.
+ *
+ * @author Davide Martorana
+ */
+public class HotAccountsTask extends Task {
+
+    private final HotAccountDetector hotAccountDetector;
+
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public HotAccountsTask(final HotAccountDetector hotAccountDetector, final Environment environment) {
+        super("hot-accounts");
+        this.hotAccountDetector = hotAccountDetector;
+        this.objectMapper = environment.getObjectMapper();
+    }
+
+    @Override
+    public void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output) throws Exception {
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, ImmutableMap.of(
+                "hotAccounts", hotAccountDetector.getHotAccounts(),
+                "decisions", hotAccountDetector.getDecisions()));
+    }
+}
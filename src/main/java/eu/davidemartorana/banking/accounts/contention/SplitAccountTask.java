@@ -0,0 +1,43 @@
+package eu.davidemartorana.banking.accounts.contention;
+
+import com.google.common.collect.ImmutableMultimap;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import io.dropwizard.servlets.tasks.Task;
+
+import javax.inject.Inject;
+import java.io.PrintWriter;
+
+/**
+ * Admin task, {@code POST /tasks/split-account?account=<uuid>&slots=<n>} on the admin port, splitting the balance of
+ * an account in {@code n} balance slots with {@link AccountsService#splitAccount(String, int)}, so that its transfers
+ * update different rows.
+ *
+ * @author Davide Martorana
+ */
+public class SplitAccountTask extends Task {
+
+    private final AccountsService accountsService;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    @Inject
+    public SplitAccountTask(final AccountsService accountsService, final UnitOfWorkRunner unitOfWorkRunner) {
+        super("split-account");
+        this.accountsService = accountsService;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+    }
+
+    @Override
+    public void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output) throws Exception {
+        final String accountUUID = parameters.get("account").stream().findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("The account to split is missing."));
+        final int balanceSlots = Integer.parseInt(parameters.get("slots").stream().findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("The number of slots is missing.")));
+
+        final Account account = unitOfWorkRunner.inUnitOfWork(() -> accountsService.splitAccount(accountUUID, balanceSlots));
+        output.printf("Account %s split in %d balance slots. Total amount: %s %s%n", account.getUuid(), account.getBalanceSlots(),
+                account.getTotalAmount().toPlainString(), account.getCurrency());
+    }
+}
@@ -0,0 +1,68 @@
+package eu.davidemartorana.banking.accounts.contention;
+
+import java.time.Instant;
+
+/**
+ * An account becoming hot or going back to cold, with the contention that made it so.
+ *
+ * @author Davide Martorana
+ */
+public class SwitchDecision {
+
+    private final String accountId;
+
+    private final boolean hot;
+
+    private final Instant time;
+
+    private final long transfers;
+
+    private final double conflictRate;
+
+    private final long averageLockWaitMicros;
+
+    public SwitchDecision(final String accountId, final boolean hot, final Instant time, final ContentionSketch.Estimate estimate) {
+        this.accountId = accountId;
+        this.hot = hot;
+        this.time = time;
+        this.transfers = estimate.getTransfers();
+        this.conflictRate = estimate.getConflictRate();
+        this.averageLockWaitMicros = estimate.getAverageLockWaitMicros();
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public boolean isHot() {
+        return hot;
+    }
+
+    public String getTime() {
+        return time.toString();
+    }
+
+    public long getTransfers() {
+        return transfers;
+    }
+
+    public double getConflictRate() {
+        return conflictRate;
+    }
+
+    public long getAverageLockWaitMicros() {
+        return averageLockWaitMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "SwitchDecision{" +
+                "accountId='" + accountId + '\'' +
+                ", hot=" + hot +
+                ", time=" + time +
+                ", transfers=" + transfers +
+                ", conflictRate=" + conflictRate +
+                ", averageLockWaitMicros=" + averageLockWaitMicros +
+                '}';
+    }
+}
@@ -1,24 +1,42 @@
 package eu.davidemartorana.banking.accounts.dao;
 
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
-import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
-import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.LockMode;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.persistence.LockModeType;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
 
 public class AccountRepository extends AbstractDAO<Account> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountRepository.class);
 
+    /**
+     * Query space of the balance updates. No entity belongs to it: the updates of the balance, which is not cached,
+     * leave the second-level cache of the accounts as it is.
+     */
+    private static final String BALANCE_QUERY_SPACE = "accounts.total_amount_minor_units";
+
+    /**
+     * Query space of the updates of the balance slots, which are not cached either.
+     */
+    private static final String SLOTS_QUERY_SPACE = "account_balance_slots";
 
     @Inject
     public AccountRepository(SessionFactory sessionFactory) {
@@ -33,59 +51,306 @@ public class AccountRepository extends AbstractDAO<Account> {
                 .list();
     }
 
+    /**
+     * Reads the account with the given {@code uuid} by its natural id: once the uuid has been resolved, the account is
+     * read by primary key.
+     *
+     * @param uuid - the uuid of the account
+     *
+     * @return the account, if it exists.
+     */
     public Optional<Account> findByUUID(String uuid) {
+        return this.currentSession()
+                .bySimpleNaturalId(Account.class)
+                .loadOptional(uuid);
+    }
+
+    /**
+     * Reads the account with the given {@code uuid} acquiring a {@link LockModeType#PESSIMISTIC_WRITE} on it, so the
+     * values read cannot change until the end of the transaction. The account is read-only: its changes are never
+     * flushed, the balance is updated with {@link #decreaseTotalAmount(Long, Money)} and
+     * {@link #increaseTotalAmount(Long, Money)}.
+     *
+     * @param uuid - the uuid of the account
+     *
+     * @return the account, if it exists.
+     */
+    public Optional<Account> findByUUIDLocking(final String uuid) {
         return this.currentSession()
                 .createNamedQuery("account.byUUID", Account.class)
                 .setParameter("uuid", uuid)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setReadOnly(true)
                 .uniqueResultOptional();
     }
 
     /**
-     * Checks the total amount available of the account with id {@code accountId} if it is greater or equals the given {@code amount}.
-     * If this is the case, the total amount is decreased by the the value of {@code amount}, and the new value is persisted.
+     * Reads all the accounts with the given {@code uuids} as {@link #findByUUIDLocking(String)} does, one at a time in
+     * ascending uuid order, so two transactions locking the same accounts cannot deadlock.
+     *
+     * @param uuids - the uuids of the accounts
+     *
+     * @return the accounts found, by uuid.
+     */
+    public Map<String, Account> findAllByUUIDLocking(final Collection<String> uuids) {
+        return findAllByUUIDLocking(uuids, (uuid, nanos) -> { });
+    }
+
+    /**
+     * Reads all the accounts with the given {@code uuids} as {@link #findAllByUUIDLocking(Collection)} does, passing
+     * the time taken by the locked read of each one to {@code lockTimes}.
+     *
+     * @param uuids - the uuids of the accounts
+     * @param lockTimes - receives the uuid of every account read and the nanoseconds its locked read took
+     *
+     * @return the accounts found, by uuid.
+     */
+    public Map<String, Account> findAllByUUIDLocking(final Collection<String> uuids, final ObjLongConsumer<String> lockTimes) {
+        final Map<String, Account> accounts = new HashMap<>();
+        for (final String uuid : new TreeSet<>(uuids)) {
+            final long start = System.nanoTime();
+            final Optional<Account> account = findByUUIDLocking(uuid);
+            lockTimes.accept(uuid, System.nanoTime() - start);
+            account.ifPresent(found -> accounts.put(uuid, found));
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Reads the account with the given {@code id} acquiring a {@link LockModeType#PESSIMISTIC_WRITE} on it, as
+     * {@link #findByUUIDLocking(String)} does.
      *
-     * Prior the operation is made a {@link LockModeType#PESSIMISTIC_WRITE} is acquired on the account to guarantee coherence and managing potentials race conditions.
+     * @param id - the id of the account
      *
+     * @return the account, if it exists.
+     */
+    public Optional<Account> findByIdLocking(final Long id) {
+        return Optional.ofNullable(this.currentSession().find(Account.class, id, LockModeType.PESSIMISTIC_WRITE));
+    }
+
+    /**
+     * Decreases the total amount of the account with id {@code accountId} by {@code amount}, only if the total amount
+     * is not lower than {@code amount}. The check and the update are a single statement, so the balance can never go
+     * below zero whatever the other transactions do.
+     *
+     * @param accountId - account upon make the changes
      * @param amount - value to decrease
+     *
+     * @return the number of updated accounts: 0 if the funds are not enough.
+     */
+    public int decreaseTotalAmount(final Long accountId, final Money amount) {
+        return balanceUpdate("account.decreaseTotalAmount")
+                .setParameter("amount", amount.getMinorUnits())
+                .setParameter("id", accountId)
+                .executeUpdate();
+    }
+
+    /**
+     * Increases the total amount of the account with id {@code accountId} by {@code amount}, with a single statement.
+     *
      * @param accountId - account upon make the changes
+     * @param amount - value to increase
      *
-     * @return an instance of account containing the new values.
+     * @return the number of updated accounts.
      */
-    public Account checkAndDecreaseLockingResourceByAccountId(final Amount amount, final Long accountId) {
+    public int increaseTotalAmount(final Long accountId, final Money amount) {
+        return balanceUpdate("account.increaseTotalAmount")
+                .setParameter("amount", amount.getMinorUnits())
+                .setParameter("id", accountId)
+                .executeUpdate();
+    }
 
-        LOGGER.debug("Check the account with id {} and acquires the lock.", accountId);
-        final Account account = this.currentSession().find(Account.class, accountId, LockModeType.PESSIMISTIC_WRITE);
-        if(account.getTotalAmount().compareTo(amount.getValue()) < 0 ){
-            throw new FundsNotEnoughException("Fund not enough for amount: " + amount.getValue().toPlainString());
-        }
+    /**
+     * Adds {@code delta}, which can be negative, to the total amount of the account with id {@code accountId}, with a
+     * single statement and without checking the funds: the caller has already checked them.
+     *
+     * @param accountId - account upon make the changes
+     * @param delta - the net change of the total amount, in minor units
+     *
+     * @return the number of updated accounts.
+     */
+    public int changeTotalAmount(final Long accountId, final long delta) {
+        return balanceUpdate("account.increaseTotalAmount")
+                .setParameter("amount", delta)
+                .setParameter("id", accountId)
+                .executeUpdate();
+    }
 
-        final BigDecimal newTotal = account.getTotalAmount().subtract(amount.getValue());
-        account.setTotalAmount(newTotal);
+    /**
+     * Overwrites the total amount of the account with id {@code accountId}, without loading the account first.
+     *
+     * @param accountId - account upon make the changes
+     * @param totalAmount - the new total amount, in minor units
+     *
+     * @return the number of updated accounts.
+     */
+    public int updateTotalAmount(final Long accountId, final long totalAmount) {
+        return balanceUpdate("account.updateTotalAmount")
+                .setParameter("totalAmount", totalAmount)
+                .setParameter("id", accountId)
+                .executeUpdate();
+    }
 
-        LOGGER.debug("");
-        this.currentSession().saveOrUpdate(account);
+    /**
+     * Overwrites the total amount of the account with id {@code accountId}, only if its version is still
+     * {@code version}: the optimistic counterpart of reading the account with {@link #findByUUIDLocking(String)}.
+     *
+     * @param accountId - account upon make the changes
+     * @param totalAmount - the new total amount, in minor units
+     * @param version - the version of the account when it was read
+     *
+     * @return the number of updated accounts: 0 if the account has been changed since it was read.
+     */
+    public int updateTotalAmount(final Long accountId, final long totalAmount, final long version) {
+        return balanceUpdate("account.updateTotalAmountIfVersion")
+                .setParameter("totalAmount", totalAmount)
+                .setParameter("id", accountId)
+                .setParameter("version", version)
+                .executeUpdate();
+    }
+
+    /**
+     * Reads, without lock, the largest amount in a single slot of the account.
+     *
+     * @param accountId - the id of the account
+     *
+     * @return the amount, in minor units: 0 if the account has no slots.
+     */
+    public long findLargestSlotAmount(final Long accountId) {
+        final Long amount = this.currentSession()
+                .createNamedQuery("balanceSlot.maxAmountByAccountId", Long.class)
+                .setParameter("accountId", accountId)
+                .uniqueResult();
 
-        return this.currentSession().find(Account.class, accountId);
+        return amount == null ? 0L : amount;
     }
 
     /**
-     * Increases the total amount of the account with id {@code accountId} by the the value of {@code amount}, and the new value is persisted.
+     * Reads again the account, acquiring a {@link LockModeType#PESSIMISTIC_WRITE} on it, and then all its
+     * {@link BalanceSlot balance slots}, locked too: the balance cannot change until the end of the transaction. The
+     * account is always locked before its slots.
      *
-     * Prior the operation is made a {@link LockModeType#PESSIMISTIC_WRITE} is acquired on the account to guarantee coherence and managing potentials race conditions.
+     * @param account - the account, read in the current session
      *
+     * @return the slots of the account, in slot order.
+     */
+    public List<BalanceSlot> lockBalanceSlots(final Account account) {
+        this.currentSession().refresh(account, LockMode.PESSIMISTIC_WRITE);
+
+        final List<BalanceSlot> slots = new ArrayList<>(this.currentSession()
+                .createNamedQuery("balanceSlot.byAccountId", BalanceSlot.class)
+                .setParameter("accountId", account.getId())
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setReadOnly(true)
+                .list());
+        slots.sort(Comparator.comparing(BalanceSlot::getSlot));
+
+        return slots;
+    }
+
+    /**
+     * Spreads {@code totalAmount} evenly across {@code balanceSlots} new slots of the account, replacing the ones it
+     * had, and sets its total amount to zero. The account and its slots must have been locked with
+     * {@link #lockBalanceSlots(Account)}.
+     *
+     * @param accountId - account upon make the changes
+     * @param balanceSlots - the number of slots
+     * @param totalAmount - the balance of the account, in minor units
+     */
+    public void replaceBalanceSlots(final Long accountId, final int balanceSlots, final long totalAmount) {
+        this.currentSession()
+                .createNamedQuery("balanceSlot.deleteByAccountId")
+                .setParameter("accountId", accountId)
+                .executeUpdate();
+
+        for (int slot = 0; slot < balanceSlots; slot++) {
+            // The remainder goes to the first slots, one minor unit each
+            final long amount = totalAmount / balanceSlots + (slot < totalAmount % balanceSlots ? 1 : 0);
+            slotUpdate("balanceSlot.insert")
+                    .setParameter("accountId", accountId)
+                    .setParameter("slot", slot)
+                    .setParameter("amount", amount)
+                    .executeUpdate();
+        }
+
+        balanceUpdate("account.updateBalanceSlots")
+                .setParameter("balanceSlots", balanceSlots)
+                .setParameter("id", accountId)
+                .executeUpdate();
+    }
+
+    /**
+     * Decreases the amount of the slot {@code slot} of the account by {@code amount}, only if the amount of the slot is
+     * not lower than {@code amount}, with a single statement as {@link #decreaseTotalAmount(Long, Money)} does.
+     *
+     * @param accountId - account upon make the changes
+     * @param slot - index of the slot
      * @param amount - value to decrease
+     *
+     * @return the number of updated slots: 0 if the funds of the slot are not enough.
+     */
+    public int decreaseSlotAmount(final Long accountId, final int slot, final Money amount) {
+        return slotUpdate("balanceSlot.decreaseAmount")
+                .setParameter("amount", amount.getMinorUnits())
+                .setParameter("accountId", accountId)
+                .setParameter("slot", slot)
+                .executeUpdate();
+    }
+
+    /**
+     * Increases the amount of the slot {@code slot} of the account by {@code amount}, with a single statement.
+     *
      * @param accountId - account upon make the changes
+     * @param slot - index of the slot
+     * @param amount - value to increase
      *
-     * @return an instance of account containing the new values.
+     * @return the number of updated slots: 0 if the account has no such slot.
      */
-    public Account checkAndIncreaseLockingResourceByAccountId(final Amount amount, final Long accountId) {
-        final Account account = this.currentSession().find(Account.class, accountId, LockModeType.PESSIMISTIC_WRITE);
+    public int increaseSlotAmount(final Long accountId, final int slot, final Money amount) {
+        return slotUpdate("balanceSlot.increaseAmount")
+                .setParameter("amount", amount.getMinorUnits())
+                .setParameter("accountId", accountId)
+                .setParameter("slot", slot)
+                .executeUpdate();
+    }
 
-        final BigDecimal newTotal = account.getTotalAmount().add(amount.getValue());
-        account.setTotalAmount(newTotal);
+    /**
+     * @param accountId - the id of the account
+     *
+     * @return the balance of the account: its total amount plus the amounts of all its slots, in minor units.
+     */
+    public long findTotalAmountWithSlots(final Long accountId) {
+        final Number totalAmount = (Number) this.currentSession()
+                .getNamedNativeQuery("account.totalAmountWithSlots")
+                .setParameter("id", accountId)
+                .uniqueResult();
+
+        return totalAmount.longValue();
+    }
+
+    /**
+     * @return the uuids of the accounts split in more than one balance slot.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findSplitAccountUUIDs() {
+        return ((List<Object>) this.currentSession()
+                .getNamedNativeQuery("account.splitUUIDs")
+                .list())
+                .stream()
+                .map(uuid -> uuid.toString().trim())
+                .collect(Collectors.toList());
+    }
 
-        this.currentSession().saveOrUpdate(account);
+    private NativeQuery<?> slotUpdate(final String queryName) {
+        return this.currentSession()
+                .getNamedNativeQuery(queryName)
+                .addSynchronizedQuerySpace(SLOTS_QUERY_SPACE);
+    }
 
-        return this.currentSession().find(Account.class, accountId);
+    private NativeQuery<?> balanceUpdate(final String queryName) {
+        return this.currentSession()
+                .getNamedNativeQuery(queryName)
+                .addSynchronizedQuerySpace(BALANCE_QUERY_SPACE);
     }
 }
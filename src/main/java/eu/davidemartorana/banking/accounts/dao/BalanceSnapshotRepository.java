@@ -0,0 +1,102 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import eu.davidemartorana.banking.accounts.domain.DerivedBalance;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSnapshot;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Reads the balances of the accounts from their latest {@link BalanceSnapshot} and the transactions coming after it,
+ * and takes new snapshots.
+ *
+ * @author Davide Martorana
+ */
+public class BalanceSnapshotRepository extends AbstractDAO<BalanceSnapshot> {
+
+    /**
+     * Query space of the snapshots, which are not cached.
+     */
+    private static final String SNAPSHOTS_QUERY_SPACE = "account_balance_snapshots";
+
+    @Inject
+    public BalanceSnapshotRepository(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Derives the balance of the account from its latest snapshot and the transactions coming after it, with a single
+     * query reading the transactions by {@code (account_id, id)}.
+     *
+     * @param accountId - the id of the account
+     *
+     * @return the balance, empty if the account has no valid snapshot: none has been taken yet, or the account has been
+     *          updated by another engine since the latest one.
+     */
+    public Optional<DerivedBalance> findBalance(final Long accountId) {
+        final Optional<?> snapshot = ((NativeQuery<?>) this.currentSession()
+                .getNamedNativeQuery("balanceSnapshot.balanceByAccountId"))
+                .setParameter("accountId", accountId)
+                .uniqueResultOptional();
+
+        return snapshot.map(row -> {
+            final Object[] values = (Object[]) row;
+            final long snapshotTransactionId = ((Number) values[0]).longValue();
+            final long snapshotBalance = ((Number) values[1]).longValue();
+            final int entries = ((Number) values[2]).intValue();
+            final long lastTransactionId = values[3] == null ? snapshotTransactionId : ((Number) values[3]).longValue();
+            final long delta = values[4] == null ? 0L : ((Number) values[4]).longValue();
+
+            return new DerivedBalance(accountId, lastTransactionId, Math.addExact(snapshotBalance, delta), entries);
+        });
+    }
+
+    /**
+     * Takes a snapshot of the given balance and deletes the older snapshots of the account.
+     *
+     * @param balance - the balance of the account, as of its last transaction
+     */
+    public void insert(final DerivedBalance balance) {
+        snapshotUpdate("balanceSnapshot.insert")
+                .setParameter("accountId", balance.getAccountId())
+                .setParameter("lastTransactionId", balance.getLastTransactionId())
+                .setParameter("balance", balance.getBalanceMinorUnits())
+                .executeUpdate();
+        snapshotUpdate("balanceSnapshot.deleteOlder")
+                .setParameter("accountId", balance.getAccountId())
+                .setParameter("lastTransactionId", balance.getLastTransactionId())
+                .executeUpdate();
+    }
+
+    /**
+     * Takes a snapshot of every account without a valid one from its total amount, plus the amounts of its slots, as
+     * of its last transaction.
+     *
+     * @return the number of snapshots taken.
+     */
+    public int insertFromTotalAmounts() {
+        return snapshotUpdate("balanceSnapshot.insertFromTotalAmounts").executeUpdate();
+    }
+
+    /**
+     * Takes a snapshot of the account as {@link #insertFromTotalAmounts()} does, if it has no valid one.
+     *
+     * @param accountId - the id of the account
+     *
+     * @return the number of snapshots taken: 0 if the account already has a valid snapshot.
+     */
+    public int insertFromTotalAmount(final Long accountId) {
+        return snapshotUpdate("balanceSnapshot.insertFromTotalAmountByAccountId")
+                .setParameter("accountId", accountId)
+                .executeUpdate();
+    }
+
+    private NativeQuery<?> snapshotUpdate(final String queryName) {
+        return this.currentSession()
+                .getNamedNativeQuery(queryName)
+                .addSynchronizedQuerySpace(SNAPSHOTS_QUERY_SPACE);
+    }
+}
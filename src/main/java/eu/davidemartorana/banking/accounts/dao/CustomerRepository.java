@@ -18,13 +18,14 @@ public class CustomerRepository extends AbstractDAO<Customer> {
 
     public List<Customer> findAll() {
 
-        return  currentSession().createQuery("SELECT c FROM Customer c", Customer.class).list();
+        return  currentSession().createQuery("SELECT c FROM Customer c", Customer.class)
+                .setCacheable(true)
+                .list();
     }
 
     public Optional<Customer> findByUUID(final String uuid) {
         return this.currentSession()
-                .createNamedQuery("customer.byUUID", Customer.class)
-                .setParameter("uuid", uuid)
-                .uniqueResultOptional();
+                .bySimpleNaturalId(Customer.class)
+                .loadOptional(uuid);
     }
 }
@@ -0,0 +1,111 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Verifies that the indexes used by the named queries exist, so that a missing migration cannot silently turn the
+ * lookups by uuid and by account into full table scans.
+ *
+ * An index is found when its leading columns are the expected ones, whatever its name.
+ *
+ * @author Davide Martorana
+ */
+public final class DatabaseIndexCheck {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseIndexCheck.class);
+
+    private static final Map<String, List<List<String>>> EXPECTED_INDEXES = new TreeMap<>();
+
+    static {
+        EXPECTED_INDEXES.put("customers", Collections.singletonList(Collections.singletonList("uuid")));
+        EXPECTED_INDEXES.put("accounts", Arrays.asList(Collections.singletonList("uuid"), Collections.singletonList("customer_id")));
+        EXPECTED_INDEXES.put("account_transactions", Arrays.asList(Arrays.asList("account_id", "date_time"), Collections.singletonList("uuid")));
+    }
+
+    private DatabaseIndexCheck() {
+    }
+
+    /**
+     * Fails if any of the expected indexes is missing.
+     *
+     * @param dataSource - the database to check
+     *
+     * @throws IllegalStateException if an index is missing or the database cannot be inspected.
+     */
+    public static void verify(final DataSource dataSource) {
+        final List<String> missingIndexes;
+        try (Connection connection = dataSource.getConnection()) {
+            missingIndexes = findMissingIndexes(connection);
+        } catch (final SQLException e) {
+            throw new IllegalStateException("Unable to read the indexes of the database.", e);
+        }
+
+        if (!missingIndexes.isEmpty()) {
+            throw new IllegalStateException("Missing database indexes: " + missingIndexes);
+        }
+        LOGGER.info("All the expected database indexes are in place.");
+    }
+
+    /**
+     * Returns the expected indexes that do not exist, as {@code table(column, ...)}.
+     *
+     * @param connection - connection to the database to check
+     *
+     * @return the missing indexes, empty if all of them exist.
+     *
+     * @throws SQLException if the database metadata cannot be read.
+     */
+    public static List<String> findMissingIndexes(final Connection connection) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        final List<String> missingIndexes = new ArrayList<>();
+
+        for (final Map.Entry<String, List<List<String>>> expected : EXPECTED_INDEXES.entrySet()) {
+            final Collection<List<String>> indexes = readIndexColumns(metaData, expected.getKey());
+            for (final List<String> columns : expected.getValue()) {
+                final boolean found = indexes.stream()
+                        .anyMatch(indexColumns -> indexColumns.size() >= columns.size() && indexColumns.subList(0, columns.size()).equals(columns));
+                if (!found) {
+                    missingIndexes.add(expected.getKey() + "(" + String.join(", ", columns) + ")");
+                }
+            }
+        }
+
+        return missingIndexes;
+    }
+
+    private static Collection<List<String>> readIndexColumns(final DatabaseMetaData metaData, final String table) throws SQLException {
+        final String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+        final Map<String, TreeMap<Short, String>> indexes = new HashMap<>();
+
+        try (ResultSet resultSet = metaData.getIndexInfo(null, null, tableName, false, false)) {
+            while (resultSet.next()) {
+                final String indexName = resultSet.getString("INDEX_NAME");
+                final String columnName = resultSet.getString("COLUMN_NAME");
+                if (indexName != null && columnName != null) {
+                    indexes.computeIfAbsent(indexName, name -> new TreeMap<>())
+                            .put(resultSet.getShort("ORDINAL_POSITION"), columnName.toLowerCase());
+                }
+            }
+        }
+
+        final List<List<String>> indexColumns = new ArrayList<>(indexes.size());
+        indexes.values().forEach(columns -> indexColumns.add(new ArrayList<>(columns.values())));
+
+        return indexColumns;
+    }
+}
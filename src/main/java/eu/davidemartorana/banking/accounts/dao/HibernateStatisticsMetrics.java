@@ -0,0 +1,89 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.RatioGauge;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the Hibernate {@link Statistics} in the metrics: sessions, statements and, above all, the hits and misses
+ * of the second-level, natural-id and query caches, overall and for each region.
+ *
+ * The values are all zero unless {@code hibernate.generate_statistics} is enabled.
+ *
+ * @author Davide Martorana
+ */
+public class HibernateStatisticsMetrics implements MetricSet {
+
+    /**
+     * Suffix of the regions of the natural-id caches: they have statistics of their own.
+     */
+    private static final String NATURAL_ID_REGION_SUFFIX = "##NaturalId";
+
+    private final Statistics statistics;
+
+    public HibernateStatisticsMetrics(final Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>();
+
+        metrics.put("sessions.opened", gauge(statistics::getSessionOpenCount));
+        metrics.put("transactions.completed", gauge(statistics::getTransactionCount));
+        metrics.put("statements.prepared", gauge(statistics::getPrepareStatementCount));
+        metrics.put("entities.loaded", gauge(statistics::getEntityLoadCount));
+        metrics.put("queries.executed", gauge(statistics::getQueryExecutionCount));
+
+        putCache(metrics, "second-level-cache", statistics::getSecondLevelCacheHitCount, statistics::getSecondLevelCacheMissCount,
+                statistics::getSecondLevelCachePutCount);
+        putCache(metrics, "natural-id-cache", statistics::getNaturalIdCacheHitCount, statistics::getNaturalIdCacheMissCount,
+                statistics::getNaturalIdCachePutCount);
+        putCache(metrics, "query-cache", statistics::getQueryCacheHitCount, statistics::getQueryCacheMissCount,
+                statistics::getQueryCachePutCount);
+
+        for (final String region : statistics.getSecondLevelCacheRegionNames()) {
+            if (region.endsWith(NATURAL_ID_REGION_SUFFIX)) {
+                final NaturalIdCacheStatistics naturalIdStatistics = statistics.getNaturalIdCacheStatistics(region);
+                putCache(metrics, MetricRegistry.name("natural-id-cache", region), naturalIdStatistics::getHitCount,
+                        naturalIdStatistics::getMissCount, naturalIdStatistics::getPutCount);
+                continue;
+            }
+
+            final SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            if (regionStatistics != null) {
+                putCache(metrics, MetricRegistry.name("second-level-cache", region), regionStatistics::getHitCount,
+                        regionStatistics::getMissCount, regionStatistics::getPutCount);
+            }
+        }
+
+        return metrics;
+    }
+
+    private static void putCache(final Map<String, Metric> metrics, final String name, final Supplier<Long> hits,
+                                 final Supplier<Long> misses, final Supplier<Long> puts) {
+        metrics.put(MetricRegistry.name(name, "hits"), gauge(hits));
+        metrics.put(MetricRegistry.name(name, "misses"), gauge(misses));
+        metrics.put(MetricRegistry.name(name, "puts"), gauge(puts));
+        metrics.put(MetricRegistry.name(name, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                final long hitCount = hits.get();
+                return Ratio.of(hitCount, hitCount + misses.get());
+            }
+        });
+    }
+
+    private static Gauge<Long> gauge(final Supplier<Long> value) {
+        return value::get;
+    }
+}
@@ -0,0 +1,52 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import eu.davidemartorana.banking.accounts.domain.internal.JournalCheckpoint;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+
+import javax.inject.Inject;
+
+/**
+ * Reads and moves forward the {@link JournalCheckpoint} of the ledger journal write-ahead log.
+ *
+ * @author Davide Martorana
+ */
+public class JournalCheckpointRepository extends AbstractDAO<JournalCheckpoint> {
+
+    /**
+     * Query space of the checkpoint, which is not cached.
+     */
+    private static final String CHECKPOINT_QUERY_SPACE = "ledger_journal_checkpoint";
+
+    @Inject
+    public JournalCheckpointRepository(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * @return the sequence of the last record persisted in the database, 0 if none has been persisted yet.
+     */
+    public long findLastSequence() {
+        final Object lastSequence = this.currentSession()
+                .getNamedNativeQuery("journalCheckpoint.lastSequence")
+                .uniqueResult();
+
+        return lastSequence == null ? 0L : ((Number) lastSequence).longValue();
+    }
+
+    /**
+     * Moves the checkpoint forward to {@code lastSequence}, in the transaction persisting the records up to it. The
+     * checkpoint never moves backwards.
+     *
+     * @param lastSequence - the sequence of the last record persisted
+     *
+     * @return the number of updated checkpoints: 0 if the checkpoint was already at or after {@code lastSequence}.
+     */
+    public int update(final long lastSequence) {
+        return this.currentSession()
+                .getNamedNativeQuery("journalCheckpoint.update")
+                .addSynchronizedQuerySpace(CHECKPOINT_QUERY_SPACE)
+                .setParameter("lastSequence", lastSequence)
+                .executeUpdate();
+    }
+}
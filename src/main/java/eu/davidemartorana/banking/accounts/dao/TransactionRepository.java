@@ -3,22 +3,36 @@ package eu.davidemartorana.banking.accounts.dao;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
 import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
-import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
 import org.joda.time.DateTime;
 
 import javax.inject.Inject;
-import java.util.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 
 public class TransactionRepository  extends AbstractDAO<Transaction> {
 
+    private static final String INSERT_SQL = "INSERT INTO account_transactions (uuid, type, account_id, amount_minor_units, currency, date_time) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int SCROLL_FETCH_SIZE = 500;
+
+    private final SessionFactory sessionFactory;
+
     @Inject
     public TransactionRepository(SessionFactory sessionFactory) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
     }
 
     public List<Transaction> findByAccountId(Long id) {
@@ -28,17 +42,107 @@ public class TransactionRepository  extends AbstractDAO<Transaction> {
                 .list();
     }
 
-    public Transaction addTransaction(final Amount amount, final Account account, final TransactionType transactionType) {
-        final Transaction transaction = new Transaction();
-        transaction.setAccountId(account.getId());
-        transaction.setAmount(amount.getValue());
-        transaction.setCurrency(amount.getCurrency());
-        transaction.setType(transactionType.value());
-        transaction.setDateTime(DateTime.now());
-        transaction.setUuid(UUID.randomUUID().toString());
+    public Optional<Transaction> findByAccountIdAndUUID(final Long accountId, final String uuid) {
+        return this.currentSession()
+                .createNamedQuery("transactions.findByAccountIdAndUUID", Transaction.class)
+                .setParameter("accountId", accountId)
+                .setParameter("uuid", uuid)
+                .uniqueResultOptional();
+    }
+
+    /**
+     * Reads a page of the history of an account, ordered by date and id. The page starts right after the transaction
+     * {@code after}: the query seeks the position on the {@code (account_id, date_time)} index instead of skipping the
+     * rows already read, so the cost of a page does not depend on how far it is in the history.
+     *
+     * @param accountId - the account of the transactions
+     * @param after - the last transaction of the previous page, {@code null} for the first page
+     * @param maxResults - the maximum number of transactions to read
+     *
+     * @return the transactions of the page.
+     */
+    public List<Transaction> findPageByAccountId(final Long accountId, final Transaction after, final int maxResults) {
+        return historyQuery(this.currentSession(), accountId, after)
+                .setMaxResults(maxResults)
+                .list();
+    }
 
-        final Long id = (Long) this.currentSession().save(transaction);
+    /**
+     * Reads the history of an account as {@link #findPageByAccountId(Long, Transaction, int)} does, without any limit,
+     * and passes every transaction to {@code consumer} as soon as it is read. The rows are scrolled with a forward-only
+     * cursor of a {@link StatelessSession}, so no transaction is kept in memory after it has been consumed.
+     *
+     * The stateless session has its own read-only transaction: this method does not need a unit of work.
+     *
+     * @param accountId - the account of the transactions
+     * @param after - the transaction to start after, {@code null} to read the whole history
+     * @param consumer - receives the transactions, in order
+     */
+    public void scrollByAccountId(final Long accountId, final Transaction after, final Consumer<Transaction> consumer) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            final org.hibernate.Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = historyQuery(session, accountId, after)
+                    .setReadOnly(true)
+                    .setFetchSize(SCROLL_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    consumer.accept((Transaction) results.get(0));
+                }
+            } finally {
+                transaction.rollback();
+            }
+        }
+    }
+
+    private Query<Transaction> historyQuery(final SharedSessionContract session, final Long accountId, final Transaction after) {
+        if (after == null) {
+            return session.createNamedQuery("transactions.findByAccountId", Transaction.class)
+                    .setParameter("accountId", accountId);
+        }
+
+        return session.createNamedQuery("transactions.findByAccountIdAfter", Transaction.class)
+                .setParameter("accountId", accountId)
+                .setParameter("dateTime", after.getDateTime())
+                .setParameter("id", after.getId());
+    }
+
+    /**
+     * Creates and persists a new transaction of {@code account}. The id is generated by the database on insert, so
+     * the returned transaction is complete without reading it back.
+     *
+     * @param amount - amount of the transaction
+     * @param account - account the transaction belongs to
+     * @param transactionType - debit or credit
+     *
+     * @return the persisted transaction.
+     */
+    public Transaction addTransaction(final Money amount, final Account account, final TransactionType transactionType) {
+        final Transaction transaction = Transaction.create(amount, account, transactionType, DateTime.now());
+        this.currentSession().save(transaction);
+
+        return transaction;
+    }
 
-        return this.currentSession().find(Transaction.class, id);
+    /**
+     * Inserts the given transactions, built by the caller, with a single JDBC batch. The generated ids are not read
+     * back.
+     *
+     * @param transactions - the transactions to insert
+     */
+    public void insertAll(final List<Transaction> transactions) {
+        this.currentSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (final Transaction transaction : transactions) {
+                    statement.setString(1, transaction.getUuid());
+                    statement.setString(2, transaction.getType());
+                    statement.setLong(3, transaction.getAccountId());
+                    statement.setLong(4, transaction.getAmountMinorUnits());
+                    statement.setString(5, transaction.getCurrency().getCurrencyCode());
+                    statement.setTimestamp(6, new Timestamp(transaction.getDateTime().getMillis()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
     }
 }
@@ -0,0 +1,45 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJob;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJobStatus;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+
+public class TransferJobRepository extends AbstractDAO<TransferJob> {
+
+    @Inject
+    public TransferJobRepository(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    public Optional<TransferJob> findById(final String id) {
+        return Optional.ofNullable(get(id));
+    }
+
+    public void insert(final TransferJob job) {
+        this.currentSession().persist(job);
+    }
+
+    /**
+     * Writes the outcome of a job read in another unit of work.
+     *
+     * @param job - the completed job
+     */
+    public void update(final TransferJob job) {
+        this.currentSession().update(job);
+    }
+
+    /**
+     * @return the jobs still {@link TransferJobStatus#PENDING pending}, the oldest first.
+     */
+    public List<TransferJob> findPending() {
+        return this.currentSession()
+                .createNamedQuery("transferJob.findByStatus", TransferJob.class)
+                .setParameter("status", TransferJobStatus.PENDING)
+                .list();
+    }
+}
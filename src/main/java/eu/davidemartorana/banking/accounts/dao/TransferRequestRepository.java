@@ -0,0 +1,56 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.DuplicateTransferRequestException;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+
+import javax.inject.Inject;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PersistenceException;
+import javax.persistence.PessimisticLockException;
+import java.util.Optional;
+
+public class TransferRequestRepository extends AbstractDAO<TransferRequestRecord> {
+
+    @Inject
+    public TransferRequestRepository(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    public Optional<TransferRequestRecord> findByIdempotencyKey(final String idempotencyKey) {
+        return Optional.ofNullable(get(idempotencyKey));
+    }
+
+    /**
+     * Inserts the record right away, instead of at the commit, so that its key is taken before the transfer is applied:
+     * a second transaction inserting the same key waits for the first one and fails if it commits.
+     *
+     * @param record - the record of the transfer about to be applied
+     *
+     * @throws DuplicateTransferRequestException if the key has already been taken.
+     */
+    public void insert(final TransferRequestRecord record) {
+        try {
+            this.currentSession().persist(record);
+            this.currentSession().flush();
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new DuplicateTransferRequestException("A transfer with the same Idempotency-Key is in progress.", e);
+        } catch (final PersistenceException e) {
+            if (e instanceof ConstraintViolationException || e.getCause() instanceof ConstraintViolationException) {
+                throw new DuplicateTransferRequestException("A transfer with the same Idempotency-Key has already been performed.", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the record of a transfer that has not been applied, so the key can be used again.
+     *
+     * @param record - a record inserted in the current unit of work
+     */
+    public void delete(final TransferRequestRecord record) {
+        this.currentSession().delete(record);
+    }
+}
@@ -0,0 +1,87 @@
+package eu.davidemartorana.banking.accounts.dao;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.resource.transaction.LocalSynchronizationException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.function.Supplier;
+
+/**
+ * Runs a piece of work in its own Hibernate session and transaction, as {@link io.dropwizard.hibernate.UnitOfWork} does
+ * for the Jersey resources. It is meant for the work executed outside of the request threads.
+ *
+ * The session is bound to the {@link ManagedSessionContext}, so the repositories can be used as usual. A
+ * {@link javax.transaction.Synchronization} failing the commit fails the work with its own exception, not wrapped.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class UnitOfWorkRunner {
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public UnitOfWorkRunner(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Executes {@code work} in a new transaction, committed if no exception is thrown and rolled back otherwise.
+     *
+     * @param work - the work to execute
+     * @param <T> - type of the result
+     *
+     * @return the result of {@code work}.
+     */
+    public <T> T inUnitOfWork(final Supplier<T> work) {
+        final Session session = sessionFactory.openSession();
+        final Session previousSession = ManagedSessionContext.bind(session);
+        try {
+            final Transaction transaction = session.beginTransaction();
+            try {
+                final T result = work.get();
+                commit(transaction);
+
+                return result;
+            } catch (final RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        } finally {
+            session.close();
+            ManagedSessionContext.unbind(sessionFactory);
+            if (previousSession != null) {
+                ManagedSessionContext.bind(previousSession);
+            }
+        }
+    }
+
+    private static void commit(final Transaction transaction) {
+        try {
+            transaction.commit();
+        } catch (final LocalSynchronizationException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Executes {@code work} in a new transaction, committed if no exception is thrown and rolled back otherwise.
+     *
+     * @param work - the work to execute
+     */
+    public void inUnitOfWork(final Runnable work) {
+        inUnitOfWork(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking counterpart of the reads of {@link eu.davidemartorana.banking.accounts.dao.AccountRepository}: the
+ * result is completed once the database has answered, on a thread other than the caller's.
+ *
+ * @author Davide Martorana
+ */
+public interface AsyncAccountRepository {
+
+    /**
+     * @param customerId - the id of the customer
+     *
+     * @return the accounts of the customer.
+     */
+    CompletionStage<List<Account>> findByCustomerId(Integer customerId);
+
+    /**
+     * @param uuid - the uuid of the account
+     *
+     * @return the account, if it exists.
+     */
+    CompletionStage<Optional<Account>> findByUUID(String uuid);
+
+    /**
+     * @param accountId - the id of the account
+     *
+     * @return the balance of the account: its total amount plus the amounts of all its slots, in minor units.
+     */
+    CompletionStage<Long> findTotalAmountWithSlots(Long accountId);
+}
@@ -0,0 +1,28 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking counterpart of {@link eu.davidemartorana.banking.accounts.dao.CustomerRepository}: the result is
+ * completed once the database has answered, on a thread other than the caller's.
+ *
+ * @author Davide Martorana
+ */
+public interface AsyncCustomerRepository {
+
+    /**
+     * @return all the customers.
+     */
+    CompletionStage<List<Customer>> findAll();
+
+    /**
+     * @param uuid - the uuid of the customer
+     *
+     * @return the customer, if it exists.
+     */
+    CompletionStage<Optional<Customer>> findByUUID(String uuid);
+}
@@ -0,0 +1,40 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking counterpart of the reads of {@link eu.davidemartorana.banking.accounts.dao.TransactionRepository}: the
+ * result is completed once the database has answered, on a thread other than the caller's.
+ *
+ * @author Davide Martorana
+ */
+public interface AsyncTransactionRepository {
+
+    /**
+     * @param accountId - the id of the account
+     * @param uuid - the uuid of the transaction
+     *
+     * @return the transaction of the account with the given uuid, if it exists.
+     */
+    CompletionStage<Optional<Transaction>> findByAccountIdAndUUID(Long accountId, String uuid);
+
+    /**
+     * @param accountId - the id of the account
+     *
+     * @return all the transactions of the account, in date order.
+     */
+    CompletionStage<List<Transaction>> findByAccountId(Long accountId);
+
+    /**
+     * @param accountId - the id of the account
+     * @param after - the transaction the page starts after, {@code null} for the first page
+     * @param maxResults - the maximum number of transactions of the page
+     *
+     * @return the transactions of the account coming after {@code after}, in date order.
+     */
+    CompletionStage<List<Transaction>> findPageByAccountId(Long accountId, Transaction after, int maxResults);
+}
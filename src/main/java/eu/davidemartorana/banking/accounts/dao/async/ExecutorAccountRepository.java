@@ -0,0 +1,42 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link AsyncAccountRepository} running the queries of the {@link AccountRepository} on the {@link JdbcExecutor}.
+ *
+ * @author Davide Martorana
+ */
+public class ExecutorAccountRepository implements AsyncAccountRepository {
+
+    private final AccountRepository accountRepository;
+
+    private final JdbcExecutor jdbcExecutor;
+
+    @Inject
+    public ExecutorAccountRepository(final AccountRepository accountRepository, final JdbcExecutor jdbcExecutor) {
+        this.accountRepository = accountRepository;
+        this.jdbcExecutor = jdbcExecutor;
+    }
+
+    @Override
+    public CompletionStage<List<Account>> findByCustomerId(final Integer customerId) {
+        return jdbcExecutor.supply(() -> accountRepository.findByCustomerId(customerId));
+    }
+
+    @Override
+    public CompletionStage<Optional<Account>> findByUUID(final String uuid) {
+        return jdbcExecutor.supply(() -> accountRepository.findByUUID(uuid));
+    }
+
+    @Override
+    public CompletionStage<Long> findTotalAmountWithSlots(final Long accountId) {
+        return jdbcExecutor.supply(() -> accountRepository.findTotalAmountWithSlots(accountId));
+    }
+}
@@ -0,0 +1,37 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.dao.CustomerRepository;
+import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link AsyncCustomerRepository} running the queries of the {@link CustomerRepository} on the {@link JdbcExecutor}.
+ *
+ * @author Davide Martorana
+ */
+public class ExecutorCustomerRepository implements AsyncCustomerRepository {
+
+    private final CustomerRepository customerRepository;
+
+    private final JdbcExecutor jdbcExecutor;
+
+    @Inject
+    public ExecutorCustomerRepository(final CustomerRepository customerRepository, final JdbcExecutor jdbcExecutor) {
+        this.customerRepository = customerRepository;
+        this.jdbcExecutor = jdbcExecutor;
+    }
+
+    @Override
+    public CompletionStage<List<Customer>> findAll() {
+        return jdbcExecutor.supply(customerRepository::findAll);
+    }
+
+    @Override
+    public CompletionStage<Optional<Customer>> findByUUID(final String uuid) {
+        return jdbcExecutor.supply(() -> customerRepository.findByUUID(uuid));
+    }
+}
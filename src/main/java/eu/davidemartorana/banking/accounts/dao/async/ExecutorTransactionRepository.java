@@ -0,0 +1,43 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link AsyncTransactionRepository} running the queries of the {@link TransactionRepository} on the
+ * {@link JdbcExecutor}.
+ *
+ * @author Davide Martorana
+ */
+public class ExecutorTransactionRepository implements AsyncTransactionRepository {
+
+    private final TransactionRepository transactionRepository;
+
+    private final JdbcExecutor jdbcExecutor;
+
+    @Inject
+    public ExecutorTransactionRepository(final TransactionRepository transactionRepository, final JdbcExecutor jdbcExecutor) {
+        this.transactionRepository = transactionRepository;
+        this.jdbcExecutor = jdbcExecutor;
+    }
+
+    @Override
+    public CompletionStage<Optional<Transaction>> findByAccountIdAndUUID(final Long accountId, final String uuid) {
+        return jdbcExecutor.supply(() -> transactionRepository.findByAccountIdAndUUID(accountId, uuid));
+    }
+
+    @Override
+    public CompletionStage<List<Transaction>> findByAccountId(final Long accountId) {
+        return jdbcExecutor.supply(() -> transactionRepository.findByAccountId(accountId));
+    }
+
+    @Override
+    public CompletionStage<List<Transaction>> findPageByAccountId(final Long accountId, final Transaction after, final int maxResults) {
+        return jdbcExecutor.supply(() -> transactionRepository.findPageByAccountId(accountId, after, maxResults));
+    }
+}
@@ -0,0 +1,122 @@
+package eu.davidemartorana.banking.accounts.dao.async;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.AsyncDatabaseConfig;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of threads running the blocking JDBC work of the asynchronous repositories, each piece of work in its
+ * own unit of work: it stands in for an asynchronous database driver, so that the request threads are released while
+ * the database works. At most {@code threads} connections are used at the same time; the work beyond the
+ * {@code queueCapacity} waiting is rejected with 503 SERVICE UNAVAILABLE.
+ *
+ * The time the work waits for a thread, the rejections, the work waiting and the threads busy are published in the
+ * metrics as {@code eu.davidemartorana.banking.accounts.dao.async.JdbcExecutor.*}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class JdbcExecutor implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcExecutor.class);
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer wait;
+
+    private final Meter rejected;
+
+    @Inject
+    public JdbcExecutor(final UnitOfWorkRunner unitOfWorkRunner, final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        final AsyncDatabaseConfig config = applicationConfig.getAsyncDatabase();
+        final AtomicInteger threadIndex = new AtomicInteger();
+
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), runnable -> {
+                    final Thread thread = new Thread(runnable, "jdbc-executor-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.wait = metricRegistry.timer(MetricRegistry.name(JdbcExecutor.class, "wait"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(JdbcExecutor.class, "rejected"));
+        metricRegistry.register(MetricRegistry.name(JdbcExecutor.class, "queue-depth"), (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(MetricRegistry.name(JdbcExecutor.class, "active"), (Gauge<Integer>) executor::getActiveCount);
+    }
+
+    /**
+     * Executes {@code work} in a new unit of work on one of the threads of the pool.
+     *
+     * @param work - the work to execute
+     * @param <T> - type of the result
+     *
+     * @return the result of {@code work}, completed exceptionally with the exception it throws, or with a
+     *          {@link ServiceUnavailableException} if too much work is waiting.
+     */
+    public <T> CompletionStage<T> supply(final Supplier<T> work) {
+        return submit(() -> unitOfWorkRunner.inUnitOfWork(work));
+    }
+
+    /**
+     * Executes {@code work}, which opens its own units of work, on one of the threads of the pool.
+     *
+     * @param work - the work to execute
+     * @param <T> - type of the result
+     *
+     * @return the result of {@code work}, completed as by {@link #supply(Supplier)}.
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<T> work) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                wait.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    result.complete(work.get());
+                } catch (final RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            rejected.mark();
+            result.completeExceptionally(new ServiceUnavailableException("Too many requests waiting for the database. Please try later."));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void start() {
+        executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            LOGGER.warn("JDBC executor not terminated in time: {} pieces of work left", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package eu.davidemartorana.banking.accounts.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.annotation.Nonnegative;
+import javax.ws.rs.BadRequestException;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.util.Currency;
 
+/**
+ * Amount of a transfer request, as written in the JSON. The transfers are applied on its {@link #toMoney() minor units}.
+ *
+ * @author Davide Martorana
+ */
 public class Amount {
 
     @JsonProperty
@@ -19,6 +26,9 @@ public class Amount {
     @org.hibernate.validator.constraints.Currency("GBP")
     private Currency currency;
 
+    @JsonIgnore
+    private Money money;
+
     public Amount(){}
 
     public Amount(BigDecimal value, Currency currency) {
@@ -32,6 +42,7 @@ public class Amount {
 
     public void setValue(BigDecimal value) {
         this.value = value;
+        this.money = null;
     }
 
     public Currency getCurrency() {
@@ -40,5 +51,36 @@ public class Amount {
 
     public void setCurrency(Currency currency) {
         this.currency = currency;
+        this.money = null;
+    }
+
+    /**
+     * Converts the amount in minor units of its currency. The conversion is done once, the following calls return the
+     * same instance.
+     *
+     * @return the amount as {@link Money}.
+     *
+     * @throws BadRequestException if the value has more decimal digits than the currency or it is too big.
+     */
+    public Money toMoney() {
+        if (money == null) {
+            try {
+                money = Money.of(value, currency);
+            } catch (final ArithmeticException e) {
+                throw new BadRequestException("The amount is not valid for the currency of the accounts.", e);
+            }
+        }
+
+        return money;
+    }
+
+    /**
+     * Checks that the amount can be converted in minor units of its currency, before the transfer is applied: the
+     * {@link #toMoney() conversion} is kept for the transfer engine.
+     *
+     * @throws BadRequestException if the value has more decimal digits than the currency or it is too big.
+     */
+    public void checkMinorUnits() {
+        toMoney();
     }
 }
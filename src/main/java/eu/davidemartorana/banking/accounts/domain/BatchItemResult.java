@@ -0,0 +1,77 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Outcome of a single transfer of a batch: either the {@link TransferResult}, or the HTTP status and message the
+ * transfer would have failed with if submitted alone.
+ *
+ * @author Davide Martorana
+ */
+public class BatchItemResult {
+
+    /**
+     * Status of the transfers not applied because another transfer of an {@link BatchMode#ALL_OR_NOTHING} batch failed.
+     */
+    public static final int FAILED_DEPENDENCY = 424;
+
+    private final int index;
+
+    private final int status;
+
+    private final String message;
+
+    private final TransferResult transferResult;
+
+    private final WebApplicationException error;
+
+    private BatchItemResult(final int index, final int status, final String message, final TransferResult transferResult,
+                            final WebApplicationException error) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.transferResult = transferResult;
+        this.error = error;
+    }
+
+    public static BatchItemResult applied(final int index, final TransferResult transferResult) {
+        return new BatchItemResult(index, Response.Status.OK.getStatusCode(), null, transferResult, null);
+    }
+
+    public static BatchItemResult failed(final int index, final WebApplicationException exception) {
+        return new BatchItemResult(index, exception.getResponse().getStatus(), exception.getMessage(), null, exception);
+    }
+
+    public static BatchItemResult notPerformed(final int index) {
+        final String message = "Not performed: another transfer of the batch failed.";
+        return new BatchItemResult(index, FAILED_DEPENDENCY, message, null, new WebApplicationException(message, FAILED_DEPENDENCY));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public TransferResult getTransferResult() {
+        return transferResult;
+    }
+
+    /**
+     * @return the exception the transfer failed with, or {@code null} if the transfer has been applied.
+     */
+    public WebApplicationException getError() {
+        return error;
+    }
+
+    public boolean isApplied() {
+        return transferResult != null;
+    }
+}
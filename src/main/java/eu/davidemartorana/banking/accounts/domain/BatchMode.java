@@ -0,0 +1,19 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+/**
+ * Partial-failure semantics of a batch of transfers.
+ *
+ * @author Davide Martorana
+ */
+public enum BatchMode {
+
+    /**
+     * Either all the transfers of the batch are applied, or none of them.
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * Every valid transfer is applied; the failing ones are reported and skipped.
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,45 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+
+/**
+ * A transfer of a batch whose accounts have already been resolved and validated.
+ *
+ * @author Davide Martorana
+ */
+public class BatchTransfer {
+
+    private final int index;
+
+    private final Account debtorAccount;
+
+    private final Account beneficiaryAccount;
+
+    private final Amount amount;
+
+    public BatchTransfer(final int index, final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        this.index = index;
+        this.debtorAccount = debtorAccount;
+        this.beneficiaryAccount = beneficiaryAccount;
+        this.amount = amount;
+    }
+
+    /**
+     * @return the position of the transfer in the submitted batch.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Account getDebtorAccount() {
+        return debtorAccount;
+    }
+
+    public Account getBeneficiaryAccount() {
+        return beneficiaryAccount;
+    }
+
+    public Amount getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,77 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Balance of an account derived from its latest balance snapshot and the transactions coming after it, as of the
+ * transaction {@link #getLastTransactionId()}. Immutable: every new transaction gives a new balance.
+ *
+ * @author Davide Martorana
+ */
+public class DerivedBalance {
+
+    private final Long accountId;
+
+    private final long lastTransactionId;
+
+    private final long balanceMinorUnits;
+
+    private final int entriesSinceSnapshot;
+
+    /**
+     * @param accountId - the id of the account
+     * @param lastTransactionId - the id of the last transaction counted in the balance, 0 if none
+     * @param balanceMinorUnits - the balance, in minor units
+     * @param entriesSinceSnapshot - the number of transactions counted after the latest snapshot
+     */
+    public DerivedBalance(final Long accountId, final long lastTransactionId, final long balanceMinorUnits, final int entriesSinceSnapshot) {
+        this.accountId = accountId;
+        this.lastTransactionId = lastTransactionId;
+        this.balanceMinorUnits = balanceMinorUnits;
+        this.entriesSinceSnapshot = entriesSinceSnapshot;
+    }
+
+    /**
+     * @param transactionId - the id of the new transaction
+     * @param deltaMinorUnits - the amount of the transaction, negative for a debit
+     *
+     * @return the balance once the transaction is counted as well.
+     */
+    public DerivedBalance append(final long transactionId, final long deltaMinorUnits) {
+        return new DerivedBalance(accountId, Math.max(lastTransactionId, transactionId), Math.addExact(balanceMinorUnits, deltaMinorUnits),
+                entriesSinceSnapshot + 1);
+    }
+
+    /**
+     * @return the same balance, as of a snapshot just taken.
+     */
+    public DerivedBalance snapshotted() {
+        return new DerivedBalance(accountId, lastTransactionId, balanceMinorUnits, 0);
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public long getBalanceMinorUnits() {
+        return balanceMinorUnits;
+    }
+
+    public int getEntriesSinceSnapshot() {
+        return entriesSinceSnapshot;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("accountId", accountId)
+                .append("lastTransactionId", lastTransactionId)
+                .append("balanceMinorUnits", balanceMinorUnits)
+                .append("entriesSinceSnapshot", entriesSinceSnapshot)
+                .toString();
+    }
+}
@@ -0,0 +1,31 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+
+/**
+ * A position in the history of an account: the transactions to read are the ones coming after {@code after}.
+ *
+ * @author Davide Martorana
+ */
+public class HistoryCursor {
+
+    private final Long accountId;
+
+    private final Transaction after;
+
+    public HistoryCursor(final Long accountId, final Transaction after) {
+        this.accountId = accountId;
+        this.after = after;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the last transaction already read, {@code null} to start from the beginning of the history.
+     */
+    public Transaction getAfter() {
+        return after;
+    }
+}
@@ -0,0 +1,152 @@
+package eu.davidemartorana.banking.accounts.domain;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * Fixed-point amount of money: a {@code long} of minor units of its currency (e.g. pence for GBP), so the balances are
+ * compared and updated without allocating a {@link BigDecimal} at every step. The conversions from and to
+ * {@link BigDecimal} are exact, and every operation fails with an {@link ArithmeticException} instead of overflowing.
+ *
+ * @author Davide Martorana
+ */
+public final class Money implements Comparable<Money> {
+
+    private final long minorUnits;
+
+    private final Currency currency;
+
+    private Money(final long minorUnits, final Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = Objects.requireNonNull(currency, "currency");
+    }
+
+    /**
+     * @param minorUnits - amount in minor units of {@code currency}
+     * @param currency - currency of the amount
+     *
+     * @return the money.
+     */
+    public static Money ofMinorUnits(final long minorUnits, final Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * @param value - amount in major units of {@code currency}, e.g. {@code 10.50}
+     * @param currency - currency of the amount
+     *
+     * @return the money.
+     *
+     * @throws ArithmeticException if {@code value} has more decimal digits than the currency or it does not fit in a {@code long}.
+     */
+    public static Money of(final BigDecimal value, final Currency currency) {
+        return new Money(toMinorUnits(value, scaleOf(currency)), currency);
+    }
+
+    /**
+     * @return the number of decimal digits of the {@code currency}; 0 for the currencies without minor units.
+     */
+    public static int scaleOf(final Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * Converts {@code value} in minor units with the given {@code scale}.
+     *
+     * @throws ArithmeticException if {@code value} has more decimal digits than {@code scale} or it does not fit in a {@code long}.
+     */
+    public static long toMinorUnits(final BigDecimal value, final int scale) {
+        return value.scaleByPowerOfTen(scale).longValueExact();
+    }
+
+    /**
+     * Converts {@code minorUnits} of the given {@code currency} in major units, keeping all the decimal digits of the currency.
+     */
+    public static BigDecimal toBigDecimal(final long minorUnits, final Currency currency) {
+        return BigDecimal.valueOf(minorUnits, scaleOf(currency));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public int getScale() {
+        return scaleOf(currency);
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit in a {@code long}.
+     * @throws IllegalArgumentException if {@code other} has a different currency.
+     */
+    public Money plus(final Money other) {
+        return new Money(Math.addExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit in a {@code long}.
+     * @throws IllegalArgumentException if {@code other} has a different currency.
+     */
+    public Money minus(final Money other) {
+        return new Money(Math.subtractExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    /**
+     * @throws ArithmeticException if the result does not fit in a {@code long}.
+     */
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    /**
+     * @return the amount in major units, with as many decimal digits as the currency.
+     */
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(minorUnits, currency);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code other} has a different currency.
+     */
+    @Override
+    public int compareTo(final Money other) {
+        return Long.compare(minorUnits, sameCurrency(other).minorUnits);
+    }
+
+    private Money sameCurrency(final Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Different currencies: " + currency + " and " + other.currency);
+        }
+
+        return other;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final Money money = (Money) o;
+
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+}
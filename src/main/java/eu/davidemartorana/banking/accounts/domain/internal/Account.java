@@ -1,25 +1,54 @@
 package eu.davidemartorana.banking.accounts.domain.internal;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.util.Currency;
 
+/**
+ * The balance of the accounts changes with every transfer, so the accounts are not kept in the second-level cache; the
+ * mapping from their uuid to their id never changes and it is.
+ *
+ * The balance is updated with native statements: an HQL bulk update would evict the whole uuid cache at every transfer.
+ *
+ * The total amount is stored in minor units of the currency of the account; it is a {@link BigDecimal} in major units
+ * only in the JSON.
+ *
+ * Every balance update increases the {@code version}, which the optimistic transfer engine checks instead of locking the
+ * account.
+ *
+ * An account split in more than one {@link BalanceSlot} has its balance in the total amount plus the amounts of all
+ * its slots.
+ */
 @Entity
 @Table(name = "Accounts")
+@NaturalIdCache
 @NamedQueries({
         @NamedQuery(name = "account.byIbanNumber", query = "SELECT a FROM Account a WHERE a.ibanNumber = :iban"),
         @NamedQuery(name = "account.byCustomerId", query = "SELECT a FROM Account a WHERE a.customerId = :customerId"),
         @NamedQuery(name = "account.byUUID", query = "SELECT a FROM Account a WHERE a.uuid = :uuid")
 })
+@NamedNativeQueries({
+        @NamedNativeQuery(name = "account.updateTotalAmount", query = "UPDATE accounts SET total_amount_minor_units = :totalAmount, version = version + 1 WHERE id = :id"),
+        @NamedNativeQuery(name = "account.updateTotalAmountIfVersion", query = "UPDATE accounts SET total_amount_minor_units = :totalAmount, version = version + 1 WHERE id = :id AND version = :version"),
+        @NamedNativeQuery(name = "account.decreaseTotalAmount", query = "UPDATE accounts SET total_amount_minor_units = total_amount_minor_units - :amount, version = version + 1 WHERE id = :id AND total_amount_minor_units >= :amount"),
+        @NamedNativeQuery(name = "account.increaseTotalAmount", query = "UPDATE accounts SET total_amount_minor_units = total_amount_minor_units + :amount, version = version + 1 WHERE id = :id"),
+        @NamedNativeQuery(name = "account.updateBalanceSlots", query = "UPDATE accounts SET total_amount_minor_units = 0, balance_slots = :balanceSlots, version = version + 1 WHERE id = :id"),
+        @NamedNativeQuery(name = "account.totalAmountWithSlots", query = "SELECT a.total_amount_minor_units + COALESCE((SELECT SUM(s.amount_minor_units) FROM account_balance_slots s WHERE s.account_id = a.id), 0) FROM accounts a WHERE a.id = :id"),
+        @NamedNativeQuery(name = "account.splitUUIDs", query = "SELECT uuid FROM accounts WHERE balance_slots > 1")
+})
 public class Account {
 
     @Id
@@ -32,17 +61,15 @@ public class Account {
     @JsonProperty
     private String ibanNumber;
 
+    @NaturalId
     @Column(name = "uuid", nullable = false)
     @NotNull
     @JsonProperty("id")
     private String uuid;
 
-    @Column(name = "total_amount", nullable = false)
-    @NotNull
-    @JsonProperty
-    @JsonInclude(JsonInclude.Include.NON_NULL)
-    @JsonFormat
-    private BigDecimal totalAmount;
+    @Column(name = "total_amount_minor_units", nullable = false)
+    @JsonIgnore
+    private Long totalAmountMinorUnits;
 
     @Column(name = "currency", nullable = false)
     @NotNull
@@ -55,6 +82,15 @@ public class Account {
     @JsonIgnore
     private Integer customerId;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private Long version;
+
+    @Column(name = "balance_slots", nullable = false)
+    @JsonIgnore
+    private int balanceSlots = 1;
+
     public Long getId() {
         return id;
     }
@@ -79,12 +115,35 @@ public class Account {
         this.uuid = uuid;
     }
 
+    /**
+     * @return the total amount in major units of the currency, {@code null} if either the total amount or the currency
+     * is not set.
+     */
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonFormat
     public BigDecimal getTotalAmount() {
-        return totalAmount;
+        return totalAmountMinorUnits == null || currency == null ? null : Money.toBigDecimal(totalAmountMinorUnits, currency);
     }
 
+    /**
+     * Sets the total amount in major units of the currency, which must be set first.
+     *
+     * @throws ArithmeticException if {@code totalAmount} has more decimal digits than the currency or it is too big.
+     */
     public void setTotalAmount(BigDecimal totalAmount) {
-        this.totalAmount = totalAmount;
+        if (currency == null) {
+            throw new IllegalStateException("The currency of the account must be set before its total amount.");
+        }
+        this.totalAmountMinorUnits = totalAmount == null ? null : Money.toMinorUnits(totalAmount, Money.scaleOf(currency));
+    }
+
+    public Long getTotalAmountMinorUnits() {
+        return totalAmountMinorUnits;
+    }
+
+    public void setTotalAmountMinorUnits(Long totalAmountMinorUnits) {
+        this.totalAmountMinorUnits = totalAmountMinorUnits;
     }
 
     public Currency getCurrency() {
@@ -103,6 +162,65 @@ public class Account {
         this.customerId = customerId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    public void setBalanceSlots(int balanceSlots) {
+        this.balanceSlots = balanceSlots;
+    }
+
+    /**
+     * @return whether the balance of the account is split in {@link BalanceSlot balance slots}.
+     */
+    @JsonIgnore
+    public boolean isSplit() {
+        return balanceSlots > 1;
+    }
+
+    /**
+     * Returns a detached copy of this account with a different total amount. Used to report a balance that must not
+     * be flushed to the database through this entity.
+     *
+     * @param totalAmountMinorUnits - the total amount of the copy, in minor units
+     *
+     * @return a new account, equal to this one except for the total amount.
+     */
+    public Account withTotalAmount(final long totalAmountMinorUnits) {
+        final Account copy = new Account();
+        copy.setId(id);
+        copy.setUuid(uuid);
+        copy.setIbanNumber(ibanNumber);
+        copy.setCurrency(currency);
+        copy.setCustomerId(customerId);
+        copy.setVersion(version);
+        copy.setBalanceSlots(balanceSlots);
+        copy.setTotalAmountMinorUnits(totalAmountMinorUnits);
+
+        return copy;
+    }
+
+    /**
+     * The JSON has the total amount in major units, which can be converted only knowing the currency: the two are
+     * read together whatever their order.
+     */
+    @JsonCreator
+    static Account fromJson(@JsonProperty("currency") final Currency currency, @JsonProperty("totalAmount") final BigDecimal totalAmount) {
+        final Account account = new Account();
+        account.setCurrency(currency);
+        account.setTotalAmount(totalAmount);
+
+        return account;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -115,7 +233,7 @@ public class Account {
                 .append(id, account.id)
                 .append(ibanNumber, account.ibanNumber)
                 .append(uuid, account.uuid)
-                .append(totalAmount, account.totalAmount)
+                .append(totalAmountMinorUnits, account.totalAmountMinorUnits)
                 .append(currency, account.currency)
                 .append(customerId, account.customerId)
                 .isEquals();
@@ -127,7 +245,7 @@ public class Account {
                 .append(id)
                 .append(ibanNumber)
                 .append(uuid)
-                .append(totalAmount)
+                .append(totalAmountMinorUnits)
                 .append(currency)
                 .append(customerId)
                 .toHashCode();
@@ -139,9 +257,11 @@ public class Account {
                 .append("id", id)
                 .append("ibanNumber", ibanNumber)
                 .append("uuid", uuid)
-                .append("totalAmount", totalAmount)
+                .append("totalAmountMinorUnits", totalAmountMinorUnits)
                 .append("currency", currency)
                 .append("customerId", customerId)
+                .append("version", version)
+                .append("balanceSlots", balanceSlots)
                 .toString();
     }
 }
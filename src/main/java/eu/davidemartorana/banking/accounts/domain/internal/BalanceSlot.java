@@ -0,0 +1,123 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * One of the physical balances of an account split in {@link Account#getBalanceSlots()} slots. The balance of the
+ * account is its total amount plus the amounts of all its slots: the credits are added to any slot and the debits are
+ * taken from a slot with enough funds, so the transfers of the account do not all update the same row.
+ *
+ * The amounts are updated with native statements, as the total amount of the accounts.
+ */
+@Entity
+@Table(name = "account_balance_slots")
+@IdClass(BalanceSlot.Key.class)
+@NamedQueries({
+        @NamedQuery(name = "balanceSlot.byAccountId", query = "SELECT s FROM BalanceSlot s WHERE s.accountId = :accountId"),
+        @NamedQuery(name = "balanceSlot.maxAmountByAccountId", query = "SELECT MAX(s.amountMinorUnits) FROM BalanceSlot s WHERE s.accountId = :accountId"),
+        @NamedQuery(name = "balanceSlot.deleteByAccountId", query = "DELETE FROM BalanceSlot s WHERE s.accountId = :accountId")
+})
+@NamedNativeQueries({
+        @NamedNativeQuery(name = "balanceSlot.insert", query = "INSERT INTO account_balance_slots (account_id, slot, amount_minor_units) VALUES (:accountId, :slot, :amount)"),
+        @NamedNativeQuery(name = "balanceSlot.increaseAmount", query = "UPDATE account_balance_slots SET amount_minor_units = amount_minor_units + :amount WHERE account_id = :accountId AND slot = :slot"),
+        @NamedNativeQuery(name = "balanceSlot.decreaseAmount", query = "UPDATE account_balance_slots SET amount_minor_units = amount_minor_units - :amount WHERE account_id = :accountId AND slot = :slot AND amount_minor_units >= :amount")
+})
+public class BalanceSlot {
+
+    @Id
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Id
+    @Column(name = "slot", nullable = false)
+    private Integer slot;
+
+    @Column(name = "amount_minor_units", nullable = false)
+    private Long amountMinorUnits;
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+
+    public Integer getSlot() {
+        return slot;
+    }
+
+    public void setSlot(Integer slot) {
+        this.slot = slot;
+    }
+
+    public Long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(Long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("accountId", accountId)
+                .append("slot", slot)
+                .append("amountMinorUnits", amountMinorUnits)
+                .toString();
+    }
+
+    /**
+     * Primary key of the slots: the account and the index of the slot.
+     */
+    public static class Key implements Serializable {
+
+        private Long accountId;
+
+        private Integer slot;
+
+        public Key() {
+        }
+
+        public Key(final Long accountId, final Integer slot) {
+            this.accountId = accountId;
+            this.slot = slot;
+        }
+
+        public Long getAccountId() {
+            return accountId;
+        }
+
+        public Integer getSlot() {
+            return slot;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return new EqualsBuilder()
+                    .append(accountId, key.accountId)
+                    .append(slot, key.slot)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder(17, 37)
+                    .append(accountId)
+                    .append(slot)
+                    .toHashCode();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.DateTime;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Balance of an account as of the transaction {@code lastTransactionId}, taken by the event-sourced transfer engine:
+ * the balance of the account is the one of its latest snapshot plus the credits, less the debits, coming after it.
+ *
+ * The snapshot keeps the {@link Account#getVersion() version} of the account when it was taken. The event-sourced
+ * engine never updates the accounts, so a different version means that the account has been updated by another engine
+ * since then: its snapshots are no longer valid and a new one is taken from its total amount.
+ *
+ * The balances are read and the snapshots taken from the account totals with native statements.
+ */
+@Entity
+@Table(name = "account_balance_snapshots")
+@NamedNativeQueries({
+        @NamedNativeQuery(name = "balanceSnapshot.balanceByAccountId", query = "SELECT s.last_transaction_id, s.balance_minor_units, COUNT(t.id), MAX(t.id), " +
+                "SUM(CASE WHEN t.type = 'CREDIT' THEN t.amount_minor_units ELSE -t.amount_minor_units END) " +
+                "FROM account_balance_snapshots s JOIN accounts a ON a.id = s.account_id AND a.version = s.account_version " +
+                "LEFT JOIN account_transactions t ON t.account_id = s.account_id AND t.id > s.last_transaction_id " +
+                "WHERE s.account_id = :accountId AND s.id = (SELECT MAX(l.id) FROM account_balance_snapshots l WHERE l.account_id = :accountId) " +
+                "GROUP BY s.last_transaction_id, s.balance_minor_units"),
+        @NamedNativeQuery(name = "balanceSnapshot.insert", query = "INSERT INTO account_balance_snapshots " +
+                "(account_id, last_transaction_id, balance_minor_units, account_version, created_date_time) " +
+                "SELECT a.id, CAST(:lastTransactionId AS INTEGER), CAST(:balance AS BIGINT), a.version, CURRENT_TIMESTAMP FROM accounts a WHERE a.id = :accountId"),
+        @NamedNativeQuery(name = "balanceSnapshot.insertFromTotalAmounts", query = BalanceSnapshot.INSERT_FROM_TOTAL_AMOUNTS),
+        @NamedNativeQuery(name = "balanceSnapshot.insertFromTotalAmountByAccountId", query = BalanceSnapshot.INSERT_FROM_TOTAL_AMOUNTS + " AND a.id = :accountId"),
+        @NamedNativeQuery(name = "balanceSnapshot.deleteOlder", query = "DELETE FROM account_balance_snapshots WHERE account_id = :accountId AND last_transaction_id < :lastTransactionId")
+})
+public class BalanceSnapshot {
+
+    /**
+     * Takes a snapshot from the total amount, plus the slots, of the accounts without a valid snapshot, as of their
+     * last transaction.
+     */
+    static final String INSERT_FROM_TOTAL_AMOUNTS = "INSERT INTO account_balance_snapshots " +
+            "(account_id, last_transaction_id, balance_minor_units, account_version, created_date_time) " +
+            "SELECT a.id, COALESCE((SELECT MAX(t.id) FROM account_transactions t WHERE t.account_id = a.id), 0), " +
+            "a.total_amount_minor_units + COALESCE((SELECT SUM(b.amount_minor_units) FROM account_balance_slots b WHERE b.account_id = a.id), 0), " +
+            "a.version, CURRENT_TIMESTAMP FROM accounts a " +
+            "WHERE NOT EXISTS (SELECT 1 FROM account_balance_snapshots s WHERE s.account_id = a.id AND s.account_version = a.version " +
+            "AND s.id = (SELECT MAX(l.id) FROM account_balance_snapshots l WHERE l.account_id = a.id))";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    @NotNull
+    private Long accountId;
+
+    @Column(name = "last_transaction_id", nullable = false)
+    private long lastTransactionId;
+
+    @Column(name = "balance_minor_units", nullable = false)
+    private long balanceMinorUnits;
+
+    @Column(name = "account_version", nullable = false)
+    private long accountVersion;
+
+    @Column(name = "created_date_time", nullable = false)
+    @NotNull
+    private DateTime createdDateTime;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+
+    public long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public void setLastTransactionId(long lastTransactionId) {
+        this.lastTransactionId = lastTransactionId;
+    }
+
+    public long getBalanceMinorUnits() {
+        return balanceMinorUnits;
+    }
+
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        this.balanceMinorUnits = balanceMinorUnits;
+    }
+
+    public long getAccountVersion() {
+        return accountVersion;
+    }
+
+    public void setAccountVersion(long accountVersion) {
+        this.accountVersion = accountVersion;
+    }
+
+    public DateTime getCreatedDateTime() {
+        return createdDateTime;
+    }
+
+    public void setCreatedDateTime(DateTime createdDateTime) {
+        this.createdDateTime = createdDateTime;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("id", id)
+                .append("accountId", accountId)
+                .append("lastTransactionId", lastTransactionId)
+                .append("balanceMinorUnits", balanceMinorUnits)
+                .append("accountVersion", accountVersion)
+                .append("createdDateTime", createdDateTime)
+                .toString();
+    }
+}
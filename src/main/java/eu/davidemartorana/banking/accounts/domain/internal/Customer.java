@@ -5,15 +5,23 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 
+/**
+ * The customers are never changed by the application: they are kept in the second-level cache, as the mapping from
+ * their uuid to their id.
+ */
 @Entity
 @Table(name = "Customers")
-@NamedQueries({
-        @NamedQuery(name = "customer.byUUID", query = "SELECT c FROM Customer c WHERE c.uuid = :uuid")
-})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@NaturalIdCache
 public class Customer {
 
     @Id
@@ -26,6 +34,7 @@ public class Customer {
     @JsonProperty
     private String name;
 
+    @NaturalId
     @Column(name = "uuid", nullable = false)
     @NotNull
     @JsonProperty("id")
@@ -0,0 +1,56 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.persistence.*;
+
+/**
+ * Sequence of the last record of the ledger journal write-ahead log persisted in the database. The table has a single
+ * row, updated in the same transaction as the records it counts: the records coming after it, if any, are replayed at
+ * start-up.
+ */
+@Entity
+@Table(name = "ledger_journal_checkpoint")
+@NamedNativeQueries({
+        @NamedNativeQuery(name = "journalCheckpoint.lastSequence", query = "SELECT last_sequence FROM ledger_journal_checkpoint WHERE id = " + JournalCheckpoint.ID),
+        @NamedNativeQuery(name = "journalCheckpoint.update", query = "UPDATE ledger_journal_checkpoint SET last_sequence = :lastSequence " +
+                "WHERE id = " + JournalCheckpoint.ID + " AND last_sequence < :lastSequence")
+})
+public class JournalCheckpoint {
+
+    /**
+     * The id of the only row of the table.
+     */
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Integer id;
+
+    @Column(name = "last_sequence", nullable = false)
+    private long lastSequence;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("id", id)
+                .append("lastSequence", lastSequence)
+                .toString();
+    }
+}
@@ -1,8 +1,10 @@
 package eu.davidemartorana.banking.accounts.domain.internal;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -13,11 +15,18 @@ import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.util.Currency;
 import java.util.Date;
+import java.util.UUID;
 
+/**
+ * Debit or credit of an account. Like the balance of the {@link Account}, the amount is persisted in minor units.
+ */
 @Entity
 @Table(name = "account_transactions")
 @NamedQueries({
-        @NamedQuery(name="transactions.findByAccountId", query = "SELECT t FROM Transaction t WHERE t.accountId = :accountId")
+        @NamedQuery(name="transactions.findByAccountId", query = "SELECT t FROM Transaction t WHERE t.accountId = :accountId ORDER BY t.dateTime, t.id"),
+        @NamedQuery(name="transactions.findByAccountIdAfter", query = "SELECT t FROM Transaction t WHERE t.accountId = :accountId " +
+                "AND t.dateTime >= :dateTime AND (t.dateTime > :dateTime OR t.id > :id) ORDER BY t.dateTime, t.id"),
+        @NamedQuery(name="transactions.findByAccountIdAndUUID", query = "SELECT t FROM Transaction t WHERE t.accountId = :accountId AND t.uuid = :uuid")
 })
 public class Transaction {
 
@@ -32,10 +41,9 @@ public class Transaction {
     @JsonProperty("id")
     private String uuid;
 
-    @Column(name = "amount", nullable = false)
-    @NotNull
-    @JsonProperty
-    private BigDecimal amount;
+    @Column(name = "amount_minor_units", nullable = false)
+    @JsonIgnore
+    private long amountMinorUnits;
 
     @Column(name = "currency", nullable = false)
     @NotNull
@@ -74,12 +82,32 @@ public class Transaction {
         this.uuid = uuid;
     }
 
+    /**
+     * @return the amount in major units of the currency, {@code null} if the currency is not set yet.
+     */
+    @JsonProperty
     public BigDecimal getAmount() {
-        return amount;
+        return currency == null ? null : Money.toBigDecimal(amountMinorUnits, currency);
     }
 
+    /**
+     * Sets the amount in major units of the currency, which must be set first.
+     *
+     * @throws ArithmeticException if {@code amount} has more decimal digits than the currency or it is too big.
+     */
     public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+        if (currency == null) {
+            throw new IllegalStateException("The currency of the transaction must be set before its amount.");
+        }
+        this.amountMinorUnits = Money.toMinorUnits(amount, Money.scaleOf(currency));
+    }
+
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
     }
 
     public Currency getCurrency() {
@@ -115,6 +143,43 @@ public class Transaction {
         this.accountId = accountId;
     }
 
+    /**
+     * Builds a new, not yet persisted, transaction of {@code account} with a random uuid.
+     *
+     * @param amount - amount of the transaction
+     * @param account - account the transaction belongs to
+     * @param transactionType - debit or credit
+     * @param dateTime - when the transaction happened
+     *
+     * @return the new transaction.
+     */
+    public static Transaction create(final Money amount, final Account account, final TransactionType transactionType, final DateTime dateTime) {
+        final Transaction transaction = new Transaction();
+        transaction.setAccountId(account.getId());
+        transaction.setAmountMinorUnits(amount.getMinorUnits());
+        transaction.setCurrency(amount.getCurrency());
+        transaction.setType(transactionType.value());
+        transaction.setDateTime(dateTime);
+        transaction.setUuid(UUID.randomUUID().toString());
+
+        return transaction;
+    }
+
+    /**
+     * The JSON has the amount in major units, which can be converted only knowing the currency: the two are read
+     * together whatever their order.
+     */
+    @JsonCreator
+    static Transaction fromJson(@JsonProperty("currency") final Currency currency, @JsonProperty("amount") final BigDecimal amount) {
+        final Transaction transaction = new Transaction();
+        transaction.setCurrency(currency);
+        if (amount != null) {
+            transaction.setAmount(amount);
+        }
+
+        return transaction;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -126,7 +191,7 @@ public class Transaction {
         return new EqualsBuilder()
                 .append(id, that.id)
                 .append(uuid, that.uuid)
-                .append(amount, that.amount)
+                .append(amountMinorUnits, that.amountMinorUnits)
                 .append(currency, that.currency)
                 .append(dateTime, that.dateTime)
                 .append(type, that.type)
@@ -139,7 +204,7 @@ public class Transaction {
         return new HashCodeBuilder(17, 37)
                 .append(id)
                 .append(uuid)
-                .append(amount)
+                .append(amountMinorUnits)
                 .append(currency)
                 .append(dateTime)
                 .append(type)
@@ -152,7 +217,7 @@ public class Transaction {
         return new ToStringBuilder(this)
                 .append("id", id)
                 .append("uuid", uuid)
-                .append("amount", amount)
+                .append("amountMinorUnits", amountMinorUnits)
                 .append("currency", currency)
                 .append("dateTime", dateTime)
                 .append("type", type)
@@ -0,0 +1,220 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+import eu.davidemartorana.banking.accounts.domain.Money;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.DateTime;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * A transfer submitted asynchronously. The job is inserted {@link TransferJobStatus#PENDING} when the transfer is
+ * accepted, before the client gets its id, and completed with the outcome of the transfer: the response as the JSON
+ * of the synchronous endpoint when applied, the HTTP status and message when rejected.
+ */
+@Entity
+@Table(name = "transfer_jobs")
+@NamedQueries({
+        @NamedQuery(name = "transferJob.findByStatus", query = "SELECT j FROM TransferJob j WHERE j.status = :status ORDER BY j.createdDateTime")
+})
+public class TransferJob {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private String id;
+
+    @Column(name = "debtor_account_uuid", nullable = false)
+    @NotNull
+    private String debtorAccountUUID;
+
+    @Column(name = "beneficiary_account_uuid", nullable = false)
+    @NotNull
+    private String beneficiaryAccountUUID;
+
+    @Column(name = "amount_minor_units", nullable = false)
+    private long amountMinorUnits;
+
+    @Column(name = "currency", nullable = false)
+    @NotNull
+    private Currency currency;
+
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(name = "callback_url", length = 2000)
+    private String callbackUrl;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @NotNull
+    private TransferJobStatus status;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "message", length = 1000)
+    private String message;
+
+    @Column(name = "response", length = 4000)
+    private String response;
+
+    @Column(name = "created_date_time", nullable = false)
+    @NotNull
+    private DateTime createdDateTime;
+
+    @Column(name = "completed_date_time")
+    private DateTime completedDateTime;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDebtorAccountUUID() {
+        return debtorAccountUUID;
+    }
+
+    public void setDebtorAccountUUID(String debtorAccountUUID) {
+        this.debtorAccountUUID = debtorAccountUUID;
+    }
+
+    public String getBeneficiaryAccountUUID() {
+        return beneficiaryAccountUUID;
+    }
+
+    public void setBeneficiaryAccountUUID(String beneficiaryAccountUUID) {
+        this.beneficiaryAccountUUID = beneficiaryAccountUUID;
+    }
+
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+
+    public TransferJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferJobStatus status) {
+        this.status = status;
+    }
+
+    public Integer getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(Integer responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public DateTime getCreatedDateTime() {
+        return createdDateTime;
+    }
+
+    public void setCreatedDateTime(DateTime createdDateTime) {
+        this.createdDateTime = createdDateTime;
+    }
+
+    public DateTime getCompletedDateTime() {
+        return completedDateTime;
+    }
+
+    public void setCompletedDateTime(DateTime completedDateTime) {
+        this.completedDateTime = completedDateTime;
+    }
+
+    /**
+     * @return the amount of the transfer.
+     */
+    public Money getAmount() {
+        return Money.ofMinorUnits(amountMinorUnits, currency);
+    }
+
+    /**
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param beneficiaryAccountUUID - unique identifier of the account to credit
+     * @param amount - amount of the transfer
+     * @param idempotencyKey - the key sent by the client, {@code null} if none
+     * @param callbackUrl - the URL notified once the job is completed, {@code null} for none
+     *
+     * @return a new {@link TransferJobStatus#PENDING pending} job, with a random id.
+     */
+    public static TransferJob create(final String debtorAccountUUID, final String beneficiaryAccountUUID, final Money amount,
+                                     final String idempotencyKey, final String callbackUrl) {
+        final TransferJob job = new TransferJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setDebtorAccountUUID(debtorAccountUUID);
+        job.setBeneficiaryAccountUUID(beneficiaryAccountUUID);
+        job.setAmountMinorUnits(amount.getMinorUnits());
+        job.setCurrency(amount.getCurrency());
+        job.setIdempotencyKey(idempotencyKey);
+        job.setCallbackUrl(callbackUrl);
+        job.setStatus(TransferJobStatus.PENDING);
+        job.setCreatedDateTime(DateTime.now());
+
+        return job;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("id", id)
+                .append("debtorAccountUUID", debtorAccountUUID)
+                .append("beneficiaryAccountUUID", beneficiaryAccountUUID)
+                .append("amountMinorUnits", amountMinorUnits)
+                .append("currency", currency)
+                .append("status", status)
+                .append("responseStatus", responseStatus)
+                .append("createdDateTime", createdDateTime)
+                .append("completedDateTime", completedDateTime)
+                .toString();
+    }
+}
@@ -0,0 +1,22 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+/**
+ * Status of a {@link TransferJob}.
+ */
+public enum TransferJobStatus {
+
+    /**
+     * Accepted and waiting to be executed, or being executed.
+     */
+    PENDING,
+
+    /**
+     * The transfer has been applied.
+     */
+    COMPLETED,
+
+    /**
+     * The transfer has been rejected, e.g. because the funds are not enough.
+     */
+    FAILED
+}
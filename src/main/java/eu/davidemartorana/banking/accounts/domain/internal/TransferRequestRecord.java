@@ -0,0 +1,147 @@
+package eu.davidemartorana.banking.accounts.domain.internal;
+
+import eu.davidemartorana.banking.accounts.domain.Money;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import java.util.Currency;
+
+/**
+ * A transfer requested with an {@code Idempotency-Key}, persisted in the same database transaction as the transfer:
+ * the key is the primary key, so a transfer cannot be committed twice with the same key. The response is kept as the
+ * JSON sent to the client, to be sent again to the retries.
+ */
+@Entity
+@Table(name = "transfer_requests")
+public class TransferRequestRecord {
+
+    @Id
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Column(name = "debtor_account_uuid", nullable = false)
+    @NotNull
+    private String debtorAccountUUID;
+
+    @Column(name = "beneficiary_account_uuid", nullable = false)
+    @NotNull
+    private String beneficiaryAccountUUID;
+
+    @Column(name = "amount_minor_units", nullable = false)
+    private long amountMinorUnits;
+
+    @Column(name = "currency", nullable = false)
+    @NotNull
+    private Currency currency;
+
+    @Column(name = "response", length = 4000)
+    private String response;
+
+    @Column(name = "date_time", nullable = false)
+    @NotNull
+    private DateTime dateTime;
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getDebtorAccountUUID() {
+        return debtorAccountUUID;
+    }
+
+    public void setDebtorAccountUUID(String debtorAccountUUID) {
+        this.debtorAccountUUID = debtorAccountUUID;
+    }
+
+    public String getBeneficiaryAccountUUID() {
+        return beneficiaryAccountUUID;
+    }
+
+    public void setBeneficiaryAccountUUID(String beneficiaryAccountUUID) {
+        this.beneficiaryAccountUUID = beneficiaryAccountUUID;
+    }
+
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amountMinorUnits = amountMinorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public DateTime getDateTime() {
+        return dateTime;
+    }
+
+    public void setDateTime(DateTime dateTime) {
+        this.dateTime = dateTime;
+    }
+
+    /**
+     * @param idempotencyKey - the key sent by the client
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param beneficiaryAccountUUID - unique identifier of the account to credit
+     * @param amount - amount of the transfer
+     *
+     * @return the record of the transfer, still without response.
+     */
+    public static TransferRequestRecord create(final String idempotencyKey, final String debtorAccountUUID,
+                                               final String beneficiaryAccountUUID, final Money amount) {
+        final TransferRequestRecord record = new TransferRequestRecord();
+        record.setIdempotencyKey(idempotencyKey);
+        record.setDebtorAccountUUID(debtorAccountUUID);
+        record.setBeneficiaryAccountUUID(beneficiaryAccountUUID);
+        record.setAmountMinorUnits(amount.getMinorUnits());
+        record.setCurrency(amount.getCurrency());
+        record.setDateTime(DateTime.now());
+
+        return record;
+    }
+
+    /**
+     * @return {@code true} if the record is of a transfer with the same accounts and amount.
+     */
+    public boolean isSameTransfer(final String debtorAccountUUID, final String beneficiaryAccountUUID, final Money amount) {
+        return this.debtorAccountUUID.equals(debtorAccountUUID)
+                && this.beneficiaryAccountUUID.equals(beneficiaryAccountUUID)
+                && this.amountMinorUnits == amount.getMinorUnits()
+                && this.currency.equals(amount.getCurrency());
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("idempotencyKey", idempotencyKey)
+                .append("debtorAccountUUID", debtorAccountUUID)
+                .append("beneficiaryAccountUUID", beneficiaryAccountUUID)
+                .append("amountMinorUnits", amountMinorUnits)
+                .append("currency", currency)
+                .append("dateTime", dateTime)
+                .toString();
+    }
+}
@@ -0,0 +1,162 @@
+package eu.davidemartorana.banking.accounts.eventsourced;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.EventSourcedConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.BalanceSnapshotRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.DerivedBalance;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the balance snapshots of the {@link EventSourcedTransferEngine}, so the transactions to read to derive a
+ * balance stay few:
+ *
+ * <ul>
+ *     <li>at start-up, every account without a valid snapshot gets one from its total amount;</li>
+ *     <li>every {@code snapshotInterval}, every account with at least {@code snapshotEntries} transactions after its
+ *     latest snapshot gets a new one, replacing the older ones;</li>
+ *     <li>at shutdown, the balances of the accounts changed by the event-sourced engine are written back to their
+ *     total amounts, so the other engines can take over from them.</li>
+ * </ul>
+ *
+ * A snapshot is taken without locking the account: the transactions of an account are appended under its lock, so the
+ * ones read are always all the ones committed up to the last id read. The snapshots taken are published in the metrics
+ * as {@code eu.davidemartorana.banking.accounts.eventsourced.BalanceSnapshotter.snapshots}.
+ *
+ * The snapshotter is started only when the {@link TransferEngineType#EVENT_SOURCED event-sourced} engine is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class BalanceSnapshotter implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceSnapshotter.class);
+
+    private final EventSourcedBalances balances;
+
+    private final BalanceSnapshotRepository snapshotRepository;
+
+    private final AccountRepository accountRepository;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final EventSourcedConfig config;
+
+    private final boolean enabled;
+
+    private final Meter snapshots;
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public BalanceSnapshotter(final EventSourcedBalances balances, final BalanceSnapshotRepository snapshotRepository,
+                              final AccountRepository accountRepository, final UnitOfWorkRunner unitOfWorkRunner,
+                              final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this.balances = balances;
+        this.snapshotRepository = snapshotRepository;
+        this.accountRepository = accountRepository;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.config = applicationConfig.getTransfers().getEventSourced();
+        this.enabled = applicationConfig.getTransfers().getEngine() == TransferEngineType.EVENT_SOURCED;
+        this.snapshots = metricRegistry.meter(MetricRegistry.name(BalanceSnapshotter.class, "snapshots"));
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        final int taken = unitOfWorkRunner.inUnitOfWork(snapshotRepository::insertFromTotalAmounts);
+        LOGGER.info("Balance snapshots taken from the total amounts of the accounts: {}", taken);
+
+        final long intervalMillis = config.getSnapshotInterval().toMilliseconds();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "balance-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::takeSnapshots, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            scheduler.shutdownNow();
+        }
+
+        LOGGER.info("Writing back the balances of {} accounts to their total amounts.", balances.getAppendedAccountIds().size());
+        for (final Long accountId : new ArrayList<>(balances.getAppendedAccountIds())) {
+            try {
+                unitOfWorkRunner.inUnitOfWork(() -> writeBack(accountId));
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to write back the balance of the account with id {}.", accountId, e);
+            }
+        }
+    }
+
+    /**
+     * Takes a new snapshot of every account with at least {@code snapshotEntries} transactions after its latest one,
+     * each one in its own unit of work.
+     */
+    public void takeSnapshots() {
+        for (final Long accountId : balances.findAccountsToSnapshot(config.getSnapshotEntries())) {
+            try {
+                unitOfWorkRunner.inUnitOfWork(() -> snapshotRepository.findBalance(accountId)
+                        .filter(balance -> balance.getEntriesSinceSnapshot() > 0)
+                        .map(balance -> {
+                            snapshotRepository.insert(balance);
+                            return balance;
+                        }))
+                        .ifPresent(balance -> {
+                            snapshots.mark();
+                            balances.update(balance.snapshotted());
+                        });
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Unable to take the balance snapshot of the account with id {}.", accountId, e);
+            }
+        }
+    }
+
+    /**
+     * Overwrites the total amount, or spreads again the slots, of the locked account with its derived balance, then
+     * takes a snapshot of the new total amount: the version of the account changes, so the older snapshots are not
+     * valid any more.
+     */
+    private void writeBack(final Long accountId) {
+        final Optional<Account> account = accountRepository.findByIdLocking(accountId);
+        final Optional<DerivedBalance> balance = snapshotRepository.findBalance(accountId);
+        if (!account.isPresent() || !balance.isPresent()) {
+            return;
+        }
+
+        final long balanceMinorUnits = balance.get().getBalanceMinorUnits();
+        if (account.get().isSplit()) {
+            accountRepository.lockBalanceSlots(account.get());
+            accountRepository.replaceBalanceSlots(accountId, account.get().getBalanceSlots(), balanceMinorUnits);
+        } else {
+            accountRepository.updateTotalAmount(accountId, balanceMinorUnits);
+        }
+        snapshotRepository.insertFromTotalAmount(accountId);
+    }
+}
@@ -0,0 +1,115 @@
+package eu.davidemartorana.banking.accounts.eventsourced;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.domain.DerivedBalance;
+import org.hibernate.SessionFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory view of the balances of the accounts used by the {@link EventSourcedTransferEngine}: the balance derived
+ * from the latest snapshot of an account plus the transactions committed after it, so the account details are served
+ * without reading the transactions.
+ *
+ * The balances are updated once the transactions of a transfer are committed. The transactions of an account are
+ * appended under the lock of the account, so their ids grow in commit order: a balance replaces the one in the view
+ * only if it counts the same or later transactions, whatever the order the updates arrive.
+ *
+ * The number of accounts in the view is published in the metrics as
+ * {@code eu.davidemartorana.banking.accounts.eventsourced.EventSourcedBalances.accounts}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class EventSourcedBalances {
+
+    private final ConcurrentMap<Long, DerivedBalance> balances = new ConcurrentHashMap<>();
+
+    private final Set<Long> appendedAccountIds = ConcurrentHashMap.newKeySet();
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public EventSourcedBalances(final SessionFactory sessionFactory, final MetricRegistry metricRegistry) {
+        this.sessionFactory = sessionFactory;
+        metricRegistry.register(MetricRegistry.name(EventSourcedBalances.class, "accounts"), (Gauge<Integer>) balances::size);
+    }
+
+    /**
+     * @param accountId - the id of the account
+     *
+     * @return the balance of the account, if it is in the view.
+     */
+    public Optional<DerivedBalance> find(final Long accountId) {
+        return Optional.ofNullable(balances.get(accountId));
+    }
+
+    /**
+     * Puts the balance in the view, unless the view already has a later one.
+     *
+     * @param balance - the balance of the account
+     */
+    public void update(final DerivedBalance balance) {
+        balances.merge(balance.getAccountId(), balance,
+                (current, candidate) -> candidate.getLastTransactionId() >= current.getLastTransactionId() ? candidate : current);
+    }
+
+    /**
+     * Updates the view with the given balances when the transaction of the current session commits, and marks their
+     * accounts as changed by the event-sourced engine.
+     *
+     * @param updated - the balances of the accounts, counting the transactions of the current session
+     */
+    public void updateOnCommit(final Collection<DerivedBalance> updated) {
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // Nothing is visible before the commit
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    updated.forEach(balance -> {
+                        appendedAccountIds.add(balance.getAccountId());
+                        update(balance);
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * @param minEntries - the minimum number of transactions after the latest snapshot
+     *
+     * @return the ids of the accounts with at least {@code minEntries} transactions after their latest snapshot.
+     */
+    public List<Long> findAccountsToSnapshot(final int minEntries) {
+        final List<Long> accountIds = new ArrayList<>();
+        balances.forEach((accountId, balance) -> {
+            if (balance.getEntriesSinceSnapshot() >= minEntries) {
+                accountIds.add(accountId);
+            }
+        });
+
+        return accountIds;
+    }
+
+    /**
+     * @return the ids of the accounts the event-sourced engine has appended transactions to since the start.
+     */
+    public Set<Long> getAppendedAccountIds() {
+        return appendedAccountIds;
+    }
+}
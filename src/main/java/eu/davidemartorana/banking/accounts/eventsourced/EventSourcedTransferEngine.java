@@ -0,0 +1,234 @@
+package eu.davidemartorana.banking.accounts.eventsourced;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.BalanceSnapshotRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.DerivedBalance;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.services.BatchTransferPlan;
+import eu.davidemartorana.banking.accounts.services.TransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * {@link TransferEngine} keeping the transactions as the only record of the balances: a transfer appends its debit and
+ * credit transactions and never updates the accounts. The balance of an account is derived from its latest
+ * {@link eu.davidemartorana.banking.accounts.domain.internal.BalanceSnapshot snapshot} plus the transactions coming
+ * after it, which the {@link BalanceSnapshotter} keeps short.
+ *
+ * The accounts are still read under a {@link javax.persistence.LockModeType#PESSIMISTIC_WRITE} lock, so two debits of
+ * the same account cannot both be covered by the same funds, but the lock is only held, never turned into an update of
+ * the account row. The balances are derived under the lock and, once the transfer is committed, the new ones are put
+ * in the {@link EventSourcedBalances} view serving the account details.
+ *
+ * An account without a valid snapshot gets one from its total amount, plus its slots, before its first transaction.
+ * The balance slots are not supported: a split account is locked with all its slots and its balance is derived as any
+ * other.
+ *
+ * @author Davide Martorana
+ */
+public class EventSourcedTransferEngine implements TransferEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventSourcedTransferEngine.class);
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionsRepository;
+
+    private final BalanceSnapshotRepository snapshotRepository;
+
+    private final EventSourcedBalances balances;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final TransferMetrics transferMetrics;
+
+    @Inject
+    public EventSourcedTransferEngine(final AccountRepository accountRepository, final TransactionRepository transactionsRepository,
+                                      final BalanceSnapshotRepository snapshotRepository, final EventSourcedBalances balances,
+                                      final UnitOfWorkRunner unitOfWorkRunner, final TransferMetrics transferMetrics) {
+        this.accountRepository = accountRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.balances = balances;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public boolean requiresLockedAccounts() {
+        return true;
+    }
+
+    /**
+     * Served from the {@link EventSourcedBalances} view. An account not yet in the view is read in a unit of work of
+     * its own, so the account details need no session: its derived balance is put in the view, while the balance of an
+     * account without a valid snapshot is read from its total amount and slots.
+     */
+    @Override
+    public Account currentState(final Account account) {
+        final Optional<DerivedBalance> balance = balances.find(account.getId());
+        if (balance.isPresent()) {
+            return account.withTotalAmount(balance.get().getBalanceMinorUnits());
+        }
+
+        final long totalAmount = unitOfWorkRunner.inUnitOfWork(() -> {
+            final Optional<DerivedBalance> derived = snapshotRepository.findBalance(account.getId());
+            derived.ifPresent(balances::update);
+
+            return derived.map(DerivedBalance::getBalanceMinorUnits)
+                    .orElseGet(() -> accountRepository.findTotalAmountWithSlots(account.getId()));
+        });
+
+        return account.withTotalAmount(totalAmount);
+    }
+
+    @Override
+    public TransferResult transfer(final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        final Money money = amount.toMoney();
+        final long minorUnits = money.getMinorUnits();
+        final boolean sameAccount = debtorAccount.getId().equals(beneficiaryAccount.getId());
+        final DerivedBalance debtorBalance;
+        final DerivedBalance beneficiaryBalance;
+        final Transaction debitTransaction;
+        final Transaction creditTransaction;
+
+        LOGGER.debug("Appending the transactions of the transfer. Accounts not updated");
+        try {
+            lockSplitAccounts(Arrays.asList(debtorAccount, beneficiaryAccount));
+
+            // Both the balances are derived before appending the transactions
+            final DerivedBalance debtorBefore = balanceOf(debtorAccount);
+            if (debtorBefore.getBalanceMinorUnits() < minorUnits) {
+                throw new FundsNotEnoughException("Fund not enough for amount: " + money.toBigDecimal().toPlainString());
+            }
+            final DerivedBalance beneficiaryBefore = sameAccount ? null : balanceOf(beneficiaryAccount);
+
+            final long start = System.nanoTime();
+            debitTransaction = this.transactionsRepository.addTransaction(money, debtorAccount, TransactionType.DEBIT);
+            creditTransaction = this.transactionsRepository.addTransaction(money, beneficiaryAccount, TransactionType.CREDIT);
+            transferMetrics.record(TransferMetrics.Phase.TRANSACTION_INSERT, System.nanoTime() - start);
+
+            if (sameAccount) {
+                debtorBalance = debtorBefore.append(debitTransaction.getId(), -minorUnits).append(creditTransaction.getId(), minorUnits);
+                beneficiaryBalance = debtorBalance;
+            } else {
+                debtorBalance = debtorBefore.append(debitTransaction.getId(), -minorUnits);
+                beneficiaryBalance = beneficiaryBefore.append(creditTransaction.getId(), minorUnits);
+            }
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", e, Response.Status.CONFLICT);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the funds transfer.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+
+        balances.updateOnCommit(Arrays.asList(debtorBalance, beneficiaryBalance));
+
+        final TransferResult result = new TransferResult();
+        result.setDebtorAccount(debtorAccount.withTotalAmount(debtorBalance.getBalanceMinorUnits()));
+        result.setBeneficiaryAccount(beneficiaryAccount.withTotalAmount(beneficiaryBalance.getBalanceMinorUnits()));
+        result.addTransaction(debitTransaction);
+        result.addTransaction(creditTransaction);
+
+        return result;
+    }
+
+    /**
+     * The batch is planned on the balances derived under lock and its transactions are appended with a single JDBC
+     * batch. Their ids are not read back, so the new balances of the accounts are derived again afterwards, still under
+     * lock.
+     */
+    @Override
+    public List<BatchItemResult> transferBatch(final List<BatchTransfer> transfers, final BatchMode batchMode) {
+        final Map<Long, Account> accounts = new TreeMap<>();
+        for (final BatchTransfer transfer : transfers) {
+            accounts.putIfAbsent(transfer.getDebtorAccount().getId(), transfer.getDebtorAccount());
+            accounts.putIfAbsent(transfer.getBeneficiaryAccount().getId(), transfer.getBeneficiaryAccount());
+        }
+
+        LOGGER.debug("Planning a batch of {} transfers on {} accounts.", transfers.size(), accounts.size());
+        try {
+            lockSplitAccounts(accounts.values());
+
+            final Map<Long, Long> startBalances = new HashMap<>();
+            accounts.forEach((id, account) -> startBalances.put(id, balanceOf(account).getBalanceMinorUnits()));
+
+            final BatchTransferPlan plan = BatchTransferPlan.of(transfers, startBalances, batchMode);
+            if (plan.hasChanges()) {
+                this.transactionsRepository.insertAll(plan.getTransactions());
+
+                final List<DerivedBalance> updated = new ArrayList<>(plan.getDeltas().size());
+                plan.getDeltas().keySet().forEach(id -> updated.add(balanceOf(accounts.get(id))));
+                balances.updateOnCommit(updated);
+            }
+
+            return plan.getResults();
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", e, Response.Status.CONFLICT);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the batch of funds transfers.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+    }
+
+    /**
+     * The split accounts are not locked by the {@link eu.davidemartorana.banking.accounts.services.AccountsService}:
+     * they are locked here, with their slots, in ascending id order.
+     */
+    private void lockSplitAccounts(final Iterable<Account> accounts) {
+        final Map<Long, Account> splitAccounts = new TreeMap<>();
+        accounts.forEach(account -> {
+            if (account.isSplit()) {
+                splitAccounts.put(account.getId(), account);
+            }
+        });
+        splitAccounts.values().forEach(accountRepository::lockBalanceSlots);
+    }
+
+    /**
+     * Derives the balance of a locked account, taking its first snapshot if it has no valid one.
+     */
+    private DerivedBalance balanceOf(final Account account) {
+        final Optional<DerivedBalance> balance = snapshotRepository.findBalance(account.getId());
+        if (balance.isPresent()) {
+            return balance.get();
+        }
+
+        LOGGER.info("Account with id {} has no valid balance snapshot: taking one from its total amount.", account.getId());
+        snapshotRepository.insertFromTotalAmount(account.getId());
+
+        return snapshotRepository.findBalance(account.getId())
+                .orElseThrow(() -> new IllegalStateException("No balance snapshot taken for the account with id " + account.getId()));
+    }
+}
@@ -0,0 +1,22 @@
+package eu.davidemartorana.banking.accounts.exceptions;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * A runtime exception indicating an account has been changed by another transaction since it was read, so the
+ * operation has not been performed. There is a {@link javax.ws.rs.core.Response.Status#CONFLICT conflict} with a
+ * concurrent request: the operation can be tried again.
+ *
+ * @author Davide Martorana
+ */
+public class ConcurrentUpdateException extends WebApplicationException {
+
+    public ConcurrentUpdateException(String message) {
+        super(message, Response.Status.CONFLICT);
+    }
+
+    public ConcurrentUpdateException(String message, Throwable cause) {
+        super(message, cause, Response.Status.CONFLICT);
+    }
+}
@@ -0,0 +1,22 @@
+package eu.davidemartorana.banking.accounts.exceptions;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * A runtime exception indicating that a transfer with the same {@code Idempotency-Key} has already been committed, or
+ * it is being committed right now. The transfer is not performed: there is a
+ * {@link javax.ws.rs.core.Response.Status#CONFLICT conflict} with the request already received.
+ *
+ * @author Davide Martorana
+ */
+public class DuplicateTransferRequestException extends WebApplicationException {
+
+    public DuplicateTransferRequestException(String message) {
+        super(message, Response.Status.CONFLICT);
+    }
+
+    public DuplicateTransferRequestException(String message, Throwable cause) {
+        super(message, cause, Response.Status.CONFLICT);
+    }
+}
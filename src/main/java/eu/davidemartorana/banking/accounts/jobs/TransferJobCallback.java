@@ -0,0 +1,194 @@
+package eu.davidemartorana.banking.accounts.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.AsyncConfig;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
+import io.dropwizard.setup.Environment;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Notifies the callback URL of a completed transfer job: a {@code POST} with the {@link TransferJobResponse} as JSON.
+ * The redirects are not followed, and any status other than {@code 2xx} is a failure.
+ *
+ * Only the {@link AsyncConfig#getCallbackHosts() configured hosts} are notified, and their addresses are resolved
+ * before connecting: loopback, link-local and site-local addresses are refused unless
+ * {@link AsyncConfig#isPrivateCallbackAddresses() allowed}, so a callback cannot reach the internal network. The
+ * request is sent to the addresses checked, with the host in the {@code Host} header (and in the SNI of {@code https}),
+ * so a DNS answer changed after the check is never used.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class TransferJobCallback {
+
+    private static final int MAX_STATUS_LINE_LENGTH = 1024;
+
+    private final ObjectMapper objectMapper;
+
+    private final int timeoutMillis;
+
+    private final Set<String> hosts;
+
+    private final boolean privateAddresses;
+
+    @Inject
+    public TransferJobCallback(final ApplicationConfig applicationConfig, final Environment environment) {
+        this(environment.getObjectMapper(), applicationConfig.getTransfers().getAsync());
+    }
+
+    public TransferJobCallback(final ObjectMapper objectMapper, final AsyncConfig asyncConfig) {
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = (int) asyncConfig.getCallbackTimeout().toMilliseconds();
+        this.hosts = asyncConfig.getCallbackHosts().stream().map(host -> host.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.privateAddresses = asyncConfig.isPrivateCallbackAddresses();
+    }
+
+    /**
+     * Checks the callback URL of a transfer when it is submitted, without resolving its host.
+     *
+     * @param callbackUrl - the URL to notify
+     *
+     * @throws BadRequestException if the URL is not valid or its host is not one of the configured ones.
+     */
+    public void checkUrl(final String callbackUrl) {
+        try {
+            if (!isAllowed(new URL(callbackUrl).getHost())) {
+                throw new BadRequestException("The host of the callback URL is not allowed.");
+            }
+        } catch (final MalformedURLException e) {
+            throw new BadRequestException("The callback URL is not valid.", e);
+        }
+    }
+
+    /**
+     * @param callbackUrl - the URL to notify
+     * @param response - the status of the completed job
+     *
+     * @throws IOException if the URL is not allowed, cannot be reached or it does not answer with a {@code 2xx} status.
+     */
+    public void notify(final String callbackUrl, final TransferJobResponse response) throws IOException {
+        final URL url = new URL(callbackUrl);
+        if (!isAllowed(url.getHost())) {
+            throw new IOException("The host of the callback URL is not allowed: " + url.getHost());
+        }
+        final InetAddress[] addresses = InetAddress.getAllByName(url.getHost());
+        for (final InetAddress address : addresses) {
+            if (!privateAddresses && isPrivate(address)) {
+                throw new IOException("The host of the callback URL resolves to a private address: " + url.getHost());
+            }
+        }
+
+        final byte[] body = objectMapper.writeValueAsBytes(response);
+        // Connected to the addresses just checked: the host is not resolved again, so it cannot be rebound in between
+        try (Socket socket = connect(url, addresses)) {
+            final OutputStream output = socket.getOutputStream();
+            final String target = url.getFile().isEmpty() ? "/" : url.getFile();
+            final String host = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+            output.write(("POST " + target + " HTTP/1.1\r\n"
+                    + HttpHeaders.HOST + ": " + host + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_JSON + "\r\n"
+                    + HttpHeaders.CONTENT_LENGTH + ": " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.write(body);
+            output.flush();
+
+            final int status = readStatus(socket.getInputStream());
+            if (status < 200 || status >= 300) {
+                throw new IOException("The callback URL answered with status " + status + ".");
+            }
+        }
+    }
+
+    private Socket connect(final URL url, final InetAddress[] addresses) throws IOException {
+        final boolean https = "https".equalsIgnoreCase(url.getProtocol());
+        if (!https && !"http".equalsIgnoreCase(url.getProtocol())) {
+            throw new IOException("The protocol of the callback URL is not supported: " + url.getProtocol());
+        }
+        final int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+
+        IOException failure = null;
+        for (final InetAddress address : addresses) {
+            final Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address, port), timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                if (!https) {
+                    return socket;
+                }
+
+                // The certificate is verified against the host of the URL, which is also sent as SNI
+                final SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, url.getHost(), port, true);
+                final SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+                return sslSocket;
+            } catch (final IOException e) {
+                socket.close();
+                failure = e;
+            }
+        }
+
+        throw failure;
+    }
+
+    /**
+     * @param input - the response of the callback URL
+     *
+     * @return the status code of its status line.
+     */
+    private static int readStatus(final InputStream input) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        for (int next = input.read(); next != '\n'; next = input.read()) {
+            if (next == -1 || line.length() > MAX_STATUS_LINE_LENGTH) {
+                throw new IOException("The callback URL did not answer with a valid status line.");
+            }
+            line.append((char) next);
+        }
+
+        // HTTP/1.1 204 No Content
+        final String[] parts = line.toString().trim().split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("The callback URL did not answer with a valid status line.");
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (final NumberFormatException e) {
+            throw new IOException("The callback URL did not answer with a valid status line.", e);
+        }
+    }
+
+    private boolean isAllowed(final String host) {
+        return hosts.contains(host.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isPrivate(final InetAddress address) {
+        return address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()
+                // IPv6 unique local addresses (fc00::/7), the successors of the site-local ones
+                || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc);
+    }
+}
@@ -0,0 +1,446 @@
+package eu.davidemartorana.banking.accounts.jobs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.AsyncConfig;
+import eu.davidemartorana.banking.accounts.dao.TransferJobRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJob;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJobStatus;
+import eu.davidemartorana.banking.accounts.exceptions.DuplicateTransferRequestException;
+import eu.davidemartorana.banking.accounts.rest.representation.AsyncTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue of the transfers submitted asynchronously, executed by a pool of worker threads through the
+ * {@link TransferExecutor} in use, so the request threads never wait on the database locks.
+ *
+ * A {@link TransferJob} is committed before its id is given to the client, and completed with the outcome of the
+ * transfer. The jobs still pending when the application stops stay in the database and are queued again at start-up.
+ * Every transfer is executed with an {@code Idempotency-Key} (the one of the client, or one derived from the job id),
+ * so a job executed again after a crash is not applied twice.
+ *
+ * A job is queued again after a {@link AsyncConfig#getRetryBackoff() backoff} when the executor is busy or a transfer
+ * with the same {@code Idempotency-Key} is in progress, and when it fails unexpectedly, up to {@link AsyncConfig#getMaxAttempts() max attempts}: then it is marked
+ * {@link TransferJobStatus#FAILED failed} with status {@code 500}.
+ *
+ * The callbacks of the completed jobs are sent by their own {@link AsyncConfig#getCallbackWorkers() threads}, so a
+ * slow callback URL does not hold up the transfers; once {@link AsyncConfig#getCallbackQueueCapacity() too many} are
+ * waiting, the new ones are dropped.
+ *
+ * The depth of the queue, the age of its oldest job and the time the jobs waited are published in the
+ * {@link MetricRegistry}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class TransferJobQueue implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferJobQueue.class);
+
+    /**
+     * Prefix of the {@code Idempotency-Key} of the jobs submitted without one.
+     */
+    public static final String JOB_KEY_PREFIX = "transfer-job-";
+
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+
+    private final TransferJobRepository transferJobRepository;
+
+    private final TransferExecutor transferExecutor;
+
+    private final IdempotencyService idempotencyService;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final TransferJobCallback callback;
+
+    private final AsyncConfig asyncConfig;
+
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<QueuedJob> queue = new DelayQueue<>();
+
+    /**
+     * Sends the callbacks, so a slow callback URL never holds up the workers.
+     */
+    private final ThreadPoolExecutor callbackExecutor;
+
+    private final Timer wait;
+
+    private final Meter completed;
+
+    private final Meter failed;
+
+    private final Meter rejected;
+
+    private final Meter callbackFailures;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @Inject
+    public TransferJobQueue(final TransferJobRepository transferJobRepository, final TransferExecutor transferExecutor,
+                            final IdempotencyService idempotencyService, final UnitOfWorkRunner unitOfWorkRunner,
+                            final TransferJobCallback callback, final ApplicationConfig applicationConfig,
+                            final MetricRegistry metricRegistry, final Environment environment) {
+        this(transferJobRepository, transferExecutor, idempotencyService, unitOfWorkRunner, callback,
+                applicationConfig.getTransfers().getAsync(), metricRegistry, environment.getObjectMapper());
+    }
+
+    public TransferJobQueue(final TransferJobRepository transferJobRepository, final TransferExecutor transferExecutor,
+                            final IdempotencyService idempotencyService, final UnitOfWorkRunner unitOfWorkRunner,
+                            final TransferJobCallback callback, final AsyncConfig asyncConfig,
+                            final MetricRegistry metricRegistry, final ObjectMapper objectMapper) {
+        this.transferJobRepository = transferJobRepository;
+        this.transferExecutor = transferExecutor;
+        this.idempotencyService = idempotencyService;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.callback = callback;
+        this.asyncConfig = asyncConfig;
+        this.objectMapper = objectMapper;
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        this.callbackExecutor = new ThreadPoolExecutor(asyncConfig.getCallbackWorkers(), asyncConfig.getCallbackWorkers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(asyncConfig.getCallbackQueueCapacity()), runnable -> {
+                    final Thread thread = new Thread(runnable, "transfer-job-callback-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        metricRegistry.register(MetricRegistry.name(TransferJobQueue.class, "queue-depth"), (Gauge<Integer>) queue::size);
+        metricRegistry.register(MetricRegistry.name(TransferJobQueue.class, "queue-age"), (Gauge<Long>) this::oldestAgeMillis);
+        this.wait = metricRegistry.timer(MetricRegistry.name(TransferJobQueue.class, "wait"));
+        this.completed = metricRegistry.meter(MetricRegistry.name(TransferJobQueue.class, "completed"));
+        this.failed = metricRegistry.meter(MetricRegistry.name(TransferJobQueue.class, "failed"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(TransferJobQueue.class, "rejected"));
+        this.callbackFailures = metricRegistry.meter(MetricRegistry.name(TransferJobQueue.class, "callback-failures"));
+        metricRegistry.register(MetricRegistry.name(TransferJobQueue.class, "callback-queue-depth"), (Gauge<Integer>) () -> callbackExecutor.getQueue().size());
+    }
+
+    /**
+     * Persists the transfer as a pending job and queues it, without waiting for its execution.
+     *
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction, with its {@code Idempotency-Key} if any
+     *
+     * @return the status of the job, still {@link TransferJobStatus#PENDING pending}.
+     *
+     * @throws BadRequestException if the account ids or the callback URL are not valid.
+     * @throws ServiceUnavailableException if the queue is full or not running.
+     */
+    public TransferJobResponse submit(final String debtorAccountUUID, final AsyncTransferRequest transferRequest) {
+        if (!running) {
+            throw new ServiceUnavailableException("The transfer queue is not running. Please try later.");
+        }
+        if (queue.size() >= asyncConfig.getQueueCapacity()) {
+            rejected.mark();
+            LOGGER.warn("Transfer queue full. Transfer from account uuid [{}] rejected.", debtorAccountUUID);
+            throw new ServiceUnavailableException("Too many transfers waiting. Please try later.");
+        }
+        // Rather than failing on the columns of the job
+        if (!isUUID(debtorAccountUUID)) {
+            throw new BadRequestException("The debtor account id is not valid.");
+        }
+        if (!isUUID(transferRequest.getBeneficiaryAccountId())) {
+            throw new BadRequestException("Beneficiary Account with given id was not found.");
+        }
+        if (transferRequest.getIdempotencyKey() != null) {
+            IdempotencyService.checkKey(transferRequest.getIdempotencyKey());
+        }
+        if (transferRequest.getCallbackUrl() != null) {
+            callback.checkUrl(transferRequest.getCallbackUrl());
+        }
+
+        final TransferJob job = TransferJob.create(debtorAccountUUID, transferRequest.getBeneficiaryAccountId(),
+                transferRequest.getAmount().toMoney(), transferRequest.getIdempotencyKey(), transferRequest.getCallbackUrl());
+        // Committed before the client gets the id: the job survives a restart from now on
+        unitOfWorkRunner.inUnitOfWork(() -> transferJobRepository.insert(job));
+        queue.add(new QueuedJob(job));
+
+        return TransferJobResponse.of(job, null);
+    }
+
+    /**
+     * Reads the job in the current unit of work.
+     *
+     * @param id - the id of the job
+     *
+     * @return the status of the job, empty if it does not exist.
+     */
+    public Optional<TransferJobResponse> find(final String id) {
+        return transferJobRepository.findById(id).map(this::toResponse);
+    }
+
+    /**
+     * @return the number of jobs waiting to be executed.
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        final List<TransferJob> pendingJobs = unitOfWorkRunner.inUnitOfWork(transferJobRepository::findPending);
+        LOGGER.info("Starting the transfer job queue. Workers: {}, pending jobs: {}", asyncConfig.getWorkers(), pendingJobs.size());
+        pendingJobs.forEach(job -> queue.add(new QueuedJob(job)));
+
+        running = true;
+        for (int index = 0; index < asyncConfig.getWorkers(); index++) {
+            final Thread worker = new Thread(this::workLoop, "transfer-job-worker-" + index);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * The workers complete the job they are executing; the jobs still waiting are executed at the next start-up. The
+     * callbacks already queued are sent, for up to twice the callback timeout.
+     */
+    @Override
+    public void stop() throws Exception {
+        if (!running) {
+            return;
+        }
+
+        LOGGER.info("Stopping the transfer job queue. Jobs left pending: {}", queue.size());
+        running = false;
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        workers.clear();
+
+        callbackExecutor.shutdown();
+        if (!callbackExecutor.awaitTermination(2 * asyncConfig.getCallbackTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Transfer job callbacks not sent in time: {} callbacks dropped", callbackExecutor.getQueue().size());
+            callbackExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param value - the id to check
+     *
+     * @return {@code true} if the value is a UUID in its canonical form.
+     */
+    private static boolean isUUID(final String value) {
+        if (value == null) {
+            return false;
+        }
+
+        try {
+            // fromString accepts shorter groups too: only the canonical form reads back the same
+            return UUID.fromString(value).toString().equals(value);
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private long oldestAgeMillis() {
+        final QueuedJob oldest = queue.peek();
+        return oldest == null ? 0L : Math.max(0L, System.currentTimeMillis() - oldest.createdAtMillis);
+    }
+
+    private void workLoop() {
+        while (running) {
+            final QueuedJob queuedJob;
+            try {
+                queuedJob = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Transfer job worker interrupted. Jobs left pending: {}", queue.size());
+                return;
+            }
+
+            if (queuedJob != null) {
+                try {
+                    execute(queuedJob);
+                } catch (final RuntimeException e) {
+                    retryOrFail(queuedJob, e);
+                }
+            }
+        }
+    }
+
+    private void retryOrFail(final QueuedJob queuedJob, final RuntimeException e) {
+        if (queuedJob.attempts + 1 < asyncConfig.getMaxAttempts()) {
+            LOGGER.warn("Unable to complete the transfer job [{}], attempt {}. Queued again.", queuedJob.id, queuedJob.attempts + 1, e);
+            if (running) {
+                queue.add(queuedJob.retry(asyncConfig.getRetryBackoff().toMilliseconds() << Math.min(queuedJob.attempts, 10)));
+            }
+            return;
+        }
+
+        LOGGER.error("Unable to complete the transfer job [{}] after {} attempts.", queuedJob.id, queuedJob.attempts + 1, e);
+        try {
+            final Optional<TransferJob> optionalJob = unitOfWorkRunner.inUnitOfWork(() -> transferJobRepository.findById(queuedJob.id));
+            if (optionalJob.isPresent() && optionalJob.get().getStatus() == TransferJobStatus.PENDING) {
+                final TransferJob job = optionalJob.get();
+                job.setResponseStatus(500);
+                job.setMessage("The transfer could not be completed.");
+                job.setStatus(TransferJobStatus.FAILED);
+                complete(job);
+            }
+        } catch (final RuntimeException failure) {
+            // Still pending in the database: executed again at the next start-up
+            LOGGER.error("Unable to mark the transfer job [{}] as failed.", queuedJob.id, failure);
+        }
+    }
+
+    private void execute(final QueuedJob queuedJob) {
+        final Optional<TransferJob> optionalJob = unitOfWorkRunner.inUnitOfWork(() -> transferJobRepository.findById(queuedJob.id));
+        if (!optionalJob.isPresent() || optionalJob.get().getStatus() != TransferJobStatus.PENDING) {
+            return;
+        }
+        wait.update(System.currentTimeMillis() - queuedJob.createdAtMillis, TimeUnit.MILLISECONDS);
+
+        final TransferJob job = optionalJob.get();
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(job.getBeneficiaryAccountUUID());
+        transferRequest.setAmount(new Amount(job.getAmount().toBigDecimal(), job.getCurrency()));
+        final String idempotencyKey = job.getIdempotencyKey() != null ? job.getIdempotencyKey() : JOB_KEY_PREFIX + job.getId();
+
+        try {
+            final TransferResponse response = idempotencyService.execute(idempotencyKey, job.getDebtorAccountUUID(), transferRequest,
+                    () -> transferExecutor.execute(job.getDebtorAccountUUID(), transferRequest));
+            job.setResponseStatus(200);
+            job.setResponse(objectMapper.writeValueAsString(response));
+            job.setStatus(TransferJobStatus.COMPLETED);
+        } catch (final ServiceUnavailableException | DuplicateTransferRequestException e) {
+            if (running) {
+                // The executor is busy, or a transfer with the same key is in progress: the job waits for its turn
+                // again, without spinning on the executor, and then gets the response of the committed transfer
+                queue.add(queuedJob.delay(asyncConfig.getRetryBackoff().toMilliseconds()));
+            }
+            return;
+        } catch (final WebApplicationException e) {
+            job.setResponseStatus(e.getResponse().getStatus());
+            job.setMessage(e.getMessage());
+            job.setStatus(TransferJobStatus.FAILED);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to write the response of the transfer job " + job.getId(), e);
+        }
+
+        complete(job);
+    }
+
+    private void complete(final TransferJob job) {
+        job.setCompletedDateTime(DateTime.now());
+        unitOfWorkRunner.inUnitOfWork(() -> transferJobRepository.update(job));
+        (job.getStatus() == TransferJobStatus.COMPLETED ? completed : failed).mark();
+        LOGGER.debug("Transfer job [{}] {}.", job.getId(), job.getStatus());
+
+        if (job.getCallbackUrl() != null) {
+            final TransferJobResponse response = toResponse(job);
+            try {
+                callbackExecutor.execute(() -> notify(job, response));
+            } catch (final RejectedExecutionException e) {
+                callbackFailures.mark();
+                LOGGER.warn("Too many callbacks waiting. The completion of the transfer job [{}] is not notified to [{}].", job.getId(), job.getCallbackUrl());
+            }
+        }
+    }
+
+    private void notify(final TransferJob job, final TransferJobResponse response) {
+        try {
+            callback.notify(job.getCallbackUrl(), response);
+        } catch (final IOException | RuntimeException e) {
+            callbackFailures.mark();
+            LOGGER.warn("Unable to notify the completion of the transfer job [{}] to [{}].", job.getId(), job.getCallbackUrl(), e);
+        }
+    }
+
+    private TransferJobResponse toResponse(final TransferJob job) {
+        if (job.getResponse() == null) {
+            return TransferJobResponse.of(job, null);
+        }
+
+        try {
+            return TransferJobResponse.of(job, objectMapper.readValue(job.getResponse(), TransferResponse.class));
+        } catch (final IOException e) {
+            throw new WebApplicationException("The response of the transfer job cannot be read.", e);
+        }
+    }
+
+    private static final class QueuedJob implements Delayed {
+
+        private final String id;
+
+        private final long createdAtMillis;
+
+        private final int attempts;
+
+        private final long readyAtNanos;
+
+        private QueuedJob(final TransferJob job) {
+            this(job.getId(), job.getCreatedDateTime().getMillis(), 0, System.nanoTime());
+        }
+
+        private QueuedJob(final String id, final long createdAtMillis, final int attempts, final long readyAtNanos) {
+            this.id = id;
+            this.createdAtMillis = createdAtMillis;
+            this.attempts = attempts;
+            this.readyAtNanos = readyAtNanos;
+        }
+
+        /**
+         * @param delayMillis - the wait before the job is executed again
+         *
+         * @return the same attempt, executed after the delay.
+         */
+        private QueuedJob delay(final long delayMillis) {
+            return new QueuedJob(id, createdAtMillis, attempts, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+
+        /**
+         * @param delayMillis - the wait before the job is executed again
+         *
+         * @return the next attempt, executed after the delay.
+         */
+        private QueuedJob retry(final long delayMillis) {
+            return new QueuedJob(id, createdAtMillis, attempts + 1, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(readyAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return Long.compare(readyAtNanos, ((QueuedJob) other).readyAtNanos);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory balance of a single account, expressed in minor units of its currency (e.g. pence for GBP).
+ * All the changes are applied with compare-and-set operations, hence no lock is ever taken.
+ *
+ * A transfer is applied in two steps around the append to the journal, so the balance keeps the room left for credits
+ * too: a credit reserves its room with {@link #tryReserveCredit(long)} before the append, hence it can never overflow
+ * once journaled, and a debit gives its room back with {@link #settleDebit(long)} only once journaled, hence a debit
+ * refunded can never overflow either.
+ *
+ * @author Davide Martorana
+ */
+public class AccountBalance {
+
+    /**
+     * Value returned by {@link #tryDebit(long)} when the balance does not cover the requested amount.
+     */
+    public static final long INSUFFICIENT_FUNDS = -1L;
+
+    private final AtomicLong minorUnits;
+
+    /**
+     * Minor units that can still be credited: {@link Long#MAX_VALUE} less the balance, the credits reserved and the
+     * debits not settled yet.
+     */
+    private final AtomicLong creditRoom;
+
+    public AccountBalance(final long minorUnits) {
+        this.minorUnits = new AtomicLong(minorUnits);
+        this.creditRoom = new AtomicLong(Long.MAX_VALUE - Math.max(0L, minorUnits));
+    }
+
+    /**
+     * Decreases the balance by {@code amount} only if the balance is greater or equals to it. The room the debit
+     * frees for the credits is given back by {@link #settleDebit(long)}.
+     *
+     * @param amount - minor units to subtract
+     *
+     * @return the new balance, or {@link #INSUFFICIENT_FUNDS} if the balance has not been changed.
+     */
+    public long tryDebit(final long amount) {
+        long current;
+        do {
+            current = minorUnits.get();
+            if (current < amount) {
+                return INSUFFICIENT_FUNDS;
+            }
+        } while (!minorUnits.compareAndSet(current, current - amount));
+
+        return current - amount;
+    }
+
+    /**
+     * Gives back to the room for credits the {@code amount} debited with {@link #tryDebit(long)}, once the debit has
+     * been journaled.
+     *
+     * @param amount - minor units debited
+     */
+    public void settleDebit(final long amount) {
+        creditRoom.addAndGet(amount);
+    }
+
+    /**
+     * Gives back the {@code amount} debited with {@link #tryDebit(long)}, when the debit has not been journaled.
+     *
+     * @param amount - minor units debited
+     */
+    public void refund(final long amount) {
+        minorUnits.addAndGet(amount);
+    }
+
+    /**
+     * Reserves the room for crediting {@code amount} only if the balance, with all the credits reserved, can take it.
+     *
+     * @param amount - minor units to credit
+     *
+     * @return {@code true} if reserved, {@code false} if the credit would overflow the balance.
+     */
+    public boolean tryReserveCredit(final long amount) {
+        long current;
+        do {
+            current = creditRoom.get();
+            if (current < amount) {
+                return false;
+            }
+        } while (!creditRoom.compareAndSet(current, current - amount));
+
+        return true;
+    }
+
+    /**
+     * Gives back the room reserved with {@link #tryReserveCredit(long)}, when the credit has not been journaled.
+     *
+     * @param amount - minor units reserved
+     */
+    public void releaseCredit(final long amount) {
+        creditRoom.addAndGet(amount);
+    }
+
+    /**
+     * Increases the balance by {@code amount}, reserved with {@link #tryReserveCredit(long)}: it cannot overflow.
+     *
+     * @param amount - minor units to add
+     *
+     * @return the new balance.
+     */
+    public long credit(final long amount) {
+        return minorUnits.addAndGet(amount);
+    }
+
+    public long get() {
+        return minorUnits.get();
+    }
+}
@@ -0,0 +1,42 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+
+import javax.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the in-memory {@link AccountBalance balances}, indexed by account id.
+ *
+ * An account enters the ledger the first time it is involved in a transfer, taking the total read from the database.
+ * From that moment on the ledger is the source of truth for its balance, and the database is updated by the
+ * {@link LedgerJournal}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class Ledger {
+
+    private final ConcurrentMap<Long, AccountBalance> balances = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the balance of the given {@code account}, loading it from the entity if it is not in the ledger yet.
+     *
+     * @param account - account as read from the database
+     *
+     * @return the in-memory balance of the account.
+     */
+    public AccountBalance balanceOf(final Account account) {
+        return balances.computeIfAbsent(account.getId(), id -> new AccountBalance(account.getTotalAmountMinorUnits()));
+    }
+
+    /**
+     * @param accountId - id of the account
+     *
+     * @return the in-memory balance of the account, or {@code null} if the account is not in the ledger.
+     */
+    public AccountBalance find(final Long accountId) {
+        return balances.get(accountId);
+    }
+}
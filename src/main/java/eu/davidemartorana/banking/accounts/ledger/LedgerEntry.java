@@ -0,0 +1,58 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.List;
+
+/**
+ * Transfers applied to the {@link Ledger} and waiting to be written to the database: the debit and credit transactions
+ * of a single transfer, or of a whole batch of transfers, persisted together.
+ *
+ * When the {@link WriteAheadLog} is enabled, the entry carries the sequence of its record in the log.
+ *
+ * @author Davide Martorana
+ */
+public class LedgerEntry {
+
+    private final long sequence;
+
+    private final List<Transaction> transactions;
+
+    public LedgerEntry(final List<Transaction> transactions) {
+        this(0L, transactions);
+    }
+
+    public LedgerEntry(final long sequence, final List<Transaction> transactions) {
+        this.sequence = sequence;
+        this.transactions = transactions;
+    }
+
+    /**
+     * @param sequence - the sequence of the record of the entry in the write-ahead log
+     *
+     * @return a copy of this entry with the given sequence.
+     */
+    public LedgerEntry withSequence(final long sequence) {
+        return new LedgerEntry(sequence, transactions);
+    }
+
+    /**
+     * @return the sequence of the record of the entry in the write-ahead log, 0 if the log is not enabled.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("sequence", sequence)
+                .append("transactions", transactions)
+                .toString();
+    }
+}
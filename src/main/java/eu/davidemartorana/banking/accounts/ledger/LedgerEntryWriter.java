@@ -0,0 +1,70 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.JournalCheckpointRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persists a batch of {@link LedgerEntry ledger entries} in the database, in the unit of work of the caller: the
+ * transactions are inserted with a single JDBC batch and the net change of every account is added to its total amount,
+ * in ascending account id order, so an account written by many transfers of the same batch costs a single update.
+ *
+ * The totals are changed by the entries of the batch only, never overwritten: the database always has the balances
+ * up to the last entry persisted, so the entries coming after it can be replayed from the {@link WriteAheadLog}.
+ *
+ * @author Davide Martorana
+ */
+public class LedgerEntryWriter {
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final JournalCheckpointRepository checkpointRepository;
+
+    @Inject
+    public LedgerEntryWriter(final AccountRepository accountRepository, final TransactionRepository transactionRepository,
+                             final JournalCheckpointRepository checkpointRepository) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    /**
+     * @param batch - the entries to persist, in the order they have been appended
+     * @param logged - whether the entries have been appended to the write-ahead log: its checkpoint is moved to the
+     *               sequence of the last one
+     */
+    public void write(final List<LedgerEntry> batch, final boolean logged) {
+        final List<Transaction> transactions = new ArrayList<>(batch.size() * 2);
+        final Map<Long, Long> deltas = new TreeMap<>();
+        for (final LedgerEntry entry : batch) {
+            for (final Transaction transaction : entry.getTransactions()) {
+                final long amount = TransactionType.CREDIT.value().equals(transaction.getType())
+                        ? transaction.getAmountMinorUnits() : -transaction.getAmountMinorUnits();
+
+                transactions.add(transaction);
+                deltas.merge(transaction.getAccountId(), amount, Math::addExact);
+            }
+        }
+
+        transactionRepository.insertAll(transactions);
+        deltas.forEach((accountId, delta) -> {
+            if (delta != 0) {
+                accountRepository.changeTotalAmount(accountId, delta);
+            }
+        });
+
+        if (logged && !batch.isEmpty()) {
+            checkpointRepository.update(batch.get(batch.size() - 1).getSequence());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.FsyncPolicy;
+import eu.davidemartorana.banking.accounts.config.JournalConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.config.WriteAheadLogConfig;
+import eu.davidemartorana.banking.accounts.dao.JournalCheckpointRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-ahead journal of the {@link Ledger}: every transfer is appended here once applied in memory, and a background
+ * writer persists the journal to the database in batches through the {@link LedgerEntryWriter}.
+ *
+ * When the {@link WriteAheadLog} is enabled, every entry is first appended to the log, in the same order as to the
+ * queue of the writer, and forced to the disk as the {@link FsyncPolicy} says. Every batch persisted moves the
+ * checkpoint of the log forward, in the same transaction, and the segments fully persisted are deleted: the entries
+ * acknowledged but not persisted when the application stops are replayed by the {@link LedgerJournalRecovery} at the
+ * next start-up.
+ *
+ * The writer is started only when the {@link TransferEngineType#IN_MEMORY in-memory} engine is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class LedgerJournal implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private final LedgerEntryWriter entryWriter;
+
+    private final JournalCheckpointRepository checkpointRepository;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final JournalConfig journalConfig;
+
+    private final WriteAheadLogConfig writeAheadLogConfig;
+
+    private final boolean enabled;
+
+    private final BlockingQueue<LedgerEntry> entries;
+
+    /**
+     * Room left in the queue: taken before appending to the log, so an entry in the log always finds room in the queue.
+     */
+    private final Semaphore capacity;
+
+    private final Object appendLock = new Object();
+
+    private volatile WriteAheadLog writeAheadLog;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    private ScheduledExecutorService fsyncScheduler;
+
+    @Inject
+    public LedgerJournal(final LedgerEntryWriter entryWriter, final JournalCheckpointRepository checkpointRepository,
+                         final UnitOfWorkRunner unitOfWorkRunner, final ApplicationConfig applicationConfig) {
+        this.entryWriter = entryWriter;
+        this.checkpointRepository = checkpointRepository;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.journalConfig = applicationConfig.getTransfers().getJournal();
+        this.writeAheadLogConfig = journalConfig.getWriteAheadLog();
+        this.enabled = applicationConfig.getTransfers().getEngine() == TransferEngineType.IN_MEMORY;
+        this.entries = new ArrayBlockingQueue<>(journalConfig.getCapacity());
+        this.capacity = new Semaphore(journalConfig.getCapacity());
+    }
+
+    /**
+     * Appends {@code entry} to the journal, waiting up to the configured append timeout if the journal is full.
+     *
+     * @param entry - the transfer to persist
+     *
+     * @return {@code true} if the entry has been appended, {@code false} if the journal stayed full.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if the entry cannot be appended to the write-ahead log, or forced to the disk with
+     *                              {@link FsyncPolicy#EVERY_WRITE}: it is not appended to the journal.
+     */
+    public boolean append(final LedgerEntry entry) throws InterruptedException {
+        if (!capacity.tryAcquire(journalConfig.getAppendTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+
+        final WriteAheadLog log = writeAheadLog;
+        if (log == null) {
+            entries.add(entry);
+            return true;
+        }
+
+        try {
+            synchronized (appendLock) {
+                final long sequence = log.append(entry.getTransactions());
+                if (writeAheadLogConfig.getFsync() == FsyncPolicy.EVERY_WRITE) {
+                    // Not queued, nor acknowledged, until it is on the disk
+                    log.force();
+                }
+                entries.add(entry.withSequence(sequence));
+            }
+        } catch (final IOException e) {
+            capacity.release();
+            throw new UncheckedIOException("Unable to append to the journal write-ahead log.", e);
+        } catch (final RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of entries not yet persisted.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        if (writeAheadLogConfig.isEnabled()) {
+            final long checkpoint = unitOfWorkRunner.inUnitOfWork(checkpointRepository::findLastSequence);
+            writeAheadLog = WriteAheadLog.open(Paths.get(writeAheadLogConfig.getDirectory()), (int) writeAheadLogConfig.getSegmentSize().toBytes(), checkpoint);
+
+            if (writeAheadLogConfig.getFsync() == FsyncPolicy.PERIODIC) {
+                final long intervalMillis = writeAheadLogConfig.getFsyncInterval().toMilliseconds();
+                fsyncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "ledger-journal-fsync");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                fsyncScheduler.scheduleWithFixedDelay(() -> force(writeAheadLog), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        LOGGER.info("Starting the ledger journal writer.");
+        running = true;
+        writer = new Thread(this::writeLoop, "ledger-journal-writer");
+        writer.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (writer == null) {
+            return;
+        }
+
+        LOGGER.info("Stopping the ledger journal writer. Entries still to persist: {}", entries.size());
+        running = false;
+        writer.join();
+
+        if (fsyncScheduler != null) {
+            fsyncScheduler.shutdown();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    private void writeLoop() {
+        final long flushIntervalMillis = journalConfig.getFlushInterval().toMilliseconds();
+        final List<LedgerEntry> batch = new ArrayList<>(journalConfig.getBatchSize());
+
+        while (running || !entries.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    final LedgerEntry first = entries.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    entries.drainTo(batch, journalConfig.getBatchSize() - 1);
+                    capacity.release(batch.size());
+                }
+
+                write(batch);
+                batch.clear();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Ledger journal writer interrupted. Entries not persisted: {}", batch.size() + entries.size());
+                return;
+            } catch (final RuntimeException e) {
+                if (!running) {
+                    LOGGER.error("Unable to persist the ledger journal while stopping. Entries not persisted: {}", batch.size() + entries.size(), e);
+                    return;
+                }
+                LOGGER.error("Unable to persist a batch of {} ledger entries. Retrying.", batch.size(), e);
+                sleepQuietly(flushIntervalMillis);
+            }
+        }
+    }
+
+    private void write(final List<LedgerEntry> batch) {
+        final WriteAheadLog log = writeAheadLog;
+        if (log != null && writeAheadLogConfig.getFsync() == FsyncPolicy.BATCH) {
+            force(log);
+        }
+
+        unitOfWorkRunner.inUnitOfWork(() -> entryWriter.write(batch, log != null));
+        LOGGER.debug("Persisted {} ledger entries.", batch.size());
+
+        if (log != null) {
+            try {
+                final int released = log.release(batch.get(batch.size() - 1).getSequence());
+                if (released > 0) {
+                    LOGGER.debug("Deleted {} journal segments already persisted.", released);
+                }
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to delete the journal segments already persisted.", e);
+            }
+        }
+    }
+
+    private static void force(final WriteAheadLog log) {
+        try {
+            log.force();
+        } catch (final RuntimeException e) {
+            // Periodic and batch fsync only: the entries are in the queue already, they are persisted to the database anyway
+            LOGGER.error("Unable to force the journal write-ahead log to the disk.", e);
+        }
+    }
+
+    private static void sleepQuietly(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
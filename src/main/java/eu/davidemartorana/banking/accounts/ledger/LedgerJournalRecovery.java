@@ -0,0 +1,112 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.config.JournalConfig;
+import eu.davidemartorana.banking.accounts.config.WriteAheadLogConfig;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.JournalCheckpointRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays into the database the records of the {@link WriteAheadLog} coming after its checkpoint: the transfers
+ * acknowledged by the in-memory ledger but not yet persisted when the application stopped. It runs at start-up, before
+ * the {@link LedgerJournal} and any transfer.
+ *
+ * The records are persisted in batches, each one with the checkpoint in the same transaction, so a recovery stopped
+ * half-way is resumed by the next one. A log whose first record after the checkpoint is not the next one does not
+ * belong to the database, as an in-memory one created again: it is not replayed.
+ *
+ * @author Davide Martorana
+ */
+public class LedgerJournalRecovery {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerJournalRecovery.class);
+
+    private final LedgerEntryWriter entryWriter;
+
+    private final JournalCheckpointRepository checkpointRepository;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    public LedgerJournalRecovery(final LedgerEntryWriter entryWriter, final JournalCheckpointRepository checkpointRepository,
+                                 final UnitOfWorkRunner unitOfWorkRunner) {
+        this.entryWriter = entryWriter;
+        this.checkpointRepository = checkpointRepository;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+    }
+
+    /**
+     * @param sessionFactory - the session factory of the application, before the injector is available
+     *
+     * @return the recovery, using the repositories of the given session factory.
+     */
+    public static LedgerJournalRecovery of(final SessionFactory sessionFactory) {
+        final JournalCheckpointRepository checkpointRepository = new JournalCheckpointRepository(sessionFactory);
+        final LedgerEntryWriter entryWriter = new LedgerEntryWriter(new AccountRepository(sessionFactory),
+                new TransactionRepository(sessionFactory), checkpointRepository);
+
+        return new LedgerJournalRecovery(entryWriter, checkpointRepository, new UnitOfWorkRunner(sessionFactory));
+    }
+
+    /**
+     * @param journalConfig - the settings of the journal and of its write-ahead log
+     *
+     * @return the number of records replayed.
+     *
+     * @throws IOException if the log cannot be read.
+     */
+    public int recover(final JournalConfig journalConfig) throws IOException {
+        final WriteAheadLogConfig config = journalConfig.getWriteAheadLog();
+        final long checkpoint = unitOfWorkRunner.inUnitOfWork(checkpointRepository::findLastSequence);
+
+        try (WriteAheadLog log = WriteAheadLog.open(Paths.get(config.getDirectory()), (int) config.getSegmentSize().toBytes(), checkpoint)) {
+            final long firstSequence = log.findFirstSequenceAfter(checkpoint);
+            if (firstSequence == 0) {
+                LOGGER.info("No journal records to replay after the sequence {}.", checkpoint);
+                log.release(checkpoint);
+                return 0;
+            }
+            if (firstSequence != checkpoint + 1) {
+                LOGGER.warn("The journal does not follow the database: its records after the sequence {} start from {}. Not replayed.",
+                        checkpoint, firstSequence);
+                return 0;
+            }
+
+            final List<LedgerEntry> batch = new ArrayList<>(journalConfig.getBatchSize());
+            final long[] expectedSequence = {firstSequence};
+            final int replayed = log.replay(checkpoint, entry -> {
+                if (entry.getSequence() != expectedSequence[0]) {
+                    throw new IllegalStateException("Journal record " + expectedSequence[0] + " missing, found " + entry.getSequence() + " instead.");
+                }
+                expectedSequence[0]++;
+
+                batch.add(entry);
+                if (batch.size() == journalConfig.getBatchSize()) {
+                    write(batch);
+                }
+            });
+            write(batch);
+
+            log.release(expectedSequence[0] - 1);
+            LOGGER.info("Replayed {} journal records, up to the sequence {}.", replayed, expectedSequence[0] - 1);
+            return replayed;
+        }
+    }
+
+    private void write(final List<LedgerEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        unitOfWorkRunner.inUnitOfWork(() -> entryWriter.write(batch, true));
+        batch.clear();
+    }
+}
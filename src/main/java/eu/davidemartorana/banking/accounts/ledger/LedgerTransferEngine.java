@@ -0,0 +1,277 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.services.BatchTransferPlan;
+import eu.davidemartorana.banking.accounts.services.TransferEngine;
+import org.hibernate.SessionFactory;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TransferEngine} applying the transfers to the in-memory {@link Ledger}, without taking any database lock.
+ *
+ * The debtor balance is reserved with a compare-and-set, as is the room for the credit on the beneficiary balance,
+ * when the transfer is validated. The transfer is appended to the {@link LedgerJournal} only when the transaction of
+ * the current session is about to commit, and only then the beneficiary is credited. A transfer is either fully
+ * applied or not applied at all: if the credit would overflow the beneficiary balance, or the journal cannot accept
+ * it, or its write-ahead log cannot be written, or the transaction rolls back before the append, the reserved amounts
+ * are given back. A transfer journaled is always applied, even if its transaction fails to commit afterwards: the
+ * journal writer persists it anyway.
+ *
+ * A batch is planned on a snapshot of the balances, then only the net change of every account is applied: the net
+ * debits first, in ascending account id order, then the net credits. The whole batch is a single journal entry.
+ * If a concurrent transfer makes a net debit, or the reservation of a net credit, fail, the amounts already reserved
+ * are given back and the batch is planned again.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class LedgerTransferEngine implements TransferEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerTransferEngine.class);
+
+    private static final int BATCH_ATTEMPTS = 3;
+
+    private final Ledger ledger;
+
+    private final LedgerJournal journal;
+
+    private final SessionFactory sessionFactory;
+
+    @Inject
+    public LedgerTransferEngine(final Ledger ledger, final LedgerJournal journal, final SessionFactory sessionFactory) {
+        this.ledger = ledger;
+        this.journal = journal;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public TransferResult transfer(final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        final AccountBalance debtorBalance = ledger.balanceOf(debtorAccount);
+        final AccountBalance beneficiaryBalance = ledger.balanceOf(beneficiaryAccount);
+
+        final Money money = amount.toMoney();
+        final long minorUnits = money.getMinorUnits();
+
+        LOGGER.debug("Reserving {} minor units on the account {}", minorUnits, debtorAccount.getId());
+        final long debtorTotal = debtorBalance.tryDebit(minorUnits);
+        if (debtorTotal == AccountBalance.INSUFFICIENT_FUNDS) {
+            throw new FundsNotEnoughException("Fund not enough for amount: " + amount.getValue().toPlainString());
+        }
+        final Reservation reservation = new Reservation();
+        reservation.add(debtorBalance, -minorUnits);
+        if (!beneficiaryBalance.tryReserveCredit(minorUnits)) {
+            reservation.release();
+            throw new ArithmeticException("The balance of the account " + beneficiaryAccount.getId() + " would overflow");
+        }
+        reservation.add(beneficiaryBalance, minorUnits);
+
+        final DateTime now = DateTime.now();
+        final Transaction debitTransaction = Transaction.create(money, debtorAccount, TransactionType.DEBIT, now);
+        final Transaction creditTransaction = Transaction.create(money, beneficiaryAccount, TransactionType.CREDIT, now);
+        applyOnCommit(reservation, new LedgerEntry(Arrays.asList(debitTransaction, creditTransaction)));
+
+        // The credit is reserved: the beneficiary total once committed, unless other credits commit first
+        final long beneficiaryTotal = beneficiaryBalance.get() + minorUnits;
+        LOGGER.debug("Transfer reserved in the ledger. Debtor total: {}, beneficiary total: {}", debtorTotal, beneficiaryTotal);
+
+        final TransferResult result = new TransferResult();
+        result.setDebtorAccount(debtorAccount.withTotalAmount(debtorTotal));
+        result.setBeneficiaryAccount(beneficiaryAccount.withTotalAmount(beneficiaryTotal));
+        result.addTransaction(debitTransaction);
+        result.addTransaction(creditTransaction);
+
+        return result;
+    }
+    @Override
+    public List<BatchItemResult> transferBatch(final List<BatchTransfer> transfers, final BatchMode batchMode) {
+        final Map<Long, AccountBalance> balances = new HashMap<>();
+        for (final BatchTransfer transfer : transfers) {
+            balances.computeIfAbsent(transfer.getDebtorAccount().getId(), id -> ledger.balanceOf(transfer.getDebtorAccount()));
+            balances.computeIfAbsent(transfer.getBeneficiaryAccount().getId(), id -> ledger.balanceOf(transfer.getBeneficiaryAccount()));
+        }
+
+        for (int attempt = 1; attempt <= BATCH_ATTEMPTS; attempt++) {
+            final Map<Long, Long> startBalances = new HashMap<>();
+            balances.forEach((id, balance) -> startBalances.put(id, balance.get()));
+
+            final BatchTransferPlan plan = BatchTransferPlan.of(transfers, startBalances, batchMode);
+            if (!plan.hasChanges() || apply(plan, balances)) {
+                return plan.getResults();
+            }
+            LOGGER.debug("Balances changed while applying a batch of {} transfers. Attempt {} of {}", transfers.size(), attempt, BATCH_ATTEMPTS);
+        }
+
+        throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", Response.Status.CONFLICT);
+    }
+
+    @Override
+    public Account currentState(final Account account) {
+        final AccountBalance balance = ledger.find(account.getId());
+        if (balance == null) {
+            return account;
+        }
+
+        // The entities read in the current session must not be changed, otherwise Hibernate would flush the new total
+        // concurrently with the journal writer
+        return account.withTotalAmount(balance.get());
+    }
+
+    /**
+     * @return {@code true} if the plan has been reserved, to be applied on commit, {@code false} if a net debit was not
+     * covered any more, or a net credit would overflow.
+     */
+    private boolean apply(final BatchTransferPlan plan, final Map<Long, AccountBalance> balances) {
+        final Reservation reservation = new Reservation();
+        for (final Map.Entry<Long, Long> delta : plan.getDeltas().entrySet()) {
+            if (delta.getValue() >= 0) {
+                continue;
+            }
+
+            final AccountBalance balance = balances.get(delta.getKey());
+            if (balance.tryDebit(-delta.getValue()) == AccountBalance.INSUFFICIENT_FUNDS) {
+                reservation.release();
+                return false;
+            }
+            reservation.add(balance, delta.getValue());
+        }
+        for (final Map.Entry<Long, Long> delta : plan.getDeltas().entrySet()) {
+            if (delta.getValue() <= 0) {
+                continue;
+            }
+
+            final AccountBalance balance = balances.get(delta.getKey());
+            if (!balance.tryReserveCredit(delta.getValue())) {
+                reservation.release();
+                return false;
+            }
+            reservation.add(balance, delta.getValue());
+        }
+
+        applyOnCommit(reservation, new LedgerEntry(plan.getTransactions()));
+        return true;
+    }
+
+    /**
+     * Appends {@code entry} to the journal right before the transaction of the current session commits, failing the
+     * commit if the journal cannot accept it, and applies or gives back the {@code reservation} once the transaction
+     * completes.
+     */
+    private void applyOnCommit(final Reservation reservation, final LedgerEntry entry) {
+        try {
+            sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+
+                private boolean journaled;
+
+                @Override
+                public void beforeCompletion() {
+                    append(entry);
+                    journaled = true;
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    if (journaled) {
+                        if (status != Status.STATUS_COMMITTED) {
+                            LOGGER.warn("Transfer journaled but its transaction did not commit: applied to the ledger anyway.");
+                        }
+                        reservation.apply();
+                    } else {
+                        reservation.release();
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+    }
+
+    private void append(final LedgerEntry entry) {
+        final boolean appended;
+        try {
+            appended = journal.append(entry);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        } catch (final UncheckedIOException e) {
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+
+        if (!appended) {
+            throw new ServiceUnavailableException("The ledger journal is full. Operation not performed, please try later.");
+        }
+    }
+
+    /**
+     * The net debits and the net credits reserved on the balances for a transfer, or a batch of transfers, not
+     * journaled yet.
+     */
+    private static final class Reservation {
+
+        private final List<AccountBalance> balances = new ArrayList<>(2);
+
+        private final List<Long> deltas = new ArrayList<>(2);
+
+        /**
+         * @param balance - the balance reserved
+         * @param delta - the net change reserved, negative for a debit
+         */
+        private void add(final AccountBalance balance, final long delta) {
+            balances.add(balance);
+            deltas.add(delta);
+        }
+
+        /**
+         * Applies the reserved changes, once journaled.
+         */
+        private void apply() {
+            for (int index = 0; index < balances.size(); index++) {
+                final long delta = deltas.get(index);
+                if (delta < 0) {
+                    balances.get(index).settleDebit(-delta);
+                } else {
+                    balances.get(index).credit(delta);
+                }
+            }
+        }
+
+        /**
+         * Gives back the reserved changes, not journaled.
+         */
+        private void release() {
+            for (int index = 0; index < balances.size(); index++) {
+                final long delta = deltas.get(index);
+                if (delta < 0) {
+                    balances.get(index).refund(-delta);
+                } else {
+                    balances.get(index).releaseCredit(delta);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package eu.davidemartorana.banking.accounts.ledger;
+
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the {@link LedgerEntry ledger entries}, written through memory-mapped files before the entries are
+ * acknowledged, so the ones not yet persisted in the database survive a crash.
+ *
+ * The log is a sequence of segments of a fixed size, each one named after the sequence of its first record: a new
+ * segment is started when the next record does not fit in the current one, and the segments whose records have all been
+ * persisted are deleted by {@link #release(long)}. Every record is:
+ *
+ * <pre>
+ *     int length | int CRC32 of the body | long sequence | int count | count * transaction
+ * </pre>
+ *
+ * where a transaction is its account id, type, amount in minor units, currency, time and uuid. The unused part of a
+ * segment is left zeroed, so a zero length marks its end.
+ *
+ * When the log is opened, every segment is read again: a record cut by a crash, with a wrong CRC or length, ends the
+ * last segment and is zeroed, while in any other segment it means the log is corrupted and cannot be opened.
+ *
+ * The records are appended by a single thread at a time, while {@link #force()} can be called concurrently.
+ *
+ * @author Davide Martorana
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("ledger-(\\d{20})\\.wal");
+
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+
+    private static final int BODY_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private static final int CURRENCY_BYTES = 3;
+
+    private static final int TRANSACTION_BYTES = Long.BYTES + Byte.BYTES + Long.BYTES + CURRENCY_BYTES + Long.BYTES + 2 * Long.BYTES;
+
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final NavigableMap<Long, Path> segments;
+
+    private final CRC32 crc = new CRC32();
+
+    private volatile MappedByteBuffer current;
+
+    private long lastSequence;
+
+    private WriteAheadLog(final Path directory, final int segmentSize, final NavigableMap<Long, Path> segments,
+                          final MappedByteBuffer current, final long lastSequence) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segments = segments;
+        this.current = current;
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * Opens the log in {@code directory}, created if missing, reading all its segments again: the end of a record cut
+     * by a crash is zeroed, so the next record is appended in its place.
+     *
+     * @param directory - the directory of the segments
+     * @param segmentSize - the size in bytes of a new segment
+     * @param afterSequence - the sequence of the last record persisted in the database: the next record appended has
+     *                      a later sequence, even if the log has no record after it
+     *
+     * @return the log, ready for appending.
+     *
+     * @throws IOException if the segments cannot be read or written.
+     * @throws IllegalStateException if a segment other than the last one has a corrupted record.
+     */
+    public static WriteAheadLog open(final Path directory, final int segmentSize, final long afterSequence) throws IOException {
+        Files.createDirectories(directory);
+
+        final NavigableMap<Long, Path> segments = findSegments(directory);
+        long lastSequence = afterSequence;
+        MappedByteBuffer current = null;
+
+        for (final Map.Entry<Long, Path> segment : segments.entrySet()) {
+            final boolean last = segment.getKey().equals(segments.lastKey());
+            final MappedByteBuffer buffer = map(segment.getValue(), FileChannel.MapMode.READ_WRITE, 0);
+            final Scan scan = scan(buffer, Long.MAX_VALUE, null);
+
+            if (scan.torn) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupted record in the journal segment " + segment.getValue() + " at position " + scan.end
+                            + ", followed by other segments. The journal cannot be recovered.");
+                }
+                LOGGER.warn("Record cut at position {} of the journal segment {}: discarded.", scan.end, segment.getValue());
+                zero(buffer, scan.end, buffer.limit());
+                buffer.force();
+            }
+
+            lastSequence = Math.max(lastSequence, scan.lastSequence);
+            if (last) {
+                buffer.position(scan.end);
+                current = buffer;
+            }
+        }
+
+        LOGGER.info("Journal opened in {} with {} segments. Last sequence: {}", directory, segments.size(), lastSequence);
+        return new WriteAheadLog(directory, segmentSize, segments, current, lastSequence);
+    }
+
+    /**
+     * Reads again the records with a sequence after {@code afterSequence}, in order.
+     *
+     * @param afterSequence - the sequence of the last record not to read
+     * @param consumer - receives the entry of every record read, with its sequence
+     *
+     * @return the number of records read.
+     *
+     * @throws IOException if the segments cannot be read.
+     */
+    public synchronized int replay(final long afterSequence, final Consumer<LedgerEntry> consumer) throws IOException {
+        final Long firstSegment = segments.floorKey(afterSequence + 1);
+        int replayed = 0;
+
+        for (final Path segment : segments.tailMap(firstSegment == null ? Long.MIN_VALUE : firstSegment, true).values()) {
+            replayed += scan(map(segment, FileChannel.MapMode.READ_ONLY, 0), afterSequence, consumer).records;
+        }
+
+        return replayed;
+    }
+
+    /**
+     * @param afterSequence - the sequence of the last record persisted in the database
+     *
+     * @return the sequence of the first record after {@code afterSequence}, 0 if there is none.
+     *
+     * @throws IOException if the segments cannot be read.
+     */
+    public synchronized long findFirstSequenceAfter(final long afterSequence) throws IOException {
+        final Long firstSegment = segments.floorKey(afterSequence + 1);
+        for (final Path segment : segments.tailMap(firstSegment == null ? Long.MIN_VALUE : firstSegment, true).values()) {
+            final Scan scan = scan(map(segment, FileChannel.MapMode.READ_ONLY, 0), afterSequence, null);
+            if (scan.firstSequence > 0) {
+                return scan.firstSequence;
+            }
+        }
+
+        return 0L;
+    }
+
+    /**
+     * Appends the record of the given transactions, starting a new segment if it does not fit in the current one.
+     *
+     * @param transactions - the transactions of the entry
+     *
+     * @return the sequence of the record.
+     *
+     * @throws IOException if a new segment cannot be created.
+     */
+    public synchronized long append(final List<Transaction> transactions) throws IOException {
+        final int bodyLength = BODY_HEADER_BYTES + transactions.size() * TRANSACTION_BYTES;
+        final int recordLength = RECORD_HEADER_BYTES + bodyLength;
+        if (current == null || current.remaining() < recordLength) {
+            roll(recordLength);
+        }
+
+        final MappedByteBuffer buffer = current;
+        final long sequence = lastSequence + 1;
+        final int start = buffer.position();
+        try {
+            buffer.position(start + RECORD_HEADER_BYTES);
+            buffer.putLong(sequence);
+            buffer.putInt(transactions.size());
+            for (final Transaction transaction : transactions) {
+                putTransaction(buffer, transaction);
+            }
+
+            final ByteBuffer body = buffer.duplicate();
+            body.position(start + RECORD_HEADER_BYTES).limit(start + recordLength);
+            crc.reset();
+            crc.update(body);
+
+            // The length is written last: a record is complete only once it is there
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            buffer.putInt(start, bodyLength);
+        } catch (final RuntimeException e) {
+            zero(buffer, start, start + recordLength);
+            buffer.position(start);
+            throw e;
+        }
+
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Forces the records appended so far to the disk.
+     */
+    public void force() {
+        final MappedByteBuffer buffer = current;
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Deletes the segments whose records have all been persisted in the database. The current segment is never deleted.
+     *
+     * @param persistedSequence - the sequence of the last record persisted
+     *
+     * @return the number of segments deleted.
+     *
+     * @throws IOException if a segment cannot be deleted.
+     */
+    public synchronized int release(final long persistedSequence) throws IOException {
+        int deleted = 0;
+        final Iterator<Map.Entry<Long, Path>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, Path> segment = iterator.next();
+            final Long nextFirstSequence = segments.higherKey(segment.getKey());
+            if (nextFirstSequence == null || nextFirstSequence - 1 > persistedSequence) {
+                break;
+            }
+
+            Files.deleteIfExists(segment.getValue());
+            iterator.remove();
+            deleted++;
+        }
+
+        return deleted;
+    }
+
+    /**
+     * @return the sequence of the last record appended, or of the last one persisted if it is later.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the number of segments of the log.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces the records appended so far to the disk. The log cannot be used any more.
+     */
+    @Override
+    public synchronized void close() {
+        force();
+        current = null;
+    }
+
+    private void roll(final int recordLength) throws IOException {
+        if (current != null) {
+            current.force();
+        }
+
+        final long firstSequence = lastSequence + 1;
+        final Path segment = directory.resolve(String.format("ledger-%020d.wal", firstSequence));
+        final MappedByteBuffer buffer = map(segment, FileChannel.MapMode.READ_WRITE, Math.max(segmentSize, recordLength));
+
+        segments.put(firstSequence, segment);
+        current = buffer;
+        LOGGER.debug("Journal segment {} started.", segment);
+    }
+
+    private static NavigableMap<Long, Path> findSegments(final Path directory) throws IOException {
+        final NavigableMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (final Path file : files) {
+                final Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Maps the whole file, created with {@code size} bytes if missing.
+     */
+    private static MappedByteBuffer map(final Path file, final FileChannel.MapMode mode, final int size) throws IOException {
+        final StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[] {StandardOpenOption.READ}
+                : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return channel.map(mode, 0, Math.max(channel.size(), size));
+        }
+    }
+
+    /**
+     * Reads the records of a segment from its start, passing to {@code consumer}, if any, the ones after
+     * {@code afterSequence}.
+     */
+    private static Scan scan(final ByteBuffer buffer, final long afterSequence, final Consumer<LedgerEntry> consumer) {
+        final Scan scan = new Scan();
+        final CRC32 crc = new CRC32();
+        int position = 0;
+
+        while (position + RECORD_HEADER_BYTES <= buffer.limit()) {
+            final int bodyLength = buffer.getInt(position);
+            if (bodyLength == 0) {
+                break;
+            }
+
+            final int bodyStart = position + RECORD_HEADER_BYTES;
+            if (bodyLength < BODY_HEADER_BYTES || bodyLength > buffer.limit() - bodyStart
+                    || buffer.getInt(bodyStart + Long.BYTES) != (bodyLength - BODY_HEADER_BYTES) / TRANSACTION_BYTES
+                    || (bodyLength - BODY_HEADER_BYTES) % TRANSACTION_BYTES != 0) {
+                scan.torn = true;
+                break;
+            }
+
+            final ByteBuffer body = buffer.duplicate();
+            body.position(bodyStart).limit(bodyStart + bodyLength);
+            crc.reset();
+            crc.update(body);
+            final long sequence = buffer.getLong(bodyStart);
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES) || sequence <= scan.lastSequence) {
+                scan.torn = true;
+                break;
+            }
+
+            if (sequence > afterSequence) {
+                if (scan.firstSequence == 0) {
+                    scan.firstSequence = sequence;
+                }
+                if (consumer != null) {
+                    consumer.accept(readEntry(buffer, bodyStart));
+                    scan.records++;
+                }
+            }
+            scan.lastSequence = sequence;
+            position = bodyStart + bodyLength;
+        }
+
+        scan.end = position;
+        return scan;
+    }
+
+    private static LedgerEntry readEntry(final ByteBuffer buffer, final int bodyStart) {
+        final ByteBuffer body = buffer.duplicate();
+        body.position(bodyStart);
+
+        final long sequence = body.getLong();
+        final int count = body.getInt();
+        final List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(getTransaction(body));
+        }
+
+        return new LedgerEntry(sequence, transactions);
+    }
+
+    private static void putTransaction(final ByteBuffer buffer, final Transaction transaction) {
+        final UUID uuid = UUID.fromString(transaction.getUuid());
+
+        buffer.putLong(transaction.getAccountId());
+        buffer.put((byte) TransactionType.valueOf(transaction.getType()).ordinal());
+        buffer.putLong(transaction.getAmountMinorUnits());
+        buffer.put(transaction.getCurrency().getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+        buffer.putLong(transaction.getDateTime().getMillis());
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static Transaction getTransaction(final ByteBuffer buffer) {
+        final Transaction transaction = new Transaction();
+        transaction.setAccountId(buffer.getLong());
+        transaction.setType(TRANSACTION_TYPES[buffer.get()].value());
+        transaction.setAmountMinorUnits(buffer.getLong());
+
+        final byte[] currencyCode = new byte[CURRENCY_BYTES];
+        buffer.get(currencyCode);
+        transaction.setCurrency(Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII)));
+        transaction.setDateTime(new DateTime(buffer.getLong()));
+        transaction.setUuid(new UUID(buffer.getLong(), buffer.getLong()).toString());
+
+        return transaction;
+    }
+
+    private static void zero(final ByteBuffer buffer, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private static final class Scan {
+
+        private int end;
+
+        private long lastSequence;
+
+        private long firstSequence;
+
+        private int records;
+
+        private boolean torn;
+    }
+}
@@ -0,0 +1,149 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import io.dropwizard.cli.Command;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Command line entry point of the {@link LoadGenerator}, to reproduce the contention on the accounts against a running
+ * server:
+ *
+ * <pre>
+ *     java -jar funds-transfer.jar load --scenario HOT_ACCOUNT --rate 500 --duration 60 --reads 0.2
+ * </pre>
+ *
+ * With {@code --clients} a fixed number of clients send their requests one after the other instead, to compare the
+ * throughput of the server at a given concurrency, and with {@code --admin-url} the peaks of its memory and threads
+ * are sampled as well.
+ *
+ * At the end the latencies and the outcomes of the transfers and of the reads are printed.
+ *
+ * @author Davide Martorana
+ */
+public class LoadCommand extends Command {
+
+    public LoadCommand() {
+        super("load", "Sends transfers to a running server and reports their latencies and outcomes");
+    }
+
+    @Override
+    public void configure(final Subparser subparser) {
+        subparser.addArgument("--url")
+                .setDefault("http://localhost:8080/api/")
+                .help("base URL of the API");
+        subparser.addArgument("--scenario")
+                .type(Arguments.enumType(LoadScenario.class))
+                .setDefault(LoadScenario.UNIFORM)
+                .help("how the accounts of the transfers are chosen");
+        subparser.addArgument("--accounts")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("number of accounts to use, 0 for all the accounts found");
+        subparser.addArgument("--skew")
+                .type(Double.class)
+                .setDefault(1.0)
+                .help("exponent of the Zipf distribution of the ZIPF scenario");
+        subparser.addArgument("--rate")
+                .type(Integer.class)
+                .setDefault(100)
+                .help("requests per second");
+        subparser.addArgument("--duration")
+                .type(Integer.class)
+                .setDefault(30)
+                .help("seconds of load");
+        subparser.addArgument("--reads")
+                .type(Double.class)
+                .setDefault(0.0)
+                .help("fraction of the requests reading an account instead of transferring, from 0 to 1");
+        subparser.addArgument("--clients")
+                .type(Integer.class)
+                .setDefault(0)
+                .help("number of concurrent clients sending a request as soon as they have the previous response, "
+                        + "instead of the fixed --rate; 0 to send at the fixed rate");
+        subparser.addArgument("--admin-url")
+                .help("base URL of the admin connector of the server, e.g. http://localhost:8081/, to sample its memory and threads");
+        subparser.addArgument("--max-in-flight")
+                .type(Integer.class)
+                .setDefault(256)
+                .help("maximum number of outstanding requests");
+        subparser.addArgument("--timeout")
+                .type(Integer.class)
+                .setDefault(30)
+                .help("seconds after which a request is given up");
+        subparser.addArgument("--amount")
+                .type(BigDecimal.class)
+                .setDefault(BigDecimal.ONE)
+                .help("amount of every transfer");
+        subparser.addArgument("--currency")
+                .setDefault("GBP")
+                .help("currency of the accounts to use");
+        subparser.addArgument("--histograms")
+                .help("prefix of the files where the latency distributions are written, in the HdrHistogram format");
+    }
+
+    @Override
+    public void run(final Bootstrap<?> bootstrap, final Namespace namespace) throws Exception {
+        final String url = namespace.getString("url");
+        final URI baseUri = URI.create(url.endsWith("/") ? url : url + "/");
+        final Currency currency = Currency.getInstance(namespace.getString("currency"));
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(namespace.getInt("timeout")))
+                .build();
+
+        List<String> accountUUIDs = LoadGenerator.findAccounts(httpClient, bootstrap.getObjectMapper(), baseUri, currency);
+        final int accounts = namespace.getInt("accounts");
+        if (accounts > 0 && accounts < accountUUIDs.size()) {
+            accountUUIDs = accountUUIDs.subList(0, accounts);
+        }
+
+        final LoadGenerator loadGenerator = new LoadGenerator(httpClient, bootstrap.getObjectMapper(), baseUri, accountUUIDs,
+                namespace.get("scenario"), namespace.getDouble("skew"), namespace.getInt("rate"), namespace.getDouble("reads"),
+                namespace.getInt("max_in_flight"), Duration.ofSeconds(namespace.getInt("timeout")),
+                new Amount(namespace.get("amount"), currency));
+        final String adminUrl = namespace.getString("admin_url");
+        try (ServerStats serverStats = adminUrl == null ? null
+                : new ServerStats(httpClient, bootstrap.getObjectMapper(), URI.create(adminUrl.endsWith("/") ? adminUrl : adminUrl + "/"))) {
+            if (serverStats != null) {
+                serverStats.start(Duration.ofSeconds(1));
+            }
+
+            final int clients = namespace.getInt("clients");
+            if (clients > 0) {
+                loadGenerator.runClients(Duration.ofSeconds(namespace.getInt("duration")), clients);
+            } else {
+                loadGenerator.run(Duration.ofSeconds(namespace.getInt("duration")));
+            }
+
+            loadGenerator.getTransfers().print(System.out, loadGenerator.getElapsedNanos());
+            loadGenerator.getReads().print(System.out, loadGenerator.getElapsedNanos());
+            if (serverStats != null) {
+                serverStats.print(System.out);
+            }
+        }
+
+        final String histograms = namespace.getString("histograms");
+        if (histograms != null) {
+            writeDistribution(histograms, loadGenerator.getTransfers());
+            writeDistribution(histograms, loadGenerator.getReads());
+        }
+    }
+
+    private static void writeDistribution(final String prefix, final LoadReport report) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(prefix + "-" + report.getName() + ".hgrm"))) {
+            report.printDistribution(out);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the REST API of a running server at a fixed rate: every request is due at its own time, whatever the
+ * responses of the previous ones, as the requests of independent clients would be. Up to {@code maxInFlight} requests
+ * are outstanding at the same time; when the limit is reached the next requests are sent late, and their latency
+ * includes the delay.
+ *
+ * Every request is either a transfer between two accounts chosen by the {@link LoadScenario} or, with probability
+ * {@code readRatio}, a read of the details of the debtor account.
+ *
+ * @author Davide Martorana
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final URI baseUri;
+
+    private final List<String> accountUUIDs;
+
+    private final LoadScenario scenario;
+
+    private final ZipfDistribution zipf;
+
+    private final int rate;
+
+    private final double readRatio;
+
+    private final int maxInFlight;
+
+    private final Duration timeout;
+
+    private final Amount amount;
+
+    private final LoadReport transfers = new LoadReport("transfers");
+
+    private final LoadReport reads = new LoadReport("reads");
+
+    private long elapsedNanos;
+
+    /**
+     * @param httpClient - the client sending the requests
+     * @param objectMapper - the mapper writing the transfer requests
+     * @param baseUri - the base URI of the API, e.g. {@code http://localhost:8080/api/}
+     * @param accountUUIDs - the accounts to use, all with the currency of {@code amount}
+     * @param scenario - how the accounts of the transfers are chosen
+     * @param skew - the exponent of the Zipf distribution of the {@link LoadScenario#ZIPF} scenario
+     * @param rate - the requests to send per second
+     * @param readRatio - the fraction of the requests reading an account, from 0 to 1
+     * @param maxInFlight - the maximum number of outstanding requests
+     * @param timeout - the time after which a request is given up
+     * @param amount - the amount of every transfer
+     */
+    public LoadGenerator(final HttpClient httpClient, final ObjectMapper objectMapper, final URI baseUri, final List<String> accountUUIDs,
+                         final LoadScenario scenario, final double skew, final int rate, final double readRatio, final int maxInFlight,
+                         final Duration timeout, final Amount amount) {
+        if (accountUUIDs.size() < scenario.minimumAccounts()) {
+            throw new IllegalArgumentException("The scenario " + scenario + " needs at least " + scenario.minimumAccounts()
+                    + " accounts, found " + accountUUIDs.size());
+        }
+
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.baseUri = baseUri;
+        this.accountUUIDs = accountUUIDs;
+        this.scenario = scenario;
+        this.zipf = new ZipfDistribution(accountUUIDs.size(), skew);
+        this.rate = rate;
+        this.readRatio = readRatio;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        this.amount = amount;
+    }
+
+    /**
+     * Reads the accounts of all the customers, in the order given by the API.
+     *
+     * @param httpClient - the client sending the requests
+     * @param objectMapper - the mapper reading the responses
+     * @param baseUri - the base URI of the API
+     * @param currency - only the accounts in this currency are returned
+     *
+     * @return the uuids of the accounts.
+     */
+    public static List<String> findAccounts(final HttpClient httpClient, final ObjectMapper objectMapper, final URI baseUri,
+                                            final Currency currency) throws IOException, InterruptedException {
+        final List<String> accountUUIDs = new ArrayList<>();
+        for (final JsonNode customer : get(httpClient, objectMapper, baseUri.resolve("customers")).path("customers")) {
+            final URI accountsUri = baseUri.resolve("customers/" + customer.path("id").asText() + "/accounts");
+            for (final JsonNode account : get(httpClient, objectMapper, accountsUri).path("accounts")) {
+                if (currency.getCurrencyCode().equals(account.path("currency").asText())) {
+                    accountUUIDs.add(account.path("id").asText());
+                }
+            }
+        }
+
+        return accountUUIDs;
+    }
+
+    private static JsonNode get(final HttpClient httpClient, final ObjectMapper objectMapper, final URI uri) throws IOException, InterruptedException {
+        final HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + uri + " failed with status " + response.statusCode());
+        }
+
+        return objectMapper.readTree(response.body());
+    }
+
+    /**
+     * Sends {@code rate} requests per second for the given time, then waits for all the responses.
+     *
+     * @param duration - how long to send the requests for
+     */
+    public void run(final Duration duration) throws InterruptedException {
+        final long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        final long requests = duration.getSeconds() * rate;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final Random random = new Random();
+
+        LOGGER.info("Sending {} requests in {}, over {} accounts ({} scenario)", requests, duration, accountUUIDs.size(), scenario);
+        final long start = System.nanoTime();
+        for (long sequence = 0; sequence < requests; sequence++) {
+            final long due = start + sequence * interval;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+
+            send(sequence, random, due, inFlight::release);
+        }
+        inFlight.acquire(maxInFlight);
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Runs {@code clients} clients for the given time, each one sending its next request as soon as it has the response
+     * of the previous one, then waits for the last responses. Unlike {@link #run(Duration)} the rate is not fixed: it is
+     * the throughput of the server with that many concurrent clients, and the latencies start when the requests are sent.
+     *
+     * @param duration - how long to send the requests for
+     * @param clients - the number of concurrent clients
+     */
+    public void runClients(final Duration duration, final int clients) throws InterruptedException {
+        final AtomicLong sequence = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(clients);
+
+        LOGGER.info("Running {} clients for {}, over {} accounts ({} scenario)", clients, duration, accountUUIDs.size(), scenario);
+        final long start = System.nanoTime();
+        final long end = start + duration.toNanos();
+        for (int client = 0; client < clients; client++) {
+            sendUntil(end, sequence, finished);
+        }
+        finished.await();
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void sendUntil(final long end, final AtomicLong sequence, final CountDownLatch finished) {
+        final long now = System.nanoTime();
+        if (now - end >= 0) {
+            finished.countDown();
+            return;
+        }
+
+        send(sequence.getAndIncrement(), ThreadLocalRandom.current(), now, () -> sendUntil(end, sequence, finished));
+    }
+
+    private void send(final long sequence, final Random random, final long due, final Runnable onResponse) {
+        final int[] accounts = scenario.next(sequence, accountUUIDs.size(), zipf, random);
+        final String debtorAccountUUID = accountUUIDs.get(accounts[0]);
+        if (random.nextDouble() < readRatio) {
+            send(HttpRequest.newBuilder(baseUri.resolve("accounts/" + debtorAccountUUID)).GET(), reads, due, onResponse);
+        } else {
+            final TransferRequest transferRequest = new TransferRequest();
+            transferRequest.setAmount(amount);
+            transferRequest.setBeneficiaryAccountId(accountUUIDs.get(accounts[1]));
+
+            final byte[] body;
+            try {
+                body = objectMapper.writeValueAsBytes(transferRequest);
+            } catch (final JsonProcessingException e) {
+                throw new IllegalStateException("The transfer request cannot be written", e);
+            }
+            send(HttpRequest.newBuilder(baseUri.resolve("accounts/" + debtorAccountUUID + "/transfer"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body)), transfers, due, onResponse);
+        }
+    }
+
+    private void send(final HttpRequest.Builder request, final LoadReport report, final long due, final Runnable onResponse) {
+        httpClient.sendAsync(request.timeout(timeout).build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    final LoadOutcome outcome = error != null ? LoadOutcome.NO_RESPONSE : LoadOutcome.of(response.statusCode(), response.body());
+                    report.record(outcome, System.nanoTime() - due);
+                    onResponse.run();
+                });
+    }
+
+    public LoadReport getTransfers() {
+        return transfers;
+    }
+
+    public LoadReport getReads() {
+        return reads;
+    }
+
+    /**
+     * @return the time taken by the last run, until the last response, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,58 @@
+package eu.davidemartorana.banking.accounts.load;
+
+/**
+ * The outcome of a request sent by the {@link LoadGenerator}.
+ *
+ * @author Davide Martorana
+ */
+public enum LoadOutcome {
+
+    /**
+     * {@code 2xx}: the request succeeded.
+     */
+    OK,
+
+    /**
+     * {@code 409 CONFLICT} because the accounts could not be locked in time, or kept changing until the last retry.
+     */
+    CONFLICT,
+
+    /**
+     * {@code 409 CONFLICT} because of a {@link eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException}.
+     */
+    FUNDS_NOT_ENOUGH,
+
+    /**
+     * {@code 503 SERVICE UNAVAILABLE}: the transfer was rejected because the service is overloaded.
+     */
+    UNAVAILABLE,
+
+    /**
+     * Any other status.
+     */
+    OTHER_STATUS,
+
+    /**
+     * No response was received.
+     */
+    NO_RESPONSE;
+
+    private static final String FUNDS_NOT_ENOUGH_MESSAGE = "Fund not enough";
+
+    /**
+     * @param status - the HTTP status of the response
+     * @param body - the body of the response
+     *
+     * @return the outcome of the response.
+     */
+    public static LoadOutcome of(final int status, final String body) {
+        if (status >= 200 && status < 300) {
+            return OK;
+        }
+        if (status == 409) {
+            return body != null && body.contains(FUNDS_NOT_ENOUGH_MESSAGE) ? FUNDS_NOT_ENOUGH : CONFLICT;
+        }
+
+        return status == 503 ? UNAVAILABLE : OTHER_STATUS;
+    }
+}
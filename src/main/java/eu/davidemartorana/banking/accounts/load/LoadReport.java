@@ -0,0 +1,99 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests of one kind sent by the {@link LoadGenerator}. The latencies are recorded in
+ * microseconds, from the time the request was due to be sent: a request delayed because the server is slow is counted
+ * as slow, even if it was sent late.
+ *
+ * @author Davide Martorana
+ */
+public class LoadReport {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(10);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final String name;
+
+    private final Histogram histogram = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+
+    private final Map<LoadOutcome, LongAdder> outcomes = new EnumMap<>(LoadOutcome.class);
+
+    public LoadReport(final String name) {
+        this.name = name;
+        for (final LoadOutcome outcome : LoadOutcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * @param outcome - the outcome of the request
+     * @param latencyNanos - the time elapsed since the request was due, in nanoseconds
+     */
+    public void record(final LoadOutcome outcome, final long latencyNanos) {
+        outcomes.get(outcome).increment();
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @param outcome - an outcome
+     *
+     * @return the number of requests with that outcome.
+     */
+    public long count(final LoadOutcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    /**
+     * Prints the number of requests by outcome, the throughput and the latency percentiles, in milliseconds.
+     *
+     * @param out - where to print the report
+     * @param elapsedNanos - the duration of the run
+     */
+    public void print(final PrintStream out, final long elapsedNanos) {
+        final long total = histogram.getTotalCount();
+        out.printf("%s: %d requests, %.1f/s%n", name, total, total * 1e9 / Math.max(1, elapsedNanos));
+        for (final LoadOutcome outcome : LoadOutcome.values()) {
+            final long count = count(outcome);
+            if (count > 0) {
+                out.printf("  %-17s %d%n", outcome, count);
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+
+        out.printf("  latency (ms):     mean %.3f", histogram.getMean() / 1000);
+        for (final double percentile : PERCENTILES) {
+            out.printf(", p%s %.3f", percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf(", max %.3f%n", histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Writes the whole percentile distribution of the latencies in the HdrHistogram format, in milliseconds.
+     *
+     * @param out - where to write the distribution
+     */
+    public void printDistribution(final PrintStream out) {
+        histogram.outputPercentileDistribution(out, 1000.0);
+    }
+}
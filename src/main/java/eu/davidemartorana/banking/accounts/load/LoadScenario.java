@@ -0,0 +1,96 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * The canned scenarios of the {@link LoadGenerator}: how the debtor and the beneficiary account of every transfer are
+ * chosen, as indexes of the accounts in use.
+ *
+ * @author Davide Martorana
+ */
+public enum LoadScenario {
+
+    /**
+     * Debtor and beneficiary are chosen at random, all the accounts with the same probability.
+     */
+    UNIFORM {
+        @Override
+        public int[] next(final long sequence, final int accounts, final ZipfDistribution zipf, final Random random) {
+            final int debtor = random.nextInt(accounts);
+
+            return new int[] {debtor, other(debtor, () -> random.nextInt(accounts))};
+        }
+    },
+
+    /**
+     * Debtor and beneficiary are chosen with the Zipf distribution of the given skew: a few accounts take part in most
+     * of the transfers.
+     */
+    ZIPF {
+        @Override
+        public int[] next(final long sequence, final int accounts, final ZipfDistribution zipf, final Random random) {
+            final int debtor = zipf.sample(random);
+
+            return new int[] {debtor, other(debtor, () -> zipf.sample(random))};
+        }
+    },
+
+    /**
+     * Every transfer moves money from or to the first account, in turns, with another account chosen at random.
+     */
+    HOT_ACCOUNT {
+        @Override
+        public int[] next(final long sequence, final int accounts, final ZipfDistribution zipf, final Random random) {
+            final int counterpart = 1 + random.nextInt(accounts - 1);
+
+            return sequence % 2 == 0 ? new int[] {0, counterpart} : new int[] {counterpart, 0};
+        }
+    },
+
+    /**
+     * The transfers go round the first three accounts, A to B, B to C and C to A: concurrent transfers lock the
+     * accounts in a cycle, the pattern leading to a deadlock when the locks are not ordered.
+     */
+    RING {
+        @Override
+        public int[] next(final long sequence, final int accounts, final ZipfDistribution zipf, final Random random) {
+            final int debtor = (int) (sequence % RING_SIZE);
+
+            return new int[] {debtor, (debtor + 1) % RING_SIZE};
+        }
+
+        @Override
+        public int minimumAccounts() {
+            return RING_SIZE;
+        }
+    };
+
+    private static final int RING_SIZE = 3;
+
+    /**
+     * @param sequence - the number of the transfer, from 0
+     * @param accounts - the number of accounts in use
+     * @param zipf - the Zipf distribution over the accounts
+     * @param random - the source of randomness
+     *
+     * @return the index of the debtor account and of the beneficiary account, always different.
+     */
+    public abstract int[] next(long sequence, int accounts, ZipfDistribution zipf, Random random);
+
+    /**
+     * @return the number of accounts needed by the scenario.
+     */
+    public int minimumAccounts() {
+        return 2;
+    }
+
+    private static int other(final int account, final IntSupplier supplier) {
+        int other = supplier.getAsInt();
+        while (other == account) {
+            other = supplier.getAsInt();
+        }
+
+        return other;
+    }
+}
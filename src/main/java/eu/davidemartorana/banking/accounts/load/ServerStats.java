@@ -0,0 +1,97 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the JVM gauges of the server under load from the metrics of its admin connector, keeping the peaks of the
+ * memory used and of the live threads. The stacks of the platform threads are not in the heap, while the ones of the
+ * virtual threads are: the thread count tells them apart.
+ *
+ * @author Davide Martorana
+ */
+public class ServerStats implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerStats.class);
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final URI metricsUri;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "server-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long maxHeapUsed;
+
+    private volatile long maxNonHeapUsed;
+
+    private volatile long maxThreads;
+
+    private volatile int samples;
+
+    /**
+     * @param httpClient - the client reading the metrics
+     * @param objectMapper - the mapper reading the metrics
+     * @param adminUri - the base URI of the admin connector, e.g. {@code http://localhost:8081/}
+     */
+    public ServerStats(final HttpClient httpClient, final ObjectMapper objectMapper, final URI adminUri) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.metricsUri = adminUri.resolve("metrics");
+    }
+
+    /**
+     * Starts sampling the gauges.
+     *
+     * @param interval - the time between two samples
+     */
+    public void start(final Duration interval) {
+        scheduler.scheduleAtFixedRate(this::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sample() {
+        try {
+            final HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(metricsUri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            final JsonNode gauges = objectMapper.readTree(response.body()).path("gauges");
+
+            maxHeapUsed = Math.max(maxHeapUsed, gauges.path("jvm.memory.heap.used").path("value").asLong());
+            maxNonHeapUsed = Math.max(maxNonHeapUsed, gauges.path("jvm.memory.non-heap.used").path("value").asLong());
+            maxThreads = Math.max(maxThreads, gauges.path("jvm.threads.count").path("value").asLong());
+            samples++;
+        } catch (final Exception e) {
+            LOGGER.warn("The metrics of the server cannot be read from {}: {}", metricsUri, e.toString());
+        }
+    }
+
+    /**
+     * @param out - where to print the peaks
+     */
+    public void print(final PrintStream out) {
+        out.println("server (" + samples + " samples)");
+        out.printf("  max heap used:     %,d KiB%n", maxHeapUsed / 1024);
+        out.printf("  max non-heap used: %,d KiB%n", maxNonHeapUsed / 1024);
+        out.printf("  max live threads:  %,d%n", maxThreads);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,51 @@
+package eu.davidemartorana.banking.accounts.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution over the ranks {@code 0..size-1}: the rank {@code k} is drawn with probability proportional to
+ * {@code 1 / (k + 1)^exponent}. With exponent 0 every rank is equally likely, the greater the exponent the more the
+ * first ranks are drawn.
+ *
+ * @author Davide Martorana
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulativeProbabilities;
+
+    /**
+     * @param size - the number of ranks
+     * @param exponent - the skew of the distribution, not negative
+     */
+    public ZipfDistribution(final int size, final double exponent) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The size must be positive: " + size);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("The exponent cannot be negative: " + exponent);
+        }
+
+        cumulativeProbabilities = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulativeProbabilities[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulativeProbabilities[rank] /= total;
+        }
+    }
+
+    /**
+     * @param random - the source of randomness
+     *
+     * @return a rank, drawn according to the distribution.
+     */
+    public int sample(final Random random) {
+        final int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        final int rank = index >= 0 ? index : -index - 1;
+
+        return Math.min(rank, cumulativeProbabilities.length - 1);
+    }
+}
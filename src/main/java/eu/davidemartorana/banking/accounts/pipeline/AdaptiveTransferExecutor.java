@@ -0,0 +1,71 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.DirectTransferExecutor;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link TransferExecutor} choosing the execution of every transfer from the contention of its accounts. A transfer
+ * touching a hot account, according to the {@link HotAccountDetector}, is queued to the {@link ShardedTransferExecutor},
+ * so all the transfers of that account are executed one at a time by the worker of its shard instead of waiting on
+ * each other's row locks. All the other transfers are executed by the request thread, as by the
+ * {@link DirectTransferExecutor}.
+ *
+ * The transfers of each path are published in the {@link MetricRegistry} as {@code AdaptiveTransferExecutor.serialized}
+ * and {@code AdaptiveTransferExecutor.direct}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class AdaptiveTransferExecutor implements TransferExecutor {
+
+    private final HotAccountDetector hotAccountDetector;
+
+    private final ShardedTransferExecutor serializedExecutor;
+
+    private final DirectTransferExecutor directExecutor;
+
+    private final Meter serialized;
+
+    private final Meter direct;
+
+    @Inject
+    public AdaptiveTransferExecutor(final HotAccountDetector hotAccountDetector, final ShardedTransferExecutor serializedExecutor,
+                                    final DirectTransferExecutor directExecutor, final MetricRegistry metricRegistry) {
+        this.hotAccountDetector = hotAccountDetector;
+        this.serializedExecutor = serializedExecutor;
+        this.directExecutor = directExecutor;
+        this.serialized = metricRegistry.meter(MetricRegistry.name(AdaptiveTransferExecutor.class, "serialized"));
+        this.direct = metricRegistry.meter(MetricRegistry.name(AdaptiveTransferExecutor.class, "direct"));
+    }
+
+    @Override
+    public TransferResult execute(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        if (hotAccountDetector.isHot(debtorAccountUUID) || hotAccountDetector.isHot(transferRequest.getBeneficiaryAccountId())) {
+            serialized.mark();
+            return serializedExecutor.execute(debtorAccountUUID, transferRequest);
+        }
+
+        direct.mark();
+        return directExecutor.execute(debtorAccountUUID, transferRequest);
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> submit(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        if (hotAccountDetector.isHot(debtorAccountUUID) || hotAccountDetector.isHot(transferRequest.getBeneficiaryAccountId())) {
+            serialized.mark();
+            return serializedExecutor.submit(debtorAccountUUID, transferRequest);
+        }
+
+        direct.mark();
+        return directExecutor.submit(debtorAccountUUID, transferRequest);
+    }
+}
@@ -0,0 +1,238 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.GroupCommitConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransferExecutor} committing together the transfers requested at the same time.
+ *
+ * A single committer thread takes the first waiting transfer, then keeps collecting the following ones until the
+ * configured window elapses or the group reaches its maximum size. The group is applied as a
+ * {@link BatchMode#BEST_EFFORT best-effort} batch in one database transaction, so each transfer still fails on its
+ * own (e.g. with a {@link eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException}) without affecting
+ * the others. The callers are released only once the shared commit has succeeded; if it fails, the transfers of the
+ * group are committed again one by one. This is safe only as long as a failed commit leaves nothing applied, hence the
+ * execution cannot be used with the {@link eu.davidemartorana.banking.accounts.config.TransferEngineType#IN_MEMORY
+ * in-memory} engine.
+ *
+ * When stopped, the committer commits the transfers already queued before exiting; a transfer queued while the
+ * executor stops is taken back, if the committer has not taken it yet, and its caller receives a
+ * {@code 503 SERVICE UNAVAILABLE}.
+ *
+ * The committer is started only when the {@link TransferExecutionType#GROUP_COMMIT group commit} execution is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class GroupCommitTransferExecutor implements TransferExecutor, Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitTransferExecutor.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+
+    private final AccountsService accountsService;
+
+    private final TransferRetry transferRetry;
+
+    private final GroupCommitConfig groupCommitConfig;
+
+    private final boolean enabled;
+
+    private final long executionTimeoutNanos;
+
+    private final BlockingQueue<PendingTransfer> queue;
+
+    private final Histogram groupSize;
+
+    private final Timer commitTime;
+
+    private volatile boolean running;
+
+    private Thread committer;
+
+    @Inject
+    public GroupCommitTransferExecutor(final AccountsService accountsService, final TransferRetry transferRetry,
+                                       final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this.accountsService = accountsService;
+        this.transferRetry = transferRetry;
+        this.groupCommitConfig = applicationConfig.getTransfers().getGroupCommit();
+        this.enabled = applicationConfig.getTransfers().getExecution() == TransferExecutionType.GROUP_COMMIT;
+        this.executionTimeoutNanos = applicationConfig.getTransfers().getExecutionTimeout().toNanoseconds();
+        this.queue = new ArrayBlockingQueue<>(enabled ? groupCommitConfig.getQueueCapacity() : 1);
+
+        final MetricRegistry registry = enabled ? metricRegistry : new MetricRegistry();
+        this.groupSize = registry.histogram(MetricRegistry.name(GroupCommitTransferExecutor.class, "group-size"));
+        this.commitTime = registry.timer(MetricRegistry.name(GroupCommitTransferExecutor.class, "commit"));
+    }
+
+    @Override
+    public TransferResult execute(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        return TransferFutures.await(submit(debtorAccountUUID, transferRequest), executionTimeoutNanos);
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> submit(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        if (!running) {
+            throw new ServiceUnavailableException("The transfer executor is not running. Please try later.");
+        }
+
+        final PendingTransfer pending = new PendingTransfer(debtorAccountUUID, transferRequest);
+        try {
+            if (!queue.offer(pending, groupCommitConfig.getSubmitTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Group commit queue full. Transfer from account uuid [{}] rejected.", debtorAccountUUID);
+                throw new ServiceUnavailableException("Too many transfers in progress. Please try later.");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while submitting the funds transfer. Please try later.");
+        }
+
+        // Checked again once queued: the committer exits when stopped with the queue empty, so either it sees this
+        // transfer or this check sees it stopped. Not taken back, the transfer is committed by the committer
+        if (!running && queue.remove(pending)) {
+            throw new ServiceUnavailableException("The transfer executor is not running. Please try later.");
+        }
+
+        return pending.result;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        LOGGER.info("Starting the group commit executor. Window: {}, max batch size: {}", groupCommitConfig.getWindow(), groupCommitConfig.getMaxBatchSize());
+        running = true;
+        committer = new Thread(this::commitLoop, "transfer-group-committer");
+        committer.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (committer == null) {
+            return;
+        }
+
+        LOGGER.info("Stopping the group commit executor. Transfers still to commit: {}", queue.size());
+        running = false;
+        committer.join();
+    }
+
+    private void commitLoop() {
+        final long windowNanos = groupCommitConfig.getWindow().toNanoseconds();
+        final int maxBatchSize = groupCommitConfig.getMaxBatchSize();
+        final List<PendingTransfer> group = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                final PendingTransfer first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                final long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatchSize) {
+                    final PendingTransfer next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Group committer interrupted. Transfers not executed: {}", group.size() + queue.size());
+                group.forEach(pending -> TransferFutures.failStopped(pending.result));
+                queue.forEach(pending -> TransferFutures.failStopped(pending.result));
+                return;
+            }
+
+            commit(group);
+            group.clear();
+        }
+    }
+
+    private void commit(final List<PendingTransfer> group) {
+        final List<BatchTransferItem> items = new ArrayList<>(group.size());
+        for (final PendingTransfer pending : group) {
+            items.add(pending.toBatchItem());
+        }
+
+        final List<BatchItemResult> results;
+        try (Timer.Context ignored = commitTime.time()) {
+            results = transferRetry.inUnitOfWork(() -> accountsService.transferAmounts(items, BatchMode.BEST_EFFORT));
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Group commit of {} transfers failed. Committing them one by one.", group.size(), e);
+            group.forEach(this::commitAlone);
+            return;
+        }
+
+        groupSize.update(group.size());
+        for (int index = 0; index < group.size(); index++) {
+            final BatchItemResult result = results.get(index);
+            if (result.isApplied()) {
+                group.get(index).result.complete(result.getTransferResult());
+            } else {
+                group.get(index).result.completeExceptionally(result.getError());
+            }
+        }
+    }
+
+    private void commitAlone(final PendingTransfer pending) {
+        try {
+            pending.result.complete(transferRetry.inUnitOfWork(() -> accountsService.transferAmount(pending.debtorAccountUUID, pending.transferRequest)));
+        } catch (final RuntimeException e) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingTransfer {
+
+        private final String debtorAccountUUID;
+
+        private final TransferRequest transferRequest;
+
+        private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+        private PendingTransfer(final String debtorAccountUUID, final TransferRequest transferRequest) {
+            this.debtorAccountUUID = debtorAccountUUID;
+            this.transferRequest = transferRequest;
+        }
+
+        private BatchTransferItem toBatchItem() {
+            final BatchTransferItem item = new BatchTransferItem();
+            item.setDebtorAccountId(debtorAccountUUID);
+            item.setBeneficiaryAccountId(transferRequest.getBeneficiaryAccountId());
+            item.setAmount(transferRequest.getAmount());
+            item.setIdempotencyKey(transferRequest.getIdempotencyKey());
+
+            return item;
+        }
+    }
+}
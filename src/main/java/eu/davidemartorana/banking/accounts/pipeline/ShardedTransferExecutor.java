@@ -0,0 +1,260 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.hash.Hashing;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.ShardingConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.ServiceUnavailableException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link TransferExecutor} partitioning the accounts into shards, by hash of their uuid. Every shard has a dedicated
+ * worker thread and a lock, held by the worker for the whole execution of each transfer.
+ *
+ * A transfer between two accounts of the same shard is executed by that shard's worker. A transfer between two shards
+ * is executed by the worker of the lower shard, which takes the lock of the higher shard as well. All the locks are
+ * acquired in ascending shard order, so there is no deadlock, and two transfers touching the same account are never
+ * executed at the same time, so they never wait on each other's row locks in the database.
+ *
+ * When stopped, the workers execute the transfers already queued before exiting; a transfer queued while the executor
+ * stops is taken back, if the worker has not taken it yet, and its caller receives a {@code 503 SERVICE UNAVAILABLE}.
+ *
+ * For each shard the queue depth (gauge) and the latency from submission to completion (timer) are published in the
+ * {@link MetricRegistry}.
+ *
+ * The workers are started only when the {@link TransferExecutionType#SHARDED sharded} or the
+ * {@link TransferExecutionType#ADAPTIVE adaptive} execution is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class ShardedTransferExecutor implements TransferExecutor, Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedTransferExecutor.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+
+    private final AccountsService accountsService;
+
+    private final TransferRetry transferRetry;
+
+    private final ShardingConfig shardingConfig;
+
+    private final Shard[] shards;
+
+    private final Meter rejected;
+
+    private final long executionTimeoutNanos;
+
+    private volatile boolean running;
+
+    @Inject
+    public ShardedTransferExecutor(final AccountsService accountsService, final TransferRetry transferRetry,
+                                   final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this.accountsService = accountsService;
+        this.transferRetry = transferRetry;
+        this.shardingConfig = applicationConfig.getTransfers().getSharding();
+        this.executionTimeoutNanos = applicationConfig.getTransfers().getExecutionTimeout().toNanoseconds();
+
+        // The shards and their metrics exist only when this executor is the one in use
+        final TransferExecutionType execution = applicationConfig.getTransfers().getExecution();
+        final boolean enabled = execution == TransferExecutionType.SHARDED || execution == TransferExecutionType.ADAPTIVE;
+        this.shards = new Shard[enabled ? shardingConfig.getShards() : 0];
+        for (int index = 0; index < shards.length; index++) {
+            shards[index] = new Shard(index, metricRegistry);
+        }
+        this.rejected = enabled ? metricRegistry.meter(MetricRegistry.name(ShardedTransferExecutor.class, "rejected")) : new Meter();
+    }
+
+    @Override
+    public TransferResult execute(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        return TransferFutures.await(submit(debtorAccountUUID, transferRequest), executionTimeoutNanos);
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> submit(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        if (!running) {
+            throw new ServiceUnavailableException("The transfer executor is not running. Please try later.");
+        }
+
+        final int debtorShard = shardOf(debtorAccountUUID);
+        final String beneficiaryUUID = transferRequest.getBeneficiaryAccountId();
+        final int beneficiaryShard = beneficiaryUUID == null ? debtorShard : shardOf(beneficiaryUUID);
+
+        final Shard owner = shards[Math.min(debtorShard, beneficiaryShard)];
+        final Shard other = debtorShard == beneficiaryShard ? null : shards[Math.max(debtorShard, beneficiaryShard)];
+        final ShardTask task = new ShardTask(debtorAccountUUID, transferRequest, other);
+
+        try {
+            if (!owner.queue.offer(task, shardingConfig.getSubmitTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                rejected.mark();
+                LOGGER.warn("Shard {} full. Transfer from account uuid [{}] rejected.", owner.index, debtorAccountUUID);
+                throw new ServiceUnavailableException("Too many transfers in progress. Please try later.");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while submitting the funds transfer. Please try later.");
+        }
+
+        // Checked again once queued: the worker exits when stopped with its queue empty, so either it sees this task
+        // or this check sees it stopped. Not taken back, the task is executed by the worker
+        if (!running && owner.queue.remove(task)) {
+            throw new ServiceUnavailableException("The transfer executor is not running. Please try later.");
+        }
+
+        return task.result;
+    }
+
+    /**
+     * @param accountUUID - unique identifier of the account
+     *
+     * @return the index of the shard owning the account.
+     */
+    public int shardOf(final String accountUUID) {
+        return Hashing.consistentHash(Hashing.murmur3_32().hashString(accountUUID, StandardCharsets.UTF_8), shards.length);
+    }
+
+    /**
+     * @param index - index of the shard
+     *
+     * @return the number of transfers waiting in the queue of the shard.
+     */
+    public int queueDepth(final int index) {
+        return shards[index].queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (shards.length == 0) {
+            return;
+        }
+
+        LOGGER.info("Starting the sharded transfer executor. Shards: {}", shards.length);
+        running = true;
+        for (final Shard shard : shards) {
+            shard.worker.start();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (!running) {
+            return;
+        }
+
+        LOGGER.info("Stopping the sharded transfer executor.");
+        running = false;
+        for (final Shard shard : shards) {
+            shard.worker.join();
+        }
+    }
+
+    private static final class ShardTask {
+
+        private final String debtorAccountUUID;
+
+        private final TransferRequest transferRequest;
+
+        private final Shard other;
+
+        private final long submittedAt = System.nanoTime();
+
+        private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+        private ShardTask(final String debtorAccountUUID, final TransferRequest transferRequest, final Shard other) {
+            this.debtorAccountUUID = debtorAccountUUID;
+            this.transferRequest = transferRequest;
+            this.other = other;
+        }
+    }
+
+    private final class Shard {
+
+        private final int index;
+
+        private final BlockingQueue<ShardTask> queue;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Timer latency;
+
+        private final Thread worker;
+
+        private Shard(final int index, final MetricRegistry metricRegistry) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(shardingConfig.getQueueCapacity());
+            this.latency = metricRegistry.timer(MetricRegistry.name(ShardedTransferExecutor.class, "shard-" + index, "latency"));
+            metricRegistry.register(MetricRegistry.name(ShardedTransferExecutor.class, "shard-" + index, "queue-depth"), (Gauge<Integer>) queue::size);
+            this.worker = new Thread(this::workLoop, "transfer-shard-" + index);
+        }
+
+        private void workLoop() {
+            while (running || !queue.isEmpty()) {
+                final ShardTask task;
+                try {
+                    task = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.error("Worker of shard {} interrupted. Transfers not executed: {}", index, queue.size());
+                    queue.forEach(left -> TransferFutures.failStopped(left.result));
+                    return;
+                }
+
+                if (task != null) {
+                    execute(task);
+                }
+            }
+        }
+
+        private void execute(final ShardTask task) {
+            TransferResult result = null;
+            RuntimeException error = null;
+            lock.lock();
+            try {
+                if (task.other != null) {
+                    // The other shard has always a greater index: locks are acquired in ascending order
+                    task.other.lock.lock();
+                }
+                try {
+                    result = transferRetry.inUnitOfWork(() -> accountsService.transferAmount(task.debtorAccountUUID, task.transferRequest));
+                } catch (final RuntimeException e) {
+                    error = e;
+                } finally {
+                    if (task.other != null) {
+                        task.other.lock.unlock();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // The latency is recorded before the submitter is woken up, so it is visible as soon as the transfer is done
+            latency.update(System.nanoTime() - task.submittedAt, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                task.result.completeExceptionally(error);
+            } else {
+                task.result.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for the request threads waiting on a transfer executed by another thread.
+ *
+ * @author Davide Martorana
+ */
+final class TransferFutures {
+
+    private TransferFutures() {
+    }
+
+    /**
+     * Waits for {@code result}, rethrowing in the calling thread the exception thrown by the transfer, if any.
+     *
+     * @param result - the result of the transfer
+     * @param timeoutNanos - the maximum time to wait
+     *
+     * @return the result of the transfer.
+     *
+     * @throws ServiceUnavailableException if the transfer did not complete in time: it may still be applied.
+     */
+    static TransferResult await(final CompletableFuture<TransferResult> result, final long timeoutNanos) {
+        try {
+            return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            throw new ServiceUnavailableException("The funds transfer did not complete in time and may still be applied. "
+                    + "Please check the account or retry with the same Idempotency-Key.");
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Interrupted while waiting for the funds transfer.", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e.getCause());
+        }
+    }
+
+    /**
+     * @param result - the result of a transfer not executed
+     *
+     * @return whether it was completed now with a {@link ServiceUnavailableException}, as the executor has stopped.
+     */
+    static boolean failStopped(final CompletableFuture<TransferResult> result) {
+        return result.completeExceptionally(new ServiceUnavailableException("The transfer executor has stopped. Operation not performed."));
+    }
+}
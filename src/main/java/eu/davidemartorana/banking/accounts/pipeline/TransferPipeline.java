@@ -0,0 +1,187 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.PipelineConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link TransferExecutor} publishing the transfers into a {@link TransferRingBuffer} consumed by a single thread.
+ *
+ * Transfers are executed one at a time, in publication order, so two transfers never compete for the same account lock
+ * and the {@code 409 CONFLICT} responses caused by lock timeouts disappear. When the ring is full the callers wait up
+ * to the configured publish timeout and then receive a {@code 503 SERVICE UNAVAILABLE}.
+ *
+ * When stopped, the consumer executes the transfers already published before exiting; a transfer claiming its slot
+ * while the pipeline stops gives the slot back without being executed, and its caller receives a
+ * {@code 503 SERVICE UNAVAILABLE}.
+ *
+ * The consumer is started only when the {@link TransferExecutionType#PIPELINE pipeline} execution is selected.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class TransferPipeline implements TransferExecutor, Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferPipeline.class);
+
+    private final AccountsService accountsService;
+
+    private final TransferRetry transferRetry;
+
+    private final PipelineConfig pipelineConfig;
+
+    private final boolean enabled;
+
+    private final long executionTimeoutNanos;
+
+    private final TransferRingBuffer ringBuffer;
+
+    private final WaitStrategy waitStrategy;
+
+    private volatile boolean running;
+
+    private Thread consumer;
+
+    @Inject
+    public TransferPipeline(final AccountsService accountsService, final TransferRetry transferRetry, final ApplicationConfig applicationConfig) {
+        this.accountsService = accountsService;
+        this.transferRetry = transferRetry;
+        this.pipelineConfig = applicationConfig.getTransfers().getPipeline();
+        this.enabled = applicationConfig.getTransfers().getExecution() == TransferExecutionType.PIPELINE;
+        this.executionTimeoutNanos = applicationConfig.getTransfers().getExecutionTimeout().toNanoseconds();
+        this.ringBuffer = new TransferRingBuffer(pipelineConfig.getRingSize());
+        this.waitStrategy = WaitStrategy.of(pipelineConfig.getWaitStrategy());
+    }
+
+    @Override
+    public TransferResult execute(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        return TransferFutures.await(submit(debtorAccountUUID, transferRequest), executionTimeoutNanos);
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> submit(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        if (!running) {
+            throw new ServiceUnavailableException("The transfer pipeline is not running. Please try later.");
+        }
+
+        final long sequence = ringBuffer.claim(pipelineConfig.getPublishTimeout().toNanoseconds());
+        if (sequence < 0) {
+            LOGGER.warn("Transfer pipeline full. Transfer from account uuid [{}] rejected.", debtorAccountUUID);
+            throw new ServiceUnavailableException("Too many transfers in progress. Please try later.");
+        }
+
+        // Checked again once claimed: the consumer exits when stopped with no slot claimed, so either it sees this one
+        // or the claim sees it stopped
+        if (!running) {
+            // Published empty, so a consumer still draining the ring skips it
+            ringBuffer.get(sequence).set(null, null, null);
+            ringBuffer.publish(sequence);
+            waitStrategy.signal();
+            throw new ServiceUnavailableException("The transfer pipeline is not running. Please try later.");
+        }
+
+        final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        ringBuffer.get(sequence).set(debtorAccountUUID, transferRequest, result);
+        ringBuffer.publish(sequence);
+        waitStrategy.signal();
+
+        return result;
+    }
+
+    /**
+     * @return the number of transfers waiting in the ring or being executed.
+     */
+    public int pending() {
+        return ringBuffer.pending();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        LOGGER.info("Starting the transfer pipeline. Ring size: {}, wait strategy: {}", ringBuffer.size(), pipelineConfig.getWaitStrategy());
+        running = true;
+        consumer = new Thread(this::consumeLoop, "transfer-pipeline-consumer");
+        consumer.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (consumer == null) {
+            return;
+        }
+
+        LOGGER.info("Stopping the transfer pipeline. Transfers still to execute: {}", ringBuffer.pending());
+        running = false;
+        consumer.join();
+    }
+
+    private void consumeLoop() {
+        long sequence = 0L;
+
+        while (true) {
+            final TransferSlot slot = ringBuffer.get(sequence);
+
+            try {
+                int idleCounter = 0;
+                while (!slot.isPublished(sequence)) {
+                    if (!running && ringBuffer.pending() == 0) {
+                        return;
+                    }
+                    idleCounter = waitStrategy.idle(idleCounter);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Transfer pipeline consumer interrupted. Transfers not executed: {}", ringBuffer.pending());
+                failPublished(sequence);
+                return;
+            }
+
+            final String debtorAccountUUID = slot.getDebtorAccountUUID();
+            final TransferRequest transferRequest = slot.getTransferRequest();
+            final CompletableFuture<TransferResult> result = slot.getResult();
+            if (result == null) {
+                // Claimed while stopping, and given back
+                ringBuffer.release(sequence++);
+                continue;
+            }
+            try {
+                final TransferResult transferResult = transferRetry.inUnitOfWork(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest));
+                // The slot is given back before waking the caller up, so the ring has room for its next transfer
+                ringBuffer.release(sequence);
+                result.complete(transferResult);
+            } catch (final RuntimeException e) {
+                ringBuffer.release(sequence);
+                result.completeExceptionally(e);
+            }
+            sequence++;
+        }
+    }
+
+    /**
+     * Fails the transfers published from {@code sequence} on, which will not be executed.
+     */
+    private void failPublished(final long sequence) {
+        for (long next = sequence; ringBuffer.get(next).isPublished(next); next++) {
+            final CompletableFuture<TransferResult> result = ringBuffer.get(next).getResult();
+            if (result != null) {
+                TransferFutures.failStopped(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of pre-allocated {@link TransferSlot}s, written by many producers and read by a single consumer.
+ *
+ * A producer {@link #claim(long) claims} the next sequence, fills the slot and {@link #publish(long) publishes} it. The
+ * consumer processes the sequences strictly in order and {@link #release(long) releases} each slot once done. A
+ * producer cannot claim a sequence whose slot has not been released yet: this is the back-pressure on the callers.
+ *
+ * @author Davide Martorana
+ */
+class TransferRingBuffer {
+
+    private static final long FULL_PARK_NANOS = 1_000L;
+
+    private final TransferSlot[] slots;
+
+    private final int mask;
+
+    /** Last sequence claimed by a producer. */
+    private final AtomicLong claimed = new AtomicLong(-1L);
+
+    /** Last sequence released by the consumer. */
+    private final AtomicLong released = new AtomicLong(-1L);
+
+    TransferRingBuffer(final int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("The ring size must be a power of two: " + size);
+        }
+
+        this.slots = new TransferSlot[size];
+        this.mask = size - 1;
+        for (int index = 0; index < size; index++) {
+            slots[index] = new TransferSlot();
+        }
+    }
+
+    /**
+     * Claims the next sequence, waiting up to {@code timeoutNanos} for a free slot.
+     *
+     * @param timeoutNanos - maximum time to wait if the ring is full
+     *
+     * @return the claimed sequence, or {@code -1} if the ring stayed full.
+     */
+    long claim(final long timeoutNanos) {
+        final long deadline = System.nanoTime() + timeoutNanos;
+
+        while (true) {
+            final long current = claimed.get();
+            final long next = current + 1;
+
+            if (next - slots.length > released.get()) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return -1L;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                continue;
+            }
+
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    TransferSlot get(final long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    void publish(final long sequence) {
+        get(sequence).publish(sequence);
+    }
+
+    void release(final long sequence) {
+        get(sequence).clear();
+        released.lazySet(sequence);
+    }
+
+    /**
+     * @return the number of transfers claimed and not yet released.
+     */
+    int pending() {
+        return (int) (claimed.get() - released.get());
+    }
+
+    int size() {
+        return slots.length;
+    }
+}
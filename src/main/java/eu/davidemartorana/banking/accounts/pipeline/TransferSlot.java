@@ -0,0 +1,57 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pre-allocated entry of the {@link TransferRingBuffer}. It is reused for every transfer landing on its position.
+ *
+ * The request fields are written by the producer before the publication of {@link #sequence}, and read by the consumer
+ * after having seen it, so the volatile write/read pair makes them visible.
+ *
+ * @author Davide Martorana
+ */
+class TransferSlot {
+
+    private volatile long sequence = -1L;
+
+    private String debtorAccountUUID;
+
+    private TransferRequest transferRequest;
+
+    private CompletableFuture<TransferResult> result;
+
+    void set(final String debtorAccountUUID, final TransferRequest transferRequest, final CompletableFuture<TransferResult> result) {
+        this.debtorAccountUUID = debtorAccountUUID;
+        this.transferRequest = transferRequest;
+        this.result = result;
+    }
+
+    void clear() {
+        this.debtorAccountUUID = null;
+        this.transferRequest = null;
+        this.result = null;
+    }
+
+    void publish(final long sequence) {
+        this.sequence = sequence;
+    }
+
+    boolean isPublished(final long sequence) {
+        return this.sequence == sequence;
+    }
+
+    String getDebtorAccountUUID() {
+        return debtorAccountUUID;
+    }
+
+    TransferRequest getTransferRequest() {
+        return transferRequest;
+    }
+
+    CompletableFuture<TransferResult> getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,132 @@
+package eu.davidemartorana.banking.accounts.pipeline;
+
+import eu.davidemartorana.banking.accounts.config.WaitStrategyType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Strategy used by the consumer of a {@link TransferRingBuffer} while no new transfer is available.
+ *
+ * @author Davide Martorana
+ */
+public abstract class WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 200;
+
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final long MAX_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Waits a bit. Called repeatedly by the consumer until the next slot is published.
+     *
+     * @param counter - number of consecutive idle calls so far, starting from zero
+     *
+     * @return the counter for the next call.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public abstract int idle(int counter) throws InterruptedException;
+
+    /**
+     * Wakes the consumer up. Called by the producers after each publication.
+     */
+    public void signal() {
+        // nothing to do by default: the consumer is never parked indefinitely
+    }
+
+    public static WaitStrategy of(final WaitStrategyType type) {
+        switch (type) {
+            case BUSY_SPIN:
+                return new BusySpin();
+            case YIELDING:
+                return new Yielding();
+            case SLEEPING:
+                return new Sleeping();
+            case BLOCKING:
+            default:
+                return new Blocking();
+        }
+    }
+
+    private static class BusySpin extends WaitStrategy {
+
+        @Override
+        public int idle(final int counter) {
+            Thread.onSpinWait();
+            return counter + 1;
+        }
+    }
+
+    private static class Yielding extends WaitStrategy {
+
+        @Override
+        public int idle(final int counter) {
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            return counter + 1;
+        }
+    }
+
+    private static class Sleeping extends WaitStrategy {
+
+        @Override
+        public int idle(final int counter) {
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (counter < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(SLEEP_NANOS);
+            }
+            return counter + 1;
+        }
+    }
+
+    /**
+     * The consumer waits on a condition. The wait is bounded anyway, so that a signal sent between the check of the
+     * slot and the wait only delays the consumer by a few milliseconds.
+     */
+    private static class Blocking extends WaitStrategy {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition published = lock.newCondition();
+
+        private volatile boolean waiting;
+
+        @Override
+        public int idle(final int counter) throws InterruptedException {
+            lock.lock();
+            try {
+                waiting = true;
+                published.awaitNanos(MAX_BLOCK_NANOS);
+            } finally {
+                waiting = false;
+                lock.unlock();
+            }
+            return counter + 1;
+        }
+
+        @Override
+        public void signal() {
+            if (!waiting) {
+                return;
+            }
+            lock.lock();
+            try {
+                published.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
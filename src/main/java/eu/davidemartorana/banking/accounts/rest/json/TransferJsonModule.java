@@ -0,0 +1,22 @@
+package eu.davidemartorana.banking.accounts.rest.json;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+
+/**
+ * Registers the streaming serializer of {@link TransferResponse} and the streaming deserializer of {@link TransferRequest}.
+ * The deserializer is bound to that exact class, so the items of a batch ({@code BatchTransferItem}) keep the bean
+ * deserializer and their own properties.
+ *
+ * @author Davide Martorana
+ */
+public class TransferJsonModule extends SimpleModule {
+
+    public TransferJsonModule() {
+        super(TransferJsonModule.class.getSimpleName());
+
+        addSerializer(TransferResponse.class, new TransferResponseSerializer());
+        addDeserializer(TransferRequest.class, new TransferRequestDeserializer());
+    }
+}
@@ -0,0 +1,129 @@
+package eu.davidemartorana.banking.accounts.rest.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Reads a {@link TransferRequest} token by token. The usual values are read straight from the parser; anything else
+ * (e.g. an amount written as a string) is handed to the deserializers of Jackson, so the accepted documents and the
+ * errors are the same of the bean deserializers.
+ *
+ * @author Davide Martorana
+ */
+public class TransferRequestDeserializer extends StdDeserializer<TransferRequest> {
+
+    public TransferRequestDeserializer() {
+        super(TransferRequest.class);
+    }
+
+    @Override
+    public TransferRequest deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+        final String first;
+        if (parser.isExpectedStartObjectToken()) {
+            first = parser.nextFieldName();
+        } else if (parser.hasToken(JsonToken.FIELD_NAME)) {
+            first = parser.getCurrentName();
+        } else if (parser.hasToken(JsonToken.END_OBJECT)) {
+            first = null;
+        } else {
+            return (TransferRequest) context.handleUnexpectedToken(TransferRequest.class, parser);
+        }
+
+        final TransferRequest request = new TransferRequest();
+        for (String name = first; name != null; name = parser.nextFieldName()) {
+            final JsonToken token = parser.nextToken();
+            switch (name) {
+                case "amount":
+                    request.setAmount(readAmount(parser, context, token));
+                    break;
+                case "beneficiaryAccountId":
+                    request.setBeneficiaryAccountId(readString(parser, context, token));
+                    break;
+                case "idempotencyKey":
+                    // Ignored by the bean deserializer as well: the key comes from the header
+                    parser.skipChildren();
+                    break;
+                default:
+                    context.handleUnknownProperty(parser, this, TransferRequest.class, name);
+            }
+        }
+
+        return request;
+    }
+
+    private Amount readAmount(final JsonParser parser, final DeserializationContext context, final JsonToken current) throws IOException {
+        if (current == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (current != JsonToken.START_OBJECT) {
+            return context.readValue(parser, Amount.class);
+        }
+
+        final Amount amount = new Amount();
+        for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+            final JsonToken token = parser.nextToken();
+            switch (name) {
+                case "value":
+                    amount.setValue(readDecimal(parser, context, token));
+                    break;
+                case "currency":
+                    amount.setCurrency(readCurrency(parser, context, token));
+                    break;
+                case "money":
+                    // Ignored by the bean deserializer as well, see Amount
+                    parser.skipChildren();
+                    break;
+                default:
+                    context.handleUnknownProperty(parser, this, Amount.class, name);
+            }
+        }
+
+        return amount;
+    }
+
+    private static BigDecimal readDecimal(final JsonParser parser, final DeserializationContext context, final JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return context.readValue(parser, BigDecimal.class);
+        }
+    }
+
+    private static Currency readCurrency(final JsonParser parser, final DeserializationContext context, final JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Currency.getInstance(parser.getText());
+            } catch (final IllegalArgumentException e) {
+                // The deserializer of Jackson reports the invalid code
+            }
+        }
+
+        return context.readValue(parser, Currency.class);
+    }
+
+    private static String readString(final JsonParser parser, final DeserializationContext context, final JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NULL:
+                return null;
+            default:
+                return context.readValue(parser, String.class);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package eu.davidemartorana.banking.accounts.rest.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.IOException;
+import java.util.Currency;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Writes a {@link TransferResponse} token by token, with the same output of the bean serializers of Jackson: same
+ * properties, in the same order, with the same null handling. The amounts are written from their minor units and the
+ * dates with a formatter built once, through buffers reused by the thread.
+ *
+ * @author Davide Martorana
+ */
+public class TransferResponseSerializer extends StdSerializer<TransferResponse> {
+
+    /**
+     * Pattern of {@link Transaction#getDateTime()}, as in its {@link com.fasterxml.jackson.annotation.JsonFormat}.
+     */
+    static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss ZZZ";
+
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormat.forPattern(DATE_TIME_PATTERN).withZoneUTC();
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    public TransferResponseSerializer() {
+        super(TransferResponse.class);
+    }
+
+    @Override
+    public void serialize(final TransferResponse response, final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+        final Buffers buffers = BUFFERS.get();
+
+        generator.writeStartObject();
+        generator.writeFieldName("debtorAccount");
+        writeAccount(response.getDebtorAccount(), generator, buffers);
+        generator.writeFieldName("beneficiaryAccount");
+        writeAccount(response.getBeneficiaryAccount(), generator, buffers);
+        generator.writeFieldName("transactions");
+        writeTransactions(response.getTransactions(), generator, provider, buffers);
+        generator.writeEndObject();
+    }
+
+    private static void writeAccount(final Account account, final JsonGenerator generator, final Buffers buffers) throws IOException {
+        if (account == null) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartObject();
+        final Currency currency = account.getCurrency();
+        if (currency != null) {
+            generator.writeStringField("currency", currency.getCurrencyCode());
+            if (account.getTotalAmountMinorUnits() != null) {
+                generator.writeFieldName("totalAmount");
+                writeMinorUnits(account.getTotalAmountMinorUnits(), Money.scaleOf(currency), generator, buffers);
+            }
+        }
+        generator.writeStringField("ibanNumber", account.getIbanNumber());
+        generator.writeStringField("id", account.getUuid());
+        generator.writeEndObject();
+    }
+
+    private static void writeTransactions(final List<Transaction> transactions, final JsonGenerator generator,
+                                          final SerializerProvider provider, final Buffers buffers) throws IOException {
+        if (transactions == null) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartArray();
+        for (final Transaction transaction : transactions) {
+            generator.writeStartObject();
+            final Currency currency = transaction.getCurrency();
+            if (currency == null) {
+                generator.writeNullField("currency");
+                generator.writeNullField("amount");
+            } else {
+                generator.writeStringField("currency", currency.getCurrencyCode());
+                generator.writeFieldName("amount");
+                writeMinorUnits(transaction.getAmountMinorUnits(), Money.scaleOf(currency), generator, buffers);
+            }
+            generator.writeFieldName("dateTime");
+            writeDateTime(transaction.getDateTime(), generator, provider, buffers);
+            generator.writeStringField("type", transaction.getType());
+            generator.writeStringField("id", transaction.getUuid());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes {@code minorUnits} in major units, as {@link java.math.BigDecimal#toString()} would do for a scale
+     * between 0 and the digits of a {@code long}.
+     */
+    static void writeMinorUnits(final long minorUnits, final int scale, final JsonGenerator generator, final Buffers buffers) throws IOException {
+        final char[] chars = buffers.number;
+        int position = chars.length;
+
+        // Negative values, so Long.MIN_VALUE can be written as well
+        long value = minorUnits < 0 ? minorUnits : -minorUnits;
+        for (int digit = 0; digit < scale; digit++) {
+            chars[--position] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        if (scale > 0) {
+            chars[--position] = '.';
+        }
+        do {
+            chars[--position] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (minorUnits < 0) {
+            chars[--position] = '-';
+        }
+
+        generator.writeRawValue(chars, position, chars.length - position);
+    }
+
+    private static void writeDateTime(final DateTime dateTime, final JsonGenerator generator, final SerializerProvider provider,
+                                      final Buffers buffers) throws IOException {
+        if (dateTime == null) {
+            generator.writeNull();
+            return;
+        }
+
+        // The dates are written in the time zone of the object mapper, as the Joda serializers of Jackson do
+        final TimeZone timeZone = provider.getTimeZone();
+        final DateTimeFormatter formatter = timeZone == null || UTC.hasSameRules(timeZone) && timeZone.getID().equals(UTC.getID())
+                ? UTC_FORMATTER
+                : UTC_FORMATTER.withZone(DateTimeZone.forTimeZone(timeZone));
+
+        final StringBuilder text = buffers.text;
+        text.setLength(0);
+        formatter.printTo(text, dateTime);
+
+        final int length = text.length();
+        if (buffers.chars.length < length) {
+            buffers.chars = new char[length];
+        }
+        text.getChars(0, length, buffers.chars, 0);
+        generator.writeString(buffers.chars, 0, length);
+    }
+
+    /**
+     * Buffers of a thread, reused by all the responses it writes.
+     */
+    static final class Buffers {
+
+        private final char[] number = new char[24];
+
+        private final StringBuilder text = new StringBuilder(32);
+
+        private char[] chars = new char[32];
+    }
+}
@@ -0,0 +1,40 @@
+package eu.davidemartorana.banking.accounts.rest.json;
+
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+
+import javax.inject.Inject;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Times the writing of the {@link TransferResponse} entities as the {@link TransferMetrics.Phase#SERIALIZATION} of the
+ * transfers, whichever the JSON codec in use. The response is buffered by Jersey, so the time is the one of the
+ * serialization unless the body outgrows the buffer.
+ *
+ * @author Davide Martorana
+ */
+@Provider
+public class TransferResponseWriteTimer implements WriterInterceptor {
+
+    private final TransferMetrics transferMetrics;
+
+    @Inject
+    public TransferResponseWriteTimer(final TransferMetrics transferMetrics) {
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        if (context.getType() != TransferResponse.class) {
+            context.proceed();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        context.proceed();
+        transferMetrics.record(TransferMetrics.Phase.SERIALIZATION, System.nanoTime() - start);
+    }
+}
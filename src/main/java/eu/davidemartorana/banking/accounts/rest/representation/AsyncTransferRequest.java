@@ -0,0 +1,24 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.Length;
+import org.hibernate.validator.constraints.URL;
+
+/**
+ * A {@link TransferRequest} submitted asynchronously, optionally with the URL to notify once it is completed.
+ */
+public class AsyncTransferRequest extends TransferRequest {
+
+    @JsonProperty
+    @Length(max = 2000)
+    @URL(regexp = "^https?://.*")
+    private String callbackUrl;
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+}
@@ -0,0 +1,25 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.Length;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A transfer of a batch: a {@link TransferRequest} together with the account to debit.
+ */
+public class BatchTransferItem extends TransferRequest {
+
+    @JsonProperty
+    @NotNull
+    @Length(min = 36, max = 36)
+    private String debtorAccountId;
+
+    public String getDebtorAccountId() {
+        return debtorAccountId;
+    }
+
+    public void setDebtorAccountId(String debtorAccountId) {
+        this.debtorAccountId = debtorAccountId;
+    }
+}
@@ -0,0 +1,65 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransferItemResponse {
+
+    @JsonProperty
+    private int index;
+
+    @JsonProperty
+    private int status;
+
+    @JsonProperty
+    private String message;
+
+    @JsonProperty
+    private TransferResponse transfer;
+
+    public static BatchTransferItemResponse of(final BatchItemResult result) {
+        final BatchTransferItemResponse response = new BatchTransferItemResponse();
+        response.setIndex(result.getIndex());
+        response.setStatus(result.getStatus());
+        response.setMessage(result.getMessage());
+        if (result.isApplied()) {
+            response.setTransfer(TransferResponse.of(result.getTransferResult()));
+        }
+
+        return response;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public TransferResponse getTransfer() {
+        return transfer;
+    }
+
+    public void setTransfer(TransferResponse transfer) {
+        this.transfer = transfer;
+    }
+}
@@ -0,0 +1,40 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class BatchTransferRequest {
+
+    public static final int MAX_TRANSFERS = 10000;
+
+    @JsonProperty
+    @NotNull
+    private BatchMode mode = BatchMode.ALL_OR_NOTHING;
+
+    @JsonProperty
+    @NotNull
+    @Size(min = 1, max = MAX_TRANSFERS)
+    @Valid
+    private List<BatchTransferItem> transfers;
+
+    public BatchMode getMode() {
+        return mode;
+    }
+
+    public void setMode(BatchMode mode) {
+        this.mode = mode;
+    }
+
+    public List<BatchTransferItem> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<BatchTransferItem> transfers) {
+        this.transfers = transfers;
+    }
+}
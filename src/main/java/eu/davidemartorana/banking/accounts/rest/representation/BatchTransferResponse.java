@@ -0,0 +1,65 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class BatchTransferResponse {
+
+    @JsonProperty
+    private BatchMode mode;
+
+    @JsonProperty
+    private int applied;
+
+    @JsonProperty
+    private int failed;
+
+    @JsonProperty
+    private List<BatchTransferItemResponse> results;
+
+    public static BatchTransferResponse of(final BatchMode mode, final List<BatchItemResult> results) {
+        final BatchTransferResponse response = new BatchTransferResponse();
+        response.setMode(mode);
+        response.setApplied((int) results.stream().filter(BatchItemResult::isApplied).count());
+        response.setFailed(results.size() - response.getApplied());
+        response.setResults(results.stream().map(BatchTransferItemResponse::of).collect(Collectors.toList()));
+
+        return response;
+    }
+
+    public BatchMode getMode() {
+        return mode;
+    }
+
+    public void setMode(BatchMode mode) {
+        this.mode = mode;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public void setApplied(int applied) {
+        this.applied = applied;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchTransferItemResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchTransferItemResponse> results) {
+        this.results = results;
+    }
+}
@@ -12,12 +12,30 @@ public class EntriesListResponse<T> extends LinkedHashMap<String, Object> {
         return response;
     }
 
+    /**
+     * As {@link #of(String, Collection)}, for a page of a longer list.
+     *
+     * @param name - name of the list
+     * @param collection - the entries of the page
+     * @param next - the cursor of the next page, {@code null} if this is the last page
+     *
+     * @return the response.
+     */
+    public static <T> EntriesListResponse<T> of(final String name, final Collection<T> collection, final String next) {
+        final EntriesListResponse<T> response = of(name, collection);
+        if (next != null) {
+            response.put("next", next);
+        }
+
+        return response;
+    }
+
     protected EntriesListResponse(){
         super();
     }
 
     public Collection<T> getContentList() {
-        final Optional<Map.Entry<String, Object>> objectEntry = this.entrySet().stream().filter(entry -> !entry.getKey().equals("total")).findFirst();
+        final Optional<Map.Entry<String, Object>> objectEntry = this.entrySet().stream().filter(entry -> entry.getValue() instanceof Collection).findFirst();
 
         final Map.Entry<String, Object> contentEntry = objectEntry.orElseThrow(() -> new IllegalArgumentException("Content not found."));
 
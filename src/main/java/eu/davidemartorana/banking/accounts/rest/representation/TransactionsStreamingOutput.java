@@ -0,0 +1,78 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a list of transactions to the response while they are read from the database, with the Jackson streaming
+ * generator: the list is never held in memory.
+ *
+ * The transactions are written either as a JSON array or as {@value #NDJSON} (one JSON object per line).
+ *
+ * @author Davide Martorana
+ */
+public class TransactionsStreamingOutput implements StreamingOutput {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    public static final MediaType NDJSON_TYPE = MediaType.valueOf(NDJSON);
+
+    private final ObjectMapper objectMapper;
+
+    private final Consumer<Consumer<Transaction>> source;
+
+    private final boolean newlineDelimited;
+
+    /**
+     * @param objectMapper - the mapper of the application, to write the transactions as the other endpoints do
+     * @param source - passes the transactions to write to the given consumer, in order
+     * @param newlineDelimited - {@code true} for {@value #NDJSON}, {@code false} for a JSON array
+     */
+    public TransactionsStreamingOutput(final ObjectMapper objectMapper, final Consumer<Consumer<Transaction>> source, final boolean newlineDelimited) {
+        this.objectMapper = objectMapper;
+        this.source = source;
+        this.newlineDelimited = newlineDelimited;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final ObjectWriter writer = objectMapper.writerFor(Transaction.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            // The lines of NDJSON are separated by the new line only
+            generator.setRootValueSeparator(null);
+            if (!newlineDelimited) {
+                generator.writeStartArray();
+            }
+            try {
+                source.accept(transaction -> {
+                    try {
+                        writer.writeValue(generator, transaction);
+                        if (newlineDelimited) {
+                            generator.writeRaw('\n');
+                        }
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!newlineDelimited) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package eu.davidemartorana.banking.accounts.rest.representation;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJob;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJobStatus;
+import org.joda.time.DateTime;
+
+/**
+ * Status of a transfer submitted asynchronously: once completed, either the response of the transfer applied, or the
+ * HTTP status and message it has been rejected with.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferJobResponse {
+
+    @JsonProperty
+    private String id;
+
+    @JsonProperty
+    private TransferJobStatus status;
+
+    @JsonProperty
+    private String debtorAccountId;
+
+    @JsonProperty
+    private String beneficiaryAccountId;
+
+    @JsonProperty
+    private Amount amount;
+
+    @JsonProperty
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss ZZZ")
+    private DateTime createdDateTime;
+
+    @JsonProperty
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss ZZZ")
+    private DateTime completedDateTime;
+
+    @JsonProperty
+    private Integer responseStatus;
+
+    @JsonProperty
+    private String message;
+
+    @JsonProperty
+    private TransferResponse transfer;
+
+    /**
+     * @param job - the job of the transfer
+     * @param transfer - the response of the transfer, {@code null} if not applied
+     *
+     * @return the status of the job for the client.
+     */
+    public static TransferJobResponse of(final TransferJob job, final TransferResponse transfer) {
+        final TransferJobResponse response = new TransferJobResponse();
+        response.setId(job.getId());
+        response.setStatus(job.getStatus());
+        response.setDebtorAccountId(job.getDebtorAccountUUID());
+        response.setBeneficiaryAccountId(job.getBeneficiaryAccountUUID());
+        response.setAmount(new Amount(job.getAmount().toBigDecimal(), job.getCurrency()));
+        response.setCreatedDateTime(job.getCreatedDateTime());
+        response.setCompletedDateTime(job.getCompletedDateTime());
+        response.setResponseStatus(job.getResponseStatus());
+        response.setMessage(job.getMessage());
+        response.setTransfer(transfer);
+
+        return response;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public TransferJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferJobStatus status) {
+        this.status = status;
+    }
+
+    public String getDebtorAccountId() {
+        return debtorAccountId;
+    }
+
+    public void setDebtorAccountId(String debtorAccountId) {
+        this.debtorAccountId = debtorAccountId;
+    }
+
+    public String getBeneficiaryAccountId() {
+        return beneficiaryAccountId;
+    }
+
+    public void setBeneficiaryAccountId(String beneficiaryAccountId) {
+        this.beneficiaryAccountId = beneficiaryAccountId;
+    }
+
+    public Amount getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Amount amount) {
+        this.amount = amount;
+    }
+
+    public DateTime getCreatedDateTime() {
+        return createdDateTime;
+    }
+
+    public void setCreatedDateTime(DateTime createdDateTime) {
+        this.createdDateTime = createdDateTime;
+    }
+
+    public DateTime getCompletedDateTime() {
+        return completedDateTime;
+    }
+
+    public void setCompletedDateTime(DateTime completedDateTime) {
+        this.completedDateTime = completedDateTime;
+    }
+
+    public Integer getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(Integer responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public TransferResponse getTransfer() {
+        return transfer;
+    }
+
+    public void setTransfer(TransferResponse transfer) {
+        this.transfer = transfer;
+    }
+}
@@ -1,5 +1,6 @@
 package eu.davidemartorana.banking.accounts.rest.representation;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import eu.davidemartorana.banking.accounts.domain.Amount;
 import org.hibernate.validator.constraints.Length;
@@ -17,6 +18,12 @@ public class TransferRequest {
     @Length(min = 36, max = 36)
     private String beneficiaryAccountId;
 
+    /**
+     * The {@code Idempotency-Key} header of the request, if any: it is not part of the body.
+     */
+    @JsonIgnore
+    private String idempotencyKey;
+
     public Amount getAmount() {
         return amount;
     }
@@ -32,4 +39,12 @@ public class TransferRequest {
     public void setBeneficiaryAccountId(String beneficiaryAccountId) {
         this.beneficiaryAccountId = beneficiaryAccountId;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 }
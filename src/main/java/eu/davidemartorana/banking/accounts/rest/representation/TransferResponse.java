@@ -1,6 +1,7 @@
 package eu.davidemartorana.banking.accounts.rest.representation;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
 
@@ -17,6 +18,28 @@ public class TransferResponse {
     @JsonProperty
     private List<Transaction> transactions;
 
+    /**
+     * Builds the response of a transfer, hiding some information regarding the beneficiary account, to prevent being
+     * seen by the operation initiator.
+     *
+     * @param result - the applied transfer
+     *
+     * @return the response for the client.
+     */
+    public static TransferResponse of(final TransferResult result) {
+        final Account beneficiaryAccount = new Account();
+        beneficiaryAccount.setCurrency(result.getBeneficiaryAccount().getCurrency());
+        beneficiaryAccount.setIbanNumber(result.getBeneficiaryAccount().getIbanNumber());
+        beneficiaryAccount.setUuid(result.getBeneficiaryAccount().getUuid());
+
+        final TransferResponse response = new TransferResponse();
+        response.setDebtorAccount(result.getDebtorAccount());
+        response.setBeneficiaryAccount(beneficiaryAccount);
+        response.setTransactions(result.getTransactions());
+
+        return response;
+    }
+
     public List<Transaction> getTransactions() {
         return transactions;
     }
@@ -1,22 +1,40 @@
 package eu.davidemartorana.banking.accounts.rest.resources;
 
 import com.codahale.metrics.annotation.Timed;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.HistoryCursor;
 import eu.davidemartorana.banking.accounts.domain.TransferResult;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.jobs.TransferJobQueue;
+import eu.davidemartorana.banking.accounts.rest.representation.AsyncTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferResponse;
 import eu.davidemartorana.banking.accounts.rest.representation.EntriesListResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransactionsStreamingOutput;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
 import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
 import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import java.util.List;
 
 /**
@@ -30,12 +48,34 @@ public class AccountRestResource {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountRestResource.class);
 
+    /**
+     * Size of the pages of transactions asked for with {@code after} only.
+     */
+    static final int DEFAULT_PAGE_SIZE = 100;
+
 
     private final AccountsService accountsService;
 
+    private final TransferExecutor transferExecutor;
+
+    private final IdempotencyService idempotencyService;
+
+    private final TransferRetry transferRetry;
+
+    private final TransferJobQueue transferJobQueue;
+
+    private final Environment environment;
+
     @Inject
-    public AccountRestResource(final AccountsService accountsService) {
+    public AccountRestResource(final AccountsService accountsService, final TransferExecutor transferExecutor,
+                               final IdempotencyService idempotencyService, final TransferRetry transferRetry,
+                               final TransferJobQueue transferJobQueue, final Environment environment) {
         this.accountsService = accountsService;
+        this.transferExecutor = transferExecutor;
+        this.idempotencyService = idempotencyService;
+        this.transferRetry = transferRetry;
+        this.transferJobQueue = transferJobQueue;
+        this.environment = environment;
     }
 
     @GET
@@ -47,40 +87,136 @@ public class AccountRestResource {
         return this.accountsService.getDetailsByAccountUUID(accountUUID);
     }
 
+    /**
+     * Returns all the transactions of the account, in date order. With {@code after} or {@code limit}, returns a page of
+     * them instead: when there are more transactions, the response contains the {@code next} cursor, the value of
+     * {@code after} giving the following page.
+     */
     @GET
     @Path("/{accountUUID}/transactions")
     @Timed
     @UnitOfWork
-    public EntriesListResponse<Transaction> getTransactionByAccountUUID(@PathParam("accountUUID") final String accountUUID){
-        LOGGER.debug("Retrieving transactions of account uuid: [{}]", accountUUID);
-        final List<Transaction> list = this.accountsService.getAllTransactionsByAccountsUUID(accountUUID);
+    public EntriesListResponse<Transaction> getTransactionByAccountUUID(@PathParam("accountUUID") final String accountUUID,
+                                                                        @QueryParam("after") final String after,
+                                                                        @QueryParam("limit") @Min(1) @Max(1000) final Integer limit){
+        LOGGER.debug("Retrieving transactions of account uuid: [{}] after [{}]", accountUUID, after);
+        final HistoryCursor cursor = this.accountsService.getHistoryCursor(accountUUID, after);
+        if (after == null && limit == null) {
+            return EntriesListResponse.of("transactions", this.accountsService.getAllTransactions(cursor));
+        }
+
+        final int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        // One more transaction tells whether there is a next page
+        return toPage(this.accountsService.getTransactions(cursor, pageSize + 1), pageSize);
+    }
 
-        return EntriesListResponse.of("transactions", list);
+    /**
+     * @param list - the transactions read, one more than the page size if there is a next page
+     * @param pageSize - the size of the page
+     *
+     * @return the page, with the {@code next} cursor if there are more transactions.
+     */
+    static EntriesListResponse<Transaction> toPage(final List<Transaction> list, final int pageSize) {
+        if (list.size() <= pageSize) {
+            return EntriesListResponse.of("transactions", list);
+        }
+
+        final List<Transaction> page = list.subList(0, pageSize);
+        return EntriesListResponse.of("transactions", page, page.get(pageSize - 1).getUuid());
     }
 
+    /**
+     * Streams all the transactions of the account, in date order, while they are read from the database. They are
+     * written as {@value TransactionsStreamingOutput#NDJSON} when the client accepts it explicitly, as a JSON array
+     * otherwise.
+     *
+     * The {@link UnitOfWork} only validates the account and the cursor: the transactions are read afterwards, while the
+     * response is written, with a session of their own.
+     */
+    @GET
+    @Path("/{accountUUID}/transactions:stream")
+    @Produces({MediaType.APPLICATION_JSON, TransactionsStreamingOutput.NDJSON})
+    @Timed
+    @UnitOfWork
+    public Response streamTransactionByAccountUUID(@PathParam("accountUUID") final String accountUUID,
+                                                   @QueryParam("after") final String after,
+                                                   @Context final HttpHeaders headers) {
+        LOGGER.debug("Streaming transactions of account uuid: [{}] after [{}]", accountUUID, after);
+        final HistoryCursor cursor = this.accountsService.getHistoryCursor(accountUUID, after);
+
+        final boolean newlineDelimited = headers.getAcceptableMediaTypes().stream()
+                .anyMatch(mediaType -> !mediaType.isWildcardSubtype() && mediaType.isCompatible(TransactionsStreamingOutput.NDJSON_TYPE));
+        final TransactionsStreamingOutput output = new TransactionsStreamingOutput(this.environment.getObjectMapper(),
+                consumer -> this.accountsService.forEachTransaction(cursor, consumer), newlineDelimited);
+
+        return Response.ok(output, newlineDelimited ? TransactionsStreamingOutput.NDJSON_TYPE : MediaType.APPLICATION_JSON_TYPE).build();
+    }
 
+    /**
+     * No {@link UnitOfWork} here: the {@link TransferExecutor} opens its own, possibly on another thread, so the request
+     * thread does not hold a database connection while waiting.
+     *
+     * With the {@value IdempotencyService#IDEMPOTENCY_KEY_HEADER} header, the retries of a transfer get the response of
+     * the first attempt committed, without being performed again.
+     */
     @POST
     @Path("/{accountUUID}/transfer")
     @Timed
-    @UnitOfWork
-    public TransferResponse transferFromAccount(@PathParam("accountUUID") final String accountUUID, @NotNull @Valid TransferRequest transferRequest){
+    public TransferResponse transferFromAccount(@PathParam("accountUUID") final String accountUUID,
+                                                @HeaderParam(IdempotencyService.IDEMPOTENCY_KEY_HEADER) final String idempotencyKey,
+                                                @NotNull @Valid TransferRequest transferRequest){
         LOGGER.debug("Funds transfer from account uuid [{}] -> [{}]", accountUUID, transferRequest.getBeneficiaryAccountId());
 
-        final TransferResult result = this.accountsService.transferAmount(accountUUID, transferRequest);
+        if (idempotencyKey != null) {
+            return this.idempotencyService.execute(idempotencyKey, accountUUID, transferRequest,
+                    () -> this.transferExecutor.execute(accountUUID, transferRequest));
+        }
+
+        final TransferResult result = this.transferExecutor.execute(accountUUID, transferRequest);
 
         LOGGER.trace("Transfer successfully happened. Result: [{}]", result);
-        // Hide some information regarding the beneficiary account, to prevent being seen by the operation initiator
-        final Account beneficiaryAccount = new Account();
-        beneficiaryAccount.setCurrency(result.getBeneficiaryAccount().getCurrency());
-        beneficiaryAccount.setIbanNumber(result.getBeneficiaryAccount().getIbanNumber());
-        beneficiaryAccount.setUuid(result.getBeneficiaryAccount().getUuid());
-
-        final TransferResponse response = new TransferResponse();
-        response.setDebtorAccount(result.getDebtorAccount());
-        response.setBeneficiaryAccount(beneficiaryAccount);
-        response.setTransactions(result.getTransactions());
-
-        return response;
+
+        return TransferResponse.of(result);
+    }
+
+    /**
+     * Accepts the transfer without waiting for it: the response is {@code 202 ACCEPTED}, with the status of the job
+     * to poll at {@code GET /transfers/{id}} (the {@code Location} header). When the body has a {@code callbackUrl},
+     * the status is also posted there once the job is completed.
+     *
+     * With the {@value IdempotencyService#IDEMPOTENCY_KEY_HEADER} header, the transfer is applied at most once, even
+     * when submitted again.
+     */
+    @POST
+    @Path("/{accountUUID}/transfers:async")
+    @Timed
+    public Response submitTransferFromAccount(@PathParam("accountUUID") final String accountUUID,
+                                              @HeaderParam(IdempotencyService.IDEMPOTENCY_KEY_HEADER) final String idempotencyKey,
+                                              @Context final UriInfo uriInfo,
+                                              @NotNull @Valid AsyncTransferRequest transferRequest) {
+        LOGGER.debug("Asynchronous funds transfer from account uuid [{}] -> [{}]", accountUUID, transferRequest.getBeneficiaryAccountId());
+
+        transferRequest.setIdempotencyKey(idempotencyKey);
+        final TransferJobResponse job = this.transferJobQueue.submit(accountUUID, transferRequest);
+
+        return Response.accepted(job)
+                .location(uriInfo.getBaseUriBuilder().path(TransferRestResource.class).path(TransferRestResource.class, "getTransferJob").build(job.getId()))
+                .build();
+    }
+
+    /**
+     * No {@link UnitOfWork} here: the batch is run by the {@link TransferRetry}, in a new unit of work at every attempt.
+     */
+    @POST
+    @Path("/transfers:batch")
+    @Timed
+    public BatchTransferResponse transferBatch(@NotNull @Valid BatchTransferRequest batchTransferRequest) {
+        LOGGER.debug("Batch of {} funds transfers. Mode: {}", batchTransferRequest.getTransfers().size(), batchTransferRequest.getMode());
+
+        final List<BatchItemResult> results = this.transferRetry.inUnitOfWork(
+                () -> this.accountsService.transferAmounts(batchTransferRequest.getTransfers(), batchTransferRequest.getMode()));
+
+        return BatchTransferResponse.of(batchTransferRequest.getMode(), results);
     }
 
 }
@@ -0,0 +1,108 @@
+package eu.davidemartorana.banking.accounts.rest.resources;
+
+import eu.davidemartorana.banking.accounts.rest.representation.EntriesListResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.AsyncAccountsService;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Non-blocking variants of the reads and of the transfers of the {@link AccountRestResource}, with the same responses:
+ * the request thread is released as soon as the queries or the transfer are submitted, and the response is resumed once
+ * the database has answered.
+ *
+ * @author Davide Martorana
+ */
+@Path("/async/accounts")
+@Produces(MediaType.APPLICATION_JSON)
+public class AsyncAccountRestResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAccountRestResource.class);
+
+    private final AsyncAccountsService accountsService;
+
+    private final TransferExecutor transferExecutor;
+
+    private final IdempotencyService idempotencyService;
+
+    @Inject
+    public AsyncAccountRestResource(final AsyncAccountsService accountsService, final TransferExecutor transferExecutor,
+                                    final IdempotencyService idempotencyService) {
+        this.accountsService = accountsService;
+        this.transferExecutor = transferExecutor;
+        this.idempotencyService = idempotencyService;
+    }
+
+    @GET
+    @Path("/{accountUUID}")
+    public void getDetailsByAccountUUID(@PathParam("accountUUID") final String accountUUID, @Suspended final AsyncResponse asyncResponse) {
+        LOGGER.debug("Retrieving account by uuid: [{}]", accountUUID);
+        AsyncResponses.resume(asyncResponse, this.accountsService.getDetailsByAccountUUID(accountUUID));
+    }
+
+    /**
+     * See {@link AccountRestResource#getTransactionByAccountUUID(String, String, Integer)}.
+     */
+    @GET
+    @Path("/{accountUUID}/transactions")
+    public void getTransactionByAccountUUID(@PathParam("accountUUID") final String accountUUID,
+                                            @QueryParam("after") final String after,
+                                            @QueryParam("limit") @Min(1) @Max(1000) final Integer limit,
+                                            @Suspended final AsyncResponse asyncResponse) {
+        LOGGER.debug("Retrieving transactions of account uuid: [{}] after [{}]", accountUUID, after);
+        if (after == null && limit == null) {
+            AsyncResponses.resume(asyncResponse, this.accountsService.getHistoryCursor(accountUUID, null)
+                    .thenCompose(this.accountsService::getAllTransactions)
+                    .thenApply(list -> EntriesListResponse.of("transactions", list)));
+            return;
+        }
+
+        final int pageSize = limit == null ? AccountRestResource.DEFAULT_PAGE_SIZE : limit;
+        AsyncResponses.resume(asyncResponse, this.accountsService.getHistoryCursor(accountUUID, after)
+                // One more transaction tells whether there is a next page
+                .thenCompose(cursor -> this.accountsService.getTransactions(cursor, pageSize + 1))
+                .thenApply(list -> AccountRestResource.toPage(list, pageSize)));
+    }
+
+    /**
+     * See {@link AccountRestResource#transferFromAccount(String, String, TransferRequest)}. The response is resumed
+     * from the result of {@link TransferExecutor#submit(String, TransferRequest)}: the transfer is executed by the
+     * threads of the executor in use, never by the request thread.
+     */
+    @POST
+    @Path("/{accountUUID}/transfer")
+    public void transferFromAccount(@PathParam("accountUUID") final String accountUUID,
+                                    @HeaderParam(IdempotencyService.IDEMPOTENCY_KEY_HEADER) final String idempotencyKey,
+                                    @NotNull @Valid final TransferRequest transferRequest,
+                                    @Suspended final AsyncResponse asyncResponse) {
+        LOGGER.debug("Funds transfer from account uuid [{}] -> [{}]", accountUUID, transferRequest.getBeneficiaryAccountId());
+
+        if (idempotencyKey != null) {
+            AsyncResponses.resume(asyncResponse, this.idempotencyService.submit(idempotencyKey, accountUUID, transferRequest,
+                    () -> this.transferExecutor.submit(accountUUID, transferRequest)));
+            return;
+        }
+
+        AsyncResponses.resume(asyncResponse, this.transferExecutor.submit(accountUUID, transferRequest).thenApply(TransferResponse::of));
+    }
+
+}
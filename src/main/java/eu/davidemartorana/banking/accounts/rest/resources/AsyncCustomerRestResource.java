@@ -0,0 +1,49 @@
+package eu.davidemartorana.banking.accounts.rest.resources;
+
+import eu.davidemartorana.banking.accounts.rest.representation.EntriesListResponse;
+import eu.davidemartorana.banking.accounts.services.AsyncCustomersService;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Non-blocking variants of the {@link CustomerRestResource}, with the same responses: the request thread is released
+ * as soon as the queries are submitted, and the response is resumed once the database has answered.
+ *
+ * @author Davide Martorana
+ */
+@Path("/async/customers")
+@Produces(MediaType.APPLICATION_JSON)
+public class AsyncCustomerRestResource {
+
+    private final AsyncCustomersService customersService;
+
+    @Inject
+    public AsyncCustomerRestResource(final AsyncCustomersService customersService) {
+        this.customersService = customersService;
+    }
+
+    @GET
+    public void getAll(@Suspended final AsyncResponse asyncResponse) {
+        AsyncResponses.resume(asyncResponse, customersService.getAllCustomers().thenApply(list -> EntriesListResponse.of("customers", list)));
+    }
+
+    @GET
+    @Path("/{customerUUId}/accounts")
+    public void getAllByCustomerId(@PathParam("customerUUId") final String customerUUID, @Suspended final AsyncResponse asyncResponse) {
+        AsyncResponses.resume(asyncResponse, customersService.getAllAccountsByCustomerUUID(customerUUID)
+                .thenApply(list -> EntriesListResponse.of("accounts", list)));
+    }
+
+    @GET
+    @Path("/{customerUUId}")
+    public void getCustomerByUUID(@PathParam("customerUUId") final String customerUUID, @Suspended final AsyncResponse asyncResponse) {
+        AsyncResponses.resume(asyncResponse, customersService.getByCustomerUUID(customerUUID));
+    }
+}
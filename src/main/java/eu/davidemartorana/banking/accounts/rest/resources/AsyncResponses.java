@@ -0,0 +1,34 @@
+package eu.davidemartorana.banking.accounts.rest.resources;
+
+import javax.ws.rs.container.AsyncResponse;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Resumes the suspended {@link AsyncResponse} of the non-blocking endpoints when their result is complete.
+ *
+ * @author Davide Martorana
+ */
+final class AsyncResponses {
+
+    private AsyncResponses() {
+    }
+
+    /**
+     * Resumes {@code asyncResponse} with the value of {@code result} or with its exception, unwrapped from the
+     * {@link CompletionException} of the dependent stages, so that it is mapped to the same response as if it was
+     * thrown by a blocking endpoint.
+     *
+     * @param asyncResponse - the suspended response
+     * @param result - the result of the request
+     */
+    static void resume(final AsyncResponse asyncResponse, final CompletionStage<?> result) {
+        result.whenComplete((value, error) -> {
+            if (error == null) {
+                asyncResponse.resume(value);
+            } else {
+                asyncResponse.resume(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+    }
+}
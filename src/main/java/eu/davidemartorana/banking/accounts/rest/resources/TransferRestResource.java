@@ -0,0 +1,45 @@
+package eu.davidemartorana.banking.accounts.rest.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import eu.davidemartorana.banking.accounts.jobs.TransferJobQueue;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST Service for the endpoint related to the transfers submitted asynchronously.
+ *
+ * @author Davide Martorana
+ */
+@Path("/transfers")
+@Produces(MediaType.APPLICATION_JSON)
+public class TransferRestResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferRestResource.class);
+
+    private final TransferJobQueue transferJobQueue;
+
+    @Inject
+    public TransferRestResource(final TransferJobQueue transferJobQueue) {
+        this.transferJobQueue = transferJobQueue;
+    }
+
+    @GET
+    @Path("/{transferId}")
+    @Timed
+    @UnitOfWork
+    public TransferJobResponse getTransferJob(@PathParam("transferId") final String transferId) {
+        LOGGER.debug("Retrieving transfer job by id: [{}]", transferId);
+        return this.transferJobQueue.find(transferId)
+                .orElseThrow(() -> new NotFoundException("Transfer with given id was not found"));
+    }
+}
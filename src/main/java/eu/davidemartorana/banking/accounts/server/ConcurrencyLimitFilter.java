@@ -0,0 +1,100 @@
+package eu.davidemartorana.banking.accounts.server;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.util.Duration;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of application requests served at the same time: a request waits for one of the permits up to
+ * {@code maxWait}, then it is rejected with 503 SERVICE UNAVAILABLE without reaching the resources. The permits are
+ * handed out in arrival order.
+ *
+ * With a request per thread the limit is the size of the thread pool; with virtual threads there is no such limit,
+ * and the permits are sized on the connections of the database pool, so that the requests queue here, where waiting
+ * costs nothing, instead of on the pool.
+ *
+ * @author Davide Martorana
+ */
+public class ConcurrencyLimitFilter implements Filter {
+
+    private static final byte[] REJECTED_BODY = "{\"code\":503,\"message\":\"Too many concurrent requests. Please try later.\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Semaphore permits;
+
+    private final long maxWaitNanos;
+
+    private final Timer wait;
+
+    private final Meter rejected;
+
+    /**
+     * @param maxConcurrentRequests - the number of permits
+     * @param maxWait - the maximum amount of time a request waits for a permit
+     * @param metricRegistry - the registry of the metrics of the waits and of the rejections
+     */
+    public ConcurrencyLimitFilter(final int maxConcurrentRequests, final Duration maxWait, final MetricRegistry metricRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxWaitNanos = maxWait.toNanoseconds();
+        this.wait = metricRegistry.timer(MetricRegistry.name(ConcurrencyLimitFilter.class, "wait"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(ConcurrencyLimitFilter.class, "rejected"));
+        metricRegistry.register(MetricRegistry.name(ConcurrencyLimitFilter.class, "available-permits"), (Gauge<Integer>) permits::availablePermits);
+        metricRegistry.register(MetricRegistry.name(ConcurrencyLimitFilter.class, "waiting"), (Gauge<Integer>) permits::getQueueLength);
+    }
+
+    @Override
+    public void init(final FilterConfig filterConfig) {
+        // Nothing to configure
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
+        final long start = System.nanoTime();
+        final boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for a permit", e);
+        }
+        wait.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (!acquired) {
+            rejected.mark();
+            reject((HttpServletResponse) response);
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void reject(final HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType("application/json");
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to release
+    }
+}
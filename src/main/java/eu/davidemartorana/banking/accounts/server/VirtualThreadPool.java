@@ -0,0 +1,128 @@
+package eu.davidemartorana.banking.accounts.server;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.TryExecutor;
+import ru.vyarus.dropwizard.guice.module.installer.scanner.InvisibleForScanner;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty {@link ThreadPool} starting a new virtual thread for every task instead of reusing a bounded set of platform
+ * threads: a request blocked on the database parks its virtual thread and releases the carrier thread to the others.
+ * The pool never runs out of threads, so the number of requests served at the same time has to be limited elsewhere,
+ * see {@link ConcurrencyLimitFilter}.
+ *
+ * Virtual threads are available from Java 21: the builder is looked up by reflection, so that the application still
+ * compiles and runs on Java 11, where {@link #isSupported()} is false.
+ *
+ * Created by the {@link VirtualThreadServerFactory}, it is not a Jetty bean to be installed by the classpath scan.
+ *
+ * @author Davide Martorana
+ */
+@InvisibleForScanner
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool, TryExecutor {
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookUpFactory("dw-virtual-");
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final Meter started;
+
+    /**
+     * @param metricRegistry - the registry of the gauge of the running threads and of the meter of the threads started
+     */
+    public VirtualThreadPool(final MetricRegistry metricRegistry) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on Java " + System.getProperty("java.specification.version"));
+        }
+
+        metricRegistry.register(MetricRegistry.name(VirtualThreadPool.class, "threads"), (Gauge<Integer>) threads::get);
+        this.started = metricRegistry.meter(MetricRegistry.name(VirtualThreadPool.class, "started"));
+    }
+
+    /**
+     * @return whether the JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    private static ThreadFactory lookUpFactory(final String prefix) {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        if (!isRunning()) {
+            throw new RejectedExecutionException("The thread pool is " + getState());
+        }
+
+        final Thread thread = VIRTUAL_THREAD_FACTORY.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                threads.decrementAndGet();
+            }
+        });
+        threads.incrementAndGet();
+        started.mark();
+        thread.start();
+    }
+
+    /**
+     * A new virtual thread is as cheap as a reserved one, so the task is always executed straight away.
+     */
+    @Override
+    public boolean tryExecute(final Runnable task) {
+        execute(task);
+        return true;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        stopped.countDown();
+        super.doStop();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public int getThreads() {
+        return threads.get();
+    }
+
+    /**
+     * @return always 0: the virtual threads end with their task.
+     */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,81 @@
+package eu.davidemartorana.banking.accounts.server;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.server.DefaultServerFactory;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The {@link DefaultServerFactory} serving the application requests on virtual threads, selected with:
+ *
+ * <pre>
+ *     server:
+ *       type: virtual-threads
+ * </pre>
+ *
+ * Jetty never runs out of virtual threads, so the database pool would be the first limit reached by a burst of
+ * requests, failing them after {@code maxWaitForConnection}. The requests wait for one of the
+ * {@code maxConcurrentRequests} permits of the {@link ConcurrencyLimitFilter} instead, by default as many as the
+ * connections of the database pool. The admin connectors keep their own platform threads.
+ *
+ * On a JVM before Java 21 the application requests are served by the usual pool of platform threads.
+ *
+ * @author Davide Martorana
+ */
+@JsonTypeName("virtual-threads")
+public class VirtualThreadServerFactory extends DefaultServerFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadServerFactory.class);
+
+    @Min(0)
+    private int maxConcurrentRequests = 0;
+
+    @NotNull
+    private Duration maxWaitForPermit = Duration.seconds(10);
+
+    /**
+     * @return the maximum number of application requests served at the same time, 0 for as many as the connections of
+     *          the database pool.
+     */
+    @JsonProperty
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @JsonProperty
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * @return the maximum amount of time a request waits for a permit before being rejected with 503.
+     */
+    @JsonProperty
+    public Duration getMaxWaitForPermit() {
+        return maxWaitForPermit;
+    }
+
+    @JsonProperty
+    public void setMaxWaitForPermit(final Duration maxWaitForPermit) {
+        this.maxWaitForPermit = maxWaitForPermit;
+    }
+
+    @Override
+    protected ThreadPool createThreadPool(final MetricRegistry metricRegistry) {
+        if (!VirtualThreadPool.isSupported()) {
+            LOGGER.warn("Virtual threads need Java 21 or later, running on Java {}: the requests are served by platform threads",
+                    System.getProperty("java.specification.version"));
+            return super.createThreadPool(metricRegistry);
+        }
+
+        LOGGER.info("The application requests are served by virtual threads");
+        return new VirtualThreadPool(metricRegistry);
+    }
+}
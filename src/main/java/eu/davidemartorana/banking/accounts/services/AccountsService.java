@@ -1,11 +1,22 @@
 package eu.davidemartorana.banking.accounts.services;
 
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.cache.SplitAccountIndex;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
 import eu.davidemartorana.banking.accounts.dao.AccountRepository;
 import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.HistoryCursor;
 import eu.davidemartorana.banking.accounts.domain.TransferResult;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
-import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,23 +28,60 @@ import javax.transaction.TransactionScoped;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.Response;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
 
 public class AccountsService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountsService.class);
 
+    /**
+     * Maximum number of balance slots of a split account.
+     */
+    public static final int MAX_BALANCE_SLOTS = 64;
+
     private final AccountRepository accountRepository;
 
     private final TransactionRepository transactionsRepository;
 
+    private final TransferEngine transferEngine;
+
+    private final AccountCache accountCache;
+
+    private final IdempotencyService idempotencyService;
+
+    private final HotAccountDetector hotAccountDetector;
+
+    private final SplitAccountIndex splitAccountIndex;
+
+    private final TransferMetrics transferMetrics;
+
     @Inject
-    public AccountsService(final AccountRepository accountRepository, final TransactionRepository transactionsRepository) {
+    public AccountsService(final AccountRepository accountRepository, final TransactionRepository transactionsRepository,
+                           final TransferEngine transferEngine, final AccountCache accountCache, final IdempotencyService idempotencyService,
+                           final HotAccountDetector hotAccountDetector, final SplitAccountIndex splitAccountIndex,
+                           final TransferMetrics transferMetrics) {
         this.accountRepository = accountRepository;
         this.transactionsRepository = transactionsRepository;
+        this.transferEngine = transferEngine;
+        this.accountCache = accountCache;
+        this.idempotencyService = idempotencyService;
+        this.hotAccountDetector = hotAccountDetector;
+        this.splitAccountIndex = splitAccountIndex;
+        this.transferMetrics = transferMetrics;
     }
 
     public List<Transaction> getAllTransactionsByAccountsUUID(final String uuid) {
@@ -42,67 +90,302 @@ public class AccountsService {
         return  transactionsRepository.findByAccountId(account.getId());
     }
 
+    /**
+     * Resolves the position in the history of the account {@code accountUUID} right after the transaction
+     * {@code afterUUID}.
+     *
+     * @param accountUUID - the uuid of the account
+     * @param afterUUID - the uuid of the last transaction already read, {@code null} to start from the beginning
+     *
+     * @return the cursor to read the history from.
+     */
+    public HistoryCursor getHistoryCursor(final String accountUUID, final String afterUUID) {
+        final Account account = accountRepository.findByUUID(accountUUID)
+                .orElseThrow(() -> new NotFoundException("Account with given id was not found"));
+        if (afterUUID == null) {
+            return new HistoryCursor(account.getId(), null);
+        }
+
+        final Transaction after = transactionsRepository.findByAccountIdAndUUID(account.getId(), afterUUID)
+                .orElseThrow(() -> new BadRequestException("The transaction to start after was not found in the account."));
+
+        return new HistoryCursor(account.getId(), after);
+    }
+
+    /**
+     * @param cursor - where the page starts
+     * @param maxResults - the maximum number of transactions of the page
+     *
+     * @return the transactions coming after the {@code cursor}, in date order.
+     */
+    public List<Transaction> getTransactions(final HistoryCursor cursor, final int maxResults) {
+        return transactionsRepository.findPageByAccountId(cursor.getAccountId(), cursor.getAfter(), maxResults);
+    }
+
+    /**
+     * @param cursor - the start of the history
+     *
+     * @return all the transactions of the account, in date order.
+     */
+    public List<Transaction> getAllTransactions(final HistoryCursor cursor) {
+        return transactionsRepository.findByAccountId(cursor.getAccountId());
+    }
+
+    /**
+     * Passes all the transactions coming after the {@code cursor} to {@code consumer}, in date order, without loading
+     * them all in memory. It does not need a unit of work.
+     *
+     * @param cursor - where the history starts
+     * @param consumer - receives the transactions
+     */
+    public void forEachTransaction(final HistoryCursor cursor, final Consumer<Transaction> consumer) {
+        transactionsRepository.scrollByAccountId(cursor.getAccountId(), cursor.getAfter(), consumer);
+    }
+
+    /**
+     * Returns the account with the given uuid, read through the {@link AccountCache}, with its current balance.
+     *
+     * @param accountUUID - the uuid of the account
+     *
+     * @return the account.
+     *
+     * @throws NotFoundException if no account was found.
+     */
     public Account getDetailsByAccountUUID(String accountUUID) {
         LOGGER.trace("Retrieving account by {}", accountUUID);
-        final Optional<Account> optionalAccount = accountRepository.findByUUID(accountUUID);
+        final Optional<Account> optionalAccount = accountCache.get(accountUUID, accountRepository::findByUUID);
         final Account account = optionalAccount.orElseThrow(()-> new NotFoundException("Account with given id was not found"));
 
-        return  account;
+        return  transferEngine.currentState(account);
     }
 
+    /**
+     * Splits the balance of the account in {@code balanceSlots} slots in the current unit of work, or spreads it across
+     * a different number of slots if the account is already split. The account and its slots are locked, and the
+     * balance is spread evenly across the new slots.
+     *
+     * @param accountUUID - the uuid of the account
+     * @param balanceSlots - the number of slots, from 2 to {@link #MAX_BALANCE_SLOTS}
+     *
+     * @return the account split, with its balance.
+     *
+     * @throws BadRequestException if the number of slots is not valid or the transfer engine does not support them.
+     * @throws NotFoundException if no account was found.
+     */
+    public Account splitAccount(final String accountUUID, final int balanceSlots) {
+        if (!transferEngine.supportsBalanceSlots()) {
+            throw new BadRequestException("The balance slots are not supported by the transfer engine in use.");
+        }
+        if (balanceSlots < 2 || balanceSlots > MAX_BALANCE_SLOTS) {
+            throw new BadRequestException("The balance slots must be between 2 and " + MAX_BALANCE_SLOTS + ".");
+        }
+
+        final Account account = accountRepository.findByUUID(accountUUID)
+                .orElseThrow(() -> new NotFoundException("Account with given id was not found"));
+        final long balance = Math.addExact(accountRepository.lockBalanceSlots(account).stream().mapToLong(BalanceSlot::getAmountMinorUnits).sum(),
+                account.getTotalAmountMinorUnits());
+
+        LOGGER.info("Splitting account uuid [{}] from {} to {} balance slots.", accountUUID, account.getBalanceSlots(), balanceSlots);
+        accountRepository.replaceBalanceSlots(account.getId(), balanceSlots, balance);
+        accountCache.invalidateOnCompletion(Collections.singletonList(accountUUID));
+        splitAccountIndex.addOnCommit(accountUUID);
+
+        final Account split = account.withTotalAmount(balance);
+        split.setBalanceSlots(balanceSlots);
+
+        return split;
+    }
+
+    /**
+     * Validates and applies a transfer in the current unit of work. A transfer with an
+     * {@link TransferRequest#getIdempotencyKey() idempotency key} takes its key in the same unit of work, before being
+     * applied, see {@link IdempotencyService}.
+     *
+     * The time waited for the locks of the accounts, and whether the transfer failed because of a conflict, are
+     * recorded in the {@link HotAccountDetector}. The locked reads of the accounts, their validation and the commit
+     * are timed in the {@link TransferMetrics}, where the failures are counted as well.
+     *
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction
+     *
+     * @return the accounts with their new totals together with the debit and credit transactions.
+     */
     @TransactionScoped
     public TransferResult transferAmount(final String debtorAccountUUID , final TransferRequest transferRequest) {
-        final Optional<Account> optionalDebtorAccount = accountRepository.findByUUID(debtorAccountUUID);
-        final Account debtorAccount = optionalDebtorAccount.orElseThrow(()->new NotFoundException("Debtor Account with given id was not found"));
+        final List<String> uuids = Arrays.asList(debtorAccountUUID, transferRequest.getBeneficiaryAccountId());
+        accountCache.invalidateOnCompletion(uuids);
+        transferMetrics.timeCommitOfCurrentTransaction();
 
-        final Long debtorAccountId = debtorAccount.getId();
+        final long lockStart = System.nanoTime();
+        try {
+            final Function<String, Optional<Account>> finder = accountsFinder(uuids, (uuid, nanos) ->
+                    transferMetrics.record(uuid.equals(debtorAccountUUID) ? TransferMetrics.Phase.DEBTOR_LOCK : TransferMetrics.Phase.BENEFICIARY_LOCK, nanos));
+            final long lockWaitNanos = System.nanoTime() - lockStart;
+            final BatchTransfer transfer = resolve(0, debtorAccountUUID, transferRequest, finder);
+            transferMetrics.record(TransferMetrics.Phase.LOOKUP, System.nanoTime() - lockStart - lockWaitNanos);
+            final TransferRequestRecord record = idempotencyService.claim(transfer, transferRequest.getIdempotencyKey());
 
-        LOGGER.trace("Validation against the account currency");
-        if(!debtorAccount.getCurrency().equals(transferRequest.getAmount().getCurrency())) {
-            throw new BadRequestException("The currency accounts must be the same of the transfer instruction.");
+            final TransferResult result = this.transferEngine.transfer(transfer.getDebtorAccount(), transfer.getBeneficiaryAccount(), transfer.getAmount());
+            idempotencyService.complete(record, result);
+
+            hotAccountDetector.record(uuids, lockWaitNanos, false);
+            return result;
+        } catch (final RuntimeException e) {
+            if (isConflict(e)) {
+                transferMetrics.failed(TransferMetrics.Failure.LOCK_CONFLICT);
+                hotAccountDetector.record(uuids, System.nanoTime() - lockStart, true);
+            } else if (e instanceof FundsNotEnoughException) {
+                transferMetrics.failed(TransferMetrics.Failure.INSUFFICIENT_FUNDS);
+            }
+            throw e;
         }
+    }
 
-        final String beneficiaryUUID = transferRequest.getBeneficiaryAccountId();
-        final Optional<Account> optionalBeneficiaryAccount = accountRepository.findByUUID(beneficiaryUUID);
-        final Account beneficiaryAccount = optionalBeneficiaryAccount.orElseThrow(() -> new BadRequestException("Beneficiary Account with given id was not found."));
+    /**
+     * Validates and applies a batch of transfers in the current unit of work. Every transfer is validated as in
+     * {@link #transferAmount(String, TransferRequest)}; with {@link BatchMode#ALL_OR_NOTHING} a single invalid transfer
+     * prevents the whole batch. Their failures are counted in the {@link TransferMetrics}, as for a single transfer.
+     *
+     * @param items - the transfers, in submission order
+     * @param batchMode - what to do when a transfer fails
+     *
+     * @return the outcome of every transfer, in submission order.
+     */
+    public List<BatchItemResult> transferAmounts(final List<? extends BatchTransferItem> items, final BatchMode batchMode) {
+        final List<String> uuids = new ArrayList<>(items.size() * 2);
+        items.forEach(item -> {
+            uuids.add(item.getDebtorAccountId());
+            uuids.add(item.getBeneficiaryAccountId());
+        });
+        accountCache.invalidateOnCompletion(uuids);
 
-        final Long beneficiaryAccountId = beneficiaryAccount.getId();
+        final long lockStart = System.nanoTime();
+        try {
+            final Function<String, Optional<Account>> finder = accountsFinder(uuids, null);
+            final long lockWaitNanos = System.nanoTime() - lockStart;
+            final List<BatchItemResult> results = transferAmounts(items, batchMode, finder);
 
-        LOGGER.trace("Validates that both accounts have the same currency");
-        if(!debtorAccount.getCurrency().equals(beneficiaryAccount.getCurrency())){
-            throw new BadRequestException("Both beneficiary and debtor accounts must have the same currency.");
+            hotAccountDetector.record(new HashSet<>(uuids), lockWaitNanos, false);
+            return results;
+        } catch (final RuntimeException e) {
+            if (isConflict(e)) {
+                transferMetrics.failed(TransferMetrics.Failure.LOCK_CONFLICT);
+                hotAccountDetector.record(new HashSet<>(uuids), System.nanoTime() - lockStart, true);
+            }
+            throw e;
         }
+    }
 
-        final Account updatedDebtorAccount;
-        final Transaction debitTransaction;
-        final Account updatedBeneficiaryAccount;
-        final Transaction creditTransaction;
+    private List<BatchItemResult> transferAmounts(final List<? extends BatchTransferItem> items, final BatchMode batchMode,
+                                                  final Function<String, Optional<Account>> finder) {
 
-        LOGGER.debug("Creating the transactions and updating the account totals. Atomic operation");
-        try {
-            updatedDebtorAccount = this.accountRepository.checkAndDecreaseLockingResourceByAccountId(transferRequest.getAmount(), debtorAccountId);
-            debitTransaction = this.transactionsRepository.addTransaction(transferRequest.getAmount(), debtorAccount, TransactionType.DEBIT);
+        final List<BatchItemResult> results = new ArrayList<>(items.size());
+        final List<BatchTransfer> transfers = new ArrayList<>(items.size());
+        for (int index = 0; index < items.size(); index++) {
+            final BatchTransferItem item = items.get(index);
+            try {
+                transfers.add(resolve(index, item.getDebtorAccountId(), item, finder));
+            } catch (final WebApplicationException e) {
+                results.add(BatchItemResult.failed(index, e));
+            }
+        }
 
-            updatedBeneficiaryAccount = this.accountRepository.checkAndIncreaseLockingResourceByAccountId(transferRequest.getAmount(), beneficiaryAccountId);
-            creditTransaction = this.transactionsRepository.addTransaction(transferRequest.getAmount(), beneficiaryAccount, TransactionType.CREDIT);
-        } catch (final WebApplicationException e) {
-            throw e;
+        LOGGER.debug("Batch of {} transfers: {} invalid", items.size(), results.size());
+        if (!results.isEmpty() && batchMode == BatchMode.ALL_OR_NOTHING) {
+            transfers.forEach(transfer -> results.add(BatchItemResult.notPerformed(transfer.getIndex())));
+        } else if (!transfers.isEmpty()) {
+            final Map<Integer, TransferRequestRecord> records = new HashMap<>();
+            for (final BatchTransfer transfer : transfers) {
+                final TransferRequestRecord record = idempotencyService.claim(transfer, items.get(transfer.getIndex()).getIdempotencyKey());
+                if (record != null) {
+                    records.put(transfer.getIndex(), record);
+                }
+            }
 
-        } catch (final PessimisticLockException | LockTimeoutException e) {
-            throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", e, Response.Status.CONFLICT);
-        } catch (final RuntimeException e) {
-            LOGGER.error("Error during the funds transfer.", e);
-            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+            final List<BatchItemResult> transferResults = this.transferEngine.transferBatch(transfers, batchMode);
+            for (final BatchItemResult result : transferResults) {
+                if (result.isApplied()) {
+                    idempotencyService.complete(records.get(result.getIndex()), result.getTransferResult());
+                } else {
+                    idempotencyService.release(records.get(result.getIndex()));
+                    if (result.getError() instanceof FundsNotEnoughException) {
+                        transferMetrics.failed(TransferMetrics.Failure.INSUFFICIENT_FUNDS);
+                    }
+                }
+            }
+            results.addAll(transferResults);
         }
 
-        LOGGER.debug("Transactions created and accounts totals updated. Atomic operation");
+        results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return results;
+    }
+
+    /**
+     * Returns the function giving the accounts of the transfers. Every account is read once, however many transfers it
+     * is involved in: if the engine requires so, all of them are read at once under lock, otherwise when first needed.
+     * The accounts split in balance slots are never locked here: the engine locks their slots.
+     *
+     * @param lockTimes - receives the time taken by the locked read of every account, if not {@code null}
+     */
+    private Function<String, Optional<Account>> accountsFinder(final List<String> uuids, final ObjLongConsumer<String> lockTimes) {
+        final Map<String, Optional<Account>> accounts = new HashMap<>();
+        if (this.transferEngine.requiresLockedAccounts()) {
+            final Set<String> lockedUUIDs = uuids.stream()
+                    .filter(Objects::nonNull)
+                    .filter(uuid -> !splitAccountIndex.isSplit(uuid))
+                    .collect(Collectors.toSet());
+            final Map<String, Account> lockedAccounts = lockTimes == null
+                    ? accountRepository.findAllByUUIDLocking(lockedUUIDs) : accountRepository.findAllByUUIDLocking(lockedUUIDs, lockTimes);
+            lockedUUIDs.forEach(uuid -> accounts.put(uuid, Optional.ofNullable(lockedAccounts.get(uuid))));
+        }
+
+        return uuid -> uuid == null ? Optional.empty() : accounts.computeIfAbsent(uuid, accountRepository::findByUUID);
+    }
+
+    /**
+     * @return whether the transfer failed because its accounts were locked or changed by another transfer.
+     */
+    private static boolean isConflict(final RuntimeException e) {
+        if (e instanceof ConcurrentUpdateException) {
+            return true;
+        }
+        final Throwable lockFailure = e instanceof WebApplicationException ? e.getCause() : e;
 
-        final TransferResult response = new TransferResult();
-        response.setBeneficiaryAccount(updatedBeneficiaryAccount);
-        response.setDebtorAccount(updatedDebtorAccount);
-        response.addTransaction(debitTransaction);
-        response.addTransaction(creditTransaction);
+        return lockFailure instanceof PessimisticLockException || lockFailure instanceof LockTimeoutException;
+    }
+
+    private BatchTransfer resolve(final int index, final String debtorAccountUUID, final TransferRequest transferRequest,
+                                  final Function<String, Optional<Account>> finder) {
+        final Optional<Account> optionalDebtorAccount = finder.apply(debtorAccountUUID);
+        if (!optionalDebtorAccount.isPresent()) {
+            transferMetrics.failed(TransferMetrics.Failure.NOT_FOUND);
+            throw new NotFoundException("Debtor Account with given id was not found");
+        }
+        final Account debtorAccount = optionalDebtorAccount.get();
+
+        LOGGER.trace("Validation against the account currency");
+        if(!debtorAccount.getCurrency().equals(transferRequest.getAmount().getCurrency())) {
+            transferMetrics.failed(TransferMetrics.Failure.CURRENCY_MISMATCH);
+            throw new BadRequestException("The currency accounts must be the same of the transfer instruction.");
+        }
+
+        LOGGER.trace("Validation of the amount in minor units of the currency");
+        transferRequest.getAmount().checkMinorUnits();
+
+        final String beneficiaryUUID = transferRequest.getBeneficiaryAccountId();
+        final Optional<Account> optionalBeneficiaryAccount = finder.apply(beneficiaryUUID);
+        if (!optionalBeneficiaryAccount.isPresent()) {
+            transferMetrics.failed(TransferMetrics.Failure.NOT_FOUND);
+            throw new BadRequestException("Beneficiary Account with given id was not found.");
+        }
+        final Account beneficiaryAccount = optionalBeneficiaryAccount.get();
+
+        LOGGER.trace("Validates that both accounts have the same currency");
+        if(!debtorAccount.getCurrency().equals(beneficiaryAccount.getCurrency())){
+            transferMetrics.failed(TransferMetrics.Failure.CURRENCY_MISMATCH);
+            throw new BadRequestException("Both beneficiary and debtor accounts must have the same currency.");
+        }
 
-        return response;
+        return new BatchTransfer(index, debtorAccount, beneficiaryAccount, transferRequest.getAmount());
     }
 }
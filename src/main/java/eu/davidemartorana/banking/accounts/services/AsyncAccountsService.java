@@ -0,0 +1,109 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncAccountRepository;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncTransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.HistoryCursor;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The reads of the {@link AccountsService} through the asynchronous repositories: nothing blocks the calling thread,
+ * and the results are completed by the threads of the repositories. The exceptions are the same, completing the
+ * results exceptionally.
+ *
+ * @author Davide Martorana
+ */
+public class AsyncAccountsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAccountsService.class);
+
+    private final AsyncAccountRepository accountRepository;
+
+    private final AsyncTransactionRepository transactionRepository;
+
+    private final TransferEngine transferEngine;
+
+    private final AccountCache accountCache;
+
+    @Inject
+    public AsyncAccountsService(final AsyncAccountRepository accountRepository, final AsyncTransactionRepository transactionRepository,
+                                final TransferEngine transferEngine, final AccountCache accountCache) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transferEngine = transferEngine;
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * See {@link AccountsService#getDetailsByAccountUUID(String)}.
+     *
+     * @param accountUUID - the uuid of the account
+     *
+     * @return the account, completed exceptionally with {@link NotFoundException} if no account was found.
+     */
+    public CompletionStage<Account> getDetailsByAccountUUID(final String accountUUID) {
+        LOGGER.trace("Retrieving account by {}", accountUUID);
+        return accountCache.getAsync(accountUUID, accountRepository::findByUUID).thenCompose(optionalAccount -> {
+            final Account account = optionalAccount.orElseThrow(() -> new NotFoundException("Account with given id was not found"));
+
+            // The balance of an account split in slots is summed up by the database
+            if (account.isSplit() && transferEngine.supportsBalanceSlots()) {
+                return accountRepository.findTotalAmountWithSlots(account.getId()).thenApply(account::withTotalAmount);
+            }
+
+            return CompletableFuture.completedFuture(transferEngine.currentState(account));
+        });
+    }
+
+    /**
+     * See {@link AccountsService#getHistoryCursor(String, String)}.
+     *
+     * @param accountUUID - the uuid of the account
+     * @param afterUUID - the uuid of the last transaction of the previous page, {@code null} for the first page
+     *
+     * @return the cursor, completed exceptionally with {@link NotFoundException} if no account was found and with
+     *          {@link BadRequestException} if the transaction is not in the account.
+     */
+    public CompletionStage<HistoryCursor> getHistoryCursor(final String accountUUID, final String afterUUID) {
+        return accountRepository.findByUUID(accountUUID).thenCompose(optionalAccount -> {
+            final Account account = optionalAccount.orElseThrow(() -> new NotFoundException("Account with given id was not found"));
+            if (afterUUID == null) {
+                return CompletableFuture.completedFuture(new HistoryCursor(account.getId(), null));
+            }
+
+            return transactionRepository.findByAccountIdAndUUID(account.getId(), afterUUID).thenApply(after -> new HistoryCursor(account.getId(),
+                    after.orElseThrow(() -> new BadRequestException("The transaction to start after was not found in the account."))));
+        });
+    }
+
+    /**
+     * @param cursor - where the page starts
+     * @param maxResults - the maximum number of transactions of the page
+     *
+     * @return the transactions coming after the {@code cursor}, in date order.
+     */
+    public CompletionStage<List<Transaction>> getTransactions(final HistoryCursor cursor, final int maxResults) {
+        return transactionRepository.findPageByAccountId(cursor.getAccountId(), cursor.getAfter(), maxResults);
+    }
+
+    /**
+     * See {@link AccountsService#getAllTransactions(HistoryCursor)}.
+     *
+     * @param cursor - the start of the history
+     *
+     * @return all the transactions of the account, in date order.
+     */
+    public CompletionStage<List<Transaction>> getAllTransactions(final HistoryCursor cursor) {
+        return transactionRepository.findByAccountId(cursor.getAccountId());
+    }
+}
@@ -0,0 +1,70 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.cache.CustomerCache;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncAccountRepository;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncCustomerRepository;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Customer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.NotFoundException;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The {@link CustomersService} through the asynchronous repositories: nothing blocks the calling thread, and the
+ * results are completed by the threads of the repositories.
+ *
+ * @author Davide Martorana
+ */
+public class AsyncCustomersService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCustomersService.class);
+
+    private final AsyncCustomerRepository customerRepository;
+
+    private final AsyncAccountRepository accountRepository;
+
+    private final CustomerCache customerCache;
+
+    @Inject
+    public AsyncCustomersService(final AsyncCustomerRepository customerRepository, final AsyncAccountRepository accountRepository,
+                                 final CustomerCache customerCache) {
+        this.customerRepository = customerRepository;
+        this.accountRepository = accountRepository;
+        this.customerCache = customerCache;
+    }
+
+    /**
+     * @return all the customers.
+     */
+    public CompletionStage<List<Customer>> getAllCustomers() {
+        return customerRepository.findAll();
+    }
+
+    /**
+     * See {@link CustomersService#getByCustomerUUID(String)}.
+     *
+     * @param uuid - unique identifier for the customer
+     *
+     * @return the customer, completed exceptionally with {@link NotFoundException} if no customer was found.
+     */
+    public CompletionStage<Customer> getByCustomerUUID(final String uuid) {
+        LOGGER.trace("Retrieving customer by id [{}]", uuid);
+        return customerCache.getAsync(uuid, customerRepository::findByUUID)
+                .thenApply(customer -> customer.orElseThrow(() -> new NotFoundException("Customer with given id was not found")));
+    }
+
+    /**
+     * @param uuid - unique identifier for the customer
+     *
+     * @return the accounts of the customer, completed exceptionally with {@link NotFoundException} if no customer was
+     *          found.
+     */
+    public CompletionStage<List<Account>> getAllAccountsByCustomerUUID(final String uuid) {
+        LOGGER.trace("Retrieving all the accounts of customer with uuid [{}]", uuid);
+        return getByCustomerUUID(uuid).thenCompose(customer -> accountRepository.findByCustomerId(customer.getId()));
+    }
+}
@@ -0,0 +1,165 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import org.joda.time.DateTime;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a batch of transfers computed in memory, before touching the database: the transfers are applied in
+ * submission order to a copy of the starting balances, so a transfer can spend the money received earlier in the same
+ * batch. The {@link TransferEngine}s then write only the transfers that succeeded.
+ *
+ * The balances and the changes are in minor units of the currency of the accounts.
+ *
+ * @author Davide Martorana
+ */
+public class BatchTransferPlan {
+
+    private final List<BatchItemResult> results;
+
+    private final List<Transaction> transactions;
+
+    private final SortedMap<Long, Long> deltas;
+
+    private final Map<Long, Long> balances;
+
+    private BatchTransferPlan(final List<BatchItemResult> results, final List<Transaction> transactions,
+                              final SortedMap<Long, Long> deltas, final Map<Long, Long> balances) {
+        this.results = results;
+        this.transactions = transactions;
+        this.deltas = deltas;
+        this.balances = balances;
+    }
+
+    /**
+     * Plans the given {@code transfers}.
+     *
+     * @param transfers - the transfers, in submission order
+     * @param startBalances - the current total amount of every account involved, in minor units, by account id
+     * @param batchMode - what to do when a transfer fails
+     *
+     * @return the plan of the batch.
+     */
+    public static BatchTransferPlan of(final List<BatchTransfer> transfers, final Map<Long, Long> startBalances, final BatchMode batchMode) {
+        final List<BatchItemResult> results = new ArrayList<>(transfers.size());
+        final List<Transaction> transactions = new ArrayList<>(transfers.size() * 2);
+        final SortedMap<Long, Long> deltas = new TreeMap<>();
+        final Map<Long, Long> balances = new HashMap<>(startBalances);
+        final DateTime now = DateTime.now();
+        boolean failures = false;
+
+        for (final BatchTransfer transfer : transfers) {
+            final Account debtorAccount = transfer.getDebtorAccount();
+            final Account beneficiaryAccount = transfer.getBeneficiaryAccount();
+            final Money amount;
+            try {
+                amount = transfer.getAmount().toMoney();
+            } catch (final WebApplicationException e) {
+                results.add(BatchItemResult.failed(transfer.getIndex(), e));
+                failures = true;
+                continue;
+            }
+            final long value = amount.getMinorUnits();
+
+            final long debtorTotal = balances.get(debtorAccount.getId());
+            if (debtorTotal < value) {
+                results.add(BatchItemResult.failed(transfer.getIndex(), new FundsNotEnoughException("Fund not enough for amount: " + transfer.getAmount().getValue().toPlainString())));
+                failures = true;
+                continue;
+            }
+
+            final long newDebtorTotal = Math.subtractExact(debtorTotal, value);
+            balances.put(debtorAccount.getId(), newDebtorTotal);
+            final long newBeneficiaryTotal = Math.addExact(balances.get(beneficiaryAccount.getId()), value);
+            balances.put(beneficiaryAccount.getId(), newBeneficiaryTotal);
+
+            deltas.merge(debtorAccount.getId(), Math.negateExact(value), Math::addExact);
+            deltas.merge(beneficiaryAccount.getId(), value, Math::addExact);
+
+            final Transaction debitTransaction = Transaction.create(amount, debtorAccount, TransactionType.DEBIT, now);
+            final Transaction creditTransaction = Transaction.create(amount, beneficiaryAccount, TransactionType.CREDIT, now);
+            transactions.add(debitTransaction);
+            transactions.add(creditTransaction);
+
+            final TransferResult transferResult = new TransferResult();
+            transferResult.setDebtorAccount(debtorAccount.withTotalAmount(newDebtorTotal));
+            transferResult.setBeneficiaryAccount(beneficiaryAccount.withTotalAmount(newBeneficiaryTotal));
+            transferResult.addTransaction(debitTransaction);
+            transferResult.addTransaction(creditTransaction);
+            results.add(BatchItemResult.applied(transfer.getIndex(), transferResult));
+        }
+
+        if (failures && batchMode == BatchMode.ALL_OR_NOTHING) {
+            return rejected(results);
+        }
+
+        return new BatchTransferPlan(results, transactions, deltas, balances);
+    }
+
+    /**
+     * Builds a plan where nothing is applied: the failed transfers keep their error, the other ones are reported as
+     * {@link BatchItemResult#notPerformed(int) not performed}.
+     *
+     * @param results - the outcome of the transfers
+     *
+     * @return a plan without any change.
+     */
+    public static BatchTransferPlan rejected(final List<BatchItemResult> results) {
+        final List<BatchItemResult> rejectedResults = new ArrayList<>(results.size());
+        for (final BatchItemResult result : results) {
+            rejectedResults.add(result.isApplied() ? BatchItemResult.notPerformed(result.getIndex()) : result);
+        }
+
+        return new BatchTransferPlan(rejectedResults, Collections.emptyList(), new TreeMap<>(), Collections.emptyMap());
+    }
+
+    /**
+     * @return the outcome of every transfer, in submission order.
+     */
+    public List<BatchItemResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the transactions of the applied transfers, not yet persisted.
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * @return the overall change of every account touched by the applied transfers, sorted by account id.
+     */
+    public SortedMap<Long, Long> getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @param accountId - id of an account touched by the applied transfers
+     *
+     * @return the total amount of the account once the batch is applied.
+     */
+    public long getFinalBalance(final Long accountId) {
+        return balances.get(accountId);
+    }
+
+    public boolean hasChanges() {
+        return !transactions.isEmpty();
+    }
+}
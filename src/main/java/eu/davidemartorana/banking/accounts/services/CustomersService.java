@@ -1,5 +1,6 @@
 package eu.davidemartorana.banking.accounts.services;
 
+import eu.davidemartorana.banking.accounts.cache.CustomerCache;
 import eu.davidemartorana.banking.accounts.dao.AccountRepository;
 import eu.davidemartorana.banking.accounts.dao.CustomerRepository;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
@@ -25,10 +26,13 @@ public class CustomersService {
 
     private final AccountRepository accountRepository;
 
+    private final CustomerCache customerCache;
+
     @Inject
-    public CustomersService(final CustomerRepository customerRepository, final AccountRepository accountRepository) {
+    public CustomersService(final CustomerRepository customerRepository, final AccountRepository accountRepository, final CustomerCache customerCache) {
         this.customerRepository = customerRepository;
         this.accountRepository = accountRepository;
+        this.customerCache = customerCache;
     }
 
     /**
@@ -42,7 +46,7 @@ public class CustomersService {
 
 
     /**
-     * Retrieve the customer with the given unique {@code uuid}
+     * Retrieve the customer with the given unique {@code uuid}, read through the {@link CustomerCache}.
      *
      * @param uuid - unique identifier for the customer
      *
@@ -53,7 +57,7 @@ public class CustomersService {
     public Customer getByCustomerUUID(final String uuid){
         LOGGER.trace("Retrieving customer by id [{}]", uuid);
 
-        final Customer customer = customerRepository.findByUUID(uuid).orElseThrow(() -> new NotFoundException("Customer with given id was not found"));
+        final Customer customer = customerCache.get(uuid, customerRepository::findByUUID).orElseThrow(() -> new NotFoundException("Customer with given id was not found"));
 
         return customer;
     }
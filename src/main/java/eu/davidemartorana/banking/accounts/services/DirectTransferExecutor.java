@@ -0,0 +1,40 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.dao.async.JdbcExecutor;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+
+import javax.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link TransferExecutor} running the transfer in the calling thread, or in a thread of the {@link JdbcExecutor} when
+ * submitted.
+ *
+ * @author Davide Martorana
+ */
+public class DirectTransferExecutor implements TransferExecutor {
+
+    private final AccountsService accountsService;
+
+    private final TransferRetry transferRetry;
+
+    private final JdbcExecutor jdbcExecutor;
+
+    @Inject
+    public DirectTransferExecutor(final AccountsService accountsService, final TransferRetry transferRetry, final JdbcExecutor jdbcExecutor) {
+        this.accountsService = accountsService;
+        this.transferRetry = transferRetry;
+        this.jdbcExecutor = jdbcExecutor;
+    }
+
+    @Override
+    public TransferResult execute(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        return transferRetry.inUnitOfWork(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest));
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> submit(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        return jdbcExecutor.submit(() -> execute(debtorAccountUUID, transferRequest));
+    }
+}
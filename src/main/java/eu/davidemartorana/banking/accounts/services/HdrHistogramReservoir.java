@@ -0,0 +1,128 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Reservoir} recording into an HdrHistogram {@link Recorder}: an update is wait-free, without locks and without
+ * allocations, whatever the number of threads recording.
+ *
+ * The snapshots cover every value recorded since the reservoir was created, with 3 significant digits, the values above
+ * the highest trackable one being recorded as that one. Unlike the default exponentially decaying reservoir, which
+ * favours the last five minutes, they are not biased towards the recent values.
+ *
+ * @author Davide Martorana
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final long highestTrackableValue;
+
+    private final Recorder recorder;
+
+    private final Histogram total;
+
+    private Histogram interval;
+
+    /**
+     * @param highestTrackableValue - the highest value recorded as it is
+     */
+    public HdrHistogramReservoir(final long highestTrackableValue) {
+        this.highestTrackableValue = highestTrackableValue;
+        this.recorder = new Recorder(highestTrackableValue, SIGNIFICANT_DIGITS);
+        this.total = new Histogram(highestTrackableValue, SIGNIFICANT_DIGITS);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, getSnapshot().size());
+    }
+
+    @Override
+    public void update(final long value) {
+        recorder.recordValue(Math.max(0L, Math.min(value, highestTrackableValue)));
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        // The interval histogram is recycled: the recorder hands back the one given to it the previous time
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+
+        return new HistogramSnapshot(total.copy());
+    }
+
+    private static final class HistogramSnapshot extends Snapshot {
+
+        private final Histogram histogram;
+
+        private HistogramSnapshot(final Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(final double quantile) {
+            return histogram.getValueAtPercentile(quantile * 100.0);
+        }
+
+        /**
+         * @return every value recorded, as the lowest value equivalent to it within the precision of the histogram.
+         */
+        @Override
+        public long[] getValues() {
+            final long[] values = new long[size()];
+            int index = 0;
+            for (final HistogramIterationValue value : histogram.recordedValues()) {
+                final long lowest = histogram.lowestEquivalentValue(value.getValueIteratedTo());
+                for (long count = 0; count < value.getCountAtValueIteratedTo() && index < values.length; count++) {
+                    values[index++] = lowest;
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getTotalCount() == 0 ? 0L : histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getTotalCount() == 0 ? 0.0 : histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getTotalCount() == 0 ? 0L : histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getTotalCount() == 0 ? 0.0 : histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(final OutputStream output) {
+            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (final long value : getValues()) {
+                    writer.printf("%d%n", value);
+                }
+            }
+        }
+    }
+}
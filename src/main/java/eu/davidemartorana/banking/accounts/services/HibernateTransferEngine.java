@@ -0,0 +1,277 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link TransferEngine} updating the balances directly in the database, in the current unit of work.
+ * The accounts are read once, already locked with {@link javax.persistence.LockModeType#PESSIMISTIC_WRITE}, by the
+ * {@link AccountsService}: each balance is then changed with a single conditional update and the new totals are
+ * computed from the values read, without reading the accounts again.
+ *
+ * A batch is planned in memory from the locked balances and then written with a single JDBC batch for the
+ * transactions and one update per touched account.
+ *
+ * The accounts split in {@link BalanceSlot balance slots} are read without lock: a credit is added to a random slot and
+ * a debit is taken from the first slot with enough funds, starting from a random one. When no slot has enough funds on
+ * its own, the account and all its slots are locked and the balance, less the debit, is spread evenly across the slots
+ * again. Their total amount is not known without reading all the slots, so it is not reported in the result of a
+ * transfer; a batch locks all the slots of the split accounts and spreads their final balance again.
+ *
+ * The slots of two split accounts are always changed in ascending account id order, as a batch locks them, and an
+ * account is never locked to rebalance its slots while a slot of the other account is held: when the split beneficiary
+ * comes first and no slot of the debtor has enough funds, the beneficiary is locked with all its slots before it is
+ * credited.
+ *
+ * @author Davide Martorana
+ */
+public class HibernateTransferEngine implements TransferEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateTransferEngine.class);
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionsRepository;
+
+    private final TransferMetrics transferMetrics;
+
+    @Inject
+    public HibernateTransferEngine(final AccountRepository accountRepository, final TransactionRepository transactionsRepository,
+                                   final TransferMetrics transferMetrics) {
+        this.accountRepository = accountRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public boolean requiresLockedAccounts() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsBalanceSlots() {
+        return true;
+    }
+
+    @Override
+    public Account currentState(final Account account) {
+        return account.isSplit() ? account.withTotalAmount(this.accountRepository.findTotalAmountWithSlots(account.getId())) : account;
+    }
+
+    @Override
+    public TransferResult transfer(final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        final Money money = amount.toMoney();
+        final Transaction debitTransaction;
+        final Transaction creditTransaction;
+        // Each account is updated and then gets its transaction: the two phases are timed across both the accounts
+        final long start = System.nanoTime();
+        final long firstUpdated;
+        final long firstInserted;
+        final long secondUpdated;
+
+        LOGGER.debug("Creating the transactions and updating the account totals. Atomic operation");
+        try {
+            // The accounts in a single slot are already locked, in uuid order, by AccountsService through
+            // findAllByUUIDLocking: that keeps their transfers from deadlocking. The ascending id order only matters
+            // to the slots of the split accounts, which are not locked beforehand
+            if (debtorAccount.getId() <= beneficiaryAccount.getId()) {
+                final int debitedSlot = debit(money, debtorAccount, true);
+                firstUpdated = System.nanoTime();
+                debitTransaction = this.transactionsRepository.addTransaction(money, debtorAccount, TransactionType.DEBIT);
+                firstInserted = System.nanoTime();
+
+                // A transfer within the same split account goes back to the slot just debited
+                credit(money, beneficiaryAccount, debtorAccount.getId().equals(beneficiaryAccount.getId()) ? debitedSlot : randomSlot(beneficiaryAccount));
+                secondUpdated = System.nanoTime();
+                creditTransaction = this.transactionsRepository.addTransaction(money, beneficiaryAccount, TransactionType.CREDIT);
+            } else {
+                // Rebalancing the debtor after crediting a slot of the beneficiary could wait for a transfer waiting for that slot
+                final boolean rebalance = !beneficiaryAccount.isSplit() || !debtorAccount.isSplit()
+                        || this.accountRepository.findLargestSlotAmount(debtorAccount.getId()) < money.getMinorUnits();
+                if (rebalance && beneficiaryAccount.isSplit()) {
+                    lockBalance(beneficiaryAccount);
+                }
+                credit(money, beneficiaryAccount, randomSlot(beneficiaryAccount));
+                firstUpdated = System.nanoTime();
+                creditTransaction = this.transactionsRepository.addTransaction(money, beneficiaryAccount, TransactionType.CREDIT);
+                firstInserted = System.nanoTime();
+
+                debit(money, debtorAccount, rebalance);
+                secondUpdated = System.nanoTime();
+                debitTransaction = this.transactionsRepository.addTransaction(money, debtorAccount, TransactionType.DEBIT);
+            }
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", e, Response.Status.CONFLICT);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the funds transfer.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+
+        LOGGER.debug("Transactions created and accounts totals updated. Atomic operation");
+        final long end = System.nanoTime();
+        transferMetrics.record(TransferMetrics.Phase.BALANCE_UPDATE, (firstUpdated - start) + (secondUpdated - firstInserted));
+        transferMetrics.record(TransferMetrics.Phase.TRANSACTION_INSERT, (firstInserted - firstUpdated) + (end - secondUpdated));
+
+        // The accounts have been read under lock: the new totals follow from the values read
+        final boolean sameAccount = debtorAccount.getId().equals(beneficiaryAccount.getId());
+        final long debtorTotal = sameAccount ? debtorAccount.getTotalAmountMinorUnits() : Math.subtractExact(debtorAccount.getTotalAmountMinorUnits(), money.getMinorUnits());
+        final long beneficiaryTotal = sameAccount ? beneficiaryAccount.getTotalAmountMinorUnits() : Math.addExact(beneficiaryAccount.getTotalAmountMinorUnits(), money.getMinorUnits());
+
+        final TransferResult response = new TransferResult();
+        response.setBeneficiaryAccount(beneficiaryAccount.isSplit() ? withoutTotalAmount(beneficiaryAccount) : beneficiaryAccount.withTotalAmount(beneficiaryTotal));
+        response.setDebtorAccount(debtorAccount.isSplit() ? withoutTotalAmount(debtorAccount) : debtorAccount.withTotalAmount(debtorTotal));
+        response.addTransaction(debitTransaction);
+        response.addTransaction(creditTransaction);
+
+        return response;
+    }
+
+    /**
+     * Debits the account: the total amount of an account in a single slot, otherwise the first slot with enough funds,
+     * starting from a random one.
+     *
+     * @param rebalance - whether the slots can be rebalanced when none has enough funds
+     *
+     * @return the slot debited, 0 for an account in a single slot.
+     *
+     * @throws ConcurrentUpdateException if no slot has enough funds any more and they cannot be rebalanced.
+     */
+    private int debit(final Money amount, final Account debtorAccount, final boolean rebalance) {
+        if (!debtorAccount.isSplit()) {
+            if (this.accountRepository.decreaseTotalAmount(debtorAccount.getId(), amount) == 0) {
+                throw fundsNotEnough(amount);
+            }
+            return 0;
+        }
+
+        final int balanceSlots = debtorAccount.getBalanceSlots();
+        final int firstSlot = randomSlot(debtorAccount);
+        for (int index = 0; index < balanceSlots; index++) {
+            final int slot = (firstSlot + index) % balanceSlots;
+            if (this.accountRepository.decreaseSlotAmount(debtorAccount.getId(), slot, amount) == 1) {
+                return slot;
+            }
+        }
+
+        if (!rebalance) {
+            // Debited by another thread since its slots were read: the next attempt rebalances them
+            throw new ConcurrentUpdateException("The operation cannot be performed at the present time. Account changed by another thread. Please try later.");
+        }
+
+        LOGGER.debug("No slot of account with id {} has enough funds: rebalancing its slots.", debtorAccount.getId());
+        final long balance = lockBalance(debtorAccount);
+        if (balance < amount.getMinorUnits()) {
+            throw fundsNotEnough(amount);
+        }
+        this.accountRepository.replaceBalanceSlots(debtorAccount.getId(), debtorAccount.getBalanceSlots(), balance - amount.getMinorUnits());
+
+        return 0;
+    }
+
+    private void credit(final Money amount, final Account beneficiaryAccount, final int slot) {
+        if (!beneficiaryAccount.isSplit()) {
+            this.accountRepository.increaseTotalAmount(beneficiaryAccount.getId(), amount);
+        } else if (this.accountRepository.increaseSlotAmount(beneficiaryAccount.getId(), slot, amount) == 0) {
+            // Split again in fewer slots since it was read
+            throw new ConcurrentUpdateException("The operation cannot be performed at the present time. Account changed by another thread. Please try later.");
+        }
+    }
+
+    /**
+     * Locks the split account and all its slots, re-reading the number of its slots as well.
+     *
+     * @return the balance of the account, in minor units.
+     */
+    private long lockBalance(final Account account) {
+        final long balance = this.accountRepository.lockBalanceSlots(account).stream().mapToLong(BalanceSlot::getAmountMinorUnits).sum();
+
+        return Math.addExact(balance, account.getTotalAmountMinorUnits());
+    }
+
+    private static int randomSlot(final Account account) {
+        return account.isSplit() ? ThreadLocalRandom.current().nextInt(account.getBalanceSlots()) : 0;
+    }
+
+    private static Account withoutTotalAmount(final Account account) {
+        final Account copy = account.withTotalAmount(0);
+        copy.setTotalAmountMinorUnits(null);
+
+        return copy;
+    }
+
+    private static FundsNotEnoughException fundsNotEnough(final Money amount) {
+        return new FundsNotEnoughException("Fund not enough for amount: " + amount.toBigDecimal().toPlainString());
+    }
+
+    @Override
+    public List<BatchItemResult> transferBatch(final List<BatchTransfer> transfers, final BatchMode batchMode) {
+        final Map<Long, Account> accounts = new LinkedHashMap<>();
+        for (final BatchTransfer transfer : transfers) {
+            accounts.putIfAbsent(transfer.getDebtorAccount().getId(), transfer.getDebtorAccount());
+            accounts.putIfAbsent(transfer.getBeneficiaryAccount().getId(), transfer.getBeneficiaryAccount());
+        }
+
+        LOGGER.debug("Planning a batch of {} transfers on {} accounts.", transfers.size(), accounts.size());
+        try {
+            // The split accounts are locked with all their slots, in ascending id order
+            final Map<Long, Long> startBalances = new HashMap<>();
+            new TreeMap<>(accounts).forEach((id, account) -> startBalances.put(id, account.isSplit() ? lockBalance(account) : account.getTotalAmountMinorUnits()));
+
+            final BatchTransferPlan plan = BatchTransferPlan.of(transfers, startBalances, batchMode);
+            if (plan.hasChanges()) {
+                // The accounts are locked since they have been read: their final balances can be written as they are
+                plan.getDeltas().forEach((id, delta) -> {
+                    final Account account = accounts.get(id);
+                    if (delta == 0) {
+                        return;
+                    }
+                    if (account.isSplit()) {
+                        this.accountRepository.replaceBalanceSlots(id, account.getBalanceSlots(), plan.getFinalBalance(id));
+                    } else {
+                        this.accountRepository.updateTotalAmount(id, plan.getFinalBalance(id));
+                    }
+                });
+                this.transactionsRepository.insertAll(plan.getTransactions());
+            }
+
+            return plan.getResults();
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new WebApplicationException("The operation cannot be performed at the present time. Account used by another thread. Please try later.", e, Response.Status.CONFLICT);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the batch of funds transfers.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+    }
+}
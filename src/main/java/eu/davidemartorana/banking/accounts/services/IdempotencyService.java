@@ -0,0 +1,253 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.DuplicateTransferRequestException;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Performs at most once the transfers requested with the same {@code Idempotency-Key}: a retry gets the response of
+ * the transfer already committed, without the transfer being applied again.
+ *
+ * The keys are looked up in the {@link IdempotencyIndex} only. The first time a key is seen, a
+ * {@link TransferRequestRecord} is inserted in the unit of work of the transfer, before the transfer is applied, and
+ * completed with the response: the key is taken together with the transfer or not at all. The database is read only
+ * when that insert finds the key already taken, i.e. for a retry no longer in the index.
+ *
+ * A key reused for a different transfer is rejected with {@code 422 UNPROCESSABLE ENTITY}; a retry arriving while the
+ * transfer is still in progress with {@code 409 CONFLICT}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class IdempotencyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    private final IdempotencyIndex index;
+
+    private final TransferRequestRepository transferRequestRepository;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public IdempotencyService(final IdempotencyIndex index, final TransferRequestRepository transferRequestRepository,
+                              final UnitOfWorkRunner unitOfWorkRunner, final Environment environment) {
+        this(index, transferRequestRepository, unitOfWorkRunner, environment.getObjectMapper());
+    }
+
+    public IdempotencyService(final IdempotencyIndex index, final TransferRequestRepository transferRequestRepository,
+                              final UnitOfWorkRunner unitOfWorkRunner, final ObjectMapper objectMapper) {
+        this.index = index;
+        this.transferRequestRepository = transferRequestRepository;
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Performs the transfer with {@code transfer}, unless a transfer with the same {@code idempotencyKey} has already
+     * been committed: in that case its response is returned.
+     *
+     * @param idempotencyKey - the key sent by the client
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction
+     * @param transfer - performs the transfer in its own unit of work
+     *
+     * @return the response of the transfer, performed now or earlier.
+     */
+    public TransferResponse execute(final String idempotencyKey, final String debtorAccountUUID, final TransferRequest transferRequest,
+                                    final Supplier<TransferResult> transfer) {
+        try {
+            return submit(idempotencyKey, debtorAccountUUID, transferRequest, () -> {
+                try {
+                    return CompletableFuture.completedFuture(transfer.get());
+                } catch (final RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }).join();
+        } catch (final CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * As {@link #execute(String, String, TransferRequest, Supplier)}, without waiting for the transfer.
+     *
+     * @param idempotencyKey - the key sent by the client
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction
+     * @param transfer - submits the transfer, to be performed in its own unit of work
+     *
+     * @return the response of the transfer, completed once performed now or at once if performed earlier.
+     */
+    public CompletableFuture<TransferResponse> submit(final String idempotencyKey, final String debtorAccountUUID, final TransferRequest transferRequest,
+                                                      final Supplier<CompletableFuture<TransferResult>> transfer) {
+        checkKey(idempotencyKey);
+
+        final Money amount = transferRequest.getAmount().toMoney();
+        final IdempotencyIndex.Entry entry = new IdempotencyIndex.Entry(debtorAccountUUID, transferRequest.getBeneficiaryAccountId(), amount);
+        final IdempotencyIndex.Entry existing = index.putIfAbsent(idempotencyKey, entry);
+        if (existing != null) {
+            LOGGER.debug("Transfer with Idempotency-Key [{}] already received.", idempotencyKey);
+            return CompletableFuture.completedFuture(replay(existing, entry));
+        }
+
+        transferRequest.setIdempotencyKey(idempotencyKey);
+        final CompletableFuture<TransferResult> result;
+        try {
+            result = transfer.get();
+        } catch (final RuntimeException e) {
+            index.remove(idempotencyKey, entry);
+            throw e;
+        }
+
+        return result.handle((transferResult, error) -> {
+            if (error == null) {
+                final TransferResponse response = TransferResponse.of(transferResult);
+                entry.complete(response);
+
+                return response;
+            }
+
+            final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            index.remove(idempotencyKey, entry);
+            if (cause instanceof DuplicateTransferRequestException) {
+                LOGGER.debug("Transfer with Idempotency-Key [{}] already committed, reading its response.", idempotencyKey);
+                return replayRecord(idempotencyKey, entry, (DuplicateTransferRequestException) cause);
+            }
+            // Not committed: the key can be used again
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * @param idempotencyKey - the key sent by the client
+     *
+     * @throws BadRequestException if the key is empty or too long.
+     */
+    public static void checkKey(final String idempotencyKey) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("The " + IDEMPOTENCY_KEY_HEADER + " must be from 1 to " + MAX_KEY_LENGTH + " characters long.");
+        }
+    }
+
+    /**
+     * Takes the key of a transfer about to be applied in the current unit of work, if it has one.
+     *
+     * @param transfer - the validated transfer
+     * @param idempotencyKey - the key of the transfer, {@code null} if it has none
+     *
+     * @return the record to {@link #complete(TransferRequestRecord, TransferResult)} once the transfer is applied, or
+     * {@code null} if the transfer has no key.
+     *
+     * @throws DuplicateTransferRequestException if the key has already been taken.
+     */
+    public TransferRequestRecord claim(final BatchTransfer transfer, final String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+
+        final TransferRequestRecord record = TransferRequestRecord.create(idempotencyKey, transfer.getDebtorAccount().getUuid(),
+                transfer.getBeneficiaryAccount().getUuid(), transfer.getAmount().toMoney());
+        transferRequestRepository.insert(record);
+
+        return record;
+    }
+
+    /**
+     * Stores the response of the transfer in its record, in the current unit of work.
+     *
+     * @param record - the record of the transfer, {@code null} if it has no key
+     * @param result - the transfer applied
+     */
+    public void complete(final TransferRequestRecord record, final TransferResult result) {
+        if (record == null) {
+            return;
+        }
+
+        try {
+            record.setResponse(objectMapper.writeValueAsString(TransferResponse.of(result)));
+        } catch (final JsonProcessingException e) {
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+    }
+
+    /**
+     * Gives back the key of a transfer not applied, in the current unit of work.
+     *
+     * @param record - the record of the transfer, {@code null} if it has no key
+     */
+    public void release(final TransferRequestRecord record) {
+        if (record != null) {
+            transferRequestRepository.delete(record);
+        }
+    }
+
+    private static TransferResponse replay(final IdempotencyIndex.Entry existing, final IdempotencyIndex.Entry entry) {
+        if (!existing.isSameTransfer(entry)) {
+            throw new ClientErrorException("The " + IDEMPOTENCY_KEY_HEADER + " has already been used for a different transfer.", UNPROCESSABLE_ENTITY);
+        }
+
+        final TransferResponse response = existing.getResponse();
+        if (response == null) {
+            throw new DuplicateTransferRequestException("A transfer with the same " + IDEMPOTENCY_KEY_HEADER + " is in progress. Please try later.");
+        }
+
+        return response;
+    }
+
+    private TransferResponse replayRecord(final String idempotencyKey, final IdempotencyIndex.Entry entry, final DuplicateTransferRequestException duplicate) {
+        final Optional<TransferRequestRecord> optionalRecord = unitOfWorkRunner.inUnitOfWork(() -> transferRequestRepository.findByIdempotencyKey(idempotencyKey));
+        if (!optionalRecord.isPresent() || optionalRecord.get().getResponse() == null) {
+            // Taken by a transfer not committed yet
+            throw duplicate;
+        }
+
+        final TransferRequestRecord record = optionalRecord.get();
+        if (!record.isSameTransfer(entry.getDebtorAccountUUID(), entry.getBeneficiaryAccountUUID(), entry.getAmount())) {
+            throw new ClientErrorException("The " + IDEMPOTENCY_KEY_HEADER + " has already been used for a different transfer.", UNPROCESSABLE_ENTITY);
+        }
+
+        final TransferResponse response;
+        try {
+            response = objectMapper.readValue(record.getResponse(), TransferResponse.class);
+        } catch (final IOException e) {
+            throw new WebApplicationException("The response of the transfer with the same " + IDEMPOTENCY_KEY_HEADER + " cannot be read.", e);
+        }
+
+        entry.complete(response);
+        index.put(idempotencyKey, entry);
+
+        return response;
+    }
+}
@@ -0,0 +1,151 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import javax.ws.rs.WebApplicationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * {@link TransferEngine} updating the balances in the database with optimistic concurrency control. The accounts are
+ * read without any lock; the new balances are computed from the values read and every account is then written with a
+ * single update conditional on its {@link Account#getVersion() version}, in ascending id order.
+ *
+ * When an account has been changed by another transaction since it was read, the transfer fails with a
+ * {@link ConcurrentUpdateException}, so that its unit of work is rolled back and retried by the {@link TransferRetry}.
+ *
+ * @author Davide Martorana
+ */
+public class OptimisticTransferEngine implements TransferEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticTransferEngine.class);
+
+    private static final String CONCURRENT_UPDATE_MESSAGE = "The operation cannot be performed at the present time. Account changed by another thread. Please try later.";
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionsRepository;
+
+    private final TransferMetrics transferMetrics;
+
+    @Inject
+    public OptimisticTransferEngine(final AccountRepository accountRepository, final TransactionRepository transactionsRepository,
+                                    final TransferMetrics transferMetrics) {
+        this.accountRepository = accountRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public TransferResult transfer(final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        final Money money = amount.toMoney();
+        if (debtorAccount.getTotalAmountMinorUnits() < money.getMinorUnits()) {
+            throw new FundsNotEnoughException("Fund not enough for amount: " + money.toBigDecimal().toPlainString());
+        }
+
+        // The same account on both sides keeps its total, but its version is checked all the same
+        final boolean sameAccount = debtorAccount.getId().equals(beneficiaryAccount.getId());
+        final long debtorTotal = sameAccount ? debtorAccount.getTotalAmountMinorUnits() : Math.subtractExact(debtorAccount.getTotalAmountMinorUnits(), money.getMinorUnits());
+        final long beneficiaryTotal = sameAccount ? beneficiaryAccount.getTotalAmountMinorUnits() : Math.addExact(beneficiaryAccount.getTotalAmountMinorUnits(), money.getMinorUnits());
+
+        final SortedMap<Long, Account> accounts = new TreeMap<>();
+        accounts.put(debtorAccount.getId(), debtorAccount.withTotalAmount(debtorTotal));
+        accounts.put(beneficiaryAccount.getId(), beneficiaryAccount.withTotalAmount(beneficiaryTotal));
+
+        final Transaction debitTransaction;
+        final Transaction creditTransaction;
+        final long start = System.nanoTime();
+        final long updated;
+        LOGGER.debug("Updating the account totals if not changed and creating the transactions.");
+        try {
+            accounts.values().forEach(this::update);
+            updated = System.nanoTime();
+
+            debitTransaction = this.transactionsRepository.addTransaction(money, debtorAccount, TransactionType.DEBIT);
+            creditTransaction = this.transactionsRepository.addTransaction(money, beneficiaryAccount, TransactionType.CREDIT);
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new ConcurrentUpdateException(CONCURRENT_UPDATE_MESSAGE, e);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the funds transfer.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+
+        transferMetrics.record(TransferMetrics.Phase.BALANCE_UPDATE, updated - start);
+        transferMetrics.record(TransferMetrics.Phase.TRANSACTION_INSERT, System.nanoTime() - updated);
+
+        final TransferResult response = new TransferResult();
+        response.setBeneficiaryAccount(accounts.get(beneficiaryAccount.getId()));
+        response.setDebtorAccount(accounts.get(debtorAccount.getId()));
+        response.addTransaction(debitTransaction);
+        response.addTransaction(creditTransaction);
+
+        return response;
+    }
+
+    /**
+     * Writes the new total of the account, if its version is still the one read.
+     *
+     * @param account - the account read, with its new total
+     */
+    private void update(final Account account) {
+        if (this.accountRepository.updateTotalAmount(account.getId(), account.getTotalAmountMinorUnits(), account.getVersion()) == 0) {
+            LOGGER.debug("Account with id {} changed since version {}.", account.getId(), account.getVersion());
+            throw new ConcurrentUpdateException(CONCURRENT_UPDATE_MESSAGE);
+        }
+    }
+
+    @Override
+    public List<BatchItemResult> transferBatch(final List<BatchTransfer> transfers, final BatchMode batchMode) {
+        final Map<Long, Account> accounts = new HashMap<>();
+        for (final BatchTransfer transfer : transfers) {
+            accounts.putIfAbsent(transfer.getDebtorAccount().getId(), transfer.getDebtorAccount());
+            accounts.putIfAbsent(transfer.getBeneficiaryAccount().getId(), transfer.getBeneficiaryAccount());
+        }
+
+        LOGGER.debug("Planning a batch of {} transfers on {} accounts.", transfers.size(), accounts.size());
+        try {
+            final Map<Long, Long> startBalances = new HashMap<>();
+            accounts.forEach((id, account) -> startBalances.put(id, account.getTotalAmountMinorUnits()));
+
+            final BatchTransferPlan plan = BatchTransferPlan.of(transfers, startBalances, batchMode);
+            if (plan.hasChanges()) {
+                // Every account of the applied transfers is checked, even when its total does not change in the end
+                plan.getDeltas().keySet().forEach(id -> update(accounts.get(id).withTotalAmount(plan.getFinalBalance(id))));
+                this.transactionsRepository.insertAll(plan.getTransactions());
+            }
+
+            return plan.getResults();
+        } catch (final WebApplicationException e) {
+            throw e;
+
+        } catch (final PessimisticLockException | LockTimeoutException e) {
+            throw new ConcurrentUpdateException(CONCURRENT_UPDATE_MESSAGE, e);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error during the batch of funds transfers.", e);
+            throw new WebApplicationException("Error occurred during the funds transfer. Operation not performed.", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+
+import java.util.List;
+
+/**
+ * Applies a funds transfer between two accounts that have already been validated by the {@link AccountsService}.
+ *
+ * The implementation in use is selected through {@link eu.davidemartorana.banking.accounts.config.TransfersConfig#getEngine()}.
+ *
+ * @author Davide Martorana
+ */
+public interface TransferEngine {
+
+    /**
+     * Moves {@code amount} from {@code debtorAccount} to {@code beneficiaryAccount}, recording the related transactions.
+     *
+     * @param debtorAccount - account to be debited
+     * @param beneficiaryAccount - account to be credited
+     * @param amount - amount to transfer
+     *
+     * @return the accounts with their new totals together with the debit and credit transactions.
+     */
+    TransferResult transfer(Account debtorAccount, Account beneficiaryAccount, Amount amount);
+
+    /**
+     * Applies a batch of transfers, planned with a {@link BatchTransferPlan}, in the current unit of work.
+     *
+     * @param transfers - the transfers, in submission order
+     * @param batchMode - what to do when a transfer fails
+     *
+     * @return the outcome of every transfer, in submission order.
+     */
+    List<BatchItemResult> transferBatch(List<BatchTransfer> transfers, BatchMode batchMode);
+
+    /**
+     * Whether the accounts given to this engine must have been read with
+     * {@link eu.davidemartorana.banking.accounts.dao.AccountRepository#findByUUIDLocking(String)} in the current unit
+     * of work, so that their values are the ones in the database until the end of the transaction.
+     *
+     * @return {@code true} if the accounts must be read under lock.
+     */
+    default boolean requiresLockedAccounts() {
+        return false;
+    }
+
+    /**
+     * Whether this engine applies the transfers of the accounts split in
+     * {@link eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot balance slots}, so that accounts can be split
+     * with {@link AccountsService#splitAccount(String, int)}.
+     *
+     * @return {@code true} if the accounts can be split.
+     */
+    default boolean supportsBalanceSlots() {
+        return false;
+    }
+
+    /**
+     * Returns the up-to-date view of the given {@code account}, for engines whose state may be ahead of the database.
+     *
+     * @param account - account as read from the database
+     *
+     * @return the account to expose to the clients.
+     */
+    default Account currentState(final Account account) {
+        return account;
+    }
+}
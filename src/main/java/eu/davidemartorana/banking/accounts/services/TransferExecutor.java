@@ -0,0 +1,39 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes the funds transfers requested through the REST API, each one in its own unit of work.
+ *
+ * The implementation in use is selected through {@link eu.davidemartorana.banking.accounts.config.TransfersConfig#getExecution()}.
+ *
+ * @author Davide Martorana
+ */
+public interface TransferExecutor {
+
+    /**
+     * Executes the transfer, waiting for its completion.
+     *
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction
+     *
+     * @return the result of {@link AccountsService#transferAmount(String, TransferRequest)}, once committed.
+     */
+    TransferResult execute(String debtorAccountUUID, TransferRequest transferRequest);
+
+    /**
+     * Executes the transfer without waiting for it: the calling thread is not used to execute it.
+     *
+     * @param debtorAccountUUID - unique identifier of the account to debit
+     * @param transferRequest - the transfer instruction
+     *
+     * @return the result of {@link AccountsService#transferAmount(String, TransferRequest)}, completed once committed,
+     *          or exceptionally with the exception of the transfer.
+     *
+     * @throws javax.ws.rs.ServiceUnavailableException if the transfer cannot be accepted now.
+     */
+    CompletableFuture<TransferResult> submit(String debtorAccountUUID, TransferRequest transferRequest);
+}
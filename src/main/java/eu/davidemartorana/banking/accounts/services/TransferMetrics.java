@@ -0,0 +1,159 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.hibernate.SessionFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breakdown of the latency of the transfers by {@link Phase}, and count of the transfers failed by {@link Failure},
+ * published in the metrics as {@code TransferMetrics.<phase>} timers and {@code TransferMetrics.failures.<failure>}
+ * counters.
+ *
+ * The timers record into an {@link HdrHistogramReservoir}: a sample is recorded without locks, and their percentiles
+ * cover every transfer since start-up, up to {@value #HIGHEST_SECONDS} seconds a phase. Every transfer still allocates
+ * the {@link Synchronization} timing its commit and the callback of its locked reads.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class TransferMetrics {
+
+    private static final long HIGHEST_SECONDS = 60L;
+
+    /**
+     * The phases of a transfer.
+     */
+    public enum Phase {
+        /**
+         * Resolution and validation of the accounts, once their locked reads are done: the reads are timed by
+         * {@link #DEBTOR_LOCK} and {@link #BENEFICIARY_LOCK}, unless the engine does not lock the accounts.
+         */
+        LOOKUP("lookup"),
+        /**
+         * Locked read of the debtor account: the row is looked up and locked by the same statement.
+         */
+        DEBTOR_LOCK("lock-debtor"),
+        /**
+         * Locked read of the beneficiary account, as for {@link #DEBTOR_LOCK}.
+         */
+        BENEFICIARY_LOCK("lock-beneficiary"),
+        /**
+         * Update of the balances of both the accounts.
+         */
+        BALANCE_UPDATE("balance-update"),
+        /**
+         * Insert of the debit and credit transactions.
+         */
+        TRANSACTION_INSERT("transaction-insert"),
+        /**
+         * Commit of the database transaction, once flushed.
+         */
+        COMMIT("commit"),
+        /**
+         * Serialization of the response to JSON.
+         */
+        SERIALIZATION("serialization");
+
+        private final String metricName;
+
+        Phase(final String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    /**
+     * The reasons a transfer fails for.
+     */
+    public enum Failure {
+        NOT_FOUND("not-found"),
+        CURRENCY_MISMATCH("currency-mismatch"),
+        INSUFFICIENT_FUNDS("insufficient-funds"),
+        LOCK_CONFLICT("lock-conflict");
+
+        private final String metricName;
+
+        Failure(final String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+
+    private final Timer[] timers = new Timer[Phase.values().length];
+
+    private final Counter[] failures = new Counter[Failure.values().length];
+
+    @Inject
+    public TransferMetrics(final MetricRegistry metricRegistry, final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        for (final Phase phase : Phase.values()) {
+            timers[phase.ordinal()] = metricRegistry.timer(MetricRegistry.name(TransferMetrics.class, phase.metricName),
+                    () -> new Timer(new HdrHistogramReservoir(TimeUnit.SECONDS.toNanos(HIGHEST_SECONDS))));
+        }
+        for (final Failure failure : Failure.values()) {
+            failures[failure.ordinal()] = metricRegistry.counter(MetricRegistry.name(TransferMetrics.class, "failures", failure.metricName));
+        }
+    }
+
+    /**
+     * @param phase - the phase of the transfer
+     * @param nanos - its duration, in nanoseconds
+     */
+    public void record(final Phase phase, final long nanos) {
+        timers[phase.ordinal()].update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param failure - the reason a transfer failed for
+     */
+    public void failed(final Failure failure) {
+        failures[failure.ordinal()].inc();
+    }
+
+    /**
+     * Records the {@link Phase#COMMIT} of the transaction of the current session, if it commits.
+     */
+    public void timeCommitOfCurrentTransaction() {
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+
+            private long start;
+
+            @Override
+            public void beforeCompletion() {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    record(Phase.COMMIT, System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    /**
+     * @param phase - the phase of the transfer
+     *
+     * @return the timer of the phase.
+     */
+    public Timer getTimer(final Phase phase) {
+        return timers[phase.ordinal()];
+    }
+
+    /**
+     * @param failure - the reason a transfer fails for
+     *
+     * @return the counter of the transfers failed for it.
+     */
+    public Counter getFailures(final Failure failure) {
+        return failures[failure.ordinal()];
+    }
+}
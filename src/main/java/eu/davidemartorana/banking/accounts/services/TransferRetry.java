@@ -0,0 +1,106 @@
+package eu.davidemartorana.banking.accounts.services;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the transfers in their own unit of work, as the {@link UnitOfWorkRunner} does, trying them again when they fail
+ * with a {@link ConcurrentUpdateException}: every attempt reads the accounts again in a new transaction.
+ *
+ * The attempts are at most {@link RetryConfig#getMaxAttempts()}. Before each retry the thread waits a random time
+ * between zero and an exponential backoff, from {@link RetryConfig#getInitialBackoff()} up to
+ * {@link RetryConfig#getMaxBackoff()}, so the conflicting transfers do not collide again at the same time.
+ *
+ * The retries and the transfers aborted after the last attempt are published in the metrics as
+ * {@code TransferRetry.retries} and {@code TransferRetry.aborts}.
+ *
+ * @author Davide Martorana
+ */
+@Singleton
+public class TransferRetry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferRetry.class);
+
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
+    private final UnitOfWorkRunner unitOfWorkRunner;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffNanos;
+
+    private final long maxBackoffNanos;
+
+    private final Counter retries;
+
+    private final Counter aborts;
+
+    @Inject
+    public TransferRetry(final UnitOfWorkRunner unitOfWorkRunner, final ApplicationConfig applicationConfig, final MetricRegistry metricRegistry) {
+        this(unitOfWorkRunner, applicationConfig.getTransfers().getRetry(), metricRegistry);
+    }
+
+    public TransferRetry(final UnitOfWorkRunner unitOfWorkRunner, final RetryConfig retryConfig, final MetricRegistry metricRegistry) {
+        this.unitOfWorkRunner = unitOfWorkRunner;
+        this.maxAttempts = retryConfig.getMaxAttempts();
+        this.initialBackoffNanos = retryConfig.getInitialBackoff().toNanoseconds();
+        this.maxBackoffNanos = retryConfig.getMaxBackoff().toNanoseconds();
+
+        this.retries = metricRegistry.counter(MetricRegistry.name(TransferRetry.class, "retries"));
+        this.aborts = metricRegistry.counter(MetricRegistry.name(TransferRetry.class, "aborts"));
+    }
+
+    /**
+     * Executes {@code work} in a new transaction, as {@link UnitOfWorkRunner#inUnitOfWork(Supplier)} does, as many times
+     * as needed for it not to conflict with a concurrent update.
+     *
+     * @param work - the transfer to execute
+     * @param <T> - type of the result
+     *
+     * @return the result of the first attempt committed.
+     *
+     * @throws ConcurrentUpdateException if the last attempt conflicted too.
+     */
+    public <T> T inUnitOfWork(final Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return unitOfWorkRunner.inUnitOfWork(work);
+            } catch (final ConcurrentUpdateException e) {
+                if (attempt >= maxAttempts) {
+                    LOGGER.debug("Transfer aborted after {} attempts.", attempt);
+                    aborts.inc();
+                    throw e;
+                }
+                retries.inc();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(final int attempt, final ConcurrentUpdateException conflict) {
+        final long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, MAX_BACKOFF_SHIFT));
+        if (ceiling <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborts.inc();
+            throw conflict;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- Transfers submitted asynchronously: a job is inserted PENDING when accepted and completed once the transfer has been applied or rejected, so the jobs still PENDING at start-up are executed again.
+CREATE TABLE transfer_jobs (
+   id CHAR(36) NOT NULL,
+   debtor_account_uuid CHAR(36) NOT NULL,
+   beneficiary_account_uuid CHAR(36) NOT NULL,
+   amount_minor_units BIGINT NOT NULL,
+   currency CHAR(3) NOT NULL,
+   idempotency_key VARCHAR(255),
+   callback_url VARCHAR(2000),
+   status VARCHAR(10) NOT NULL,
+   response_status INTEGER,
+   message VARCHAR(1000),
+   response VARCHAR(4000),
+   created_date_time TIMESTAMP NOT NULL,
+   completed_date_time TIMESTAMP,
+   CONSTRAINT transfer_job_pk PRIMARY KEY(id)
+);
+
+CREATE INDEX transfer_job_status_idx ON transfer_jobs (status, created_date_time);
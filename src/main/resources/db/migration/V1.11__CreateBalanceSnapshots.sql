@@ -0,0 +1,16 @@
+-- Balances of the accounts as of a transaction, taken by the EVENT_SOURCED engine: the balance of an account is its latest snapshot plus the transactions coming after it. The version is the one of the account when the snapshot was taken: a snapshot is discarded once the account has been updated by another engine.
+CREATE TABLE account_balance_snapshots (
+   id INTEGER NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1),
+   account_id INTEGER NOT NULL,
+   last_transaction_id INTEGER NOT NULL,
+   balance_minor_units BIGINT NOT NULL,
+   account_version BIGINT NOT NULL,
+   created_date_time TIMESTAMP NOT NULL,
+   CONSTRAINT balance_snapshot_pk PRIMARY KEY(id),
+   CONSTRAINT balance_snapshot_account_fk FOREIGN KEY(account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX balance_snapshot_account_idx ON account_balance_snapshots (account_id, id);
+
+-- The transactions of an account after its latest snapshot are read by id.
+CREATE INDEX transaction_account_id_idx ON account_transactions (account_id, id);
@@ -0,0 +1,8 @@
+-- Sequence of the last record of the ledger journal write-ahead log persisted in the database, updated in the same transaction as the records: the records coming after it are replayed at start-up.
+CREATE TABLE ledger_journal_checkpoint (
+   id INTEGER NOT NULL,
+   last_sequence BIGINT NOT NULL,
+   CONSTRAINT ledger_journal_checkpoint_pk PRIMARY KEY(id)
+);
+
+INSERT INTO ledger_journal_checkpoint (id, last_sequence) VALUES (1, 0);
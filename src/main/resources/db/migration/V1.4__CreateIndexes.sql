@@ -0,0 +1,7 @@
+CREATE UNIQUE INDEX customer_uuid_idx ON customers (uuid);
+
+CREATE UNIQUE INDEX account_uuid_idx ON accounts (uuid);
+
+CREATE INDEX account_customer_idx ON accounts (customer_id);
+
+CREATE INDEX transaction_account_date_idx ON account_transactions (account_id, date_time);
@@ -0,0 +1 @@
+CREATE UNIQUE INDEX transaction_uuid_idx ON account_transactions (uuid);
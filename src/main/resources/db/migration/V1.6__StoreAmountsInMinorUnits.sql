@@ -0,0 +1,8 @@
+-- The balances and the amounts are stored in minor units of their currency: all the existing ones are in GBP, which has two decimal digits.
+ALTER TABLE accounts ADD COLUMN total_amount_minor_units BIGINT NOT NULL DEFAULT 0;
+UPDATE accounts SET total_amount_minor_units = CAST(total_amount * 100 AS BIGINT);
+ALTER TABLE accounts DROP COLUMN total_amount;
+
+ALTER TABLE account_transactions ADD COLUMN amount_minor_units BIGINT NOT NULL DEFAULT 0;
+UPDATE account_transactions SET amount_minor_units = CAST(amount * 100 AS BIGINT);
+ALTER TABLE account_transactions DROP COLUMN amount;
@@ -0,0 +1,10 @@
+CREATE TABLE transfer_requests (
+   idempotency_key VARCHAR(255) NOT NULL,
+   debtor_account_uuid CHAR(36) NOT NULL,
+   beneficiary_account_uuid CHAR(36) NOT NULL,
+   amount_minor_units BIGINT NOT NULL,
+   currency CHAR(3) NOT NULL,
+   response VARCHAR(4000),
+   date_time TIMESTAMP NOT NULL,
+   CONSTRAINT transfer_request_pk PRIMARY KEY(idempotency_key)
+);
@@ -0,0 +1,2 @@
+-- Version of the accounts, increased at every change of the balance: the optimistic transfer engine updates an account only if its version is still the one read.
+ALTER TABLE accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- Number of balance slots of the accounts: an account split in more than one slot keeps its balance in account_balance_slots, so its credits and debits do not all update the same row.
+ALTER TABLE accounts ADD COLUMN balance_slots INTEGER NOT NULL DEFAULT 1;
+
+-- The balance of an account is its total amount plus the amounts of all its slots.
+CREATE TABLE account_balance_slots (
+   account_id INTEGER NOT NULL,
+   slot INTEGER NOT NULL,
+   amount_minor_units BIGINT NOT NULL,
+   CONSTRAINT account_balance_slot_pk PRIMARY KEY(account_id, slot),
+   CONSTRAINT account_balance_slot_account_fk FOREIGN KEY(account_id) REFERENCES accounts(id)
+);
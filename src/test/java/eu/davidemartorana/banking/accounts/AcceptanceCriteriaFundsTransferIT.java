@@ -1,27 +1,53 @@
 package eu.davidemartorana.banking.accounts;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
 import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJobStatus;
+import eu.davidemartorana.banking.accounts.rest.representation.AsyncTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferResponse;
 import eu.davidemartorana.banking.accounts.rest.representation.EntriesListResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.FixtureHelpers;
 import io.dropwizard.testing.ResourceHelpers;
 import io.dropwizard.testing.junit.DropwizardAppRule;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.joda.time.DateTime;
+import org.junit.Assume;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
+import ru.vyarus.dropwizard.guice.injector.lookup.InjectorLookup;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Currency;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -156,6 +182,92 @@ public class AcceptanceCriteriaFundsTransferIT {
         JSONAssert.assertEquals(expectedJSON, actualJSON, false);
     }
 
+    private EntriesListResponse<LinkedHashMap> getTransactionsPage(final String accountUUID, final String after, final int limit) {
+        return RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/%s/transactions", RULE.getLocalPort(), accountUUID))
+                .queryParam("after", after)
+                .queryParam("limit", limit)
+                .request()
+                .get(EntriesListResponse.class);
+    }
+
+    private List<Object> idsOf(final Collection<LinkedHashMap> transactions) {
+        return transactions.stream().map(item -> item.get("id")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void test_GET_Transactions_Paged() throws Exception {
+        final String accountUUID = "7f9adf98-93fb-4868-8cd8-cfe0f53628c1";
+        final List<Object> allIds = idsOf(getTransactions(accountUUID).getContentList());
+
+        final EntriesListResponse<LinkedHashMap> firstPage = getTransactionsPage(accountUUID, null, 2);
+        Assertions.assertThat(idsOf(firstPage.getContentList())).containsExactlyElementsOf(allIds.subList(0, 2));
+        Assertions.assertThat(firstPage.get("total")).isEqualTo(2);
+        Assertions.assertThat(firstPage.get("next")).isEqualTo(allIds.get(1));
+
+        final EntriesListResponse<LinkedHashMap> lastPage = getTransactionsPage(accountUUID, (String) firstPage.get("next"), 1000);
+        Assertions.assertThat(idsOf(lastPage.getContentList())).containsExactlyElementsOf(allIds.subList(2, allIds.size()));
+        Assertions.assertThat(lastPage).doesNotContainKey("next");
+    }
+
+    /**
+     * Without {@code after} and {@code limit} the whole history is returned, however long, as before the pagination.
+     */
+    @Test
+    public void test_GET_Transactions_AllWithoutPaging() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        for (int index = 0; index < 51; index++) {
+            postTransfer(firstAccountUUID, secondAccountUUID, "0.01");
+            postTransfer(secondAccountUUID, firstAccountUUID, "0.01");
+        }
+
+        final EntriesListResponse<LinkedHashMap> all = getTransactions(firstAccountUUID);
+        Assertions.assertThat(all.getContentList()).hasSize(getTransactionsPage(firstAccountUUID, null, 1000).getContentList().size());
+        Assertions.assertThat(all).doesNotContainKey("next");
+
+        final EntriesListResponse<LinkedHashMap> firstPage = getTransactionsPage(firstAccountUUID, null, 100);
+        Assertions.assertThat(idsOf(firstPage.getContentList())).containsExactlyElementsOf(idsOf(all.getContentList()).subList(0, 100));
+        Assertions.assertThat(firstPage.get("next")).isEqualTo(idsOf(all.getContentList()).get(99));
+
+        JSONAssert.assertEquals(getJSON("accounts/" + firstAccountUUID + "/transactions", 200),
+                getJSON("async/accounts/" + firstAccountUUID + "/transactions", 200), true);
+    }
+
+    @Test
+    public void test_GET_Transactions_InvalidPage() throws Exception {
+        final String target = String.format("http://localhost:%s/api/accounts/7f9adf98-93fb-4868-8cd8-cfe0f53628c1/transactions", RULE.getLocalPort());
+
+        // A transaction of another account
+        Assertions.assertThat(RULE.client().target(target).queryParam("after", "c59c4c27-8894-4479-9ae7-85e677455720").request().get().getStatus()).isEqualTo(400);
+        Assertions.assertThat(RULE.client().target(target).queryParam("limit", 0).request().get().getStatus()).isEqualTo(400);
+        Assertions.assertThat(RULE.client().target(target).queryParam("limit", 1001).request().get().getStatus()).isEqualTo(400);
+    }
+
+    @Test
+    public void test_GET_Transactions_Stream() throws Exception {
+        final String accountUUID = "7f9adf98-93fb-4868-8cd8-cfe0f53628c1";
+        final List<Object> allIds = idsOf(getTransactions(accountUUID).getContentList());
+        final String target = String.format("http://localhost:%s/api/accounts/%s/transactions:stream", RULE.getLocalPort(), accountUUID);
+
+        final Response jsonResponse = RULE.client().target(target).request(MediaType.APPLICATION_JSON_TYPE).get();
+        Assertions.assertThat(jsonResponse.getStatus()).isEqualTo(200);
+        Assertions.assertThat(jsonResponse.getMediaType().isCompatible(MediaType.APPLICATION_JSON_TYPE)).isTrue();
+        final List<LinkedHashMap> jsonTransactions = MAPPER.readValue(jsonResponse.readEntity(String.class),
+                MAPPER.getTypeFactory().constructCollectionType(List.class, LinkedHashMap.class));
+        Assertions.assertThat(idsOf(jsonTransactions)).containsExactlyElementsOf(allIds);
+
+        final Response ndjsonResponse = RULE.client().target(target).queryParam("after", allIds.get(0)).request("application/x-ndjson").get();
+        Assertions.assertThat(ndjsonResponse.getStatus()).isEqualTo(200);
+        Assertions.assertThat(ndjsonResponse.getMediaType().toString()).isEqualTo("application/x-ndjson");
+        final List<LinkedHashMap> ndjsonTransactions = new ArrayList<>();
+        for (final String line : ndjsonResponse.readEntity(String.class).split("\n")) {
+            ndjsonTransactions.add(MAPPER.readValue(line, LinkedHashMap.class));
+        }
+        Assertions.assertThat(idsOf(ndjsonTransactions)).containsExactlyElementsOf(allIds.subList(1, allIds.size()));
+        Assertions.assertThat(ndjsonTransactions.get(0)).containsKeys("amount", "currency", "dateTime", "type");
+    }
+
     @Test
     public void test_POST_Transfer() throws Exception {
         // Assertion of transaction prior transfer funds
@@ -177,6 +289,11 @@ public class AcceptanceCriteriaFundsTransferIT {
 
         Assertions.assertThat(response.getStatus()).isEqualTo(200);
 
+        // Every phase of the transfer has been timed
+        Assertions.assertThat(RULE.getEnvironment().metrics().getTimers((name, metric) -> name.startsWith(TransferMetrics.class.getName())).values())
+                .hasSize(TransferMetrics.Phase.values().length)
+                .allMatch(timer -> timer.getCount() > 0);
+
         // Asserting Transfer Response Body - removing random and datetime values from response
         final TransferResponse actualResponse = response.readEntity(TransferResponse.class);
         actualResponse.getTransactions().get(0).setUuid("");
@@ -195,4 +312,410 @@ public class AcceptanceCriteriaFundsTransferIT {
         assertTransactions("7f9adf98-93fb-4868-8cd8-cfe0f53628c1", "get-transactions-after-transfer-by-account-XXX-cfe0f53628c1.json", true);
     }
 
-}
\ No newline at end of file
+    private BatchTransferItem createBatchItem(final String debtorAccountUUID, final String beneficiaryAccountUUID, final String value) {
+        final BatchTransferItem item = new BatchTransferItem();
+        item.setDebtorAccountId(debtorAccountUUID);
+        item.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        item.setAmount(new Amount(new BigDecimal(value), Currency.getInstance("GBP")));
+
+        return item;
+    }
+
+    private BatchTransferResponse postBatch(final BatchMode mode, final BatchTransferItem... items) {
+        final BatchTransferRequest request = new BatchTransferRequest();
+        request.setMode(mode);
+        request.setTransfers(Arrays.asList(items));
+
+        final Response response = RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/transfers:batch", RULE.getLocalPort()))
+                .request()
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+
+        return response.readEntity(BatchTransferResponse.class);
+    }
+
+    private BigDecimal getTotalAmount(final String accountUUID) {
+        return RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/%s", RULE.getLocalPort(), accountUUID))
+                .request()
+                .get(Account.class)
+                .getTotalAmount();
+    }
+
+    private EntriesListResponse<LinkedHashMap> getTransactions(final String accountUUID) {
+        return RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/%s/transactions", RULE.getLocalPort(), accountUUID))
+                .request()
+                .get(EntriesListResponse.class);
+    }
+
+    /**
+     * The accounts used here are not part of the other fixtures, and their totals are the same at the end.
+     */
+    @Test
+    public void test_POST_BatchTransfer() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        final BigDecimal firstTotal = getTotalAmount(firstAccountUUID);
+        final BigDecimal secondTotal = getTotalAmount(secondAccountUUID);
+        final int firstTransactions = getTransactions(firstAccountUUID).getContentList().size();
+
+        final BatchTransferResponse bestEffort = postBatch(BatchMode.BEST_EFFORT,
+                createBatchItem(firstAccountUUID, secondAccountUUID, "50.00"),
+                createBatchItem(secondAccountUUID, firstAccountUUID, "50.00"),
+                createBatchItem(firstAccountUUID, secondAccountUUID, "10000.00"),
+                createBatchItem("00000000-0000-0000-0000-000000000000", secondAccountUUID, "1.00"));
+
+        Assertions.assertThat(bestEffort.getApplied()).isEqualTo(2);
+        Assertions.assertThat(bestEffort.getFailed()).isEqualTo(2);
+        Assertions.assertThat(bestEffort.getResults())
+                .extracting("index", "status")
+                .containsExactly(
+                        Assertions.tuple(0, 200),
+                        Assertions.tuple(1, 200),
+                        Assertions.tuple(2, 409),
+                        Assertions.tuple(3, 404));
+        Assertions.assertThat(bestEffort.getResults().get(0).getTransfer().getTransactions()).hasSize(2);
+        Assertions.assertThat(bestEffort.getResults().get(0).getTransfer().getBeneficiaryAccount().getTotalAmount()).isNull();
+
+        final BatchTransferResponse allOrNothing = postBatch(BatchMode.ALL_OR_NOTHING,
+                createBatchItem(firstAccountUUID, secondAccountUUID, "1.00"),
+                createBatchItem(firstAccountUUID, secondAccountUUID, "10000.00"));
+
+        Assertions.assertThat(allOrNothing.getApplied()).isZero();
+        Assertions.assertThat(allOrNothing.getResults())
+                .extracting("index", "status")
+                .containsExactly(
+                        Assertions.tuple(0, BatchItemResult.FAILED_DEPENDENCY),
+                        Assertions.tuple(1, 409));
+
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+        Assertions.assertThat(getTotalAmount(secondAccountUUID)).isEqualByComparingTo(secondTotal);
+
+        final EntriesListResponse<LinkedHashMap> transactions = getTransactions(firstAccountUUID);
+        Assertions.assertThat(transactions.getContentList()).hasSize(firstTransactions + 2);
+        Assertions.assertThat(transactions.getContentList().stream().skip(firstTransactions))
+                .extracting(item -> item.get("type"), item -> new BigDecimal(item.get("amount").toString()).intValue())
+                .containsExactly(Assertions.tuple("DEBIT", 50), Assertions.tuple("CREDIT", 50));
+    }
+
+    private void postTransfer(final String debtorAccountUUID, final String beneficiaryAccountUUID, final String value) {
+        final TransferRequest request = new TransferRequest();
+        request.setAmount(new Amount(new BigDecimal(value), Currency.getInstance("GBP")));
+        request.setBeneficiaryAccountId(beneficiaryAccountUUID);
+
+        final Response response = RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/%s/transfer", RULE.getLocalPort(), debtorAccountUUID))
+                .request()
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    /**
+     * The account details are cached: a transfer must invalidate them.
+     */
+    @Test
+    public void test_GET_accountDetails_AfterTransfer() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        final BigDecimal firstTotal = getTotalAmount(firstAccountUUID);
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+
+        postTransfer(firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal.subtract(BigDecimal.ONE));
+
+        postTransfer(secondAccountUUID, firstAccountUUID, "1.00");
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+    }
+
+    private Response postTransfer(final String idempotencyKey, final String debtorAccountUUID, final String beneficiaryAccountUUID,
+                                  final String value) {
+        return postTransfer("accounts", idempotencyKey, debtorAccountUUID, beneficiaryAccountUUID, value);
+    }
+
+    private Response postTransfer(final String path, final String idempotencyKey, final String debtorAccountUUID,
+                                  final String beneficiaryAccountUUID, final String value) {
+        final TransferRequest request = new TransferRequest();
+        request.setAmount(new Amount(new BigDecimal(value), Currency.getInstance("GBP")));
+        request.setBeneficiaryAccountId(beneficiaryAccountUUID);
+
+        return RULE.client()
+                .target(String.format("http://localhost:%s/api/%s/%s/transfer", RULE.getLocalPort(), path, debtorAccountUUID))
+                .request()
+                .header("Idempotency-Key", idempotencyKey)
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    /**
+     * A transfer retried with the same Idempotency-Key is performed once, and the retry gets the same response.
+     */
+    @Test
+    public void test_POST_Transfer_IdempotencyKey() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        final String idempotencyKey = UUID.randomUUID().toString();
+        final BigDecimal firstTotal = getTotalAmount(firstAccountUUID);
+
+        final Response response = postTransfer(idempotencyKey, firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+        final String body = response.readEntity(String.class);
+
+        final Response retry = postTransfer(idempotencyKey, firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(retry.getStatus()).isEqualTo(200);
+        Assertions.assertThat(MAPPER.readTree(retry.readEntity(String.class))).isEqualTo(MAPPER.readTree(body));
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal.subtract(BigDecimal.ONE));
+
+        Assertions.assertThat(postTransfer(idempotencyKey, firstAccountUUID, secondAccountUUID, "2.00").getStatus()).isEqualTo(422);
+
+        postTransfer(secondAccountUUID, firstAccountUUID, "1.00");
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+    }
+
+    private long countStatementsOfTransfer(final String debtorAccountUUID, final String beneficiaryAccountUUID) {
+        final TransferRequest request = new TransferRequest();
+        request.setAmount(new Amount(new BigDecimal("1.00"), Currency.getInstance("GBP")));
+        request.setBeneficiaryAccountId(beneficiaryAccountUUID);
+
+        final Statistics statistics = InjectorLookup.getInjector(RULE.getApplication()).get()
+                .getInstance(SessionFactory.class)
+                .getStatistics();
+        final boolean statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            final Response response = RULE.client()
+                    .target(String.format("http://localhost:%s/api/accounts/%s/transfer", RULE.getLocalPort(), debtorAccountUUID))
+                    .request()
+                    .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+
+            Assertions.assertThat(response.getStatus()).isEqualTo(200);
+
+            return statistics.getPrepareStatementCount();
+        } finally {
+            statistics.setStatisticsEnabled(statisticsEnabled);
+        }
+    }
+
+    /**
+     * Every account of a transfer is read once, under lock, then it is updated with a single statement: 2 selects, 2
+     * updates and 2 inserts, whatever the order of the accounts.
+     */
+    @Test
+    public void test_POST_Transfer_StatementsPerTransfer() throws Exception {
+        // The group commit writes the transactions with a plain JDBC batch, out of the statistics
+        Assume.assumeTrue(RULE.getConfiguration().getTransfers().getEngine() == TransferEngineType.HIBERNATE);
+        Assume.assumeTrue(RULE.getConfiguration().getTransfers().getExecution() != TransferExecutionType.GROUP_COMMIT);
+
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+
+        Assertions.assertThat(countStatementsOfTransfer(firstAccountUUID, secondAccountUUID)).isEqualTo(6);
+        Assertions.assertThat(countStatementsOfTransfer(secondAccountUUID, firstAccountUUID)).isEqualTo(6);
+    }
+
+    /**
+     * The customers and the ids of the accounts by uuid are served by the second-level cache once they have been read.
+     */
+    @Test
+    public void test_GET_SecondLevelCache_Hits() throws Exception {
+        final Statistics statistics = InjectorLookup.getInjector(RULE.getApplication()).get()
+                .getInstance(SessionFactory.class)
+                .getStatistics();
+
+        final String customersUrl = String.format("http://localhost:%s/api/customers", RULE.getLocalPort());
+        final String transactionsUrl = String.format("http://localhost:%s/api/accounts/7f9adf98-93fb-4868-8cd8-cfe0f53628c1/transactions",
+                RULE.getLocalPort());
+
+        Assertions.assertThat(RULE.client().target(customersUrl).request().get().getStatus()).isEqualTo(200);
+        Assertions.assertThat(RULE.client().target(transactionsUrl).request().get().getStatus()).isEqualTo(200);
+
+        final long queryCacheHits = statistics.getQueryCacheHitCount();
+        final long naturalIdCacheHits = statistics.getNaturalIdCacheHitCount();
+
+        Assertions.assertThat(RULE.client().target(customersUrl).request().get().getStatus()).isEqualTo(200);
+        Assertions.assertThat(RULE.client().target(transactionsUrl).request().get().getStatus()).isEqualTo(200);
+
+        Assertions.assertThat(statistics.getQueryCacheHitCount()).isGreaterThan(queryCacheHits);
+        Assertions.assertThat(statistics.getNaturalIdCacheHitCount()).isGreaterThan(naturalIdCacheHits);
+    }
+
+    /**
+     * The admin task prints the hot accounts and the last decisions, however the transfers are executed.
+     */
+    @Test
+    public void test_POST_HotAccountsTask() throws Exception {
+        final Response response = RULE.client()
+                .target(String.format("http://localhost:%s/tasks/hot-accounts", RULE.getAdminPort()))
+                .request()
+                .post(Entity.text(""));
+
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+        Assertions.assertThat(MAPPER.readTree(response.readEntity(String.class)).fieldNames())
+                .containsExactly("hotAccounts", "decisions");
+    }
+
+    /**
+     * An account split in balance slots by the admin task is credited and debited as before, even by more than the
+     * funds of a single slot, and its details still report the whole balance.
+     */
+    @Test
+    public void test_POST_SplitAccountTask() throws Exception {
+        // The balance slots are supported by the pessimistic engine only
+        Assume.assumeTrue(RULE.getConfiguration().getTransfers().getEngine() == TransferEngineType.HIBERNATE);
+
+        final String splitAccountUUID = "0c4e2f0a-5b1d-4c7e-9a43-6f2b8d1e7a55";
+        final String otherAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        // An account of its own: the other tests compare the responses of theirs with the fixtures
+        InjectorLookup.getInjector(RULE.getApplication()).get().getInstance(UnitOfWorkRunner.class).inUnitOfWork(() ->
+                InjectorLookup.getInjector(RULE.getApplication()).get().getInstance(SessionFactory.class).getCurrentSession()
+                        .createNativeQuery("INSERT INTO accounts (id, iban_number, uuid, currency, customer_id, total_amount_minor_units) "
+                                + "VALUES (100, 'GB40REVO00990000000100', '" + splitAccountUUID + "', 'GBP', 3, 20000)")
+                        .executeUpdate());
+        final BigDecimal otherTotal = getTotalAmount(otherAccountUUID);
+
+        final Response response = RULE.client()
+                .target(String.format("http://localhost:%s/tasks/split-account", RULE.getAdminPort()))
+                .queryParam("account", splitAccountUUID)
+                .queryParam("slots", 4)
+                .request()
+                .post(Entity.text(""));
+
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+        Assertions.assertThat(response.readEntity(String.class)).contains("split in 4 balance slots. Total amount: 200.00 GBP");
+        Assertions.assertThat(getTotalAmount(splitAccountUUID)).isEqualByComparingTo("200.00");
+
+        postTransfer(otherAccountUUID, splitAccountUUID, "10.00");
+        Assertions.assertThat(getTotalAmount(splitAccountUUID)).isEqualByComparingTo("210.00");
+
+        // More than the funds of any slot: the slots are rebalanced
+        postTransfer(splitAccountUUID, otherAccountUUID, "160.00");
+        Assertions.assertThat(getTotalAmount(splitAccountUUID)).isEqualByComparingTo("50.00");
+
+        postTransfer(otherAccountUUID, splitAccountUUID, "150.00");
+        Assertions.assertThat(getTotalAmount(splitAccountUUID)).isEqualByComparingTo("200.00");
+        Assertions.assertThat(getTotalAmount(otherAccountUUID)).isEqualByComparingTo(otherTotal);
+        Assertions.assertThat(getTransactions(splitAccountUUID).getContentList())
+                .extracting(item -> item.get("type"))
+                .containsExactly("CREDIT", "DEBIT", "CREDIT");
+    }
+
+    private TransferJobResponse awaitTransferJob(final URI location) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        TransferJobResponse job = RULE.client().target(location).request().get(TransferJobResponse.class);
+        while (job.getStatus() == TransferJobStatus.PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+            job = RULE.client().target(location).request().get(TransferJobResponse.class);
+        }
+
+        return job;
+    }
+
+    private Response postAsyncTransfer(final String debtorAccountUUID, final String beneficiaryAccountUUID, final String value) {
+        final AsyncTransferRequest request = new AsyncTransferRequest();
+        request.setAmount(new Amount(new BigDecimal(value), Currency.getInstance("GBP")));
+        request.setBeneficiaryAccountId(beneficiaryAccountUUID);
+
+        return RULE.client()
+                .target(String.format("http://localhost:%s/api/accounts/%s/transfers:async", RULE.getLocalPort(), debtorAccountUUID))
+                .request()
+                .post(Entity.entity(request, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    /**
+     * The asynchronous transfers are accepted at once and completed by the workers, whether applied or rejected.
+     */
+    @Test
+    public void test_POST_AsyncTransfer() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        final BigDecimal firstTotal = getTotalAmount(firstAccountUUID);
+
+        final Response accepted = postAsyncTransfer(firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(accepted.getStatus()).isEqualTo(202);
+        Assertions.assertThat(accepted.getLocation().getPath()).startsWith("/api/transfers/");
+        Assertions.assertThat(accepted.readEntity(TransferJobResponse.class).getDebtorAccountId()).isEqualTo(firstAccountUUID);
+
+        final TransferJobResponse completed = awaitTransferJob(accepted.getLocation());
+        Assertions.assertThat(completed.getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(completed.getResponseStatus()).isEqualTo(200);
+        Assertions.assertThat(completed.getTransfer().getTransactions()).hasSize(2);
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal.subtract(BigDecimal.ONE));
+
+        final Response rejected = postAsyncTransfer(firstAccountUUID, secondAccountUUID, "100000.00");
+        Assertions.assertThat(rejected.getStatus()).isEqualTo(202);
+        final TransferJobResponse failed = awaitTransferJob(rejected.getLocation());
+        Assertions.assertThat(failed.getStatus()).isEqualTo(TransferJobStatus.FAILED);
+        Assertions.assertThat(failed.getResponseStatus()).isEqualTo(409);
+        Assertions.assertThat(failed.getTransfer()).isNull();
+
+        Assertions.assertThat(awaitTransferJob(postAsyncTransfer(secondAccountUUID, firstAccountUUID, "1.00").getLocation()).getStatus())
+                .isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+
+        Assertions.assertThat(RULE.client()
+                .target(String.format("http://localhost:%s/api/transfers/%s", RULE.getLocalPort(), UUID.randomUUID()))
+                .request()
+                .get()
+                .getStatus()).isEqualTo(404);
+    }
+
+    private String getJSON(final String path, final int expectedStatus) {
+        final Response response = RULE.client()
+                .target(String.format("http://localhost:%s/api/%s", RULE.getLocalPort(), path))
+                .request()
+                .get();
+        Assertions.assertThat(response.getStatus()).isEqualTo(expectedStatus);
+
+        return response.readEntity(String.class);
+    }
+
+    /**
+     * The non-blocking endpoints answer as the blocking ones.
+     */
+    @Test
+    public void test_GET_AsyncEndpoints() throws Exception {
+        for (final String path : Arrays.asList("customers", "customers/52bc1e5d-af14-4fa0-8641-a1a3622e69e1",
+                "customers/f88ea81b-e6a9-42e9-ac7a-c52bff551060/accounts", "accounts/85216e45-8dd1-41d7-a890-3cf71acd2630",
+                "accounts/7f9adf98-93fb-4868-8cd8-cfe0f53628c1/transactions?limit=2")) {
+            JSONAssert.assertEquals(getJSON(path, 200), getJSON("async/" + path, 200), true);
+        }
+
+        getJSON("async/customers/" + UUID.randomUUID(), 404);
+        getJSON("async/customers/" + UUID.randomUUID() + "/accounts", 404);
+        getJSON("async/accounts/" + UUID.randomUUID(), 404);
+        // A transaction of another account
+        getJSON("async/accounts/7f9adf98-93fb-4868-8cd8-cfe0f53628c1/transactions?after=c59c4c27-8894-4479-9ae7-85e677455720", 400);
+        getJSON("async/accounts/7f9adf98-93fb-4868-8cd8-cfe0f53628c1/transactions?limit=0", 400);
+    }
+
+    /**
+     * The non-blocking transfer answers as the blocking one, Idempotency-Key included.
+     */
+    @Test
+    public void test_POST_AsyncEndpointTransfer() throws Exception {
+        final String firstAccountUUID = "b5d681fd-000f-4742-b388-b2dda353fc88";
+        final String secondAccountUUID = "df550c7b-f108-412c-a83a-8e310e83fadc";
+        final String idempotencyKey = UUID.randomUUID().toString();
+        final BigDecimal firstTotal = getTotalAmount(firstAccountUUID);
+
+        final Response response = postTransfer("async/accounts", idempotencyKey, firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(response.getStatus()).isEqualTo(200);
+        final JsonNode body = MAPPER.readTree(response.readEntity(String.class));
+        Assertions.assertThat(body.get("transactions")).hasSize(2);
+
+        // Retried through the blocking endpoint: the same response, performed once
+        final Response retry = postTransfer("accounts", idempotencyKey, firstAccountUUID, secondAccountUUID, "1.00");
+        Assertions.assertThat(retry.getStatus()).isEqualTo(200);
+        Assertions.assertThat(MAPPER.readTree(retry.readEntity(String.class))).isEqualTo(body);
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal.subtract(BigDecimal.ONE));
+
+        Assertions.assertThat(postTransfer("async/accounts", null, secondAccountUUID, firstAccountUUID, "1.00").getStatus()).isEqualTo(200);
+        Assertions.assertThat(getTotalAmount(firstAccountUUID)).isEqualByComparingTo(firstTotal);
+
+        Assertions.assertThat(postTransfer("async/accounts", null, UUID.randomUUID().toString(), firstAccountUUID, "1.00").getStatus()).isEqualTo(404);
+        Assertions.assertThat(postTransfer("async/accounts", null, firstAccountUUID, secondAccountUUID, "100000.00").getStatus()).isEqualTo(409);
+    }
+}
@@ -0,0 +1,96 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for class {@link AccountCache}
+ */
+public class AccountCacheTest {
+
+    private MetricRegistry metricRegistry;
+
+    private AccountCache accountCache;
+
+    private Account createAccount(final String uuid, final String amount) {
+        final Account account = new Account();
+        account.setUuid(uuid);
+        account.setCurrency(Currency.getInstance("GBP"));
+        account.setTotalAmount(new BigDecimal(amount));
+
+        return account;
+    }
+
+    private long gauge(final String name) {
+        return (Long) metricRegistry.getGauges().get(MetricRegistry.name(AccountCache.class, name)).getValue();
+    }
+
+    @Before
+    public void beforeEachTest() {
+        metricRegistry = new MetricRegistry();
+        accountCache = new AccountCache(new ApplicationConfig(), metricRegistry, Mockito.mock(SessionFactory.class));
+    }
+
+    @Test
+    public void get_ReadThrough_Test() {
+        final AtomicInteger loads = new AtomicInteger();
+        final Account account = createAccount("uuid", "10.00");
+
+        Assertions.assertThat(accountCache.get("uuid", uuid -> { loads.incrementAndGet(); return Optional.of(account); })).containsSame(account);
+        Assertions.assertThat(accountCache.get("uuid", uuid -> { loads.incrementAndGet(); return Optional.of(account); })).containsSame(account);
+        // The accounts not found are not cached
+        Assertions.assertThat(accountCache.get("missing", uuid -> { loads.incrementAndGet(); return Optional.empty(); })).isEmpty();
+        Assertions.assertThat(accountCache.get("missing", uuid -> { loads.incrementAndGet(); return Optional.empty(); })).isEmpty();
+
+        Assertions.assertThat(loads.get()).isEqualTo(3);
+        Assertions.assertThat(gauge("hits")).isEqualTo(1);
+        Assertions.assertThat(gauge("misses")).isEqualTo(3);
+        Assertions.assertThat(gauge("size")).isEqualTo(1);
+    }
+
+    @Test
+    public void get_InvalidatedWhileLoading_NotCached_Test() {
+        final Account staleAccount = createAccount("uuid", "10.00");
+        final Account freshAccount = createAccount("uuid", "5.00");
+
+        // A transfer commits while the old balance is being read
+        Assertions.assertThat(accountCache.get("uuid", uuid -> {
+            accountCache.invalidate(Collections.singleton("uuid"));
+            return Optional.of(staleAccount);
+        })).containsSame(staleAccount);
+
+        Assertions.assertThat(accountCache.get("uuid", uuid -> Optional.of(freshAccount))).containsSame(freshAccount);
+        Assertions.assertThat(accountCache.get("uuid", uuid -> Optional.of(staleAccount))).containsSame(freshAccount);
+    }
+
+    @Test
+    public void invalidationOf_Commit_Test() {
+        final Account account = createAccount("uuid", "10.00");
+        accountCache.get("uuid", uuid -> Optional.of(account));
+
+        final Synchronization synchronization = accountCache.invalidationOf(Collections.singletonList("uuid"));
+        synchronization.beforeCompletion();
+
+        // Read while committing: not kept once the transaction is completed
+        accountCache.get("uuid", uuid -> Optional.of(account));
+        synchronization.afterCompletion(Status.STATUS_COMMITTED);
+
+        final Account updatedAccount = createAccount("uuid", "5.00");
+        Assertions.assertThat(accountCache.get("uuid", uuid -> Optional.of(updatedAccount))).containsSame(updatedAccount);
+    }
+}
@@ -1,9 +1,8 @@
 package eu.davidemartorana.banking.accounts;
 
 import eu.davidemartorana.banking.accounts.dao.AccountRepository;
-import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
-import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
 import io.dropwizard.testing.junit.DAOTestRule;
 import org.assertj.core.api.Assertions;
 import org.hibernate.cfg.AvailableSettings;
@@ -58,8 +57,8 @@ public class AccountRepositoryTest {
 
 
     @Test
-    public void testCheckAndDecreaseLockingResourceByAccountId() throws Exception {
-        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+    public void testDecreaseTotalAmount() throws Exception {
+        final Money amount = Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"));
         final Long accountId = 1L;
         final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), "150.00");
 
@@ -69,17 +68,17 @@ public class AccountRepositoryTest {
                 }
         );
 
-        final Account account = database.inTransaction( () -> accountRepository.checkAndDecreaseLockingResourceByAccountId(amount, accountId));
+        Assertions.assertThat(database.inTransaction( () -> accountRepository.decreaseTotalAmount(accountId, amount))).isEqualTo(1);
 
-        Assertions.assertThat(account).isNotNull();
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
         Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("50.00");
 
     }
 
 
     @Test
-    public void testCheckAndDecreaseLockingResourceByAccountId_NotEnoughFundsException() throws Exception {
-        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+    public void testDecreaseTotalAmount_NotEnoughFunds() throws Exception {
+        final Money amount = Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"));
         final Long accountId = 1L;
         final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), "50.00");
 
@@ -89,19 +88,18 @@ public class AccountRepositoryTest {
                 }
         );
 
-        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
-                .isThrownBy(
-                        () -> database.inTransaction( () -> accountRepository.checkAndDecreaseLockingResourceByAccountId(amount, accountId))
-                ).withMessage("Fund not enough for amount: 100.00");
+        Assertions.assertThat(database.inTransaction( () -> accountRepository.decreaseTotalAmount(accountId, amount))).isZero();
 
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
+        Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("50.00");
 
     }
 
 
 
     @Test
-    public void testCheckAndIncreaseLockingResourceByAccountId() throws Exception {
-        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+    public void testIncreaseTotalAmount() throws Exception {
+        final Money amount = Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"));
         final Long accountId = 1L;
         final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), "150.00");
 
@@ -111,16 +109,91 @@ public class AccountRepositoryTest {
                 }
         );
 
-        final Account account = database.inTransaction( () -> accountRepository.checkAndIncreaseLockingResourceByAccountId(amount, accountId));
+        Assertions.assertThat(database.inTransaction( () -> accountRepository.increaseTotalAmount(accountId, amount))).isEqualTo(1);
 
-        Assertions.assertThat(account).isNotNull();
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
         Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("250.00");
 
     }
 
 
 
-    private void commonLockingTests(final Amount amount, final Long accountId, final String initialAmount, final String expectedFinalAmount, final int threadsNumber ,final Callable<Account> callable) throws Exception {
+    @Test
+    public void testDecreaseTotalAmount_OnlyIfFundsAreEnough() throws Exception {
+        final Long accountId = 1L;
+        final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), "150.00");
+
+        database.inTransaction( () -> {
+                    accountDAOHelper.getSession().save(accountToSave);
+                    accountDAOHelper.getSession().flush();
+                }
+        );
+
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.decreaseTotalAmount(accountId, Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"))))).isEqualTo(1);
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.decreaseTotalAmount(accountId, Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"))))).isZero();
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.increaseTotalAmount(accountId, Money.of(new BigDecimal("25.00"), Currency.getInstance("GBP"))))).isEqualTo(1);
+
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
+        Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("75.00");
+    }
+
+    @Test
+    public void testUpdateTotalAmount_OnlyIfVersionNotChanged() throws Exception {
+        final Long accountId = 1L;
+        final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), "150.00");
+
+        database.inTransaction( () -> {
+                    accountDAOHelper.getSession().save(accountToSave);
+                    accountDAOHelper.getSession().flush();
+                }
+        );
+
+        final Account read = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.updateTotalAmount(accountId, 10000L, read.getVersion()))).isEqualTo(1);
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.updateTotalAmount(accountId, 5000L, read.getVersion()))).isZero();
+
+        // Every balance update changes the version
+        Assertions.assertThat(database.inTransaction(() -> accountRepository.increaseTotalAmount(accountId, Money.of(new BigDecimal("25.00"), Currency.getInstance("GBP"))))).isEqualTo(1);
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
+        Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("125.00");
+        Assertions.assertThat(account.getVersion()).isEqualTo(read.getVersion() + 2);
+    }
+
+    @Test
+    public void testFindAllByUUIDLocking() throws Exception {
+        database.inTransaction( () -> {
+                    accountDAOHelper.getSession().save(createAccount(1L, "any-uuid-1", Currency.getInstance("GBP"), "150.00"));
+                    accountDAOHelper.getSession().save(createAccount(2L, "any-uuid-2", Currency.getInstance("GBP"), "50.00"));
+                    accountDAOHelper.getSession().flush();
+                }
+        );
+
+        final Map<String, Account> accounts = database.inTransaction(
+                () -> accountRepository.findAllByUUIDLocking(Arrays.asList("any-uuid-2", "not-existing-uuid", "any-uuid-1")));
+
+        Assertions.assertThat(accounts).containsOnlyKeys("any-uuid-1", "any-uuid-2");
+        Assertions.assertThat(accounts.get("any-uuid-2").getTotalAmount()).isEqualByComparingTo("50.00");
+    }
+
+    /**
+     * Reads the account {@code uuid} under lock, as the transfers do, and then decreases its total amount.
+     */
+    private int lockAndDecrease(final String uuid, final Money amount) {
+        final Account account = accountRepository.findAllByUUIDLocking(Collections.singletonList(uuid)).get(uuid);
+
+        return accountRepository.decreaseTotalAmount(account.getId(), amount);
+    }
+
+    /**
+     * Reads the account {@code uuid} under lock, as the transfers do, and then increases its total amount.
+     */
+    private int lockAndIncrease(final String uuid, final Money amount) {
+        final Account account = accountRepository.findAllByUUIDLocking(Collections.singletonList(uuid)).get(uuid);
+
+        return accountRepository.increaseTotalAmount(account.getId(), amount);
+    }
+
+    private void commonLockingTests(final Long accountId, final String initialAmount, final String expectedFinalAmount, final int threadsNumber ,final Callable<Integer> callable) throws Exception {
         final int threadPoolSize = threadsNumber+1;
 
         final Account accountToSave = createAccount(accountId, "any-uuid", Currency.getInstance("GBP"), initialAmount);
@@ -133,9 +206,9 @@ public class AccountRepositoryTest {
 
         final ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
 
-        final List<Future<Account>> futureList = new ArrayList<>(threadPoolSize);
+        final List<Future<Integer>> futureList = new ArrayList<>(threadPoolSize);
         for(int index = 0; index < threadsNumber ; index++) {
-            final Future<Account> future = executor.submit(() -> {
+            final Future<Integer> future = executor.submit(() -> {
                 return database.inTransaction(callable);
             });
             futureList.add(future);
@@ -145,9 +218,7 @@ public class AccountRepositoryTest {
 
         int counter =0;
         try {
-            final Account first = futureList.get(0).get(100, TimeUnit.SECONDS);
-            Assertions.assertThat(first).isNotNull();
-            Assertions.assertThat(first.getTotalAmount()).isEqualByComparingTo(expectedFinalAmount);
+            Assertions.assertThat(futureList.get(0).get(100, TimeUnit.SECONDS)).isEqualTo(1);
         } catch (final Exception e) {
             Assertions.assertThat(e).hasCauseExactlyInstanceOf(PessimisticLockException.class);
             counter++;
@@ -155,9 +226,7 @@ public class AccountRepositoryTest {
 
 
         try {
-            final Account second = futureList.get(1).get(100, TimeUnit.SECONDS);
-            Assertions.assertThat(second).isNotNull();
-            Assertions.assertThat(second.getTotalAmount()).isEqualByComparingTo(expectedFinalAmount);
+            Assertions.assertThat(futureList.get(1).get(100, TimeUnit.SECONDS)).isEqualTo(1);
         } catch (final Exception e) {
             Assertions.assertThat(e).hasCauseExactlyInstanceOf(PessimisticLockException.class);
             counter++;
@@ -165,49 +234,52 @@ public class AccountRepositoryTest {
 
         // Asserting that only one transaction has failed.
         Assertions.assertThat(counter).isEqualTo(1);
+
+        final Account account = database.inTransaction(() -> accountRepository.findByUUID("any-uuid").get());
+        Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo(expectedFinalAmount);
     }
 
     @Test
-    public void testCheckAndIncreaseLockingResourceByAccountId_Locking_Test() throws Exception {
+    public void testIncreaseTotalAmount_Locking_Test() throws Exception {
 
         final int threadsNumber = 2;
         final CountDownLatch countDownLatch = new CountDownLatch(threadsNumber);
 
-        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+        final Money amount = Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"));
         final Long accountId = 1L;
 
-        commonLockingTests(amount, accountId, "150.00", "250.00", threadsNumber,() -> {
-                        final Account account;
+        commonLockingTests(accountId, "150.00", "250.00", threadsNumber,() -> {
+                        final int updated;
                         try {
-                            account= accountRepository.checkAndIncreaseLockingResourceByAccountId(amount, accountId);
+                            updated = lockAndIncrease("any-uuid", amount);
                         } finally {
                             countDownLatch.countDown();
                             System.out.printf("countDownLatch: %s\n", countDownLatch.getCount());
                             countDownLatch.await();
                         }
-                        return account;
+                        return updated;
                     });
     }
 
     @Test
-    public void testCheckAndDecreaseLockingResourceByAccountId_Locking_Test() throws Exception {
+    public void testDecreaseTotalAmount_Locking_Test() throws Exception {
 
         final int threadsNumber = 2;
         final CountDownLatch countDownLatch = new CountDownLatch(threadsNumber);
 
-        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+        final Money amount = Money.of(new BigDecimal("100.00"), Currency.getInstance("GBP"));
         final Long accountId = 1L;
 
-        commonLockingTests(amount, accountId, "150.00", "50.00", threadsNumber,() -> {
-            final Account account;
+        commonLockingTests(accountId, "150.00", "50.00", threadsNumber,() -> {
+            final int updated;
             try {
-                account= accountRepository.checkAndDecreaseLockingResourceByAccountId(amount, accountId);
+                updated = lockAndDecrease("any-uuid", amount);
             } finally {
                 countDownLatch.countDown();
                 System.out.printf("countDownLatch: %s\n", countDownLatch.getCount());
                 countDownLatch.await();
             }
-            return account;
+            return updated;
         });
     }
 
@@ -225,7 +297,7 @@ public class AccountRepositoryTest {
         final CountDownLatch countDownLatchFirstThread = new CountDownLatch(2);
         final CountDownLatch countDownLatchSecondThread = new CountDownLatch(2);
 
-        final Amount amount = new Amount(new BigDecimal("150.00"), Currency.getInstance("GBP"));
+        final Money amount = Money.of(new BigDecimal("150.00"), Currency.getInstance("GBP"));
         final Long firstAccountId = 12345L;
         final Long secondAccountId = 6789L;
 
@@ -244,49 +316,45 @@ public class AccountRepositoryTest {
 
         final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
 
-        final Callable<Account> firstThread = () -> {
-            final Account account1;
-            final Account account2;
+        final Callable<Integer> firstThread = () -> {
+            final int updated;
             try {
-                account2= accountRepository.checkAndDecreaseLockingResourceByAccountId(amount, secondAccountId);
+                lockAndDecrease("any-uuid-2", amount);
 
                 countDownLatchFirstThread.countDown();
                 countDownLatchFirstThread.await();
 
-                account1= accountRepository.checkAndIncreaseLockingResourceByAccountId(amount, firstAccountId);
+                updated = lockAndIncrease("any-uuid-1", amount);
             } finally {
                 countDownLatchSecondThread.countDown();
             }
             countDownLatchSecondThread.await();
-            return account1;
+            return updated;
         };
 
-        final Callable<Account> secondThread = () -> {
-            final Account account1;
-            final Account account2;
+        final Callable<Integer> secondThread = () -> {
+            final int updated;
             try {
-                account1= accountRepository.checkAndIncreaseLockingResourceByAccountId(amount, firstAccountId);
+                lockAndIncrease("any-uuid-1", amount);
 
                 countDownLatchFirstThread.countDown();
                 countDownLatchFirstThread.await();
 
-                account2= accountRepository.checkAndDecreaseLockingResourceByAccountId(amount, secondAccountId);
+                updated = lockAndDecrease("any-uuid-2", amount);
             } finally {
                 countDownLatchSecondThread.countDown();
             }
             countDownLatchSecondThread.await();
-            return account2;
+            return updated;
         };
 
-        final Map<String, Future<Account>> futureMap = new HashMap<>(threadsNumber);
+        final Map<String, Future<Integer>> futureMap = new HashMap<>(threadsNumber);
         futureMap.put(firstAccountToSave.getUuid(), executor.submit( () -> database.inTransaction(firstThread)));
         futureMap.put(secondAccountToSave.getUuid(), executor.submit( () -> database.inTransaction(secondThread)));
 
         int counter = 0;
         try {
-            final Account account = futureMap.get(secondAccountToSave.getUuid()).get(100, TimeUnit.SECONDS);
-            Assertions.assertThat(account).isNotNull();
-            Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("150.00");
+            Assertions.assertThat(futureMap.get(secondAccountToSave.getUuid()).get(100, TimeUnit.SECONDS)).isEqualTo(1);
         } catch (final Exception e) {
             Assertions.assertThat(e)
                     .hasRootCauseExactlyInstanceOf(IllegalStateException.class)
@@ -296,9 +364,7 @@ public class AccountRepositoryTest {
         }
 
         try {
-            final Account account = futureMap.get(firstAccountToSave.getUuid()).get(100, TimeUnit.SECONDS);
-            Assertions.assertThat(account).isNotNull();
-            Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("350.00");
+            Assertions.assertThat(futureMap.get(firstAccountToSave.getUuid()).get(100, TimeUnit.SECONDS)).isEqualTo(1);
         } catch (final Exception e) {
             Assertions.assertThat(e)
                     .hasRootCauseExactlyInstanceOf(IllegalStateException.class)
@@ -310,9 +376,16 @@ public class AccountRepositoryTest {
         // Asserting that at least one transaction has failed.
         Assertions.assertThat(counter).isBetween(1,2);
 
-
-
-
+        // Either no transaction has changed the balances or just one of them has
+        final Map<String, Account> accounts = database.inTransaction(
+                () -> accountRepository.findAllByUUIDLocking(Arrays.asList("any-uuid-1", "any-uuid-2")));
+        if (counter == 1) {
+            Assertions.assertThat(accounts.get("any-uuid-1").getTotalAmount()).isEqualByComparingTo("350.00");
+            Assertions.assertThat(accounts.get("any-uuid-2").getTotalAmount()).isEqualByComparingTo("150.00");
+        } else {
+            Assertions.assertThat(accounts.get("any-uuid-1").getTotalAmount()).isEqualByComparingTo(firstInitialAmount);
+            Assertions.assertThat(accounts.get("any-uuid-2").getTotalAmount()).isEqualByComparingTo(secondInitialAmount);
+        }
     }
 
 }
@@ -1,33 +1,68 @@
 package eu.davidemartorana.banking.accounts;
 
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.cache.SplitAccountIndex;
+import eu.davidemartorana.banking.accounts.config.AdaptiveConfig;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
 import eu.davidemartorana.banking.accounts.dao.AccountRepository;
 import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
 import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.HistoryCursor;
+import eu.davidemartorana.banking.accounts.domain.Money;
 import eu.davidemartorana.banking.accounts.domain.TransferResult;
 import eu.davidemartorana.banking.accounts.domain.internal.Account;
 import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
 import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
 import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
 import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.HibernateTransferEngine;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
 import org.assertj.core.api.Assertions;
 import org.assertj.core.util.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.hibernate.SessionFactory;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import javax.persistence.LockTimeoutException;
 import javax.persistence.PessimisticLockException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.WebApplicationException;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Test for class {@link AccountsService}
@@ -39,8 +74,16 @@ public class AccountServiceTest {
     @Mock
     private TransactionRepository transactionsRepositoryMock;
 
+    @Mock
+    private TransferRequestRepository transferRequestRepositoryMock;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private SessionFactory sessionFactoryMock;
+
     private AccountsService accountsService;
 
+    private TransferMetrics transferMetrics;
+
     private Account createAccount(final Long id, final String uuid, final Currency currency, final String amount) {
         final Account account = new Account();
         account.setId(id);
@@ -54,7 +97,13 @@ public class AccountServiceTest {
     @Before
     public void beforeEachTest() {
         MockitoAnnotations.initMocks(this);
-        accountsService = new AccountsService(accountRepositoryMock, transactionsRepositoryMock);
+        transferMetrics = new TransferMetrics(new MetricRegistry(), sessionFactoryMock);
+        accountsService = new AccountsService(accountRepositoryMock, transactionsRepositoryMock, new HibernateTransferEngine(accountRepositoryMock, transactionsRepositoryMock, transferMetrics),
+                new AccountCache(new ApplicationConfig(), new MetricRegistry(), sessionFactoryMock),
+                new IdempotencyService(new IdempotencyIndex(new CacheConfig(100, Duration.minutes(1)), new MetricRegistry()),
+                        transferRequestRepositoryMock, Mockito.mock(UnitOfWorkRunner.class), Jackson.newObjectMapper()),
+                new HotAccountDetector(new AdaptiveConfig(), false, new MetricRegistry()),
+                new SplitAccountIndex(accountRepositoryMock, Mockito.mock(UnitOfWorkRunner.class), sessionFactoryMock), transferMetrics);
     }
 
     @After
@@ -112,6 +161,38 @@ public class AccountServiceTest {
 
     }
 
+    @Test
+    public void getTransactions_AfterCursor_Test() {
+        final Long accountId = 1L;
+        final String uuid = "exist-uuid";
+        final Transaction after = new Transaction();
+        final Transaction next = new Transaction();
+
+        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(uuid))).thenReturn(Optional.of(createAccount(accountId, uuid, Currency.getInstance("GBP"), "10.00")));
+        Mockito.when(transactionsRepositoryMock.findByAccountIdAndUUID(Mockito.eq(accountId), Mockito.eq("after-uuid"))).thenReturn(Optional.of(after));
+        Mockito.when(transactionsRepositoryMock.findPageByAccountId(Mockito.eq(accountId), Mockito.same(after), Mockito.eq(10))).thenReturn(Lists.newArrayList(next));
+
+        final HistoryCursor cursor = accountsService.getHistoryCursor(uuid, "after-uuid");
+        Assertions.assertThat(cursor.getAccountId()).isEqualTo(accountId);
+        Assertions.assertThat(cursor.getAfter()).isSameAs(after);
+
+        Assertions.assertThat(accountsService.getTransactions(cursor, 10)).containsExactly(next);
+    }
+
+    @Test
+    public void getHistoryCursor_TransactionNotInAccount_Test() {
+        final Long accountId = 1L;
+        final String uuid = "exist-uuid";
+
+        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(uuid))).thenReturn(Optional.of(createAccount(accountId, uuid, Currency.getInstance("GBP"), "10.00")));
+        Mockito.when(transactionsRepositoryMock.findByAccountIdAndUUID(Mockito.eq(accountId), Mockito.eq("other-uuid"))).thenReturn(Optional.empty());
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> accountsService.getHistoryCursor(uuid, "other-uuid"));
+
+        Mockito.verify(transactionsRepositoryMock, Mockito.never()).findPageByAccountId(Mockito.anyLong(), Mockito.any(), Mockito.anyInt());
+    }
+
     @Test
     public void getAllTransactionsByAccountsUUID_Get_NotEmptyList_Test() {
         final Long accountId= 1L;
@@ -153,19 +234,120 @@ public class AccountServiceTest {
 
     }
 
+    @Test
+    public void getDetailsByAccountUUID_InvalidatedByTransfer_Test() {
+        final String debtorAccountUUID = "debtorAccountUUID";
+        final String beneficiaryAccountUUID = "beneficiaryAccountUUID";
+        final Account debtorAccount = createAccount(1L, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
+        final Account beneficiaryAccount = createAccount(2L, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
+        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
+
+        accountsService.getDetailsByAccountUUID(debtorAccountUUID);
+        accountsService.getDetailsByAccountUUID(debtorAccountUUID);
+        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(debtorAccountUUID));
+
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(new Amount(new BigDecimal("10.00"), Currency.getInstance("GBP")));
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(1L), Mockito.any(Money.class))).thenReturn(1);
+
+        accountsService.transferAmount(debtorAccountUUID, transferRequest);
+
+        final ArgumentCaptor<Synchronization> synchronizationCaptor = ArgumentCaptor.forClass(Synchronization.class);
+        // The invalidation of the cache and the timing of the commit
+        Mockito.verify(sessionFactoryMock.getCurrentSession().getTransaction(), Mockito.times(2)).registerSynchronization(synchronizationCaptor.capture());
+        synchronizationCaptor.getAllValues().forEach(Synchronization::beforeCompletion);
+        synchronizationCaptor.getAllValues().forEach(synchronization -> synchronization.afterCompletion(Status.STATUS_COMMITTED));
+
+        accountsService.getDetailsByAccountUUID(debtorAccountUUID);
+        Mockito.verify(accountRepositoryMock, Mockito.times(2)).findByUUID(Mockito.eq(debtorAccountUUID));
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.COMMIT).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void transferAmount_WithIdempotencyKey_Test() {
+        final String debtorAccountUUID = "debtorAccountUUID";
+        final String beneficiaryAccountUUID = "beneficiaryAccountUUID";
+        final Account debtorAccount = createAccount(1L, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
+        final Account beneficiaryAccount = createAccount(2L, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
+
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(new Amount(new BigDecimal("10.00"), Currency.getInstance("GBP")));
+        transferRequest.setIdempotencyKey("key-1");
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(1L), Mockito.any(Money.class))).thenReturn(1);
+
+        accountsService.transferAmount(debtorAccountUUID, transferRequest);
+
+        // The key is taken before the balances are changed, in the same unit of work
+        final ArgumentCaptor<TransferRequestRecord> recordCaptor = ArgumentCaptor.forClass(TransferRequestRecord.class);
+        final InOrder inOrder = Mockito.inOrder(transferRequestRepositoryMock, accountRepositoryMock);
+        inOrder.verify(transferRequestRepositoryMock).insert(recordCaptor.capture());
+        inOrder.verify(accountRepositoryMock).decreaseTotalAmount(Mockito.eq(1L), Mockito.any(Money.class));
+
+        final TransferRequestRecord record = recordCaptor.getValue();
+        Assertions.assertThat(record.getIdempotencyKey()).isEqualTo("key-1");
+        Assertions.assertThat(record.isSameTransfer(debtorAccountUUID, beneficiaryAccountUUID, Money.ofMinorUnits(1000L, Currency.getInstance("GBP")))).isTrue();
+        Assertions.assertThat(record.getResponse()).contains("\"totalAmount\":90.00");
+    }
+
+    @Test
+    public void transferAmounts_IdempotencyKeyOfFailedTransferReleased_Test() {
+        final Account firstAccount = createAccount(1L, "firstAccountUUID", Currency.getInstance("GBP"), "10.00");
+        final Account secondAccount = createAccount(2L, "secondAccountUUID", Currency.getInstance("GBP"), "0.00");
+        mockLockedAccounts(firstAccount, secondAccount);
+
+        final BatchTransferItem applied = new BatchTransferItem();
+        applied.setDebtorAccountId("firstAccountUUID");
+        applied.setBeneficiaryAccountId("secondAccountUUID");
+        applied.setAmount(new Amount(new BigDecimal("5.00"), Currency.getInstance("GBP")));
+        applied.setIdempotencyKey("applied-key");
+
+        final BatchTransferItem failed = new BatchTransferItem();
+        failed.setDebtorAccountId("firstAccountUUID");
+        failed.setBeneficiaryAccountId("secondAccountUUID");
+        failed.setAmount(new Amount(new BigDecimal("50.00"), Currency.getInstance("GBP")));
+        failed.setIdempotencyKey("failed-key");
+
+        final List<BatchItemResult> results = accountsService.transferAmounts(Arrays.asList(applied, failed), BatchMode.BEST_EFFORT);
+        Assertions.assertThat(results).extracting(BatchItemResult::isApplied).containsExactly(true, false);
+
+        final ArgumentCaptor<TransferRequestRecord> recordCaptor = ArgumentCaptor.forClass(TransferRequestRecord.class);
+        Mockito.verify(transferRequestRepositoryMock, Mockito.times(2)).insert(recordCaptor.capture());
+        Assertions.assertThat(recordCaptor.getAllValues()).extracting(TransferRequestRecord::getIdempotencyKey).containsExactly("applied-key", "failed-key");
+        Assertions.assertThat(recordCaptor.getAllValues().get(0).getResponse()).isNotNull();
+        Mockito.verify(transferRequestRepositoryMock).delete(Mockito.same(recordCaptor.getAllValues().get(1)));
+    }
+
+    private void mockLockedAccounts(final Account... accounts) {
+        final Map<String, Account> accountsMap = new HashMap<>();
+        for (final Account account : accounts) {
+            accountsMap.put(account.getUuid(), account);
+        }
+        Mockito.when(accountRepositoryMock.findAllByUUIDLocking(Mockito.anyCollection())).thenReturn(accountsMap);
+        Mockito.when(accountRepositoryMock.findAllByUUIDLocking(Mockito.anyCollection(), Mockito.any())).thenAnswer(invocation -> {
+            final Collection<String> uuids = invocation.getArgument(0);
+            final ObjLongConsumer<String> lockTimes = invocation.getArgument(1);
+            uuids.forEach(uuid -> lockTimes.accept(uuid, 1000L));
+            return accountsMap;
+        });
+    }
+
     @Test
     public void transferAmount_AccountNotExist_Test() {
         final String debtorAccountUUID = "debtorAccountUUID";
         final TransferRequest transferRequest = new TransferRequest();
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.empty());
+        mockLockedAccounts();
 
         Assertions.assertThatExceptionOfType(NotFoundException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .withMessage("Debtor Account with given id was not found");
 
-        Mockito.verify(accountRepositoryMock, Mockito.only()).findByUUID(Mockito.eq(debtorAccountUUID));
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(debtorAccountUUID));
+        Mockito.verify(accountRepositoryMock, Mockito.only()).findAllByUUIDLocking(Mockito.eq(Collections.singleton(debtorAccountUUID)), Mockito.any());
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.NOT_FOUND).getCount()).isEqualTo(1);
     }
 
 
@@ -182,14 +364,14 @@ public class AccountServiceTest {
         final Long debtorAccountId = 1L;
         final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("EUR"), "100.00");
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
+        mockLockedAccounts(debtorAccount);
 
         Assertions.assertThatExceptionOfType(BadRequestException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .withMessage("The currency accounts must be the same of the transfer instruction.");
 
-        Mockito.verify(accountRepositoryMock, Mockito.only()).findByUUID(Mockito.eq(debtorAccountUUID));
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(debtorAccountUUID));
+        Mockito.verify(accountRepositoryMock, Mockito.only()).findAllByUUIDLocking(Mockito.anyCollection(), Mockito.any());
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.CURRENCY_MISMATCH).getCount()).isEqualTo(1);
 
     }
 
@@ -206,15 +388,15 @@ public class AccountServiceTest {
         final Long debtorAccountId = 1L;
         final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(beneficiaryAccountUUID))).thenReturn(Optional.empty());
+        mockLockedAccounts(debtorAccount);
 
         Assertions.assertThatExceptionOfType(BadRequestException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .withMessage("Beneficiary Account with given id was not found.");
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(debtorAccountUUID));
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(beneficiaryAccountUUID));
+        // Both the accounts are read at once
+        Mockito.verify(accountRepositoryMock, Mockito.only()).findAllByUUIDLocking(Mockito.eq(new HashSet<>(Arrays.asList(debtorAccountUUID, beneficiaryAccountUUID))), Mockito.any());
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.NOT_FOUND).getCount()).isEqualTo(1);
 
     }
 
@@ -230,19 +412,18 @@ public class AccountServiceTest {
 
         final Long debtorAccountId = 1L;
         final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
 
         final Long beneficiaryAccountId = 2L;
         final Account beneficiaryAccount = createAccount(beneficiaryAccountId, beneficiaryAccountUUID, Currency.getInstance("EUR"), "200.00");
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(beneficiaryAccountUUID))).thenReturn(Optional.of(beneficiaryAccount));
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
 
 
         Assertions.assertThatExceptionOfType(BadRequestException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .withMessage("Both beneficiary and debtor accounts must have the same currency.");
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(debtorAccountUUID));
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID(Mockito.eq(beneficiaryAccountUUID));
+        Mockito.verify(accountRepositoryMock, Mockito.only()).findAllByUUIDLocking(Mockito.anyCollection(), Mockito.any());
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.CURRENCY_MISMATCH).getCount()).isEqualTo(1);
 
     }
 
@@ -262,18 +443,17 @@ public class AccountServiceTest {
         final Long beneficiaryAccountId = 2L;
         final Account beneficiaryAccount = createAccount(beneficiaryAccountId, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(beneficiaryAccountUUID))).thenReturn(Optional.of(beneficiaryAccount));
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
 
 
         final WebApplicationException webApplicationException = new WebApplicationException();
-        Mockito.when(accountRepositoryMock.checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId))).thenThrow(webApplicationException);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenThrow(webApplicationException);
 
         Assertions.assertThatExceptionOfType(WebApplicationException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .isSameAs(webApplicationException);
 
-        Mockito.when(accountRepositoryMock.checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId))).thenThrow(PessimisticLockException.class, LockTimeoutException.class, IllegalArgumentException.class);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenThrow(PessimisticLockException.class, LockTimeoutException.class, IllegalArgumentException.class);
 
         Assertions.assertThatExceptionOfType(WebApplicationException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
@@ -290,8 +470,9 @@ public class AccountServiceTest {
                 .withMessage("Error occurred during the funds transfer. Operation not performed.")
                 .withRootCauseExactlyInstanceOf(IllegalArgumentException.class);
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(4)).checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId));
-        Mockito.verify(transactionsRepositoryMock, Mockito.never()).addTransaction(Mockito.eq(amount), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
+        Mockito.verify(accountRepositoryMock, Mockito.times(4)).decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()));
+        Mockito.verify(transactionsRepositoryMock, Mockito.never()).addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.LOCK_CONFLICT).getCount()).isEqualTo(2);
     }
 
     @Test
@@ -312,27 +493,26 @@ public class AccountServiceTest {
 
         final Transaction debtorTransaction =  new Transaction();
         debtorTransaction.setAccountId(debtorAccountId);
-        debtorTransaction.setAmount(amount.getValue());
         debtorTransaction.setCurrency(amount.getCurrency());
+        debtorTransaction.setAmount(amount.getValue());
         debtorTransaction.setType(TransactionType.DEBIT.value());
         debtorTransaction.setUuid(UUID.randomUUID().toString());
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(beneficiaryAccountUUID))).thenReturn(Optional.of(beneficiaryAccount));
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
 
-        Mockito.when(accountRepositoryMock.checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId))).thenReturn(debtorAccount);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenReturn(1);
 
-        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT))).thenReturn(debtorTransaction);
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT))).thenReturn(debtorTransaction);
 
 
         final WebApplicationException webApplicationException = new WebApplicationException();
-        Mockito.when(accountRepositoryMock.checkAndIncreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(beneficiaryAccountId))).thenThrow(webApplicationException);
+        Mockito.when(accountRepositoryMock.increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()))).thenThrow(webApplicationException);
 
         Assertions.assertThatExceptionOfType(WebApplicationException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
                 .isSameAs(webApplicationException);
 
-        Mockito.when(accountRepositoryMock.checkAndIncreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(beneficiaryAccountId))).thenThrow(PessimisticLockException.class, LockTimeoutException.class, IllegalArgumentException.class);
+        Mockito.when(accountRepositoryMock.increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()))).thenThrow(PessimisticLockException.class, LockTimeoutException.class, IllegalArgumentException.class);
 
         Assertions.assertThatExceptionOfType(WebApplicationException.class)
                 .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
@@ -349,11 +529,11 @@ public class AccountServiceTest {
                 .withMessage("Error occurred during the funds transfer. Operation not performed.")
                 .withRootCauseExactlyInstanceOf(IllegalArgumentException.class);
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(4)).checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId));
-        Mockito.verify(transactionsRepositoryMock, Mockito.times(4)).addTransaction(Mockito.eq(amount), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
+        Mockito.verify(accountRepositoryMock, Mockito.times(4)).decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()));
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(4)).addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(4)).checkAndIncreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(beneficiaryAccountId));
-        Mockito.verify(transactionsRepositoryMock, Mockito.times(0)).addTransaction(Mockito.eq(amount), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT));
+        Mockito.verify(accountRepositoryMock, Mockito.times(4)).increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()));
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(0)).addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT));
     }
 
 
@@ -368,50 +548,177 @@ public class AccountServiceTest {
         transferRequest.setAmount(amount);
 
         final Long debtorAccountId = 1L;
-        final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
+        final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "150.00");
 
         final Long beneficiaryAccountId = 2L;
         final Account beneficiaryAccount = createAccount(beneficiaryAccountId, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
 
         final Transaction debtorTransaction =  new Transaction();
         debtorTransaction.setAccountId(debtorAccountId);
-        debtorTransaction.setAmount(amount.getValue());
         debtorTransaction.setCurrency(amount.getCurrency());
+        debtorTransaction.setAmount(amount.getValue());
         debtorTransaction.setType(TransactionType.DEBIT.value());
         debtorTransaction.setUuid(UUID.randomUUID().toString());
 
         final Transaction beneficiaryTransaction =  new Transaction();
         beneficiaryTransaction.setAccountId(beneficiaryAccountId);
-        beneficiaryTransaction.setAmount(amount.getValue());
         beneficiaryTransaction.setCurrency(amount.getCurrency());
+        beneficiaryTransaction.setAmount(amount.getValue());
         beneficiaryTransaction.setType(TransactionType.CREDIT.value());
         beneficiaryTransaction.setUuid(UUID.randomUUID().toString());
 
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(debtorAccountUUID))).thenReturn(Optional.of(debtorAccount));
-        Mockito.when(accountRepositoryMock.findByUUID(Mockito.eq(beneficiaryAccountUUID))).thenReturn(Optional.of(beneficiaryAccount));
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
 
-        Mockito.when(accountRepositoryMock.checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId))).thenReturn(debtorAccount);
-        Mockito.when(accountRepositoryMock.checkAndIncreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(beneficiaryAccountId))).thenReturn(beneficiaryAccount);
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenReturn(1);
+        Mockito.when(accountRepositoryMock.increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()))).thenReturn(1);
 
-        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT))).thenReturn(debtorTransaction);
-        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT))).thenReturn(beneficiaryTransaction);
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT))).thenReturn(debtorTransaction);
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT))).thenReturn(beneficiaryTransaction);
 
 
         final TransferResult transferResult = accountsService.transferAmount(debtorAccountUUID, transferRequest);
         Assertions.assertThat(transferResult).isNotNull();
-        Assertions.assertThat(transferResult.getBeneficiaryAccount()).isEqualTo(beneficiaryAccount);
-        Assertions.assertThat(transferResult.getDebtorAccount()).isEqualTo(debtorAccount);
+        Assertions.assertThat(transferResult.getBeneficiaryAccount()).isEqualTo(beneficiaryAccount.withTotalAmount(32000L));
+        Assertions.assertThat(transferResult.getDebtorAccount()).isEqualTo(debtorAccount.withTotalAmount(3000L));
         Assertions.assertThat(transferResult.getTransactions())
                 .isNotEmpty()
                 .hasSize(2)
                 .containsExactlyInAnyOrder(debtorTransaction, beneficiaryTransaction);
 
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).checkAndDecreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(debtorAccountId));
-        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).addTransaction(Mockito.eq(amount), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
+        Mockito.verify(accountRepositoryMock, Mockito.times(1)).decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()));
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT));
+
+        Mockito.verify(accountRepositoryMock, Mockito.times(1)).increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()));
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT));
 
-        Mockito.verify(accountRepositoryMock, Mockito.times(1)).checkAndIncreaseLockingResourceByAccountId(Mockito.eq(amount), Mockito.eq(beneficiaryAccountId));
-        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).addTransaction(Mockito.eq(amount), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT));
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.LOOKUP).getCount()).isEqualTo(1);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.DEBTOR_LOCK).getSnapshot().getValues()).containsExactly(1000L);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.BENEFICIARY_LOCK).getSnapshot().getValues()).containsExactly(1000L);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.BALANCE_UPDATE).getCount()).isEqualTo(1);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.TRANSACTION_INSERT).getCount()).isEqualTo(1);
     }
 
+    @Test
+    public void transferAmount_NotEnoughFunds_Test() {
+        final String debtorAccountUUID = "debtorAccountUUID";
+        final String beneficiaryAccountUUID = "beneficiaryAccountUUID";
+        final Amount amount = new Amount(new BigDecimal("120.00"), Currency.getInstance("GBP"));
+
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(amount);
+
+        final Long debtorAccountId = 1L;
+        final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
+
+        final Long beneficiaryAccountId = 2L;
+        final Account beneficiaryAccount = createAccount(beneficiaryAccountId, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
+
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+
+        // The conditional update does not change any account
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenReturn(0);
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> accountsService.transferAmount(debtorAccountUUID, transferRequest))
+                .withMessage("Fund not enough for amount: 120.00");
+
+        Mockito.verify(accountRepositoryMock, Mockito.never()).increaseTotalAmount(Mockito.anyLong(), Mockito.any(Money.class));
+        Mockito.verify(transactionsRepositoryMock, Mockito.never()).addTransaction(Mockito.any(Money.class), Mockito.any(Account.class), Mockito.any(TransactionType.class));
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.INSUFFICIENT_FUNDS).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void transferAmount_LocksInAscendingIdOrder_Test() {
+        final String debtorAccountUUID = "debtorAccountUUID";
+        final String beneficiaryAccountUUID = "beneficiaryAccountUUID";
+        final Amount amount = new Amount(new BigDecimal("20.00"), Currency.getInstance("GBP"));
+
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(amount);
+
+        // The debtor has the greatest id: the beneficiary is locked first
+        final Long debtorAccountId = 2L;
+        final Account debtorAccount = createAccount(debtorAccountId, debtorAccountUUID, Currency.getInstance("GBP"), "100.00");
+
+        final Long beneficiaryAccountId = 1L;
+        final Account beneficiaryAccount = createAccount(beneficiaryAccountId, beneficiaryAccountUUID, Currency.getInstance("GBP"), "200.00");
+
+        final Transaction debtorTransaction =  new Transaction();
+        debtorTransaction.setType(TransactionType.DEBIT.value());
+
+        final Transaction beneficiaryTransaction =  new Transaction();
+        beneficiaryTransaction.setType(TransactionType.CREDIT.value());
+
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+
+        Mockito.when(accountRepositoryMock.decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()))).thenReturn(1);
+        Mockito.when(accountRepositoryMock.increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()))).thenReturn(1);
+
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(debtorAccount), Mockito.eq(TransactionType.DEBIT))).thenReturn(debtorTransaction);
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.eq(amount.toMoney()), Mockito.eq(beneficiaryAccount), Mockito.eq(TransactionType.CREDIT))).thenReturn(beneficiaryTransaction);
+
+        final TransferResult transferResult = accountsService.transferAmount(debtorAccountUUID, transferRequest);
+        Assertions.assertThat(transferResult.getTransactions()).containsExactly(debtorTransaction, beneficiaryTransaction);
+
+        final InOrder inOrder = Mockito.inOrder(accountRepositoryMock);
+        inOrder.verify(accountRepositoryMock).increaseTotalAmount(Mockito.eq(beneficiaryAccountId), Mockito.eq(amount.toMoney()));
+        inOrder.verify(accountRepositoryMock).decreaseTotalAmount(Mockito.eq(debtorAccountId), Mockito.eq(amount.toMoney()));
+    }
+
+    private BatchTransferItem createBatchItem(final String debtorAccountUUID, final String beneficiaryAccountUUID, final Amount amount) {
+        final BatchTransferItem item = new BatchTransferItem();
+        item.setDebtorAccountId(debtorAccountUUID);
+        item.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        item.setAmount(amount);
+
+        return item;
+    }
+
+    @Test
+    public void transferAmounts_AllOrNothing_InvalidTransfer_Test() {
+        final Amount amount = new Amount(new BigDecimal("20.00"), Currency.getInstance("GBP"));
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", Currency.getInstance("GBP"), "100.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", Currency.getInstance("GBP"), "200.00");
+
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+
+        final List<BatchItemResult> results = accountsService.transferAmounts(Arrays.asList(
+                createBatchItem("debtorAccountUUID", "beneficiaryAccountUUID", amount),
+                createBatchItem("debtorAccountUUID", "not-exist-uuid", amount)), BatchMode.ALL_OR_NOTHING);
+
+        Assertions.assertThat(results).extracting("index", "status", "message").containsExactly(
+                Assertions.tuple(0, BatchItemResult.FAILED_DEPENDENCY, "Not performed: another transfer of the batch failed."),
+                Assertions.tuple(1, 400, "Beneficiary Account with given id was not found."));
+
+        // Every account is read once
+        Mockito.verify(accountRepositoryMock, Mockito.only()).findAllByUUIDLocking(Mockito.eq(new HashSet<>(Arrays.asList("debtorAccountUUID", "beneficiaryAccountUUID", "not-exist-uuid"))));
+        Mockito.verify(transactionsRepositoryMock, Mockito.never()).insertAll(Mockito.anyList());
+    }
+
+    @Test
+    public void transferAmounts_BestEffort_Test() {
+        final Amount amount = new Amount(new BigDecimal("20.00"), Currency.getInstance("GBP"));
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", Currency.getInstance("GBP"), "100.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", Currency.getInstance("GBP"), "200.00");
+
+        mockLockedAccounts(debtorAccount, beneficiaryAccount);
+
+        final List<BatchItemResult> results = accountsService.transferAmounts(Arrays.asList(
+                createBatchItem("not-exist-uuid", "beneficiaryAccountUUID", amount),
+                createBatchItem("debtorAccountUUID", "beneficiaryAccountUUID", amount),
+                createBatchItem("beneficiaryAccountUUID", "debtorAccountUUID", amount)), BatchMode.BEST_EFFORT);
+
+        Assertions.assertThat(results).extracting("index", "status").containsExactly(
+                Assertions.tuple(0, 404),
+                Assertions.tuple(1, 200),
+                Assertions.tuple(2, 200));
+
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).insertAll(Mockito.argThat(list -> list.size() == 4));
+
+        // Both transfers cancel each other out: no balance to write
+        Mockito.verify(accountRepositoryMock, Mockito.never()).updateTotalAmount(Mockito.anyLong(), Mockito.anyLong());
+    }
 }
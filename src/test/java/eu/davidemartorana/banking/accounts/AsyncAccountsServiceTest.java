@@ -0,0 +1,179 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncAccountRepository;
+import eu.davidemartorana.banking.accounts.dao.async.AsyncTransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.async.JdbcExecutor;
+import eu.davidemartorana.banking.accounts.domain.HistoryCursor;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.services.AsyncAccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferEngine;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Test for classes {@link AsyncAccountsService} and {@link JdbcExecutor}
+ */
+public class AsyncAccountsServiceTest {
+
+    @Mock
+    private AsyncAccountRepository accountRepositoryMock;
+
+    @Mock
+    private AsyncTransactionRepository transactionRepositoryMock;
+
+    @Mock
+    private TransferEngine transferEngineMock;
+
+    @Mock
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private AsyncAccountsService asyncAccountsService;
+
+    private Account createAccount(final Long id, final String uuid, final int balanceSlots) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(Currency.getInstance("GBP"));
+        account.setTotalAmount(new BigDecimal("10.00"));
+        account.setBalanceSlots(balanceSlots);
+
+        return account;
+    }
+
+    private static <T> T join(final CompletionStage<T> stage) throws Exception {
+        return stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(transferEngineMock.currentState(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(transferEngineMock.supportsBalanceSlots()).thenReturn(true);
+
+        asyncAccountsService = new AsyncAccountsService(accountRepositoryMock, transactionRepositoryMock, transferEngineMock,
+                new AccountCache(new ApplicationConfig(), new MetricRegistry(), Mockito.mock(SessionFactory.class)));
+    }
+
+    @Test
+    public void getDetailsByAccountUUID_ReadThroughCache_Test() throws Exception {
+        final Account account = createAccount(1L, "uuid", 1);
+        Mockito.when(accountRepositoryMock.findByUUID("uuid")).thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+        Assertions.assertThat(join(asyncAccountsService.getDetailsByAccountUUID("uuid"))).isSameAs(account);
+        Assertions.assertThat(join(asyncAccountsService.getDetailsByAccountUUID("uuid"))).isSameAs(account);
+
+        Mockito.verify(accountRepositoryMock, Mockito.times(1)).findByUUID("uuid");
+        Mockito.verify(accountRepositoryMock, Mockito.never()).findTotalAmountWithSlots(Mockito.any());
+    }
+
+    @Test
+    public void getDetailsByAccountUUID_SplitAccount_Test() throws Exception {
+        Mockito.when(accountRepositoryMock.findByUUID("uuid")).thenReturn(CompletableFuture.completedFuture(Optional.of(createAccount(1L, "uuid", 4))));
+        Mockito.when(accountRepositoryMock.findTotalAmountWithSlots(1L)).thenReturn(CompletableFuture.completedFuture(2500L));
+
+        final Account account = join(asyncAccountsService.getDetailsByAccountUUID("uuid"));
+
+        Assertions.assertThat(account.getTotalAmountMinorUnits()).isEqualTo(2500L);
+        Mockito.verify(transferEngineMock, Mockito.never()).currentState(Mockito.any());
+    }
+
+    @Test
+    public void getDetailsByAccountUUID_NotFound_Test() {
+        Mockito.when(accountRepositoryMock.findByUUID("missing")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        Assertions.assertThatThrownBy(() -> join(asyncAccountsService.getDetailsByAccountUUID("missing")))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void getHistoryCursor_Test() throws Exception {
+        final Transaction after = new Transaction();
+        Mockito.when(accountRepositoryMock.findByUUID("uuid")).thenReturn(CompletableFuture.completedFuture(Optional.of(createAccount(1L, "uuid", 1))));
+        Mockito.when(transactionRepositoryMock.findByAccountIdAndUUID(1L, "after")).thenReturn(CompletableFuture.completedFuture(Optional.of(after)));
+        Mockito.when(transactionRepositoryMock.findByAccountIdAndUUID(1L, "other")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        Mockito.when(transactionRepositoryMock.findPageByAccountId(1L, after, 3)).thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+        final HistoryCursor first = join(asyncAccountsService.getHistoryCursor("uuid", null));
+        Assertions.assertThat(first.getAccountId()).isEqualTo(1L);
+        Assertions.assertThat(first.getAfter()).isNull();
+
+        final HistoryCursor cursor = join(asyncAccountsService.getHistoryCursor("uuid", "after"));
+        Assertions.assertThat(cursor.getAfter()).isSameAs(after);
+        Assertions.assertThat(join(asyncAccountsService.getTransactions(cursor, 3))).isEmpty();
+
+        Assertions.assertThatThrownBy(() -> join(asyncAccountsService.getHistoryCursor("uuid", "other")))
+                .hasCauseInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    public void jdbcExecutor_BoundedQueue_Test() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.<Supplier<Object>>any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        final ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.getAsyncDatabase().setThreads(1);
+        applicationConfig.getAsyncDatabase().setQueueCapacity(1);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final JdbcExecutor jdbcExecutor = new JdbcExecutor(unitOfWorkRunnerMock, applicationConfig, metricRegistry);
+        jdbcExecutor.start();
+        try {
+            final CountDownLatch running = new CountDownLatch(1);
+            final CompletionStage<String> busy = jdbcExecutor.supply(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "busy";
+            });
+            Assertions.assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            final CompletionStage<String> waiting = jdbcExecutor.supply(() -> "waiting");
+            final CompletionStage<String> rejected = jdbcExecutor.supply(() -> "rejected");
+            final CompletionStage<String> alsoRejected = jdbcExecutor.supply(() -> {
+                throw new NotFoundException();
+            });
+
+            Assertions.assertThatThrownBy(() -> join(rejected)).hasCauseInstanceOf(ServiceUnavailableException.class);
+            Assertions.assertThat(metricRegistry.meter(MetricRegistry.name(JdbcExecutor.class, "rejected")).getCount()).isEqualTo(2);
+
+            release.countDown();
+            Assertions.assertThat(join(busy)).isEqualTo("busy");
+            Assertions.assertThat(join(waiting)).isEqualTo("waiting");
+            Assertions.assertThatThrownBy(() -> join(alsoRejected)).hasCauseInstanceOf(ServiceUnavailableException.class);
+
+            Assertions.assertThat(join(jdbcExecutor.supply(() -> {
+                throw new NotFoundException();
+            }).exceptionally(e -> e.getClass().getSimpleName()))).isEqualTo("NotFoundException");
+        } finally {
+            release.countDown();
+            jdbcExecutor.stop();
+        }
+    }
+}
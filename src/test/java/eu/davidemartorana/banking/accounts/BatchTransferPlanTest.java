@@ -0,0 +1,112 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.services.BatchTransferPlan;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for class {@link BatchTransferPlan}
+ */
+public class BatchTransferPlanTest {
+
+    private final Account firstAccount = createAccount(1L, "firstAccountUUID");
+
+    private final Account secondAccount = createAccount(2L, "secondAccountUUID");
+
+    private final Account thirdAccount = createAccount(3L, "thirdAccountUUID");
+
+    private static Account createAccount(final Long id, final String uuid) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(Currency.getInstance("GBP"));
+
+        return account;
+    }
+
+    private static BatchTransfer transfer(final int index, final Account debtorAccount, final Account beneficiaryAccount, final String value) {
+        return new BatchTransfer(index, debtorAccount, beneficiaryAccount, new Amount(new BigDecimal(value), Currency.getInstance("GBP")));
+    }
+
+    private static long minorUnits(final String value) {
+        return Money.of(new BigDecimal(value), Currency.getInstance("GBP")).getMinorUnits();
+    }
+
+    private static Map<Long, Long> balances(final String first, final String second, final String third) {
+        final Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, minorUnits(first));
+        balances.put(2L, minorUnits(second));
+        balances.put(3L, minorUnits(third));
+
+        return balances;
+    }
+
+    @Test
+    public void of_MoneyReceivedInTheBatchCanBeSpent_Test() {
+        final List<BatchTransfer> transfers = Arrays.asList(
+                transfer(0, firstAccount, secondAccount, "100.00"),
+                transfer(1, secondAccount, thirdAccount, "100.00"));
+
+        final BatchTransferPlan plan = BatchTransferPlan.of(transfers, balances("100.00", "0.00", "0.00"), BatchMode.ALL_OR_NOTHING);
+
+        Assertions.assertThat(plan.getResults()).extracting("index", "status").containsExactly(
+                Assertions.tuple(0, 200),
+                Assertions.tuple(1, 200));
+        Assertions.assertThat(plan.getTransactions()).hasSize(4);
+        Assertions.assertThat(plan.getResults().get(0).getTransferResult().getBeneficiaryAccount().getTotalAmount()).isEqualByComparingTo("100.00");
+        Assertions.assertThat(plan.getResults().get(1).getTransferResult().getDebtorAccount().getTotalAmount()).isEqualByComparingTo("0.00");
+
+        Assertions.assertThat(plan.getDeltas().keySet()).containsExactly(1L, 2L, 3L);
+        Assertions.assertThat(plan.getDeltas().get(1L)).isEqualTo(minorUnits("-100.00"));
+        Assertions.assertThat(plan.getDeltas().get(2L)).isEqualTo(minorUnits("0.00"));
+        Assertions.assertThat(plan.getDeltas().get(3L)).isEqualTo(minorUnits("100.00"));
+        Assertions.assertThat(plan.getFinalBalance(3L)).isEqualTo(minorUnits("100.00"));
+    }
+
+    @Test
+    public void of_BestEffort_SkipsFailingTransfers_Test() {
+        final List<BatchTransfer> transfers = Arrays.asList(
+                transfer(0, firstAccount, secondAccount, "80.00"),
+                transfer(1, firstAccount, secondAccount, "80.00"),
+                transfer(2, firstAccount, thirdAccount, "10.001"),
+                transfer(3, firstAccount, thirdAccount, "20.00"));
+
+        final BatchTransferPlan plan = BatchTransferPlan.of(transfers, balances("100.00", "0.00", "0.00"), BatchMode.BEST_EFFORT);
+
+        Assertions.assertThat(plan.getResults()).extracting("index", "status", "message").containsExactly(
+                Assertions.tuple(0, 200, null),
+                Assertions.tuple(1, 409, "Fund not enough for amount: 80.00"),
+                Assertions.tuple(2, 400, "The amount is not valid for the currency of the accounts."),
+                Assertions.tuple(3, 200, null));
+        Assertions.assertThat(plan.getTransactions()).hasSize(4);
+        Assertions.assertThat(plan.getFinalBalance(1L)).isEqualTo(minorUnits("0.00"));
+    }
+
+    @Test
+    public void of_AllOrNothing_NothingApplied_Test() {
+        final List<BatchTransfer> transfers = Arrays.asList(
+                transfer(0, firstAccount, secondAccount, "80.00"),
+                transfer(1, firstAccount, secondAccount, "80.00"));
+
+        final BatchTransferPlan plan = BatchTransferPlan.of(transfers, balances("100.00", "0.00", "0.00"), BatchMode.ALL_OR_NOTHING);
+
+        Assertions.assertThat(plan.hasChanges()).isFalse();
+        Assertions.assertThat(plan.getDeltas()).isEmpty();
+        Assertions.assertThat(plan.getResults()).extracting("index", "status").containsExactly(
+                Assertions.tuple(0, BatchItemResult.FAILED_DEPENDENCY),
+                Assertions.tuple(1, 409));
+    }
+}
@@ -1,5 +1,8 @@
 package eu.davidemartorana.banking.accounts;
 
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.CustomerCache;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
 import eu.davidemartorana.banking.accounts.dao.AccountRepository;
 import eu.davidemartorana.banking.accounts.dao.CustomerRepository;
 import eu.davidemartorana.banking.accounts.services.CustomersService;
@@ -40,7 +43,7 @@ public class CustomerServiceTest {
     @Before
     public void beforeEachTest() {
         MockitoAnnotations.initMocks(this);
-        customersService = new CustomersService(customerRepositoryMock, accountRepositoryMock);
+        customersService = new CustomersService(customerRepositoryMock, accountRepositoryMock, new CustomerCache(new ApplicationConfig(), new MetricRegistry()));
 
 
     }
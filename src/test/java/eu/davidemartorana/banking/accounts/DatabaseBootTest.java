@@ -0,0 +1,157 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.boot.DatabaseBoot;
+import eu.davidemartorana.banking.accounts.boot.DatabaseSnapshot;
+import eu.davidemartorana.banking.accounts.boot.StartupTimings;
+import eu.davidemartorana.banking.accounts.config.StartupConfig;
+import io.dropwizard.flyway.FlywayFactory;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for class {@link DatabaseBoot}
+ */
+public class DatabaseBootTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private static final String CONTENT = "SELECT t.uuid, t.type, t.account_id, t.amount_minor_units, t.currency, t.date_time, a.total_amount_minor_units "
+            + "FROM account_transactions t JOIN accounts a ON a.id = t.account_id ORDER BY t.id";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FlywayFactory flywayFactory;
+
+    private StartupConfig startupConfig;
+
+    private Path snapshot;
+
+    @Before
+    public void beforeEachTest() {
+        flywayFactory = new FlywayFactory();
+        flywayFactory.setLocations(Arrays.asList("db/migration", "db/seed"));
+
+        snapshot = folder.getRoot().toPath().resolve("boot-snapshot.bin");
+        startupConfig = new StartupConfig();
+        startupConfig.setWarmBoot(true);
+        startupConfig.setSnapshotFile(snapshot.toString());
+    }
+
+    @Test
+    public void boot_ColdThenWarm_Test() throws Exception {
+        final DataSource cold = newDatabase();
+        final StartupTimings coldTimings = new StartupTimings(new MetricRegistry());
+
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, coldTimings).boot(cold)).isFalse();
+        Assertions.assertThat(coldTimings.getPhases()).containsOnlyKeys("migration", "snapshot");
+        Assertions.assertThat(DatabaseSnapshot.readSchemaVersion(snapshot)).isEqualTo("1.12");
+
+        final DataSource warm = newDatabase();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final StartupTimings warmTimings = new StartupTimings(metricRegistry);
+
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, warmTimings).boot(warm)).isTrue();
+        Assertions.assertThat(warmTimings.getPhases()).containsOnlyKeys("migration", "restore");
+        Assertions.assertThat(metricRegistry.getGauges()).containsKey(MetricRegistry.name(StartupTimings.class, "restore"));
+
+        Assertions.assertThat(read(warm, CONTENT)).isNotEmpty().isEqualTo(read(cold, CONTENT));
+        Assertions.assertThat(read(warm, "SELECT last_sequence FROM ledger_journal_checkpoint")).containsExactly("0|");
+
+        // The identities restart after the restored rows
+        final String insert = "INSERT INTO account_transactions (uuid, type, account_id, amount_minor_units, currency, date_time) "
+                + "VALUES ('00000000-0000-0000-0000-000000000001', 'CREDIT', 1, 10000, 'GBP', CURRENT_TIMESTAMP)";
+        final String lastId = "SELECT MAX(id) FROM account_transactions";
+        execute(cold, insert);
+        execute(warm, insert);
+        Assertions.assertThat(read(warm, lastId)).isEqualTo(read(cold, lastId));
+    }
+
+    @Test
+    public void boot_SnapshotOfAnotherSchemaVersion_Test() throws Exception {
+        final DataSource seeded = newDatabase();
+        flywayFactory.build(seeded).migrate();
+        DatabaseSnapshot.write(snapshot, "1.11", seeded);
+
+        final StartupTimings timings = new StartupTimings(new MetricRegistry());
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, timings).boot(newDatabase())).isFalse();
+        Assertions.assertThat(timings.getPhases()).containsOnlyKeys("migration", "snapshot");
+        Assertions.assertThat(DatabaseSnapshot.readSchemaVersion(snapshot)).isEqualTo("1.12");
+    }
+
+    @Test
+    public void boot_CorruptSnapshot_Test() throws Exception {
+        Files.write(snapshot, new byte[]{1, 2, 3});
+
+        final DataSource dataSource = newDatabase();
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, new StartupTimings(new MetricRegistry())).boot(dataSource)).isFalse();
+        Assertions.assertThat(read(dataSource, "SELECT COUNT(*) FROM customers")).doesNotContain("0|");
+        Assertions.assertThat(DatabaseSnapshot.readSchemaVersion(snapshot)).isEqualTo("1.12");
+    }
+
+    @Test
+    public void boot_NotEmptyDatabase_Test() throws Exception {
+        final DataSource dataSource = newDatabase();
+        flywayFactory.build(dataSource).migrate();
+
+        final StartupTimings timings = new StartupTimings(new MetricRegistry());
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, timings).boot(dataSource)).isFalse();
+        Assertions.assertThat(timings.getPhases()).containsOnlyKeys("migration");
+        Assertions.assertThat(snapshot).doesNotExist();
+    }
+
+    @Test
+    public void boot_WarmBootDisabled_Test() throws Exception {
+        startupConfig.setWarmBoot(false);
+
+        final StartupTimings timings = new StartupTimings(new MetricRegistry());
+        Assertions.assertThat(new DatabaseBoot(flywayFactory, startupConfig, timings).boot(newDatabase())).isFalse();
+        Assertions.assertThat(timings.getPhases()).containsOnlyKeys("migration");
+        Assertions.assertThat(snapshot).doesNotExist();
+    }
+
+    private static DataSource newDatabase() {
+        final EmbeddedDataSource dataSource = new EmbeddedDataSource();
+        dataSource.setDatabaseName("memory:boot-" + DATABASES.incrementAndGet());
+        dataSource.setCreateDatabase("create");
+        return dataSource;
+    }
+
+    private static void execute(final DataSource dataSource, final String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private static List<String> read(final DataSource dataSource, final String query) throws Exception {
+        final List<String> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            final int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                final StringBuilder row = new StringBuilder();
+                for (int column = 1; column <= columns; column++) {
+                    row.append(resultSet.getString(column)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,69 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.dao.DatabaseIndexCheck;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * Test for class {@link DatabaseIndexCheck}
+ */
+public class DatabaseIndexCheckTest {
+
+    private Connection connection;
+
+    @Before
+    public void beforeEachTest() throws Exception {
+        connection = DriverManager.getConnection("jdbc:derby:memory:index-check;create=true");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE customers (id INTEGER NOT NULL PRIMARY KEY, uuid CHAR(36))");
+            statement.execute("CREATE TABLE accounts (id INTEGER NOT NULL PRIMARY KEY, uuid CHAR(36), customer_id INTEGER)");
+            statement.execute("CREATE TABLE account_transactions (id INTEGER NOT NULL PRIMARY KEY, uuid CHAR(36), account_id INTEGER, date_time TIMESTAMP)");
+        }
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE account_transactions");
+            statement.execute("DROP TABLE accounts");
+            statement.execute("DROP TABLE customers");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void findMissingIndexes_NoIndexes_Test() throws Exception {
+        Assertions.assertThat(DatabaseIndexCheck.findMissingIndexes(connection)).containsExactly(
+                "account_transactions(account_id, date_time)",
+                "account_transactions(uuid)",
+                "accounts(uuid)",
+                "accounts(customer_id)",
+                "customers(uuid)");
+    }
+
+    @Test
+    public void findMissingIndexes_LeadingColumnsOnly_Test() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE UNIQUE INDEX customer_uuid_idx ON customers (uuid)");
+            statement.execute("CREATE UNIQUE INDEX account_uuid_idx ON accounts (uuid)");
+            statement.execute("CREATE INDEX account_customer_idx ON accounts (customer_id, id)");
+            statement.execute("CREATE UNIQUE INDEX transaction_uuid_idx ON account_transactions (uuid)");
+            // The columns are in the wrong order: it does not serve the history of an account
+            statement.execute("CREATE INDEX transaction_date_account_idx ON account_transactions (date_time, account_id)");
+        }
+
+        Assertions.assertThat(DatabaseIndexCheck.findMissingIndexes(connection)).containsExactly("account_transactions(account_id, date_time)");
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX transaction_account_date_idx ON account_transactions (account_id, date_time)");
+        }
+
+        Assertions.assertThat(DatabaseIndexCheck.findMissingIndexes(connection)).isEmpty();
+    }
+}
@@ -0,0 +1,243 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.BalanceSnapshotRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.DerivedBalance;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSnapshot;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.eventsourced.BalanceSnapshotter;
+import eu.davidemartorana.banking.accounts.eventsourced.EventSourcedBalances;
+import eu.davidemartorana.banking.accounts.eventsourced.EventSourcedTransferEngine;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Test for classes {@link EventSourcedTransferEngine}, {@link BalanceSnapshotRepository} and {@link BalanceSnapshotter}
+ */
+public class EventSourcedTransferEngineTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(Account.class)
+            .addEntityClass(BalanceSlot.class)
+            .addEntityClass(BalanceSnapshot.class)
+            .addEntityClass(Transaction.class)
+            .build();
+
+    private AccountRepository accountRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private BalanceSnapshotRepository snapshotRepository;
+
+    private UnitOfWorkRunner unitOfWorkRunner;
+
+    private EventSourcedBalances balances;
+
+    private EventSourcedTransferEngine transferEngine;
+
+    private TransferMetrics transferMetrics;
+
+    private DAOHelper<Account> accountDAOHelper;
+
+    private Account createAccount(final Long id, final String uuid, final String amount) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(GBP);
+        account.setTotalAmount(new BigDecimal(amount));
+        account.setIbanNumber("GB40REVO60161331926819");
+        account.setCustomerId(12345);
+
+        return account;
+    }
+
+    private static Amount amount(final String value) {
+        return new Amount(new BigDecimal(value), GBP);
+    }
+
+    private TransferResult transfer(final Long debtorAccountId, final Long beneficiaryAccountId, final String value) {
+        return database.inTransaction(() -> transferEngine.transfer(accountRepository.findByIdLocking(debtorAccountId).get(),
+                accountRepository.findByIdLocking(beneficiaryAccountId).get(), amount(value)));
+    }
+
+    private long storedTotalAmount(final Long accountId) {
+        return database.inTransaction(() -> accountRepository.findTotalAmountWithSlots(accountId));
+    }
+
+    private DerivedBalance derivedBalance(final Long accountId) {
+        return database.inTransaction(() -> snapshotRepository.findBalance(accountId).get());
+    }
+
+    private BalanceSnapshotter createSnapshotter(final int snapshotEntries) {
+        final ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.getTransfers().setEngine(TransferEngineType.EVENT_SOURCED);
+        applicationConfig.getTransfers().getEventSourced().setSnapshotEntries(snapshotEntries);
+        applicationConfig.getTransfers().getEventSourced().setSnapshotInterval(Duration.hours(1));
+
+        return new BalanceSnapshotter(balances, snapshotRepository, accountRepository, unitOfWorkRunner, applicationConfig, new MetricRegistry());
+    }
+
+    @Before
+    public void setUp() {
+        accountRepository = new AccountRepository(database.getSessionFactory());
+        transactionRepository = new TransactionRepository(database.getSessionFactory());
+        snapshotRepository = new BalanceSnapshotRepository(database.getSessionFactory());
+        unitOfWorkRunner = new UnitOfWorkRunner(database.getSessionFactory());
+        balances = new EventSourcedBalances(database.getSessionFactory(), new MetricRegistry());
+        transferMetrics = new TransferMetrics(new MetricRegistry(), database.getSessionFactory());
+        transferEngine = new EventSourcedTransferEngine(accountRepository, transactionRepository, snapshotRepository, balances, unitOfWorkRunner, transferMetrics);
+        accountDAOHelper = new DAOHelper<>(database.getSessionFactory());
+
+        database.inTransaction(() -> {
+            accountDAOHelper.getSession().save(createAccount(1L, "debtorAccountUUID", "150.00"));
+            accountDAOHelper.getSession().save(createAccount(2L, "beneficiaryAccountUUID", "20.00"));
+        });
+    }
+
+    @Test
+    public void transfer_AppendsTransactionsOnly_Test() {
+        final TransferResult transferResult = transfer(1L, 2L, "100.50");
+
+        Assertions.assertThat(transferResult.getDebtorAccount().getTotalAmount()).isEqualByComparingTo("49.50");
+        Assertions.assertThat(transferResult.getBeneficiaryAccount().getTotalAmount()).isEqualByComparingTo("120.50");
+        Assertions.assertThat(transferResult.getTransactions()).hasSize(2);
+
+        // The accounts are left as they are: the balances are derived from the first snapshots plus the transactions
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(15000L);
+        Assertions.assertThat(storedTotalAmount(2L)).isEqualTo(2000L);
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(4950L);
+        Assertions.assertThat(derivedBalance(1L).getEntriesSinceSnapshot()).isEqualTo(1);
+        Assertions.assertThat(derivedBalance(2L).getBalanceMinorUnits()).isEqualTo(12050L);
+
+        // The view is updated once committed
+        Assertions.assertThat(balances.find(1L).get().getBalanceMinorUnits()).isEqualTo(4950L);
+        Assertions.assertThat(balances.find(2L).get().getBalanceMinorUnits()).isEqualTo(12050L);
+        Assertions.assertThat(balances.getAppendedAccountIds()).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    public void transfer_NotEnoughFunds_Test() {
+        transfer(1L, 2L, "100.00");
+
+        // The total amount of the account would still cover it
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> transfer(1L, 2L, "50.01"))
+                .withMessage("Fund not enough for amount: 50.01");
+
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(5000L);
+        Assertions.assertThat(balances.find(1L).get().getBalanceMinorUnits()).isEqualTo(5000L);
+    }
+
+    @Test
+    public void transfer_SameAccount_Test() {
+        final TransferResult transferResult = transfer(1L, 1L, "10.00");
+
+        Assertions.assertThat(transferResult.getDebtorAccount().getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(derivedBalance(1L).getEntriesSinceSnapshot()).isEqualTo(2);
+        Assertions.assertThat(balances.find(1L).get().getEntriesSinceSnapshot()).isEqualTo(2);
+    }
+
+    @Test
+    public void currentState_ReadWhenNotInView_Test() {
+        final Account account = database.inTransaction(() -> accountRepository.findByIdLocking(1L).get());
+
+        // No snapshot yet: the total amount
+        Assertions.assertThat(transferEngine.currentState(account).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(balances.find(1L)).isEmpty();
+
+        transfer(1L, 2L, "30.00");
+        final EventSourcedTransferEngine restartedEngine = new EventSourcedTransferEngine(accountRepository, transactionRepository, snapshotRepository,
+                new EventSourcedBalances(database.getSessionFactory(), new MetricRegistry()), unitOfWorkRunner, transferMetrics);
+
+        Assertions.assertThat(restartedEngine.currentState(account).getTotalAmount()).isEqualByComparingTo("120.00");
+        Assertions.assertThat(transferEngine.currentState(account).getTotalAmount()).isEqualByComparingTo("120.00");
+    }
+
+    @Test
+    public void transferBatch_Test() {
+        final List<BatchItemResult> results = database.inTransaction(() -> {
+            final Account debtorAccount = accountRepository.findByIdLocking(1L).get();
+            final Account beneficiaryAccount = accountRepository.findByIdLocking(2L).get();
+
+            return transferEngine.transferBatch(Arrays.asList(
+                    new BatchTransfer(0, debtorAccount, beneficiaryAccount, amount("100.00")),
+                    new BatchTransfer(1, debtorAccount, beneficiaryAccount, amount("100.00")),
+                    new BatchTransfer(2, beneficiaryAccount, debtorAccount, amount("5.00"))), BatchMode.BEST_EFFORT);
+        });
+
+        Assertions.assertThat(results).extracting(BatchItemResult::isApplied).containsExactly(true, false, true);
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(5500L);
+        Assertions.assertThat(derivedBalance(2L).getBalanceMinorUnits()).isEqualTo(11500L);
+        Assertions.assertThat(balances.find(1L).get().getEntriesSinceSnapshot()).isEqualTo(2);
+        Assertions.assertThat(balances.find(2L).get().getBalanceMinorUnits()).isEqualTo(11500L);
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(15000L);
+    }
+
+    @Test
+    public void snapshotter_SnapshotsAndWriteBack_Test() throws Exception {
+        final BalanceSnapshotter snapshotter = createSnapshotter(2);
+        snapshotter.start();
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(15000L);
+
+        transfer(1L, 2L, "10.00");
+        snapshotter.takeSnapshots();
+        Assertions.assertThat(derivedBalance(1L).getEntriesSinceSnapshot()).isEqualTo(1);
+
+        transfer(1L, 2L, "10.00");
+        snapshotter.takeSnapshots();
+        Assertions.assertThat(derivedBalance(1L).getEntriesSinceSnapshot()).isZero();
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(13000L);
+        Assertions.assertThat(balances.find(1L).get().getEntriesSinceSnapshot()).isZero();
+        Assertions.assertThat(database.inTransaction(() -> accountDAOHelper.getSession()
+                .createQuery("SELECT COUNT(s) FROM BalanceSnapshot s WHERE s.accountId = 1", Long.class)
+                .uniqueResult())).isEqualTo(1L);
+
+        // The other engines take over from the balances written back
+        snapshotter.stop();
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(13000L);
+        Assertions.assertThat(storedTotalAmount(2L)).isEqualTo(4000L);
+        Assertions.assertThat(derivedBalance(2L).getBalanceMinorUnits()).isEqualTo(4000L);
+        Assertions.assertThat(derivedBalance(2L).getEntriesSinceSnapshot()).isZero();
+    }
+
+    @Test
+    public void findBalance_SnapshotDiscardedWhenAccountUpdated_Test() {
+        transfer(1L, 2L, "10.00");
+
+        // Another engine updates the account: the account and its transactions are in step again from here
+        database.inTransaction(() -> {
+            accountRepository.updateTotalAmount(1L, 20000L);
+            accountDAOHelper.getSession().clear();
+        });
+        Assertions.assertThat(database.inTransaction(() -> snapshotRepository.findBalance(1L))).isEmpty();
+
+        transfer(1L, 2L, "10.00");
+        Assertions.assertThat(derivedBalance(1L).getBalanceMinorUnits()).isEqualTo(19000L);
+    }
+}
@@ -0,0 +1,230 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.config.TransfersConfig;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.pipeline.GroupCommitTransferExecutor;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link GroupCommitTransferExecutor}
+ */
+public class GroupCommitTransferExecutorTest {
+
+    @Mock
+    private AccountsService accountsServiceMock;
+
+    @Mock
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private ApplicationConfig applicationConfig;
+
+    private GroupCommitTransferExecutor groupCommitExecutor;
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.<Supplier<Object>>any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        applicationConfig = new ApplicationConfig();
+        applicationConfig.getTransfers().setExecution(TransferExecutionType.GROUP_COMMIT);
+        applicationConfig.getTransfers().getGroupCommit().setWindow(Duration.milliseconds(20));
+        applicationConfig.getTransfers().getGroupCommit().setMaxBatchSize(4);
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        if (groupCommitExecutor != null) {
+            groupCommitExecutor.stop();
+        }
+    }
+
+    private void startExecutor() {
+        groupCommitExecutor = new GroupCommitTransferExecutor(accountsServiceMock, new TransferRetry(unitOfWorkRunnerMock, new RetryConfig(), new MetricRegistry()), applicationConfig, new MetricRegistry());
+        groupCommitExecutor.start();
+    }
+
+    /**
+     * Every transfer of the group is answered with its own result, computed in the same unit of work.
+     */
+    @Test
+    public void execute_EachCallerGetsItsOwnOutcome_Test() throws Exception {
+        startExecutor();
+
+        final TransferResult transferResult = new TransferResult();
+        Mockito.when(accountsServiceMock.transferAmounts(Mockito.anyList(), Mockito.eq(BatchMode.BEST_EFFORT))).thenAnswer(invocation -> {
+            final List<BatchTransferItem> items = invocation.getArgument(0);
+            final List<BatchItemResult> results = new ArrayList<>(items.size());
+            for (int index = 0; index < items.size(); index++) {
+                results.add("poorAccountUUID".equals(items.get(index).getDebtorAccountId())
+                        ? BatchItemResult.failed(index, new FundsNotEnoughException("Fund not enough for amount: 10.00"))
+                        : BatchItemResult.applied(index, transferResult));
+            }
+            return results;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Future<TransferResult> applied = executor.submit(() -> groupCommitExecutor.execute("richAccountUUID", new TransferRequest()));
+        final Future<TransferResult> failed = executor.submit(() -> groupCommitExecutor.execute("poorAccountUUID", new TransferRequest()));
+
+        Assertions.assertThat(applied.get(10, TimeUnit.SECONDS)).isSameAs(transferResult);
+        Assertions.assertThatThrownBy(() -> failed.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(FundsNotEnoughException.class)
+                .hasMessageContaining("Fund not enough for amount: 10.00");
+        executor.shutdown();
+
+        Mockito.verify(accountsServiceMock, Mockito.never()).transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class));
+    }
+
+    @Test
+    public void execute_GroupFailure_FallsBackToSingleTransfers_Test() {
+        startExecutor();
+
+        final TransferRequest transferRequest = new TransferRequest();
+        final TransferResult transferResult = new TransferResult();
+        Mockito.when(accountsServiceMock.transferAmounts(Mockito.anyList(), Mockito.any(BatchMode.class))).thenThrow(new IllegalStateException("Commit failed"));
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.eq("debtorAccountUUID"), Mockito.same(transferRequest))).thenReturn(transferResult);
+
+        Assertions.assertThat(groupCommitExecutor.execute("debtorAccountUUID", transferRequest)).isSameAs(transferResult);
+    }
+
+    @Test
+    public void execute_NotStarted_Test() {
+        groupCommitExecutor = new GroupCommitTransferExecutor(accountsServiceMock, new TransferRetry(unitOfWorkRunnerMock, new RetryConfig(), new MetricRegistry()), applicationConfig, new MetricRegistry());
+
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> groupCommitExecutor.execute("debtorAccountUUID", new TransferRequest()));
+    }
+
+    /**
+     * Many threads submit at the same time: the transfers are committed in groups never larger than the maximum size.
+     */
+    @Test
+    public void execute_Concurrent_GroupedUpToMaxBatchSize_Test() throws Exception {
+        startExecutor();
+
+        final int threadsNumber = 8;
+        final int transfersPerThread = 50;
+        final AtomicInteger groups = new AtomicInteger();
+        final AtomicInteger maxGroupSize = new AtomicInteger();
+
+        Mockito.when(accountsServiceMock.transferAmounts(Mockito.anyList(), Mockito.eq(BatchMode.BEST_EFFORT))).thenAnswer(invocation -> {
+            final List<BatchTransferItem> items = invocation.getArgument(0);
+            groups.incrementAndGet();
+            maxGroupSize.accumulateAndGet(items.size(), Math::max);
+
+            final List<BatchItemResult> results = new ArrayList<>(items.size());
+            for (int index = 0; index < items.size(); index++) {
+                results.add(BatchItemResult.applied(index, new TransferResult()));
+            }
+            return results;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            futureList.add(executor.submit(() -> {
+                for (int count = 0; count < transfersPerThread; count++) {
+                    Assertions.assertThat(groupCommitExecutor.execute("debtorAccountUUID", new TransferRequest())).isNotNull();
+                }
+            }));
+        }
+
+        for (final Future<?> future : futureList) {
+            future.get(100, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertThat(maxGroupSize.get()).isBetween(2, 4);
+        Assertions.assertThat(groups.get()).isLessThan(threadsNumber * transfersPerThread);
+    }
+
+    /**
+     * Stopped while transfers are being queued: every caller gets either the result or a 503, none waits forever.
+     */
+    @Test
+    public void stop_WhileSubmitting_Test() throws Exception {
+        startExecutor();
+        Mockito.when(accountsServiceMock.transferAmounts(Mockito.anyList(), Mockito.eq(BatchMode.BEST_EFFORT))).thenAnswer(invocation -> {
+            final List<BatchItemResult> results = new ArrayList<>();
+            for (int index = 0; index < invocation.<List<?>>getArgument(0).size(); index++) {
+                results.add(BatchItemResult.applied(index, new TransferResult()));
+            }
+            return results;
+        });
+
+        final int threadsNumber = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final CountDownLatch submitting = new CountDownLatch(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            futureList.add(executor.submit(() -> {
+                submitting.countDown();
+                try {
+                    while (true) {
+                        groupCommitExecutor.execute("debtorAccountUUID", new TransferRequest());
+                    }
+                } catch (final ServiceUnavailableException e) {
+                    return null;
+                }
+            }));
+        }
+        Assertions.assertThat(submitting.await(10, TimeUnit.SECONDS)).isTrue();
+
+        groupCommitExecutor.stop();
+        for (final Future<?> future : futureList) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * The failed groups are committed again one by one: the in-memory engine, which may have journaled them, is refused.
+     */
+    @Test
+    public void groupCommit_NotWithInMemoryEngine_Test() {
+        final Validator validator = Validators.newValidator();
+        final TransfersConfig transfersConfig = new TransfersConfig();
+        transfersConfig.setExecution(TransferExecutionType.GROUP_COMMIT);
+        Assertions.assertThat(validator.validate(transfersConfig)).isEmpty();
+
+        transfersConfig.setEngine(TransferEngineType.IN_MEMORY);
+        Assertions.assertThat(validator.validate(transfersConfig))
+                .extracting(ConstraintViolation::getMessage)
+                .containsExactly("the GROUP_COMMIT execution cannot be used with the IN_MEMORY engine");
+    }
+}
@@ -0,0 +1,88 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import eu.davidemartorana.banking.accounts.dao.HibernateStatisticsMetrics;
+import org.assertj.core.api.Assertions;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Map;
+
+/**
+ * Test for class {@link HibernateStatisticsMetrics}
+ */
+public class HibernateStatisticsMetricsTest {
+
+    private static final String CUSTOMER_REGION = "eu.davidemartorana.banking.accounts.domain.internal.Customer";
+
+    private static final String ACCOUNT_NATURAL_ID_REGION = "eu.davidemartorana.banking.accounts.domain.internal.Account##NaturalId";
+
+    @Mock
+    private Statistics statisticsMock;
+
+    @Mock
+    private SecondLevelCacheStatistics customerStatisticsMock;
+
+    @Mock
+    private NaturalIdCacheStatistics accountNaturalIdStatisticsMock;
+
+    private HibernateStatisticsMetrics hibernateStatisticsMetrics;
+
+    @Before
+    public void beforeEachTest() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        Mockito.when(statisticsMock.getSecondLevelCacheRegionNames()).thenReturn(new String[]{CUSTOMER_REGION, ACCOUNT_NATURAL_ID_REGION});
+        Mockito.when(statisticsMock.getSecondLevelCacheStatistics(CUSTOMER_REGION)).thenReturn(customerStatisticsMock);
+        Mockito.when(statisticsMock.getNaturalIdCacheStatistics(ACCOUNT_NATURAL_ID_REGION)).thenReturn(accountNaturalIdStatisticsMock);
+
+        hibernateStatisticsMetrics = new HibernateStatisticsMetrics(statisticsMock);
+    }
+
+    private Object valueOf(final Map<String, Metric> metrics, final String name) {
+        Assertions.assertThat(metrics).containsKey(name);
+
+        return ((Gauge<?>) metrics.get(name)).getValue();
+    }
+
+    @Test
+    public void getMetrics_Overall_Test() throws Exception {
+        Mockito.when(statisticsMock.getQueryCacheHitCount()).thenReturn(3L);
+        Mockito.when(statisticsMock.getQueryCacheMissCount()).thenReturn(1L);
+        Mockito.when(statisticsMock.getPrepareStatementCount()).thenReturn(42L);
+
+        final Map<String, Metric> metrics = hibernateStatisticsMetrics.getMetrics();
+
+        Assertions.assertThat(valueOf(metrics, "statements.prepared")).isEqualTo(42L);
+        Assertions.assertThat(valueOf(metrics, "query-cache.hits")).isEqualTo(3L);
+        Assertions.assertThat(valueOf(metrics, "query-cache.misses")).isEqualTo(1L);
+        Assertions.assertThat(valueOf(metrics, "query-cache.hit-ratio")).isEqualTo(0.75);
+
+        // Gauges read the statistics every time
+        Mockito.when(statisticsMock.getQueryCacheHitCount()).thenReturn(5L);
+        Assertions.assertThat(valueOf(metrics, "query-cache.hits")).isEqualTo(5L);
+    }
+
+    @Test
+    public void getMetrics_PerRegion_Test() throws Exception {
+        Mockito.when(customerStatisticsMock.getHitCount()).thenReturn(7L);
+        Mockito.when(accountNaturalIdStatisticsMock.getMissCount()).thenReturn(2L);
+
+        final Map<String, Metric> metrics = hibernateStatisticsMetrics.getMetrics();
+
+        Assertions.assertThat(valueOf(metrics, "second-level-cache." + CUSTOMER_REGION + ".hits")).isEqualTo(7L);
+        Assertions.assertThat(valueOf(metrics, "natural-id-cache." + ACCOUNT_NATURAL_ID_REGION + ".misses")).isEqualTo(2L);
+        Assertions.assertThat(metrics).doesNotContainKey("second-level-cache." + ACCOUNT_NATURAL_ID_REGION + ".hits");
+
+        // The natural-id regions have no second-level cache statistics
+        Mockito.verify(statisticsMock, Mockito.never()).getSecondLevelCacheStatistics(ACCOUNT_NATURAL_ID_REGION);
+        Mockito.verify(statisticsMock, Mockito.never()).getNaturalIdCacheStatistics(CUSTOMER_REGION);
+    }
+}
@@ -0,0 +1,151 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.AdaptiveConfig;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
+import eu.davidemartorana.banking.accounts.contention.SwitchDecision;
+import eu.davidemartorana.banking.accounts.pipeline.AdaptiveTransferExecutor;
+import eu.davidemartorana.banking.accounts.pipeline.ShardedTransferExecutor;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.DirectTransferExecutor;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for class {@link HotAccountDetector} and {@link AdaptiveTransferExecutor}
+ */
+public class HotAccountDetectorTest {
+
+    private static final String HOT_ACCOUNT = "payrollAccountUUID";
+
+    private static final String COLD_ACCOUNT = "quietAccountUUID";
+
+    @Mock
+    private ShardedTransferExecutor shardedTransferExecutorMock;
+
+    @Mock
+    private DirectTransferExecutor directTransferExecutorMock;
+
+    private MetricRegistry metricRegistry;
+
+    private HotAccountDetector hotAccountDetector;
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+
+        final AdaptiveConfig adaptiveConfig = new AdaptiveConfig();
+        adaptiveConfig.setMinTransfers(10);
+        adaptiveConfig.setConflictRate(0.2);
+        adaptiveConfig.setLockWait(Duration.milliseconds(5));
+        // The counts decay only when asked by the tests
+        adaptiveConfig.setDecayInterval(Duration.days(1));
+        metricRegistry = new MetricRegistry();
+        hotAccountDetector = new HotAccountDetector(adaptiveConfig, true, metricRegistry);
+    }
+
+    private void record(final String debtorAccountUUID, final String beneficiaryAccountUUID, final int transfers, final int conflicts, final long lockWaitMillis) {
+        for (int index = 0; index < transfers; index++) {
+            hotAccountDetector.record(Arrays.asList(debtorAccountUUID, beneficiaryAccountUUID), TimeUnit.MILLISECONDS.toNanos(lockWaitMillis), index < conflicts);
+        }
+    }
+
+    @Test
+    public void record_HotOnConflictRate_Test() {
+        record(HOT_ACCOUNT, COLD_ACCOUNT + 1, 5, 5, 0);
+        // Not enough transfers yet, however contended
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isFalse();
+
+        for (int index = 2; index <= 10; index++) {
+            record(HOT_ACCOUNT, COLD_ACCOUNT + index, 1, 0, 0);
+        }
+
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isTrue();
+        Assertions.assertThat(hotAccountDetector.isHot(COLD_ACCOUNT + 1)).isFalse();
+        Assertions.assertThat(hotAccountDetector.getHotAccounts())
+                .extracting(SwitchDecision::getAccountId, SwitchDecision::isHot, SwitchDecision::getTransfers)
+                .containsExactly(Assertions.tuple(HOT_ACCOUNT, true, 10L));
+        Assertions.assertThat(hotAccountDetector.getHotAccounts().get(0).getConflictRate()).isEqualTo(0.5);
+        Assertions.assertThat(metricRegistry.getGauges().get("eu.davidemartorana.banking.accounts.contention.HotAccountDetector.hot-accounts").getValue()).isEqualTo(1);
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.contention.HotAccountDetector.promotions").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void record_HotOnLockWait_Test() {
+        record(HOT_ACCOUNT, COLD_ACCOUNT, 10, 0, 1);
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isFalse();
+
+        record(HOT_ACCOUNT, COLD_ACCOUNT, 10, 0, 10);
+
+        // Both the accounts waited for the locks of the transfer
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isTrue();
+        Assertions.assertThat(hotAccountDetector.isHot(COLD_ACCOUNT)).isTrue();
+        Assertions.assertThat(hotAccountDetector.getDecisions())
+                .extracting(SwitchDecision::getAverageLockWaitMicros)
+                .allMatch(micros -> micros >= 5000);
+    }
+
+    @Test
+    public void decay_ColdAgainWhenTrafficDrops_Test() {
+        record(HOT_ACCOUNT, null, 20, 20, 0);
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isTrue();
+
+        // Still busy, though no longer contended since serialized: it stays hot
+        hotAccountDetector.decay();
+        record(HOT_ACCOUNT, null, 10, 0, 0);
+        hotAccountDetector.decay();
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isTrue();
+
+        hotAccountDetector.decay();
+        hotAccountDetector.decay();
+
+        Assertions.assertThat(hotAccountDetector.isHot(HOT_ACCOUNT)).isFalse();
+        Assertions.assertThat(hotAccountDetector.getHotAccounts()).isEmpty();
+        Assertions.assertThat(hotAccountDetector.getDecisions())
+                .extracting(SwitchDecision::getAccountId, SwitchDecision::isHot)
+                .containsExactly(Assertions.tuple(HOT_ACCOUNT, false), Assertions.tuple(HOT_ACCOUNT, true));
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.contention.HotAccountDetector.demotions").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void record_Disabled_Test() {
+        final HotAccountDetector disabledDetector = new HotAccountDetector(new AdaptiveConfig(), false, metricRegistry);
+        for (int index = 0; index < 1000; index++) {
+            disabledDetector.record(Arrays.asList(HOT_ACCOUNT, COLD_ACCOUNT), TimeUnit.SECONDS.toNanos(1), true);
+        }
+
+        Assertions.assertThat(disabledDetector.isHot(HOT_ACCOUNT)).isFalse();
+        Assertions.assertThat(disabledDetector.getDecisions()).isEmpty();
+    }
+
+    @Test
+    public void execute_HotAccountsSerialized_Test() {
+        final AdaptiveTransferExecutor adaptiveTransferExecutor = new AdaptiveTransferExecutor(hotAccountDetector,
+                shardedTransferExecutorMock, directTransferExecutorMock, metricRegistry);
+        record(HOT_ACCOUNT, null, 10, 10, 0);
+
+        final TransferRequest toHotAccount = new TransferRequest();
+        toHotAccount.setBeneficiaryAccountId(HOT_ACCOUNT);
+        final TransferRequest toColdAccount = new TransferRequest();
+        toColdAccount.setBeneficiaryAccountId(COLD_ACCOUNT + 1);
+
+        adaptiveTransferExecutor.execute(HOT_ACCOUNT, toColdAccount);
+        adaptiveTransferExecutor.execute(COLD_ACCOUNT, toHotAccount);
+        adaptiveTransferExecutor.execute(COLD_ACCOUNT, toColdAccount);
+
+        Mockito.verify(shardedTransferExecutorMock).execute(HOT_ACCOUNT, toColdAccount);
+        Mockito.verify(shardedTransferExecutorMock).execute(COLD_ACCOUNT, toHotAccount);
+        Mockito.verify(directTransferExecutorMock).execute(COLD_ACCOUNT, toColdAccount);
+        Mockito.verifyNoMoreInteractions(shardedTransferExecutorMock, directTransferExecutorMock);
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.pipeline.AdaptiveTransferExecutor.serialized").getCount()).isEqualTo(2);
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.pipeline.AdaptiveTransferExecutor.direct").getCount()).isEqualTo(1);
+    }
+}
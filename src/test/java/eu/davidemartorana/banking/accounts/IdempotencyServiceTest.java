@@ -0,0 +1,239 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.DuplicateTransferRequestException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link IdempotencyService}
+ */
+public class IdempotencyServiceTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(TransferRequestRecord.class)
+            .setProperty("hibernate.current_session_context_class", "thread")
+            .build();
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private final Account debtorAccount = createAccount(1L, "debtorAccountUUID", 10000L);
+
+    private final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", 20000L);
+
+    private final AtomicInteger applied = new AtomicInteger();
+
+    private TransferRequestRepository transferRequestRepository;
+
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private IdempotencyService idempotencyService;
+
+    private static Account createAccount(final Long id, final String uuid, final long totalAmount) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setIbanNumber("GB40REVO60161331926819");
+        account.setCurrency(GBP);
+        account.setTotalAmountMinorUnits(totalAmount);
+
+        return account;
+    }
+
+    private static TransferRequest createRequest(final String beneficiaryAccountUUID, final String value) {
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(new Amount(new BigDecimal(value), GBP));
+
+        return transferRequest;
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        transferRequestRepository = new TransferRequestRepository(database.getSessionFactory());
+        unitOfWorkRunnerMock = Mockito.mock(UnitOfWorkRunner.class);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.any(Supplier.class)))
+                .thenAnswer(invocation -> database.inTransaction(() -> ((Supplier<Object>) invocation.getArgument(0)).get()));
+
+        idempotencyService = createService();
+    }
+
+    private IdempotencyService createService() {
+        return new IdempotencyService(new IdempotencyIndex(new CacheConfig(100, Duration.minutes(1)), new MetricRegistry()),
+                transferRequestRepository, unitOfWorkRunnerMock, objectMapper);
+    }
+
+    /**
+     * The transfer as the {@link eu.davidemartorana.banking.accounts.services.AccountsService} applies it: the key is
+     * taken, then the transfer is applied and its response stored, in the same unit of work.
+     */
+    private Supplier<TransferResult> transfer(final IdempotencyService service, final TransferRequest transferRequest) {
+        return () -> database.inTransaction(() -> {
+            final BatchTransfer transfer = new BatchTransfer(0, debtorAccount, beneficiaryAccount, transferRequest.getAmount());
+            final TransferRequestRecord record = service.claim(transfer, transferRequest.getIdempotencyKey());
+            applied.incrementAndGet();
+
+            final Money money = transferRequest.getAmount().toMoney();
+            final TransferResult result = new TransferResult();
+            result.setDebtorAccount(debtorAccount.withTotalAmount(debtorAccount.getTotalAmountMinorUnits() - money.getMinorUnits()));
+            result.setBeneficiaryAccount(beneficiaryAccount.withTotalAmount(beneficiaryAccount.getTotalAmountMinorUnits() + money.getMinorUnits()));
+            result.addTransaction(Transaction.create(money, debtorAccount, TransactionType.DEBIT, DateTime.now()));
+            result.addTransaction(Transaction.create(money, beneficiaryAccount, TransactionType.CREDIT, DateTime.now()));
+            service.complete(record, result);
+
+            return result;
+        });
+    }
+
+    private TransferResponse execute(final IdempotencyService service, final String idempotencyKey, final TransferRequest transferRequest) {
+        return service.execute(idempotencyKey, debtorAccount.getUuid(), transferRequest, transfer(service, transferRequest));
+    }
+
+    @Test
+    public void execute_RetryGetsTheSameResponse_Test() {
+        final TransferResponse response = execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+        final TransferResponse retry = execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10"));
+
+        Assertions.assertThat(retry).isSameAs(response);
+        Assertions.assertThat(applied).hasValue(1);
+        Mockito.verifyZeroInteractions(unitOfWorkRunnerMock);
+
+        execute(idempotencyService, "key-2", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+        Assertions.assertThat(applied).hasValue(2);
+    }
+
+    @Test
+    public void execute_KeyReusedForDifferentTransfer_Test() {
+        execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+
+        Assertions.assertThatExceptionOfType(ClientErrorException.class)
+                .isThrownBy(() -> execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "20.00")))
+                .matches(e -> e.getResponse().getStatus() == 422);
+        Assertions.assertThat(applied).hasValue(1);
+    }
+
+    @Test
+    public void execute_RetryWhileInProgress_Test() {
+        final TransferRequest transferRequest = createRequest(beneficiaryAccount.getUuid(), "10.00");
+
+        idempotencyService.execute("key-1", debtorAccount.getUuid(), transferRequest, () -> {
+            Assertions.assertThatExceptionOfType(DuplicateTransferRequestException.class)
+                    .isThrownBy(() -> execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00")));
+
+            return transfer(idempotencyService, transferRequest).get();
+        });
+
+        Assertions.assertThat(applied).hasValue(1);
+    }
+
+    /**
+     * A transfer submitted without waiting holds its key until its result is complete.
+     */
+    @Test
+    public void submit_CompletedLater_Test() {
+        final TransferRequest transferRequest = createRequest(beneficiaryAccount.getUuid(), "10.00");
+        final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+        final CompletableFuture<TransferResponse> response = idempotencyService.submit("key-1", debtorAccount.getUuid(), transferRequest, () -> result);
+        Assertions.assertThat(response).isNotDone();
+        Assertions.assertThatExceptionOfType(DuplicateTransferRequestException.class)
+                .isThrownBy(() -> execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00")));
+
+        result.complete(transfer(idempotencyService, transferRequest).get());
+        Assertions.assertThat(execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00")))
+                .isEqualToComparingFieldByFieldRecursively(response.join());
+        Assertions.assertThat(applied).hasValue(1);
+
+        // Failed: the key can be used again
+        final CompletableFuture<TransferResult> failed = new CompletableFuture<>();
+        final CompletableFuture<TransferResponse> failedResponse = idempotencyService.submit("key-2", debtorAccount.getUuid(), transferRequest, () -> failed);
+        failed.completeExceptionally(new FundsNotEnoughException("Fund not enough for amount: 10.00"));
+        Assertions.assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(failedResponse::join)
+                .withCauseInstanceOf(FundsNotEnoughException.class);
+        execute(idempotencyService, "key-2", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+        Assertions.assertThat(applied).hasValue(2);
+    }
+
+    @Test
+    public void execute_FailedTransferCanBeRetried_Test() {
+        final TransferRequest transferRequest = createRequest(beneficiaryAccount.getUuid(), "10.00");
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> idempotencyService.execute("key-1", debtorAccount.getUuid(), transferRequest, () -> {
+                    throw new FundsNotEnoughException("Fund not enough for amount: 10.00");
+                }));
+
+        execute(idempotencyService, "key-1", transferRequest);
+        Assertions.assertThat(applied).hasValue(1);
+    }
+
+    @Test
+    public void execute_RetryNoLongerInTheIndex_Test() throws Exception {
+        final TransferResponse response = execute(idempotencyService, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+
+        // e.g. after a restart: the key is found only in the database
+        final IdempotencyService restarted = createService();
+        final TransferResponse retry = execute(restarted, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00"));
+
+        Assertions.assertThat(objectMapper.writeValueAsString(retry)).isEqualTo(objectMapper.writeValueAsString(response));
+        Assertions.assertThat(applied).hasValue(1);
+        Assertions.assertThat(database.inTransaction(() -> transferRequestRepository.findByIdempotencyKey("key-1")))
+                .hasValueSatisfying(record -> Assertions.assertThat(record.getResponse()).isNotNull());
+
+        // The response read is kept in the index
+        Assertions.assertThat(execute(restarted, "key-1", createRequest(beneficiaryAccount.getUuid(), "10.00"))).isSameAs(retry);
+
+        Assertions.assertThatExceptionOfType(ClientErrorException.class)
+                .isThrownBy(() -> execute(createService(), "key-1", createRequest(debtorAccount.getUuid(), "10.00")))
+                .matches(e -> e.getResponse().getStatus() == 422);
+    }
+
+    @Test
+    public void execute_InvalidKey_Test() {
+        final TransferRequest transferRequest = createRequest(beneficiaryAccount.getUuid(), "10.00");
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> execute(idempotencyService, "", transferRequest));
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> execute(idempotencyService, new String(new char[256]).replace('\0', 'k'), transferRequest));
+        Assertions.assertThat(applied).hasValue(0);
+    }
+}
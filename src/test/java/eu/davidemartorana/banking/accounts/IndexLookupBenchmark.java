@@ -0,0 +1,192 @@
+package eu.davidemartorana.banking.accounts;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the latency of the lookups by account uuid and by account id, before and after the indexes of
+ * {@code V1.4__CreateIndexes.sql}, on tables of growing size. It is not part of the test suite; run it with:
+ *
+ * <pre>
+ *     java -Xmx2g -cp target/test-classes:target/classes:&lt;dependencies&gt; eu.davidemartorana.banking.accounts.IndexLookupBenchmark 10000 1000000 10000000
+ * </pre>
+ *
+ * Every size is loaded in its own Derby database, under the system temporary directory. Without arguments the sizes
+ * are 10k, 1M and 10M rows.
+ *
+ * @author Davide Martorana
+ */
+public class IndexLookupBenchmark {
+
+    private static final int TRANSACTIONS_PER_ACCOUNT = 4;
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private static final int SCAN_LOOKUPS = 5;
+
+    private static final int INDEXED_LOOKUPS = 1_000;
+
+    public static void main(final String[] args) throws Exception {
+        final int[] sizes = args.length == 0
+                ? new int[] {10_000, 1_000_000, 10_000_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+        System.out.printf("%12s %22s %22s %22s %22s%n", "rows", "by uuid (no index)", "by uuid (index)", "history (no index)", "history (index)");
+        for (final int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(final int rows) throws SQLException, IOException {
+        final Path directory = Files.createTempDirectory("index-benchmark-");
+        final String url = "jdbc:derby:directory:" + directory.resolve("db") + ";create=true";
+        final int accounts = Math.max(1, rows / TRANSACTIONS_PER_ACCOUNT);
+
+        try (Connection connection = DriverManager.getConnection(url)) {
+            try (Statement statement = connection.createStatement()) {
+                for (final String sql : readStatements("V1.0__CreateDatabase.sql")) {
+                    statement.execute(sql);
+                }
+            }
+            load(connection, accounts, rows);
+
+            final String[] uuids = sampleUUIDs(connection, INDEXED_LOOKUPS);
+            final double uuidScan = measure(connection, "SELECT * FROM accounts WHERE uuid = ?", uuids, SCAN_LOOKUPS);
+            final double historyScan = measureHistory(connection, accounts, SCAN_LOOKUPS);
+
+            try (Statement statement = connection.createStatement()) {
+                for (final String sql : readStatements("V1.4__CreateIndexes.sql")) {
+                    statement.execute(sql);
+                }
+            }
+
+            final double uuidIndexed = measure(connection, "SELECT * FROM accounts WHERE uuid = ?", uuids, INDEXED_LOOKUPS);
+            final double historyIndexed = measureHistory(connection, accounts, INDEXED_LOOKUPS);
+
+            System.out.printf("%12d %19.1f us %19.1f us %19.1f us %19.1f us%n", rows, uuidScan, uuidIndexed, historyScan, historyIndexed);
+        } finally {
+            try {
+                DriverManager.getConnection("jdbc:derby:directory:" + directory.resolve("db") + ";shutdown=true");
+            } catch (final SQLException e) {
+                // Derby always reports a shutdown with an exception
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static String[] readStatements(final String migration) throws IOException {
+        final Path path = Paths.get("src/main/resources/db/migration", migration);
+        final String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+
+        return Arrays.stream(content.split(";"))
+                .map(String::trim)
+                .filter(sql -> !sql.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static void load(final Connection connection, final int accounts, final int transactions) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO accounts VALUES (?, ?, ?, ?, 'GBP', ?)")) {
+            for (int id = 1; id <= accounts; id++) {
+                statement.setInt(1, id);
+                statement.setString(2, "GB40REVO" + id);
+                statement.setString(3, UUID.randomUUID().toString());
+                statement.setInt(4, 1000);
+                statement.setInt(5, id);
+                statement.addBatch();
+                if (id % INSERT_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+
+        final long start = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO account_transactions (uuid, type, account_id, amount, currency, date_time) VALUES (?, 'DEBIT', ?, 10, 'GBP', ?)")) {
+            for (int index = 1; index <= transactions; index++) {
+                statement.setString(1, UUID.randomUUID().toString());
+                statement.setInt(2, 1 + index % accounts);
+                statement.setTimestamp(3, new Timestamp(start + index));
+                statement.addBatch();
+                if (index % INSERT_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private static String[] sampleUUIDs(final Connection connection, final int count) throws SQLException {
+        final String[] uuids = new String[count];
+        try (Statement statement = connection.createStatement()) {
+            statement.setMaxRows(count);
+            try (ResultSet resultSet = statement.executeQuery("SELECT uuid FROM accounts")) {
+                int found = 0;
+                while (resultSet.next()) {
+                    uuids[found++] = resultSet.getString(1);
+                }
+                for (int index = found; index < count; index++) {
+                    uuids[index] = uuids[index % found];
+                }
+            }
+        }
+
+        return uuids;
+    }
+
+    private static double measure(final Connection connection, final String sql, final String[] parameters, final int lookups) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            final long start = System.nanoTime();
+            for (int index = 0; index < lookups; index++) {
+                statement.setString(1, parameters[index % parameters.length]);
+                consume(statement);
+            }
+
+            return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / (double) lookups;
+        }
+    }
+
+    private static double measureHistory(final Connection connection, final int accounts, final int lookups) throws SQLException {
+        final Random random = new Random(42);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM account_transactions WHERE account_id = ?")) {
+            final long start = System.nanoTime();
+            for (int index = 0; index < lookups; index++) {
+                statement.setInt(1, 1 + random.nextInt(accounts));
+                consume(statement);
+            }
+
+            return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / (double) lookups;
+        }
+    }
+
+    private static void consume(final PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                resultSet.getObject(1);
+            }
+        }
+    }
+}
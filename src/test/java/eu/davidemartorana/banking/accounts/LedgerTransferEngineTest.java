@@ -0,0 +1,351 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.ledger.Ledger;
+import eu.davidemartorana.banking.accounts.ledger.LedgerEntry;
+import eu.davidemartorana.banking.accounts.ledger.LedgerJournal;
+import eu.davidemartorana.banking.accounts.ledger.LedgerTransferEngine;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link LedgerTransferEngine}
+ */
+public class LedgerTransferEngineTest {
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(TransferRequestRecord.class)
+            .build();
+
+    @Mock
+    private LedgerJournal journalMock;
+
+    private Ledger ledger;
+
+    private UnitOfWorkRunner unitOfWorkRunner;
+
+    private LedgerTransferEngine ledgerTransferEngine;
+
+    private Account createAccount(final Long id, final String uuid, final String amount) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(Currency.getInstance("GBP"));
+        account.setTotalAmount(new BigDecimal(amount));
+
+        return account;
+    }
+
+    @Before
+    public void beforeEachTest() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(journalMock.append(Mockito.any(LedgerEntry.class))).thenReturn(true);
+
+        ledger = new Ledger();
+        unitOfWorkRunner = new UnitOfWorkRunner(database.getSessionFactory());
+        ledgerTransferEngine = new LedgerTransferEngine(ledger, journalMock, database.getSessionFactory());
+    }
+
+    /**
+     * The transfer in its own unit of work, as the transfer executors run it: it is journaled on commit.
+     */
+    private TransferResult transfer(final Account debtorAccount, final Account beneficiaryAccount, final Amount amount) {
+        return unitOfWorkRunner.inUnitOfWork(() -> ledgerTransferEngine.transfer(debtorAccount, beneficiaryAccount, amount));
+    }
+
+    private List<BatchItemResult> transferBatch(final List<BatchTransfer> transfers, final BatchMode batchMode) {
+        return unitOfWorkRunner.inUnitOfWork(() -> ledgerTransferEngine.transferBatch(transfers, batchMode));
+    }
+
+    @Test
+    public void transfer_SuccessFull_Test() throws Exception {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20");
+        final Amount amount = new Amount(new BigDecimal("100.50"), Currency.getInstance("GBP"));
+
+        final TransferResult transferResult = transfer(debtorAccount, beneficiaryAccount, amount);
+
+        Assertions.assertThat(transferResult.getDebtorAccount().getTotalAmount()).isEqualByComparingTo("49.50");
+        Assertions.assertThat(transferResult.getBeneficiaryAccount().getTotalAmount()).isEqualByComparingTo("120.50");
+        Assertions.assertThat(transferResult.getTransactions())
+                .hasSize(2)
+                .extracting("type", "accountId")
+                .containsExactly(
+                        Assertions.tuple(TransactionType.DEBIT.value(), 1L),
+                        Assertions.tuple(TransactionType.CREDIT.value(), 2L));
+
+        // The entities read from the database are never changed
+        Assertions.assertThat(debtorAccount.getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(beneficiaryAccount.getTotalAmount()).isEqualByComparingTo("20");
+
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("49.50");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("120.50");
+
+        Mockito.verify(journalMock, Mockito.times(1)).append(Mockito.any(LedgerEntry.class));
+    }
+
+    @Test
+    public void transfer_NotEnoughFunds_Test() throws Exception {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "50.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> transfer(debtorAccount, beneficiaryAccount, amount))
+                .withMessage("Fund not enough for amount: 100.00");
+
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("50.00");
+        Mockito.verify(journalMock, Mockito.never()).append(Mockito.any(LedgerEntry.class));
+    }
+
+    @Test
+    public void transfer_AmountWithTooManyDecimals_Test() throws Exception {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "50.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+        final Amount amount = new Amount(new BigDecimal("10.001"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transfer(debtorAccount, beneficiaryAccount, amount));
+
+        Mockito.verify(journalMock, Mockito.never()).append(Mockito.any(LedgerEntry.class));
+    }
+
+    @Test
+    public void transfer_JournalFull_Test() throws Exception {
+        Mockito.when(journalMock.append(Mockito.any(LedgerEntry.class))).thenReturn(false);
+
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transfer(debtorAccount, beneficiaryAccount, amount));
+
+        // The reserved amount is given back
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("20.00");
+    }
+
+    @Test
+    public void transfer_JournalNotForced_Test() throws Exception {
+        // As with the EVERY_WRITE fsync failing
+        Mockito.when(journalMock.append(Mockito.any(LedgerEntry.class)))
+                .thenThrow(new UncheckedIOException("Unable to force the journal write-ahead log.", new IOException("fsync")));
+
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(WebApplicationException.class)
+                .isThrownBy(() -> transfer(debtorAccount, beneficiaryAccount, amount));
+
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("20.00");
+    }
+
+    /**
+     * The unit of work of the transfer fails after the transfer, when its response is stored: nothing is journaled and
+     * the retry with the same Idempotency-Key applies the transfer once.
+     */
+    @Test
+    public void transfer_RolledBack_RetryAppliedOnce_Test() throws Exception {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccount.getUuid());
+        transferRequest.setAmount(new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP")));
+
+        final IdempotencyService idempotencyService = Mockito.spy(new IdempotencyService(
+                new IdempotencyIndex(new CacheConfig(100, Duration.minutes(1)), new MetricRegistry()),
+                new TransferRequestRepository(database.getSessionFactory()), unitOfWorkRunner, Jackson.newObjectMapper()));
+        Mockito.doThrow(new WebApplicationException("Error occurred during the funds transfer. Operation not performed."))
+                .doCallRealMethod()
+                .when(idempotencyService).complete(Mockito.any(), Mockito.any());
+
+        // As the AccountsService applies it
+        final Supplier<TransferResult> transfer = () -> unitOfWorkRunner.inUnitOfWork(() -> {
+            final TransferRequestRecord record = idempotencyService.claim(
+                    new BatchTransfer(0, debtorAccount, beneficiaryAccount, transferRequest.getAmount()), transferRequest.getIdempotencyKey());
+            final TransferResult result = ledgerTransferEngine.transfer(debtorAccount, beneficiaryAccount, transferRequest.getAmount());
+            idempotencyService.complete(record, result);
+
+            return result;
+        });
+
+        Assertions.assertThatExceptionOfType(WebApplicationException.class)
+                .isThrownBy(() -> idempotencyService.execute("key-1", debtorAccount.getUuid(), transferRequest, transfer));
+        Mockito.verify(journalMock, Mockito.never()).append(Mockito.any(LedgerEntry.class));
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("20.00");
+
+        idempotencyService.execute("key-1", debtorAccount.getUuid(), transferRequest, transfer);
+        idempotencyService.execute("key-1", debtorAccount.getUuid(), transferRequest, transfer);
+
+        Mockito.verify(journalMock, Mockito.times(1)).append(Mockito.any(LedgerEntry.class));
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("50.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("120.00");
+    }
+
+    @Test
+    public void transfer_BeneficiaryOverflow_Test() throws Exception {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        // Long.MAX_VALUE minor units less 7 pence
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "92233720368547758.00");
+        final Amount amount = new Amount(new BigDecimal("1.00"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(ArithmeticException.class)
+                .isThrownBy(() -> transfer(debtorAccount, beneficiaryAccount, amount));
+
+        // Nothing is journaled and the reserved amount is given back
+        Mockito.verify(journalMock, Mockito.never()).append(Mockito.any(LedgerEntry.class));
+        Assertions.assertThat(ledgerTransferEngine.currentState(debtorAccount).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("92233720368547758.00");
+    }
+
+    /**
+     * A credit not journaled yet still takes its room on the beneficiary balance: a concurrent credit cannot overflow it.
+     */
+    @Test
+    public void transfer_CreditInFlight_NoOverflow_Test() throws Exception {
+        final Account firstDebtorAccount = createAccount(1L, "firstDebtorAccountUUID", "150.00");
+        final Account secondDebtorAccount = createAccount(2L, "secondDebtorAccountUUID", "150.00");
+        // Long.MAX_VALUE minor units less 1 pound
+        final Account beneficiaryAccount = createAccount(3L, "beneficiaryAccountUUID", "92233720368547757.07");
+        final Amount amount = new Amount(new BigDecimal("1.00"), Currency.getInstance("GBP"));
+
+        final CountDownLatch appending = new CountDownLatch(1);
+        final CountDownLatch append = new CountDownLatch(1);
+        Mockito.when(journalMock.append(Mockito.any(LedgerEntry.class))).thenAnswer(invocation -> {
+            appending.countDown();
+            append.await();
+            return true;
+        });
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<TransferResult> first = executor.submit(() -> transfer(firstDebtorAccount, beneficiaryAccount, amount));
+        Assertions.assertThat(appending.await(10, TimeUnit.SECONDS)).isTrue();
+
+        Assertions.assertThatExceptionOfType(ArithmeticException.class)
+                .isThrownBy(() -> transfer(secondDebtorAccount, beneficiaryAccount, amount));
+
+        append.countDown();
+        Assertions.assertThat(first.get(10, TimeUnit.SECONDS).getBeneficiaryAccount().getTotalAmount()).isEqualByComparingTo("92233720368547758.07");
+        executor.shutdown();
+
+        Assertions.assertThat(ledgerTransferEngine.currentState(secondDebtorAccount).getTotalAmount()).isEqualByComparingTo("150.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(beneficiaryAccount).getTotalAmount()).isEqualByComparingTo("92233720368547758.07");
+    }
+
+    @Test
+    public void transferBatch_NetChangesApplied_Test() throws Exception {
+        final Account firstAccount = createAccount(1L, "firstAccountUUID", "100.00");
+        final Account secondAccount = createAccount(2L, "secondAccountUUID", "0.00");
+        final Account thirdAccount = createAccount(3L, "thirdAccountUUID", "0.00");
+        final Amount amount = new Amount(new BigDecimal("60.00"), Currency.getInstance("GBP"));
+
+        final List<BatchItemResult> results = transferBatch(Arrays.asList(
+                new BatchTransfer(0, firstAccount, secondAccount, amount),
+                new BatchTransfer(1, secondAccount, thirdAccount, amount),
+                new BatchTransfer(2, firstAccount, thirdAccount, amount)), BatchMode.BEST_EFFORT);
+
+        Assertions.assertThat(results).extracting("status").containsExactly(200, 200, 409);
+        Assertions.assertThat(ledgerTransferEngine.currentState(firstAccount).getTotalAmount()).isEqualByComparingTo("40.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(secondAccount).getTotalAmount()).isEqualByComparingTo("0.00");
+        Assertions.assertThat(ledgerTransferEngine.currentState(thirdAccount).getTotalAmount()).isEqualByComparingTo("60.00");
+
+        // The whole batch is a single journal entry
+        final ArgumentCaptor<LedgerEntry> entryCaptor = ArgumentCaptor.forClass(LedgerEntry.class);
+        Mockito.verify(journalMock, Mockito.times(1)).append(entryCaptor.capture());
+        Assertions.assertThat(entryCaptor.getValue().getTransactions()).hasSize(4);
+    }
+
+    /**
+     * Many threads move money back and forth between the same accounts: no account ever goes below zero and the
+     * overall amount of money is preserved.
+     */
+    @Test
+    public void transfer_Concurrent_NoOverdraft_Test() throws Exception {
+        final int threadsNumber = 8;
+        final int transfersPerThread = 2000;
+
+        final Account firstAccount = createAccount(1L, "firstAccountUUID", "100.00");
+        final Account secondAccount = createAccount(2L, "secondAccountUUID", "100.00");
+        final Amount amount = new Amount(new BigDecimal("7.00"), Currency.getInstance("GBP"));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final List<Future<Integer>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            final boolean forward = index % 2 == 0;
+            final Callable<Integer> callable = () -> {
+                int failures = 0;
+                for (int count = 0; count < transfersPerThread; count++) {
+                    try {
+                        final TransferResult result = forward
+                                ? transfer(firstAccount, secondAccount, amount)
+                                : transfer(secondAccount, firstAccount, amount);
+                        Assertions.assertThat(result.getDebtorAccount().getTotalAmount()).isNotNegative();
+                    } catch (final FundsNotEnoughException e) {
+                        failures++;
+                    }
+                }
+                return failures;
+            };
+            futureList.add(executor.submit(callable));
+        }
+
+        for (final Future<Integer> future : futureList) {
+            future.get(100, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        final BigDecimal firstTotal = ledgerTransferEngine.currentState(firstAccount).getTotalAmount();
+        final BigDecimal secondTotal = ledgerTransferEngine.currentState(secondAccount).getTotalAmount();
+
+        Assertions.assertThat(firstTotal).isNotNegative();
+        Assertions.assertThat(secondTotal).isNotNegative();
+        Assertions.assertThat(firstTotal.add(secondTotal)).isEqualByComparingTo("200.00");
+    }
+}
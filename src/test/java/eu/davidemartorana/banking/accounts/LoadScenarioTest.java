@@ -0,0 +1,87 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.load.LoadOutcome;
+import eu.davidemartorana.banking.accounts.load.LoadScenario;
+import eu.davidemartorana.banking.accounts.load.ZipfDistribution;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Test for classes {@link LoadScenario}, {@link ZipfDistribution} and {@link LoadOutcome}
+ */
+public class LoadScenarioTest {
+
+    private static final int ACCOUNTS = 10;
+
+    private final Random random = new Random(42);
+
+    private final ZipfDistribution zipf = new ZipfDistribution(ACCOUNTS, 1.2);
+
+    @Test
+    public void next_DifferentAccounts_Test() throws Exception {
+        for (final LoadScenario scenario : LoadScenario.values()) {
+            for (long sequence = 0; sequence < 1000; sequence++) {
+                final int[] accounts = scenario.next(sequence, ACCOUNTS, zipf, random);
+
+                Assertions.assertThat(accounts[0]).isNotEqualTo(accounts[1]).isBetween(0, ACCOUNTS - 1);
+                Assertions.assertThat(accounts[1]).isBetween(0, ACCOUNTS - 1);
+            }
+        }
+    }
+
+    @Test
+    public void next_HotAccount_Test() throws Exception {
+        for (long sequence = 0; sequence < 100; sequence++) {
+            final int[] accounts = LoadScenario.HOT_ACCOUNT.next(sequence, ACCOUNTS, zipf, random);
+
+            Assertions.assertThat(accounts).contains(0);
+        }
+    }
+
+    @Test
+    public void next_Ring_Test() throws Exception {
+        Assertions.assertThat(LoadScenario.RING.next(0, ACCOUNTS, zipf, random)).containsExactly(0, 1);
+        Assertions.assertThat(LoadScenario.RING.next(1, ACCOUNTS, zipf, random)).containsExactly(1, 2);
+        Assertions.assertThat(LoadScenario.RING.next(2, ACCOUNTS, zipf, random)).containsExactly(2, 0);
+        Assertions.assertThat(LoadScenario.RING.next(3, ACCOUNTS, zipf, random)).containsExactly(0, 1);
+    }
+
+    @Test
+    public void sample_Skewed_Test() throws Exception {
+        final int[] counts = new int[ACCOUNTS];
+        for (int index = 0; index < 100_000; index++) {
+            counts[zipf.sample(random)]++;
+        }
+
+        // With exponent 1.2 over 10 ranks, the first one is drawn about 40% of the times, the last one about 2%
+        Assertions.assertThat(counts[0]).isBetween(37_000, 43_000);
+        Assertions.assertThat(counts[0]).isGreaterThan(counts[1]);
+        Assertions.assertThat(counts[ACCOUNTS - 1]).isBetween(2_000, 3_200);
+    }
+
+    @Test
+    public void sample_Uniform_Test() throws Exception {
+        final ZipfDistribution uniform = new ZipfDistribution(ACCOUNTS, 0);
+        final int[] counts = new int[ACCOUNTS];
+        for (int index = 0; index < 100_000; index++) {
+            counts[uniform.sample(random)]++;
+        }
+
+        for (final int count : counts) {
+            Assertions.assertThat(count).isBetween(9_000, 11_000);
+        }
+    }
+
+    @Test
+    public void of_Outcome_Test() throws Exception {
+        Assertions.assertThat(LoadOutcome.of(200, "{}")).isEqualTo(LoadOutcome.OK);
+        Assertions.assertThat(LoadOutcome.of(409, "{\"code\":409,\"message\":\"Fund not enough for amount: 1.00\"}"))
+                .isEqualTo(LoadOutcome.FUNDS_NOT_ENOUGH);
+        Assertions.assertThat(LoadOutcome.of(409, "{\"code\":409,\"message\":\"Account used by another thread.\"}"))
+                .isEqualTo(LoadOutcome.CONFLICT);
+        Assertions.assertThat(LoadOutcome.of(503, "")).isEqualTo(LoadOutcome.UNAVAILABLE);
+        Assertions.assertThat(LoadOutcome.of(500, "")).isEqualTo(LoadOutcome.OTHER_STATUS);
+    }
+}
@@ -0,0 +1,72 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import javax.ws.rs.BadRequestException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Test for class {@link Money}
+ */
+public class MoneyTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    public void of_ExactConversion_Test() {
+        Assertions.assertThat(Money.of(new BigDecimal("100.50"), GBP).getMinorUnits()).isEqualTo(10050L);
+        Assertions.assertThat(Money.of(new BigDecimal("100.5"), GBP).getMinorUnits()).isEqualTo(10050L);
+        Assertions.assertThat(Money.of(new BigDecimal("1E+3"), GBP).getMinorUnits()).isEqualTo(100000L);
+        Assertions.assertThat(Money.of(new BigDecimal("1500"), JPY).getMinorUnits()).isEqualTo(1500L);
+
+        Assertions.assertThatExceptionOfType(ArithmeticException.class)
+                .isThrownBy(() -> Money.of(new BigDecimal("10.001"), GBP));
+        Assertions.assertThatExceptionOfType(ArithmeticException.class)
+                .isThrownBy(() -> Money.of(new BigDecimal("10.5"), JPY));
+        Assertions.assertThatExceptionOfType(ArithmeticException.class)
+                .isThrownBy(() -> Money.of(new BigDecimal("92233720368547758.08"), GBP));
+    }
+
+    @Test
+    public void toBigDecimal_KeepsTheScaleOfTheCurrency_Test() {
+        final BigDecimal value = Money.of(new BigDecimal("20"), GBP).toBigDecimal();
+
+        Assertions.assertThat(value).isEqualTo(new BigDecimal("20.00"));
+        Assertions.assertThat(Money.ofMinorUnits(Long.MAX_VALUE, GBP).toBigDecimal()).isEqualTo(new BigDecimal("92233720368547758.07"));
+        Assertions.assertThat(Money.of(new BigDecimal("1500"), JPY).toBigDecimal()).isEqualTo(new BigDecimal("1500"));
+    }
+
+    @Test
+    public void arithmetic_OverflowIsAnError_Test() {
+        final Money max = Money.ofMinorUnits(Long.MAX_VALUE, GBP);
+        final Money penny = Money.ofMinorUnits(1L, GBP);
+
+        Assertions.assertThat(max.minus(penny).plus(penny)).isEqualTo(max);
+        Assertions.assertThatExceptionOfType(ArithmeticException.class).isThrownBy(() -> max.plus(penny));
+        Assertions.assertThatExceptionOfType(ArithmeticException.class).isThrownBy(() -> max.negate().minus(penny).minus(penny));
+        Assertions.assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> penny.plus(Money.ofMinorUnits(1L, JPY)));
+    }
+
+    @Test
+    public void amountToMoney_Test() {
+        final Amount amount = new Amount(new BigDecimal("10.50"), GBP);
+
+        Assertions.assertThat(amount.toMoney()).isEqualTo(Money.ofMinorUnits(1050L, GBP));
+        Assertions.assertThat(amount.toMoney()).isSameAs(amount.toMoney());
+
+        amount.setValue(new BigDecimal("10.005"));
+        Assertions.assertThatExceptionOfType(BadRequestException.class).isThrownBy(amount::toMoney);
+        Assertions.assertThatExceptionOfType(BadRequestException.class).isThrownBy(amount::checkMinorUnits);
+
+        // The conversion checked is the one the transfer gets
+        amount.setValue(new BigDecimal("7.25"));
+        amount.checkMinorUnits();
+        Assertions.assertThat(amount.toMoney()).isEqualTo(Money.ofMinorUnits(725L, GBP));
+    }
+}
@@ -0,0 +1,206 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.BatchTransfer;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.services.OptimisticTransferEngine;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link OptimisticTransferEngine} and {@link TransferRetry}
+ */
+public class OptimisticTransferEngineTest {
+
+    @Mock
+    private AccountRepository accountRepositoryMock;
+
+    @Mock
+    private TransactionRepository transactionsRepositoryMock;
+
+    @Mock
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private OptimisticTransferEngine optimisticTransferEngine;
+
+    private MetricRegistry metricRegistry;
+
+    private TransferMetrics transferMetrics;
+
+    private TransferRetry transferRetry;
+
+    private Account createAccount(final Long id, final String uuid, final String amount, final long version) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(Currency.getInstance("GBP"));
+        account.setTotalAmount(new BigDecimal(amount));
+        account.setVersion(version);
+
+        return account;
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(accountRepositoryMock.updateTotalAmount(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(1);
+        Mockito.when(transactionsRepositoryMock.addTransaction(Mockito.any(Money.class), Mockito.any(Account.class), Mockito.any(TransactionType.class)))
+                .thenAnswer(invocation -> Transaction.create(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), DateTime.now()));
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.any(Supplier.class)))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+
+        metricRegistry = new MetricRegistry();
+        transferMetrics = new TransferMetrics(metricRegistry, Mockito.mock(SessionFactory.class));
+        optimisticTransferEngine = new OptimisticTransferEngine(accountRepositoryMock, transactionsRepositoryMock, transferMetrics);
+
+        final RetryConfig retryConfig = new RetryConfig();
+        retryConfig.setMaxAttempts(3);
+        retryConfig.setInitialBackoff(Duration.microseconds(10));
+        transferRetry = new TransferRetry(unitOfWorkRunnerMock, retryConfig, metricRegistry);
+    }
+
+    @Test
+    public void transfer_SuccessFull_Test() {
+        final Account debtorAccount = createAccount(2L, "debtorAccountUUID", "150.00", 7L);
+        final Account beneficiaryAccount = createAccount(1L, "beneficiaryAccountUUID", "20", 3L);
+        final Amount amount = new Amount(new BigDecimal("100.50"), Currency.getInstance("GBP"));
+
+        final TransferResult transferResult = optimisticTransferEngine.transfer(debtorAccount, beneficiaryAccount, amount);
+
+        Assertions.assertThat(transferResult.getDebtorAccount().getTotalAmount()).isEqualByComparingTo("49.50");
+        Assertions.assertThat(transferResult.getBeneficiaryAccount().getTotalAmount()).isEqualByComparingTo("120.50");
+        Assertions.assertThat(transferResult.getTransactions())
+                .extracting("type", "accountId")
+                .containsExactly(
+                        Assertions.tuple(TransactionType.DEBIT.value(), 2L),
+                        Assertions.tuple(TransactionType.CREDIT.value(), 1L));
+
+        // Checked against the versions read, in ascending id order
+        final InOrder inOrder = Mockito.inOrder(accountRepositoryMock);
+        inOrder.verify(accountRepositoryMock).updateTotalAmount(1L, 12050L, 3L);
+        inOrder.verify(accountRepositoryMock).updateTotalAmount(2L, 4950L, 7L);
+        Mockito.verify(accountRepositoryMock, Mockito.never()).decreaseTotalAmount(Mockito.anyLong(), Mockito.any(Money.class));
+
+        // A single sample per phase, for both the accounts
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.BALANCE_UPDATE).getCount()).isEqualTo(1);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.TRANSACTION_INSERT).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void transfer_NotEnoughFunds_Test() {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "50.00", 0L);
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00", 0L);
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> optimisticTransferEngine.transfer(debtorAccount, beneficiaryAccount, amount))
+                .withMessage("Fund not enough for amount: 100.00");
+
+        Mockito.verify(accountRepositoryMock, Mockito.never()).updateTotalAmount(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    @Test
+    public void transfer_AccountChangedSinceRead_Test() {
+        final Account debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00", 0L);
+        final Account beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00", 4L);
+        final Amount amount = new Amount(new BigDecimal("100.00"), Currency.getInstance("GBP"));
+        Mockito.when(accountRepositoryMock.updateTotalAmount(2L, 12000L, 4L)).thenReturn(0);
+
+        Assertions.assertThatExceptionOfType(ConcurrentUpdateException.class)
+                .isThrownBy(() -> optimisticTransferEngine.transfer(debtorAccount, beneficiaryAccount, amount))
+                .matches(e -> e.getResponse().getStatus() == 409);
+
+        Mockito.verify(transactionsRepositoryMock, Mockito.never()).addTransaction(Mockito.any(Money.class), Mockito.any(Account.class), Mockito.any(TransactionType.class));
+    }
+
+    @Test
+    public void transferBatch_AccountChangedSinceRead_Test() {
+        final Account firstAccount = createAccount(1L, "firstAccountUUID", "150.00", 0L);
+        final Account secondAccount = createAccount(2L, "secondAccountUUID", "20.00", 1L);
+        final Amount amount = new Amount(new BigDecimal("10.00"), Currency.getInstance("GBP"));
+
+        optimisticTransferEngine.transferBatch(Arrays.asList(
+                new BatchTransfer(0, firstAccount, secondAccount, amount),
+                new BatchTransfer(1, secondAccount, firstAccount, amount)), BatchMode.BEST_EFFORT);
+
+        // The totals do not change, the versions are checked all the same
+        Mockito.verify(accountRepositoryMock).updateTotalAmount(1L, 15000L, 0L);
+        Mockito.verify(accountRepositoryMock).updateTotalAmount(2L, 2000L, 1L);
+        Mockito.verify(transactionsRepositoryMock).insertAll(Mockito.anyList());
+
+        Mockito.when(accountRepositoryMock.updateTotalAmount(1L, 14000L, 0L)).thenReturn(0);
+        Assertions.assertThatExceptionOfType(ConcurrentUpdateException.class)
+                .isThrownBy(() -> optimisticTransferEngine.transferBatch(Arrays.asList(
+                        new BatchTransfer(0, firstAccount, secondAccount, amount)), BatchMode.BEST_EFFORT));
+        Mockito.verify(transactionsRepositoryMock, Mockito.times(1)).insertAll(Mockito.anyList());
+    }
+
+    @Test
+    public void retry_ConflictingTransferTriedAgain_Test() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = transferRetry.inUnitOfWork(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ConcurrentUpdateException("Account changed by another thread.");
+            }
+            return "committed";
+        });
+
+        Assertions.assertThat(result).isEqualTo("committed");
+        Assertions.assertThat(attempts).hasValue(3);
+        Assertions.assertThat(metricRegistry.counter("eu.davidemartorana.banking.accounts.services.TransferRetry.retries").getCount()).isEqualTo(2);
+        Assertions.assertThat(metricRegistry.counter("eu.davidemartorana.banking.accounts.services.TransferRetry.aborts").getCount()).isZero();
+    }
+
+    @Test
+    public void retry_AbortedAfterMaxAttempts_Test() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Assertions.assertThatExceptionOfType(ConcurrentUpdateException.class)
+                .isThrownBy(() -> transferRetry.inUnitOfWork(() -> {
+                    attempts.incrementAndGet();
+                    throw new ConcurrentUpdateException("Account changed by another thread.");
+                }));
+
+        Assertions.assertThat(attempts).hasValue(3);
+        Assertions.assertThat(metricRegistry.counter("eu.davidemartorana.banking.accounts.services.TransferRetry.retries").getCount()).isEqualTo(2);
+        Assertions.assertThat(metricRegistry.counter("eu.davidemartorana.banking.accounts.services.TransferRetry.aborts").getCount()).isEqualTo(1);
+
+        // Any other failure is not retried
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> transferRetry.inUnitOfWork(() -> {
+                    attempts.incrementAndGet();
+                    throw new FundsNotEnoughException("Fund not enough for amount: 100.00");
+                }));
+        Assertions.assertThat(attempts).hasValue(4);
+    }
+}
@@ -0,0 +1,196 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.pipeline.ShardedTransferExecutor;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link ShardedTransferExecutor}
+ */
+public class ShardedTransferExecutorTest {
+
+    private static final int SHARDS = 4;
+
+    @Mock
+    private AccountsService accountsServiceMock;
+
+    @Mock
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private MetricRegistry metricRegistry;
+
+    private ShardedTransferExecutor shardedTransferExecutor;
+
+    private static TransferRequest createRequest(final String beneficiaryAccountUUID) {
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+
+        return transferRequest;
+    }
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.<Supplier<Object>>any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        final ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.getTransfers().setExecution(TransferExecutionType.SHARDED);
+        applicationConfig.getTransfers().getSharding().setShards(SHARDS);
+
+        metricRegistry = new MetricRegistry();
+        shardedTransferExecutor = new ShardedTransferExecutor(accountsServiceMock, new TransferRetry(unitOfWorkRunnerMock, new RetryConfig(), new MetricRegistry()), applicationConfig, metricRegistry);
+        shardedTransferExecutor.start();
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        shardedTransferExecutor.stop();
+    }
+
+    @Test
+    public void execute_SuccessFull_Test() {
+        final TransferRequest transferRequest = createRequest("beneficiaryAccountUUID");
+        final TransferResult transferResult = new TransferResult();
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.eq("debtorAccountUUID"), Mockito.same(transferRequest))).thenReturn(transferResult);
+
+        Assertions.assertThat(shardedTransferExecutor.execute("debtorAccountUUID", transferRequest)).isSameAs(transferResult);
+
+        final int shard = Math.min(shardedTransferExecutor.shardOf("debtorAccountUUID"), shardedTransferExecutor.shardOf("beneficiaryAccountUUID"));
+        Assertions.assertThat(metricRegistry.getTimers().get(MetricRegistry.name(ShardedTransferExecutor.class, "shard-" + shard, "latency")).getCount()).isEqualTo(1);
+        Assertions.assertThat(metricRegistry.getGauges()).containsKeys(
+                MetricRegistry.name(ShardedTransferExecutor.class, "shard-0", "queue-depth"),
+                MetricRegistry.name(ShardedTransferExecutor.class, "shard-" + (SHARDS - 1), "queue-depth"));
+    }
+
+    @Test
+    public void execute_ExceptionPropagated_Test() {
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class)))
+                .thenThrow(new FundsNotEnoughException("Fund not enough for amount: 10.00"));
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> shardedTransferExecutor.execute("debtorAccountUUID", createRequest("beneficiaryAccountUUID")))
+                .withMessage("Fund not enough for amount: 10.00");
+    }
+
+    @Test
+    public void shardOf_Stable_Test() {
+        for (int index = 0; index < 100; index++) {
+            final String uuid = "account-" + index;
+            Assertions.assertThat(shardedTransferExecutor.shardOf(uuid))
+                    .isBetween(0, SHARDS - 1)
+                    .isEqualTo(shardedTransferExecutor.shardOf(uuid));
+        }
+    }
+
+    /**
+     * Transfers in both directions between many accounts: all of them complete, and two transfers touching the same
+     * account are never executed at the same time.
+     */
+    @Test
+    public void execute_Concurrent_NoOverlappingAccounts_Test() throws Exception {
+        final int accountsNumber = 10;
+        final int threadsNumber = 8;
+        final int transfersPerThread = 300;
+
+        final Map<String, AtomicInteger> inProgress = new ConcurrentHashMap<>();
+        final AtomicInteger overlaps = new AtomicInteger();
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            final String debtor = invocation.getArgument(0);
+            final String beneficiary = invocation.<TransferRequest>getArgument(1).getBeneficiaryAccountId();
+
+            if (inProgress.computeIfAbsent(debtor, key -> new AtomicInteger()).incrementAndGet() > 1
+                    | inProgress.computeIfAbsent(beneficiary, key -> new AtomicInteger()).incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.yield();
+            inProgress.get(debtor).decrementAndGet();
+            inProgress.get(beneficiary).decrementAndGet();
+
+            return new TransferResult();
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            final int seed = index;
+            futureList.add(executor.submit(() -> {
+                for (int count = 0; count < transfersPerThread; count++) {
+                    final int debtor = (seed + count) % accountsNumber;
+                    final int beneficiary = (debtor + 1 + count % (accountsNumber - 1)) % accountsNumber;
+                    Assertions.assertThat(shardedTransferExecutor.execute("account-" + debtor, createRequest("account-" + beneficiary))).isNotNull();
+                }
+            }));
+        }
+
+        for (final Future<?> future : futureList) {
+            future.get(100, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertThat(overlaps.get()).isZero();
+        for (int index = 0; index < SHARDS; index++) {
+            Assertions.assertThat(shardedTransferExecutor.queueDepth(index)).isZero();
+        }
+    }
+
+    /**
+     * Stopped while transfers are being queued: every caller gets either the result or a 503, none waits forever.
+     */
+    @Test
+    public void stop_WhileSubmitting_Test() throws Exception {
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenReturn(new TransferResult());
+
+        final int threadsNumber = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final CountDownLatch submitting = new CountDownLatch(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            futureList.add(executor.submit(() -> {
+                submitting.countDown();
+                try {
+                    while (true) {
+                        shardedTransferExecutor.execute("debtorAccountUUID", new TransferRequest());
+                    }
+                } catch (final ServiceUnavailableException e) {
+                    return null;
+                }
+            }));
+        }
+        Assertions.assertThat(submitting.await(10, TimeUnit.SECONDS)).isTrue();
+
+        shardedTransferExecutor.stop();
+        for (final Future<?> future : futureList) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,305 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.cache.AccountCache;
+import eu.davidemartorana.banking.accounts.cache.IdempotencyIndex;
+import eu.davidemartorana.banking.accounts.cache.SplitAccountIndex;
+import eu.davidemartorana.banking.accounts.config.AdaptiveConfig;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.CacheConfig;
+import eu.davidemartorana.banking.accounts.contention.HotAccountDetector;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.TransferRequestRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferRequestRecord;
+import eu.davidemartorana.banking.accounts.exceptions.ConcurrentUpdateException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferItem;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.HibernateTransferEngine;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.WebApplicationException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Test for the accounts split in {@link BalanceSlot balance slots}: {@link AccountsService#splitAccount(String, int)}
+ * and the transfers of {@link HibernateTransferEngine} on them.
+ */
+public class SplitAccountTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private static final String SPLIT_ACCOUNT = "payrollAccountUUID";
+
+    private static final String OTHER_ACCOUNT = "employeeAccountUUID";
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(Account.class)
+            .addEntityClass(BalanceSlot.class)
+            .addEntityClass(Transaction.class)
+            .addEntityClass(TransferRequestRecord.class)
+            .setProperty("hibernate.current_session_context_class", "thread")
+            .build();
+
+    private AccountRepository accountRepository;
+
+    private HibernateTransferEngine transferEngine;
+
+    private AccountsService accountsService;
+
+    private DAOHelper<Account> accountDAOHelper;
+
+    private Account createAccount(final Long id, final String uuid, final String amount) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(GBP);
+        account.setTotalAmount(new BigDecimal(amount));
+        account.setIbanNumber("GB40REVO60161331926819");
+        account.setCustomerId(12345);
+
+        return account;
+    }
+
+    private static TransferRequest createRequest(final String beneficiaryAccountUUID, final String amount) {
+        final TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setBeneficiaryAccountId(beneficiaryAccountUUID);
+        transferRequest.setAmount(new Amount(new BigDecimal(amount), GBP));
+
+        return transferRequest;
+    }
+
+    private static BatchTransferItem createBatchItem(final String debtorAccountUUID, final TransferRequest transferRequest) {
+        final BatchTransferItem item = new BatchTransferItem();
+        item.setDebtorAccountId(debtorAccountUUID);
+        item.setBeneficiaryAccountId(transferRequest.getBeneficiaryAccountId());
+        item.setAmount(transferRequest.getAmount());
+
+        return item;
+    }
+
+    private List<Long> slotAmounts() {
+        return database.inTransaction(() -> accountDAOHelper.getSession()
+                .createQuery("SELECT s FROM BalanceSlot s WHERE s.accountId = 1 ORDER BY s.slot", BalanceSlot.class)
+                .list()
+                .stream()
+                .map(BalanceSlot::getAmountMinorUnits)
+                .collect(Collectors.toList()));
+    }
+
+    private BigDecimal totalAmount(final String uuid) {
+        return database.inTransaction(() -> accountsService.getDetailsByAccountUUID(uuid).getTotalAmount());
+    }
+
+    @Before
+    public void setUp() {
+        accountRepository = new AccountRepository(database.getSessionFactory());
+        accountDAOHelper = new DAOHelper<>(database.getSessionFactory());
+        final TransactionRepository transactionRepository = new TransactionRepository(database.getSessionFactory());
+        final TransferMetrics transferMetrics = new TransferMetrics(new MetricRegistry(), database.getSessionFactory());
+        transferEngine = new HibernateTransferEngine(accountRepository, transactionRepository, transferMetrics);
+
+        accountsService = new AccountsService(accountRepository, transactionRepository, transferEngine,
+                new AccountCache(new ApplicationConfig(), new MetricRegistry(), database.getSessionFactory()),
+                new IdempotencyService(new IdempotencyIndex(new CacheConfig(100, Duration.minutes(1)), new MetricRegistry()),
+                        new TransferRequestRepository(database.getSessionFactory()), Mockito.mock(UnitOfWorkRunner.class), Jackson.newObjectMapper()),
+                new HotAccountDetector(new AdaptiveConfig(), false, new MetricRegistry()),
+                new SplitAccountIndex(accountRepository, Mockito.mock(UnitOfWorkRunner.class), database.getSessionFactory()), transferMetrics);
+
+        database.inTransaction(() -> {
+            accountDAOHelper.getSession().save(createAccount(1L, SPLIT_ACCOUNT, "100.05"));
+            accountDAOHelper.getSession().save(createAccount(2L, OTHER_ACCOUNT, "1000.00"));
+        });
+    }
+
+    @Test
+    public void splitAccount_BalanceSpreadAcrossSlots_Test() {
+        final Account account = database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 4));
+
+        Assertions.assertThat(account.getBalanceSlots()).isEqualTo(4);
+        Assertions.assertThat(account.getTotalAmount()).isEqualByComparingTo("100.05");
+        Assertions.assertThat(slotAmounts()).containsExactly(2502L, 2501L, 2501L, 2501L);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("100.05");
+
+        // Split again: the balance is gathered from the slots
+        database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 2));
+        Assertions.assertThat(slotAmounts()).containsExactly(5003L, 5002L);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("100.05");
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 1)));
+    }
+
+    @Test
+    public void transferAmount_SlotsCreditedAndDebited_Test() {
+        database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 4));
+
+        final TransferResult credit = database.inTransaction(() -> accountsService.transferAmount(OTHER_ACCOUNT, createRequest(SPLIT_ACCOUNT, "10.00")));
+        Assertions.assertThat(credit.getDebtorAccount().getTotalAmount()).isEqualByComparingTo("990.00");
+        Assertions.assertThat(slotAmounts().stream().mapToLong(Long::longValue).sum()).isEqualTo(11005L);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("110.05");
+
+        final TransferResult debit = database.inTransaction(() -> accountsService.transferAmount(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "20.00")));
+        // The total of a split account is not known without reading all its slots
+        Assertions.assertThat(debit.getDebtorAccount().getTotalAmount()).isNull();
+        Assertions.assertThat(debit.getTransactions()).hasSize(2);
+        Assertions.assertThat(slotAmounts()).allMatch(amount -> amount >= 0);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("90.05");
+        Assertions.assertThat(totalAmount(OTHER_ACCOUNT)).isEqualByComparingTo("1010.00");
+    }
+
+    @Test
+    public void transferAmount_SlotsRebalancedWhenNoSlotHasEnoughFunds_Test() {
+        database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 4));
+
+        // No slot has 90.00 on its own, all of them together do
+        database.inTransaction(() -> accountsService.transferAmount(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "90.00")));
+
+        Assertions.assertThat(slotAmounts()).containsExactly(252L, 251L, 251L, 251L);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("10.05");
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> database.inTransaction(() -> accountsService.transferAmount(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "10.06"))));
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("10.05");
+    }
+
+    @Test
+    public void transferAmounts_BatchOnSplitAccount_Test() {
+        database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 4));
+
+        final List<BatchItemResult> results = database.inTransaction(() -> accountsService.transferAmounts(Arrays.asList(
+                createBatchItem(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "60.00")),
+                createBatchItem(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "60.00")),
+                createBatchItem(OTHER_ACCOUNT, createRequest(SPLIT_ACCOUNT, "5.00"))), BatchMode.BEST_EFFORT));
+
+        Assertions.assertThat(results).extracting(BatchItemResult::isApplied).containsExactly(true, false, true);
+        Assertions.assertThat(results.get(0).getTransferResult().getDebtorAccount().getTotalAmount()).isEqualByComparingTo("40.05");
+        Assertions.assertThat(slotAmounts()).containsExactly(1127L, 1126L, 1126L, 1126L);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo("45.05");
+    }
+
+    /**
+     * Transfers in both directions between two split accounts at the same time, most of them rebalancing the slots of
+     * the debtor: none of them fails on the locks of the other, and no money is created or lost.
+     */
+    @Test
+    public void transferAmount_OppositeTransfersBetweenSplitAccounts_Test() throws Exception {
+        database.inTransaction(() -> {
+            accountsService.splitAccount(SPLIT_ACCOUNT, 4);
+            accountsService.splitAccount(OTHER_ACCOUNT, 4);
+        });
+
+        final int transfers = 32;
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<Long>> results = new ArrayList<>();
+        for (int index = 0; index < transfers; index++) {
+            final boolean fromSplit = index % 2 == 0;
+            results.add(executor.submit(() -> {
+                // More than a slot of the debtor has on its own: the debits rebalance the slots, unless enough credits went to one
+                final TransferRequest transferRequest = fromSplit ? createRequest(OTHER_ACCOUNT, "30.00") : createRequest(SPLIT_ACCOUNT, "260.00");
+                for (int attempt = 0; attempt < 50; attempt++) {
+                    try {
+                        database.inTransaction(() -> accountsService.transferAmount(fromSplit ? SPLIT_ACCOUNT : OTHER_ACCOUNT, transferRequest));
+                        return fromSplit ? -3000L : 26000L;
+                    } catch (final FundsNotEnoughException e) {
+                        return 0L;
+                    } catch (final ConcurrentUpdateException e) {
+                        // Retried, as by the TransferRetry
+                    }
+                }
+                throw new IllegalStateException("Transfer still conflicting after 50 attempts");
+            }));
+        }
+        executor.shutdown();
+        Assertions.assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        long splitBalance = 10005L;
+        for (final Future<Long> result : results) {
+            // A lock timeout or a deadlock would fail here
+            splitBalance += result.get();
+        }
+
+        Assertions.assertThat(slotAmounts()).allMatch(amount -> amount >= 0);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo(BigDecimal.valueOf(splitBalance, 2));
+        Assertions.assertThat(totalAmount(OTHER_ACCOUNT)).isEqualByComparingTo(BigDecimal.valueOf(100000L + 10005L - splitBalance, 2));
+    }
+
+    /**
+     * Many debits and credits of the split account at the same time: the debits applied never exceed the funds, no slot
+     * goes below zero and no money is created or lost.
+     */
+    @Test
+    public void transferAmount_ConcurrentDebitsNeverOverdraw_Test() throws Exception {
+        database.inTransaction(() -> accountsService.splitAccount(SPLIT_ACCOUNT, 4));
+
+        final int debits = 24;
+        final int credits = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<Boolean>> debitResults = new ArrayList<>();
+        final List<Future<Boolean>> creditResults = new ArrayList<>();
+        for (int index = 0; index < debits + credits; index++) {
+            final boolean debit = index % 4 != 0;
+            final Callable<Boolean> transfer = () -> {
+                try {
+                    database.inTransaction(() -> debit
+                            ? accountsService.transferAmount(SPLIT_ACCOUNT, createRequest(OTHER_ACCOUNT, "7.00"))
+                            : accountsService.transferAmount(OTHER_ACCOUNT, createRequest(SPLIT_ACCOUNT, "1.00")));
+                    return true;
+                } catch (final WebApplicationException e) {
+                    // Not enough funds, or the slots locked for too long
+                    return false;
+                }
+            };
+            (debit ? debitResults : creditResults).add(executor.submit(transfer));
+        }
+        executor.shutdown();
+        Assertions.assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        long appliedDebits = 0;
+        for (final Future<Boolean> result : debitResults) {
+            appliedDebits += result.get() ? 1 : 0;
+        }
+        long appliedCredits = 0;
+        for (final Future<Boolean> result : creditResults) {
+            appliedCredits += result.get() ? 1 : 0;
+        }
+
+        final long splitBalance = 10005L - appliedDebits * 700L + appliedCredits * 100L;
+        Assertions.assertThat(appliedDebits).isPositive();
+        Assertions.assertThat(splitBalance).isNotNegative();
+        Assertions.assertThat(slotAmounts()).allMatch(amount -> amount >= 0);
+        Assertions.assertThat(totalAmount(SPLIT_ACCOUNT)).isEqualByComparingTo(BigDecimal.valueOf(splitBalance, 2));
+        Assertions.assertThat(totalAmount(OTHER_ACCOUNT)).isEqualByComparingTo(BigDecimal.valueOf(100000L + 10005L - splitBalance, 2));
+    }
+}
@@ -0,0 +1,435 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import eu.davidemartorana.banking.accounts.config.AsyncConfig;
+import eu.davidemartorana.banking.accounts.dao.TransferJobRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Amount;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJob;
+import eu.davidemartorana.banking.accounts.domain.internal.TransferJobStatus;
+import eu.davidemartorana.banking.accounts.exceptions.DuplicateTransferRequestException;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.jobs.TransferJobCallback;
+import eu.davidemartorana.banking.accounts.jobs.TransferJobQueue;
+import eu.davidemartorana.banking.accounts.rest.representation.AsyncTransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferJobResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import eu.davidemartorana.banking.accounts.services.IdempotencyService;
+import eu.davidemartorana.banking.accounts.services.TransferExecutor;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link TransferJobQueue} and {@link TransferJobCallback}
+ */
+public class TransferJobQueueTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private static final String DEBTOR_ACCOUNT = "8b1a8f1c-1b0e-4b8e-9c53-5c1f1e7f3a01";
+
+    private static final String BENEFICIARY_ACCOUNT = "0f4e3c2b-7d6a-4f1e-8a9b-2c3d4e5f6a02";
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(TransferJob.class)
+            .setProperty("hibernate.current_session_context_class", "thread")
+            .build();
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private TransferJobRepository transferJobRepository;
+
+    private TransferExecutor transferExecutorMock;
+
+    private IdempotencyService idempotencyServiceMock;
+
+    private TransferJobCallback callbackMock;
+
+    private AsyncConfig asyncConfig;
+
+    private MetricRegistry metricRegistry;
+
+    private TransferJobQueue transferJobQueue;
+
+    private static AsyncTransferRequest createRequest(final String value) {
+        final AsyncTransferRequest transferRequest = new AsyncTransferRequest();
+        transferRequest.setBeneficiaryAccountId(BENEFICIARY_ACCOUNT);
+        transferRequest.setAmount(new Amount(new BigDecimal(value), GBP));
+
+        return transferRequest;
+    }
+
+    private static TransferResult createResult(final TransferRequest transferRequest) {
+        final Account debtorAccount = new Account();
+        debtorAccount.setId(1L);
+        debtorAccount.setUuid(DEBTOR_ACCOUNT);
+        debtorAccount.setCurrency(GBP);
+        debtorAccount.setTotalAmountMinorUnits(5000L);
+        final Account beneficiaryAccount = new Account();
+        beneficiaryAccount.setId(2L);
+        beneficiaryAccount.setUuid(BENEFICIARY_ACCOUNT);
+        beneficiaryAccount.setCurrency(GBP);
+
+        final Money money = transferRequest.getAmount().toMoney();
+        final TransferResult result = new TransferResult();
+        result.setDebtorAccount(debtorAccount);
+        result.setBeneficiaryAccount(beneficiaryAccount);
+        result.addTransaction(Transaction.create(money, debtorAccount, TransactionType.DEBIT, DateTime.now()));
+        result.addTransaction(Transaction.create(money, beneficiaryAccount, TransactionType.CREDIT, DateTime.now()));
+
+        return result;
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        transferJobRepository = new TransferJobRepository(database.getSessionFactory());
+        transferExecutorMock = Mockito.mock(TransferExecutor.class);
+        Mockito.when(transferExecutorMock.execute(Mockito.anyString(), Mockito.any(TransferRequest.class)))
+                .thenAnswer(invocation -> createResult(invocation.getArgument(1)));
+        idempotencyServiceMock = Mockito.mock(IdempotencyService.class);
+        Mockito.when(idempotencyServiceMock.execute(Mockito.anyString(), Mockito.anyString(), Mockito.any(TransferRequest.class), Mockito.any(Supplier.class)))
+                .thenAnswer(invocation -> TransferResponse.of(((Supplier<TransferResult>) invocation.getArgument(3)).get()));
+        callbackMock = Mockito.mock(TransferJobCallback.class);
+
+        final UnitOfWorkRunner unitOfWorkRunnerMock = Mockito.mock(UnitOfWorkRunner.class);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.any(Supplier.class)))
+                .thenAnswer(invocation -> database.inTransaction(() -> ((Supplier<Object>) invocation.getArgument(0)).get()));
+        Mockito.doAnswer(invocation -> {
+            database.inTransaction((Runnable) invocation.getArgument(0));
+            return null;
+        }).when(unitOfWorkRunnerMock).inUnitOfWork(Mockito.any(Runnable.class));
+
+        asyncConfig = new AsyncConfig();
+        asyncConfig.setWorkers(1);
+        asyncConfig.setRetryBackoff(Duration.milliseconds(10));
+        metricRegistry = new MetricRegistry();
+        transferJobQueue = new TransferJobQueue(transferJobRepository, transferExecutorMock, idempotencyServiceMock,
+                unitOfWorkRunnerMock, callbackMock, asyncConfig, metricRegistry, objectMapper);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transferJobQueue.stop();
+    }
+
+    private TransferJobResponse awaitCompletion(final String id) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        TransferJobResponse response = database.inTransaction(() -> transferJobQueue.find(id).get());
+        while (response.getStatus() == TransferJobStatus.PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            response = database.inTransaction(() -> transferJobQueue.find(id).get());
+        }
+
+        return response;
+    }
+
+    @Test
+    public void submit_TransferExecutedByWorker_Test() throws Exception {
+        transferJobQueue.start();
+        final AsyncTransferRequest transferRequest = createRequest("10.50");
+        transferRequest.setCallbackUrl("http://localhost/callback");
+
+        final TransferJobResponse accepted = transferJobQueue.submit(DEBTOR_ACCOUNT, transferRequest);
+        Assertions.assertThat(accepted.getStatus()).isEqualTo(TransferJobStatus.PENDING);
+        Assertions.assertThat(accepted.getTransfer()).isNull();
+
+        final TransferJobResponse completed = awaitCompletion(accepted.getId());
+        Assertions.assertThat(completed.getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(completed.getResponseStatus()).isEqualTo(200);
+        Assertions.assertThat(completed.getCompletedDateTime()).isNotNull();
+        Assertions.assertThat(completed.getAmount().getValue()).isEqualByComparingTo("10.50");
+        Assertions.assertThat(completed.getTransfer().getTransactions())
+                .extracting(Transaction::getType)
+                .containsExactly("DEBIT", "CREDIT");
+
+        // Executed with a key of its own, so it is not applied twice if executed again after a restart
+        Mockito.verify(idempotencyServiceMock).execute(Mockito.eq(TransferJobQueue.JOB_KEY_PREFIX + accepted.getId()),
+                Mockito.eq(DEBTOR_ACCOUNT), Mockito.any(TransferRequest.class), Mockito.any());
+        final ArgumentCaptor<TransferJobResponse> notified = ArgumentCaptor.forClass(TransferJobResponse.class);
+        Mockito.verify(callbackMock, Mockito.timeout(1000)).notify(Mockito.eq("http://localhost/callback"), notified.capture());
+        Assertions.assertThat(notified.getValue().getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.completed").getCount()).isEqualTo(1);
+        Assertions.assertThat(metricRegistry.timer("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.wait").getCount()).isEqualTo(1);
+    }
+
+    /**
+     * A slow callback URL does not hold up the transfers queued after its job.
+     */
+    @Test
+    public void complete_SlowCallback_NotHoldingUpTheWorkers_Test() throws Exception {
+        final CountDownLatch notifying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            notifying.countDown();
+            release.await();
+            return null;
+        }).when(callbackMock).notify(Mockito.anyString(), Mockito.any(TransferJobResponse.class));
+        transferJobQueue.start();
+
+        try {
+            final AsyncTransferRequest first = createRequest("1.00");
+            first.setCallbackUrl("http://localhost/callback");
+            Assertions.assertThat(awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, first).getId()).getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+            Assertions.assertThat(notifying.await(5, TimeUnit.SECONDS)).isTrue();
+
+            final TransferJobResponse second = awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("2.00")).getId());
+            Assertions.assertThat(second.getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        } finally {
+            release.countDown();
+        }
+        Mockito.verify(callbackMock, Mockito.timeout(1000)).notify(Mockito.eq("http://localhost/callback"), Mockito.any(TransferJobResponse.class));
+    }
+
+    @Test
+    public void submit_TransferRejected_Test() throws Exception {
+        Mockito.when(transferExecutorMock.execute(Mockito.anyString(), Mockito.any(TransferRequest.class)))
+                .thenThrow(new FundsNotEnoughException("Fund not enough for amount: 1000.00"));
+        transferJobQueue.start();
+
+        final TransferJobResponse failed = awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("1000.00")).getId());
+
+        Assertions.assertThat(failed.getStatus()).isEqualTo(TransferJobStatus.FAILED);
+        Assertions.assertThat(failed.getResponseStatus()).isEqualTo(409);
+        Assertions.assertThat(failed.getMessage()).isEqualTo("Fund not enough for amount: 1000.00");
+        Assertions.assertThat(failed.getTransfer()).isNull();
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.failed").getCount()).isEqualTo(1);
+        Mockito.verifyZeroInteractions(callbackMock);
+    }
+
+    /**
+     * The jobs left pending by a previous run are executed at start-up, with the key sent by the client if any.
+     */
+    @Test
+    public void start_PendingJobsExecutedAgain_Test() throws Exception {
+        final TransferJob pending = TransferJob.create(DEBTOR_ACCOUNT, BENEFICIARY_ACCOUNT, Money.of(new BigDecimal("5.00"), GBP), "client-key", null);
+        final TransferJob completed = TransferJob.create(DEBTOR_ACCOUNT, BENEFICIARY_ACCOUNT, Money.of(new BigDecimal("6.00"), GBP), null, null);
+        completed.setStatus(TransferJobStatus.COMPLETED);
+        database.inTransaction(() -> {
+            transferJobRepository.insert(pending);
+            transferJobRepository.insert(completed);
+        });
+
+        transferJobQueue.start();
+
+        Assertions.assertThat(awaitCompletion(pending.getId()).getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Mockito.verify(idempotencyServiceMock).execute(Mockito.eq("client-key"), Mockito.eq(DEBTOR_ACCOUNT), Mockito.any(TransferRequest.class), Mockito.any());
+        Mockito.verifyNoMoreInteractions(idempotencyServiceMock);
+    }
+
+    @Test
+    public void submit_InvalidAccounts_Test() {
+        transferJobQueue.start();
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transferJobQueue.submit("unknown", createRequest("1.00")));
+        // As long as a UUID, but not one
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transferJobQueue.submit("8b1a8f1c-1b0e-4b8e-9c53-5c1f1e7f3a0z", createRequest("1.00")));
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transferJobQueue.submit("1-1-1-1-1", createRequest("1.00")));
+
+        final AsyncTransferRequest invalidBeneficiary = createRequest("1.00");
+        invalidBeneficiary.setBeneficiaryAccountId("0f4e3c2b+7d6a+4f1e+8a9b+2c3d4e5f6a02");
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transferJobQueue.submit(DEBTOR_ACCOUNT, invalidBeneficiary));
+
+        final AsyncTransferRequest withoutBeneficiary = createRequest("1.00");
+        withoutBeneficiary.setBeneficiaryAccountId(null);
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> transferJobQueue.submit(DEBTOR_ACCOUNT, withoutBeneficiary));
+
+        Assertions.assertThat(database.inTransaction(transferJobRepository::findPending)).isEmpty();
+    }
+
+    /**
+     * A job failing unexpectedly is executed again after a backoff, and marked failed once out of attempts.
+     */
+    @Test
+    public void execute_UnexpectedFailure_RetriedThenFailed_Test() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        Mockito.when(transferExecutorMock.execute(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Database unavailable");
+        });
+        asyncConfig.setMaxAttempts(3);
+        transferJobQueue.start();
+
+        final TransferJobResponse failed = awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("1.00")).getId());
+
+        Assertions.assertThat(failed.getStatus()).isEqualTo(TransferJobStatus.FAILED);
+        Assertions.assertThat(failed.getResponseStatus()).isEqualTo(500);
+        Assertions.assertThat(attempts.get()).isEqualTo(3);
+        transferJobQueue.stop();
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.failed").getCount()).isEqualTo(1);
+    }
+
+    /**
+     * A job rejected by a busy executor waits for the backoff before being executed again.
+     */
+    @Test
+    public void execute_ExecutorBusy_QueuedAgainAfterBackoff_Test() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        Mockito.when(transferExecutorMock.execute(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new ServiceUnavailableException("Too many transfers in progress.");
+            }
+            return createResult(invocation.getArgument(1));
+        });
+        asyncConfig.setRetryBackoff(Duration.milliseconds(200));
+        transferJobQueue.start();
+
+        final long start = System.nanoTime();
+        final TransferJobResponse completed = awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("1.00")).getId());
+
+        Assertions.assertThat(completed.getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(attempts.get()).isEqualTo(2);
+        Assertions.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(200L);
+    }
+
+    /**
+     * A job sharing its key with a transfer still in progress waits for it, and completes with its response.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void execute_SameKeyInProgress_QueuedAgain_Test() throws Exception {
+        Mockito.when(idempotencyServiceMock.execute(Mockito.anyString(), Mockito.anyString(), Mockito.any(TransferRequest.class), Mockito.any(Supplier.class)))
+                .thenThrow(new DuplicateTransferRequestException("A transfer with the same Idempotency-Key is in progress. Please try later."))
+                .thenAnswer(invocation -> TransferResponse.of(createResult(invocation.getArgument(2))));
+        transferJobQueue.start();
+
+        final AsyncTransferRequest transferRequest = createRequest("1.00");
+        transferRequest.setIdempotencyKey("client-key");
+        final TransferJobResponse completed = awaitCompletion(transferJobQueue.submit(DEBTOR_ACCOUNT, transferRequest).getId());
+
+        Assertions.assertThat(completed.getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(completed.getResponseStatus()).isEqualTo(200);
+        Mockito.verify(idempotencyServiceMock, Mockito.times(2)).execute(Mockito.eq("client-key"), Mockito.eq(DEBTOR_ACCOUNT), Mockito.any(TransferRequest.class), Mockito.any());
+    }
+
+    @Test
+    public void submit_QueueFull_Test() throws Exception {
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("1.00")));
+
+        final CountDownLatch executing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(transferExecutorMock.execute(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await();
+            return createResult(invocation.getArgument(1));
+        });
+        asyncConfig.setQueueCapacity(1);
+        transferJobQueue.start();
+
+        final String first = transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("1.00")).getId();
+        Assertions.assertThat(executing.await(5, TimeUnit.SECONDS)).isTrue();
+        final String second = transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("2.00")).getId();
+
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transferJobQueue.submit(DEBTOR_ACCOUNT, createRequest("3.00")));
+        Assertions.assertThat(metricRegistry.getGauges().get("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.queue-depth").getValue()).isEqualTo(1);
+        Assertions.assertThat((Long) metricRegistry.getGauges().get("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.queue-age").getValue()).isNotNegative();
+        Assertions.assertThat(metricRegistry.meter("eu.davidemartorana.banking.accounts.jobs.TransferJobQueue.rejected").getCount()).isEqualTo(1);
+
+        release.countDown();
+        Assertions.assertThat(awaitCompletion(first).getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+        Assertions.assertThat(awaitCompletion(second).getStatus()).isEqualTo(TransferJobStatus.COMPLETED);
+    }
+
+    @Test
+    public void notify_PostsTheStatus_Test() throws Exception {
+        final AtomicReference<String> received = new AtomicReference<>();
+        final AtomicReference<String> host = new AtomicReference<>();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/callback", exchange -> {
+            host.set(exchange.getRequestHeaders().getFirst("Host"));
+            try (InputStream input = exchange.getRequestBody()) {
+                received.set(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/failing", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            asyncConfig.setCallbackTimeout(Duration.seconds(1));
+            asyncConfig.setCallbackHosts(Collections.singleton("localhost"));
+            asyncConfig.setPrivateCallbackAddresses(true);
+            final TransferJobCallback callback = new TransferJobCallback(objectMapper, asyncConfig);
+            final TransferJob job = TransferJob.create(DEBTOR_ACCOUNT, BENEFICIARY_ACCOUNT, Money.of(new BigDecimal("5.00"), GBP), null, null);
+            final String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+            callback.notify(baseUrl + "/callback", TransferJobResponse.of(job, null));
+
+            final JsonNode json = objectMapper.readTree(received.get());
+            Assertions.assertThat(json.get("id").asText()).isEqualTo(job.getId());
+            Assertions.assertThat(json.get("status").asText()).isEqualTo("PENDING");
+            Assertions.assertThat(json.has("transfer")).isFalse();
+            // Connected to the address resolved, but still addressed to the host
+            Assertions.assertThat(host.get()).isEqualTo("localhost:" + server.getAddress().getPort());
+
+            Assertions.assertThatExceptionOfType(IOException.class)
+                    .isThrownBy(() -> callback.notify(baseUrl + "/failing", TransferJobResponse.of(job, null)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * The callbacks only reach the configured hosts, and not the private addresses unless allowed.
+     */
+    @Test
+    public void notify_HostNotAllowed_Test() {
+        asyncConfig.setCallbackHosts(Collections.singleton("localhost"));
+        final TransferJobCallback callback = new TransferJobCallback(objectMapper, asyncConfig);
+        final TransferJob job = TransferJob.create(DEBTOR_ACCOUNT, BENEFICIARY_ACCOUNT, Money.of(new BigDecimal("5.00"), GBP), null, null);
+
+        callback.checkUrl("http://LOCALHOST:8080/callback");
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> callback.checkUrl("http://169.254.169.254/latest/meta-data"));
+        Assertions.assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> callback.notify("http://169.254.169.254/latest/meta-data", TransferJobResponse.of(job, null)))
+                .withMessageContaining("not allowed");
+        Assertions.assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> callback.notify("http://localhost:8080/callback", TransferJobResponse.of(job, null)))
+                .withMessageContaining("private address");
+    }
+}
@@ -0,0 +1,145 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import eu.davidemartorana.banking.accounts.domain.BatchItemResult;
+import eu.davidemartorana.banking.accounts.domain.BatchMode;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.rest.json.TransferJsonModule;
+import eu.davidemartorana.banking.accounts.rest.representation.BatchTransferResponse;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferResponse;
+import io.dropwizard.jackson.Jackson;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import javax.ws.rs.NotAcceptableException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.TimeZone;
+
+/**
+ * Test for class {@link TransferJsonModule}: the streaming codec must read and write the same JSON of the bean
+ * serializers, byte for byte.
+ */
+public class TransferJsonCodecTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private final ObjectMapper reflection = Jackson.newObjectMapper();
+
+    private final ObjectMapper streaming = Jackson.newObjectMapper().registerModule(new TransferJsonModule());
+
+    private static Account createAccount(final String uuid, final long totalAmount) {
+        final Account account = new Account();
+        account.setId(1L);
+        account.setUuid(uuid);
+        account.setIbanNumber("GB40REVO60161331926819");
+        account.setCurrency(GBP);
+        account.setTotalAmountMinorUnits(totalAmount);
+
+        return account;
+    }
+
+    private static TransferResult createResult(final long amount, final DateTime dateTime) {
+        final Account debtorAccount = createAccount("7f9adf98-93fb-4868-8cd8-cfe0f53628c1", 2000L);
+        final Account beneficiaryAccount = createAccount("85216e45-8dd1-41d7-a890-3cf71acd2630", 12000L);
+
+        final TransferResult result = new TransferResult();
+        result.setDebtorAccount(debtorAccount);
+        result.setBeneficiaryAccount(beneficiaryAccount);
+        result.addTransaction(Transaction.create(Money.ofMinorUnits(amount, GBP), debtorAccount, TransactionType.DEBIT, dateTime));
+        result.addTransaction(Transaction.create(Money.ofMinorUnits(amount, GBP), beneficiaryAccount, TransactionType.CREDIT, dateTime));
+
+        return result;
+    }
+
+    private void assertSameJson(final Object value) throws Exception {
+        final String expected = reflection.writeValueAsString(value);
+
+        Assertions.assertThat(streaming.writeValueAsString(value)).isEqualTo(expected);
+        Assertions.assertThat(new String(streaming.writeValueAsBytes(value), "UTF-8")).isEqualTo(expected);
+    }
+
+    @Test
+    public void serialize_SameJsonOfTheBeanSerializers_Test() throws Exception {
+        final DateTime dateTime = new DateTime(2019, 5, 6, 21, 16, 14, DateTimeZone.UTC);
+
+        assertSameJson(TransferResponse.of(createResult(10000L, dateTime)));
+        assertSameJson(TransferResponse.of(createResult(1L, dateTime.withZone(DateTimeZone.forID("Europe/Rome")))));
+        assertSameJson(TransferResponse.of(createResult(Long.MAX_VALUE, dateTime)));
+        assertSameJson(TransferResponse.of(createResult(-Long.MAX_VALUE - 1, dateTime)));
+
+        final TransferResult failed = createResult(100L, null);
+        failed.getDebtorAccount().setTotalAmountMinorUnits(null);
+        failed.getBeneficiaryAccount().setCurrency(null);
+        failed.getTransactions().get(0).setCurrency(null);
+        assertSameJson(TransferResponse.of(failed));
+
+        final TransferResponse empty = new TransferResponse();
+        empty.setTransactions(Collections.singletonList(new Transaction()));
+        assertSameJson(empty);
+        assertSameJson(new TransferResponse());
+
+        assertSameJson(BatchTransferResponse.of(BatchMode.BEST_EFFORT, Arrays.asList(
+                BatchItemResult.applied(0, createResult(150L, dateTime)),
+                BatchItemResult.failed(1, new NotAcceptableException("Insufficient funds.")))));
+    }
+
+    @Test
+    public void serialize_DatesInTheTimeZoneOfTheMapper_Test() throws Exception {
+        reflection.setTimeZone(TimeZone.getTimeZone("Europe/Rome"));
+        streaming.setTimeZone(TimeZone.getTimeZone("Europe/Rome"));
+
+        assertSameJson(TransferResponse.of(createResult(10000L, new DateTime(2019, 5, 6, 21, 16, 14, DateTimeZone.UTC))));
+    }
+
+    @Test
+    public void deserialize_SameRequestOfTheBeanDeserializers_Test() throws Exception {
+        final String[] documents = {
+                "{\"amount\":{\"value\":100.50,\"currency\":\"GBP\"},\"beneficiaryAccountId\":\"85216e45-8dd1-41d7-a890-3cf71acd2630\"}",
+                "{\"beneficiaryAccountId\":\"85216e45\",\"amount\":{\"currency\":\"GBP\",\"value\":1E+3}}",
+                "{\"amount\":{\"value\":\"25\",\"currency\":\"GBP\"},\"beneficiaryAccountId\":12}",
+                "{\"amount\":{\"value\":null,\"currency\":null},\"beneficiaryAccountId\":null}",
+                "{\"amount\":null}",
+                "{\"idempotencyKey\":\"key-1\",\"beneficiaryAccountId\":\"85216e45\"}",
+                "{}"
+        };
+
+        for (final String document : documents) {
+            final TransferRequest expected = reflection.readValue(document, TransferRequest.class);
+            final TransferRequest request = streaming.readValue(document, TransferRequest.class);
+
+            Assertions.assertThat(request.getBeneficiaryAccountId()).as(document).isEqualTo(expected.getBeneficiaryAccountId());
+            Assertions.assertThat(request.getIdempotencyKey()).as(document).isNull();
+            if (expected.getAmount() == null) {
+                Assertions.assertThat(request.getAmount()).as(document).isNull();
+            } else {
+                Assertions.assertThat(request.getAmount()).as(document).isEqualToComparingFieldByField(expected.getAmount());
+            }
+        }
+    }
+
+    @Test
+    public void deserialize_SameErrorsOfTheBeanDeserializers_Test() {
+        Assertions.assertThatExceptionOfType(UnrecognizedPropertyException.class)
+                .isThrownBy(() -> streaming.readValue("{\"amount\":{\"value\":1,\"currency\":\"GBP\"},\"debtor\":\"x\"}", TransferRequest.class));
+        Assertions.assertThatExceptionOfType(UnrecognizedPropertyException.class)
+                .isThrownBy(() -> streaming.readValue("{\"amount\":{\"value\":1,\"cents\":100}}", TransferRequest.class));
+        Assertions.assertThatExceptionOfType(InvalidFormatException.class)
+                .isThrownBy(() -> streaming.readValue("{\"amount\":{\"value\":1,\"currency\":\"POUND\"}}", TransferRequest.class));
+        Assertions.assertThatExceptionOfType(InvalidFormatException.class)
+                .isThrownBy(() -> streaming.readValue("{\"amount\":{\"value\":\"ten\",\"currency\":\"GBP\"}}", TransferRequest.class));
+        Assertions.assertThatExceptionOfType(MismatchedInputException.class)
+                .isThrownBy(() -> streaming.readValue("[]", TransferRequest.class));
+    }
+}
@@ -0,0 +1,96 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import eu.davidemartorana.banking.accounts.services.TransferMetrics;
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for class {@link TransferMetrics}
+ */
+public class TransferMetricsTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private SessionFactory sessionFactoryMock;
+
+    private MetricRegistry metricRegistry;
+
+    private TransferMetrics transferMetrics;
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        metricRegistry = new MetricRegistry();
+        transferMetrics = new TransferMetrics(metricRegistry, sessionFactoryMock);
+    }
+
+    @Test
+    public void metrics_Registered_Test() {
+        Assertions.assertThat(metricRegistry.getTimers().keySet()).containsExactlyInAnyOrder(
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.lookup",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.lock-debtor",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.lock-beneficiary",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.balance-update",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.transaction-insert",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.commit",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.serialization");
+        Assertions.assertThat(metricRegistry.getCounters().keySet()).containsExactlyInAnyOrder(
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.failures.not-found",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.failures.currency-mismatch",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.failures.insufficient-funds",
+                "eu.davidemartorana.banking.accounts.services.TransferMetrics.failures.lock-conflict");
+
+        // A second instance on the same registry shares the metrics
+        new TransferMetrics(metricRegistry, sessionFactoryMock).failed(TransferMetrics.Failure.NOT_FOUND);
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.NOT_FOUND).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void record_Test() {
+        transferMetrics.record(TransferMetrics.Phase.LOOKUP, TimeUnit.MILLISECONDS.toNanos(3));
+        transferMetrics.record(TransferMetrics.Phase.LOOKUP, TimeUnit.MILLISECONDS.toNanos(5));
+        transferMetrics.failed(TransferMetrics.Failure.LOCK_CONFLICT);
+
+        // Within the 3 significant digits of the histogram
+        final Snapshot snapshot = transferMetrics.getTimer(TransferMetrics.Phase.LOOKUP).getSnapshot();
+        Assertions.assertThat(snapshot.size()).isEqualTo(2);
+        Assertions.assertThat(snapshot.getMin()).isCloseTo(TimeUnit.MILLISECONDS.toNanos(3), Assertions.withinPercentage(0.1));
+        Assertions.assertThat(snapshot.getMax()).isCloseTo(TimeUnit.MILLISECONDS.toNanos(5), Assertions.withinPercentage(0.1));
+        Assertions.assertThat(snapshot.getValues()).hasSize(2);
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.COMMIT).getCount()).isZero();
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.LOCK_CONFLICT).getCount()).isEqualTo(1);
+        Assertions.assertThat(transferMetrics.getFailures(TransferMetrics.Failure.INSUFFICIENT_FUNDS).getCount()).isZero();
+    }
+
+    @Test
+    public void timeCommitOfCurrentTransaction_Test() {
+        transferMetrics.timeCommitOfCurrentTransaction();
+        transferMetrics.timeCommitOfCurrentTransaction();
+
+        final ArgumentCaptor<Synchronization> synchronizationCaptor = ArgumentCaptor.forClass(Synchronization.class);
+        Mockito.verify(sessionFactoryMock.getCurrentSession().getTransaction(), Mockito.times(2)).registerSynchronization(synchronizationCaptor.capture());
+
+        final Synchronization committed = synchronizationCaptor.getAllValues().get(0);
+        committed.beforeCompletion();
+        committed.afterCompletion(Status.STATUS_COMMITTED);
+
+        // A rollback is not a commit
+        final Synchronization rolledBack = synchronizationCaptor.getAllValues().get(1);
+        rolledBack.beforeCompletion();
+        rolledBack.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        Assertions.assertThat(transferMetrics.getTimer(TransferMetrics.Phase.COMMIT).getCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,228 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.RetryConfig;
+import eu.davidemartorana.banking.accounts.config.TransferExecutionType;
+import eu.davidemartorana.banking.accounts.config.WaitStrategyType;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.TransferResult;
+import eu.davidemartorana.banking.accounts.exceptions.FundsNotEnoughException;
+import eu.davidemartorana.banking.accounts.pipeline.TransferPipeline;
+import eu.davidemartorana.banking.accounts.rest.representation.TransferRequest;
+import eu.davidemartorana.banking.accounts.services.AccountsService;
+import eu.davidemartorana.banking.accounts.services.TransferRetry;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Test for class {@link TransferPipeline}
+ */
+public class TransferPipelineTest {
+
+    @Mock
+    private AccountsService accountsServiceMock;
+
+    @Mock
+    private UnitOfWorkRunner unitOfWorkRunnerMock;
+
+    private ApplicationConfig applicationConfig;
+
+    private TransferPipeline transferPipeline;
+
+    @Before
+    public void beforeEachTest() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(unitOfWorkRunnerMock.inUnitOfWork(Mockito.<Supplier<Object>>any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        applicationConfig = new ApplicationConfig();
+        applicationConfig.getTransfers().setExecution(TransferExecutionType.PIPELINE);
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        if (transferPipeline != null) {
+            transferPipeline.stop();
+        }
+    }
+
+    private void startPipeline(final int ringSize, final WaitStrategyType waitStrategy) {
+        applicationConfig.getTransfers().getPipeline().setRingSize(ringSize);
+        applicationConfig.getTransfers().getPipeline().setWaitStrategy(waitStrategy);
+        applicationConfig.getTransfers().getPipeline().setPublishTimeout(Duration.milliseconds(50));
+
+        transferPipeline = new TransferPipeline(accountsServiceMock, new TransferRetry(unitOfWorkRunnerMock, new RetryConfig(), new MetricRegistry()), applicationConfig);
+        transferPipeline.start();
+    }
+
+    @Test
+    public void execute_SuccessFull_Test() {
+        startPipeline(8, WaitStrategyType.BLOCKING);
+
+        final TransferRequest transferRequest = new TransferRequest();
+        final TransferResult transferResult = new TransferResult();
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.eq("debtorAccountUUID"), Mockito.same(transferRequest))).thenReturn(transferResult);
+
+        Assertions.assertThat(transferPipeline.execute("debtorAccountUUID", transferRequest)).isSameAs(transferResult);
+        Mockito.verify(unitOfWorkRunnerMock, Mockito.times(1)).inUnitOfWork(Mockito.<Supplier<Object>>any());
+    }
+
+    @Test
+    public void execute_ExceptionPropagated_Test() {
+        startPipeline(8, WaitStrategyType.SLEEPING);
+
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class)))
+                .thenThrow(new FundsNotEnoughException("Fund not enough for amount: 10.00"));
+
+        Assertions.assertThatExceptionOfType(FundsNotEnoughException.class)
+                .isThrownBy(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()))
+                .withMessage("Fund not enough for amount: 10.00");
+    }
+
+    @Test
+    public void execute_NotStarted_Test() {
+        transferPipeline = new TransferPipeline(accountsServiceMock, new TransferRetry(unitOfWorkRunnerMock, new RetryConfig(), new MetricRegistry()), applicationConfig);
+
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()));
+    }
+
+    @Test
+    public void execute_RingFull_Test() throws Exception {
+        startPipeline(2, WaitStrategyType.BUSY_SPIN);
+
+        final CountDownLatch executing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await();
+            return new TransferResult();
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Future<TransferResult> first = executor.submit(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()));
+        Assertions.assertThat(executing.await(10, TimeUnit.SECONDS)).isTrue();
+        final Future<TransferResult> second = executor.submit(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()));
+        while (transferPipeline.pending() < 2) {
+            Thread.sleep(1);
+        }
+
+        // One transfer executing and one waiting: the ring is full
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()));
+
+        release.countDown();
+        Assertions.assertThat(first.get(10, TimeUnit.SECONDS)).isNotNull();
+        Assertions.assertThat(second.get(10, TimeUnit.SECONDS)).isNotNull();
+        executor.shutdown();
+    }
+
+    /**
+     * Many threads publish at the same time: the transfers are executed one at a time, and all of them complete.
+     */
+    @Test
+    public void execute_Concurrent_SingleWriter_Test() throws Exception {
+        startPipeline(16, WaitStrategyType.YIELDING);
+
+        final int threadsNumber = 8;
+        final int transfersPerThread = 500;
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+        final AtomicInteger executed = new AtomicInteger();
+
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            executed.incrementAndGet();
+            inProgress.decrementAndGet();
+            return new TransferResult();
+        });
+
+        applicationConfig.getTransfers().getPipeline().setPublishTimeout(Duration.seconds(10));
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            futureList.add(executor.submit(() -> {
+                for (int count = 0; count < transfersPerThread; count++) {
+                    Assertions.assertThat(transferPipeline.execute("debtorAccountUUID", new TransferRequest())).isNotNull();
+                }
+            }));
+        }
+
+        for (final Future<?> future : futureList) {
+            future.get(100, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertThat(executed.get()).isEqualTo(threadsNumber * transfersPerThread);
+        Assertions.assertThat(maxInProgress.get()).isEqualTo(1);
+        Assertions.assertThat(transferPipeline.pending()).isZero();
+    }
+
+    @Test
+    public void execute_Timeout_Test() throws Exception {
+        applicationConfig.getTransfers().setExecutionTimeout(Duration.milliseconds(100));
+        startPipeline(8, WaitStrategyType.BLOCKING);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenAnswer(invocation -> {
+            release.await();
+            return new TransferResult();
+        });
+
+        Assertions.assertThatExceptionOfType(ServiceUnavailableException.class)
+                .isThrownBy(() -> transferPipeline.execute("debtorAccountUUID", new TransferRequest()))
+                .withMessageContaining("may still be applied");
+        release.countDown();
+    }
+
+    /**
+     * Stopped while transfers are being published: every caller gets either the result or a 503, none waits forever.
+     */
+    @Test
+    public void stop_WhilePublishing_Test() throws Exception {
+        startPipeline(4, WaitStrategyType.YIELDING);
+        Mockito.when(accountsServiceMock.transferAmount(Mockito.anyString(), Mockito.any(TransferRequest.class))).thenReturn(new TransferResult());
+
+        final int threadsNumber = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        final CountDownLatch publishing = new CountDownLatch(threadsNumber);
+        final List<Future<?>> futureList = new ArrayList<>(threadsNumber);
+        for (int index = 0; index < threadsNumber; index++) {
+            futureList.add(executor.submit(() -> {
+                publishing.countDown();
+                try {
+                    while (true) {
+                        transferPipeline.execute("debtorAccountUUID", new TransferRequest());
+                    }
+                } catch (final ServiceUnavailableException e) {
+                    return null;
+                }
+            }));
+        }
+        Assertions.assertThat(publishing.await(10, TimeUnit.SECONDS)).isTrue();
+
+        transferPipeline.stop();
+        for (final Future<?> future : futureList) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
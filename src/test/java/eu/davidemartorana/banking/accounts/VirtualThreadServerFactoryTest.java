@@ -0,0 +1,192 @@
+package eu.davidemartorana.banking.accounts;
+
+import com.codahale.metrics.MetricRegistry;
+import eu.davidemartorana.banking.accounts.server.ConcurrencyLimitFilter;
+import eu.davidemartorana.banking.accounts.server.VirtualThreadPool;
+import eu.davidemartorana.banking.accounts.server.VirtualThreadServerFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.server.ServerFactory;
+import io.dropwizard.util.Duration;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for classes {@link VirtualThreadServerFactory}, {@link VirtualThreadPool} and {@link ConcurrencyLimitFilter}
+ */
+public class VirtualThreadServerFactoryTest {
+
+    private MetricRegistry metricRegistry;
+
+    private ExecutorService executor;
+
+    @Before
+    public void beforeEachTest() {
+        metricRegistry = new MetricRegistry();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void afterEachTest() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void test_ServerType_VirtualThreads() throws Exception {
+        final ServerFactory serverFactory = Jackson.newObjectMapper()
+                .readValue("{\"type\": \"virtual-threads\", \"maxConcurrentRequests\": 16, \"maxWaitForPermit\": \"2s\"}", ServerFactory.class);
+
+        Assertions.assertThat(serverFactory).isInstanceOf(VirtualThreadServerFactory.class);
+        Assertions.assertThat(((VirtualThreadServerFactory) serverFactory).getMaxConcurrentRequests()).isEqualTo(16);
+        Assertions.assertThat(((VirtualThreadServerFactory) serverFactory).getMaxWaitForPermit()).isEqualTo(Duration.seconds(2));
+    }
+
+    @Test
+    public void test_VirtualThreadPool_RunsTasksOnVirtualThreads() throws Exception {
+        Assume.assumeTrue("Virtual threads need Java 21", VirtualThreadPool.isSupported());
+
+        final VirtualThreadPool threadPool = new VirtualThreadPool(metricRegistry);
+        threadPool.start();
+        try {
+            final CompletableFuture<Thread> thread = new CompletableFuture<>();
+            threadPool.execute(() -> thread.complete(Thread.currentThread()));
+
+            final Object isVirtual = Thread.class.getMethod("isVirtual").invoke(thread.get(5, TimeUnit.SECONDS));
+            Assertions.assertThat(isVirtual).isEqualTo(true);
+            Assertions.assertThat(thread.get().getName()).startsWith("dw-virtual-");
+            Assertions.assertThat(metricRegistry.meter(MetricRegistry.name(VirtualThreadPool.class, "started")).getCount()).isEqualTo(1);
+        } finally {
+            threadPool.stop();
+        }
+    }
+
+    @Test
+    public void test_VirtualThreadPool_NotSupported() {
+        Assume.assumeFalse("Virtual threads are supported", VirtualThreadPool.isSupported());
+
+        Assertions.assertThatThrownBy(() -> new VirtualThreadPool(metricRegistry))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Java 21");
+    }
+
+    @Test
+    public void test_ConcurrencyLimitFilter_BoundsConcurrentRequests() throws Exception {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(2, Duration.seconds(10), metricRegistry);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final FilterChain chain = (chainRequest, chainResponse) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        };
+
+        final HttpServletResponse response = response(new AtomicInteger(), new ByteArrayOutputStream());
+        final List<Future<?>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(executor.submit(() -> {
+                filter.doFilter(null, response, chain);
+                return null;
+            }));
+        }
+        for (final Future<?> sent : requests) {
+            sent.get(10, TimeUnit.SECONDS);
+        }
+
+        Assertions.assertThat(maxRunning.get()).isEqualTo(2);
+        Assertions.assertThat(metricRegistry.timer(MetricRegistry.name(ConcurrencyLimitFilter.class, "wait")).getCount()).isEqualTo(10);
+        Assertions.assertThat(metricRegistry.meter(MetricRegistry.name(ConcurrencyLimitFilter.class, "rejected")).getCount()).isZero();
+        Assertions.assertThat(metricRegistry.getGauges().get(MetricRegistry.name(ConcurrencyLimitFilter.class, "available-permits")).getValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_ConcurrencyLimitFilter_RejectsAfterMaxWait() throws Exception {
+        final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, Duration.milliseconds(50), metricRegistry);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final HttpServletResponse firstResponse = response(new AtomicInteger(), new ByteArrayOutputStream());
+        final Future<?> first = executor.submit(() -> {
+            filter.doFilter(null, firstResponse, (chainRequest, chainResponse) -> {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            return null;
+        });
+        Assertions.assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final AtomicInteger status = new AtomicInteger();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final AtomicBoolean served = new AtomicBoolean();
+        filter.doFilter(null, response(status, body), (chainRequest, chainResponse) -> served.set(true));
+
+        Assertions.assertThat(served).isFalse();
+        Assertions.assertThat(status.get()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Assertions.assertThat(body.toString(StandardCharsets.UTF_8)).contains("\"code\":503");
+        Assertions.assertThat(metricRegistry.meter(MetricRegistry.name(ConcurrencyLimitFilter.class, "rejected")).getCount()).isEqualTo(1);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return a response recording its status and its body.
+     */
+    private static HttpServletResponse response(final AtomicInteger status, final ByteArrayOutputStream body) {
+        final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // Blocking writes only
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(VirtualThreadServerFactoryTest.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setStatus":
+                            status.set((Integer) args[0]);
+                            return null;
+                        case "getOutputStream":
+                            return outputStream;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
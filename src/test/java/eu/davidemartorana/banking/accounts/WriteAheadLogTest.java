@@ -0,0 +1,324 @@
+package eu.davidemartorana.banking.accounts;
+
+import eu.davidemartorana.banking.accounts.config.ApplicationConfig;
+import eu.davidemartorana.banking.accounts.config.FsyncPolicy;
+import eu.davidemartorana.banking.accounts.config.JournalConfig;
+import eu.davidemartorana.banking.accounts.config.TransferEngineType;
+import eu.davidemartorana.banking.accounts.dao.AccountRepository;
+import eu.davidemartorana.banking.accounts.dao.JournalCheckpointRepository;
+import eu.davidemartorana.banking.accounts.dao.TransactionRepository;
+import eu.davidemartorana.banking.accounts.dao.UnitOfWorkRunner;
+import eu.davidemartorana.banking.accounts.domain.Money;
+import eu.davidemartorana.banking.accounts.domain.internal.Account;
+import eu.davidemartorana.banking.accounts.domain.internal.BalanceSlot;
+import eu.davidemartorana.banking.accounts.domain.internal.JournalCheckpoint;
+import eu.davidemartorana.banking.accounts.domain.internal.Transaction;
+import eu.davidemartorana.banking.accounts.domain.internal.TransactionType;
+import eu.davidemartorana.banking.accounts.ledger.LedgerEntry;
+import eu.davidemartorana.banking.accounts.ledger.LedgerEntryWriter;
+import eu.davidemartorana.banking.accounts.ledger.LedgerJournal;
+import eu.davidemartorana.banking.accounts.ledger.LedgerJournalRecovery;
+import eu.davidemartorana.banking.accounts.ledger.WriteAheadLog;
+import io.dropwizard.testing.junit.DAOTestRule;
+import io.dropwizard.util.Size;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test for classes {@link WriteAheadLog}, {@link LedgerJournalRecovery} and {@link LedgerJournal} with the write-ahead
+ * log enabled
+ */
+public class WriteAheadLogTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public DAOTestRule database = DAOTestRule.newBuilder()
+            .addEntityClass(Account.class)
+            .addEntityClass(BalanceSlot.class)
+            .addEntityClass(JournalCheckpoint.class)
+            .addEntityClass(Transaction.class)
+            .build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private AccountRepository accountRepository;
+
+    private TransactionRepository transactionRepository;
+
+    private JournalCheckpointRepository checkpointRepository;
+
+    private UnitOfWorkRunner unitOfWorkRunner;
+
+    private Account debtorAccount;
+
+    private Account beneficiaryAccount;
+
+    private Account createAccount(final Long id, final String uuid, final String amount) {
+        final Account account = new Account();
+        account.setId(id);
+        account.setUuid(uuid);
+        account.setCurrency(GBP);
+        account.setTotalAmount(new BigDecimal(amount));
+        account.setIbanNumber("GB40REVO60161331926819");
+        account.setCustomerId(12345);
+
+        return account;
+    }
+
+    private List<Transaction> transfer(final Account debtor, final Account beneficiary, final String value) {
+        final Money money = Money.of(new BigDecimal(value), GBP);
+        final DateTime now = DateTime.now();
+
+        return Arrays.asList(Transaction.create(money, debtor, TransactionType.DEBIT, now),
+                Transaction.create(money, beneficiary, TransactionType.CREDIT, now));
+    }
+
+    private List<LedgerEntry> replay(final WriteAheadLog log, final long afterSequence) throws IOException {
+        final List<LedgerEntry> entries = new ArrayList<>();
+        log.replay(afterSequence, entries::add);
+
+        return entries;
+    }
+
+    private JournalConfig journalConfig() {
+        final JournalConfig journalConfig = new JournalConfig();
+        journalConfig.getWriteAheadLog().setEnabled(true);
+        journalConfig.getWriteAheadLog().setDirectory(directory.toString());
+        journalConfig.getWriteAheadLog().setSegmentSize(Size.kilobytes(64));
+
+        return journalConfig;
+    }
+
+    private long storedTotalAmount(final Long accountId) {
+        return database.inTransaction(() -> accountRepository.findTotalAmountWithSlots(accountId));
+    }
+
+    private long checkpoint() {
+        return database.inTransaction(() -> checkpointRepository.findLastSequence());
+    }
+
+    /**
+     * Flips a byte in the body of the last record of the only segment.
+     */
+    private void corruptLastRecord(final Path segment, final int recordLength, final int records) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer value = ByteBuffer.allocate(1);
+            final long position = (long) recordLength * (records - 1) + 20;
+            channel.read(value, position);
+            value.put(0, (byte) ~value.get(0));
+            value.rewind();
+            channel.write(value, position);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        return Files.list(directory).sorted().collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("journal").toPath();
+
+        accountRepository = new AccountRepository(database.getSessionFactory());
+        transactionRepository = new TransactionRepository(database.getSessionFactory());
+        checkpointRepository = new JournalCheckpointRepository(database.getSessionFactory());
+        unitOfWorkRunner = new UnitOfWorkRunner(database.getSessionFactory());
+
+        debtorAccount = createAccount(1L, "debtorAccountUUID", "150.00");
+        beneficiaryAccount = createAccount(2L, "beneficiaryAccountUUID", "20.00");
+
+        database.inTransaction(() -> {
+            final JournalCheckpoint checkpoint = new JournalCheckpoint();
+            checkpoint.setId(JournalCheckpoint.ID);
+            checkpoint.setLastSequence(0L);
+
+            database.getSessionFactory().getCurrentSession().save(debtorAccount);
+            database.getSessionFactory().getCurrentSession().save(beneficiaryAccount);
+            database.getSessionFactory().getCurrentSession().save(checkpoint);
+        });
+    }
+
+    @Test
+    public void append_ReplayedAfterReopen_Test() throws IOException {
+        final List<Transaction> first = transfer(debtorAccount, beneficiaryAccount, "100.50");
+        final List<Transaction> second = transfer(beneficiaryAccount, debtorAccount, "10.00");
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            Assertions.assertThat(log.append(first)).isEqualTo(1L);
+            Assertions.assertThat(log.append(second)).isEqualTo(2L);
+            log.force();
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            Assertions.assertThat(log.getLastSequence()).isEqualTo(2L);
+            Assertions.assertThat(log.findFirstSequenceAfter(0L)).isEqualTo(1L);
+
+            final List<LedgerEntry> entries = replay(log, 1L);
+            Assertions.assertThat(entries).hasSize(1);
+            Assertions.assertThat(entries.get(0).getSequence()).isEqualTo(2L);
+            Assertions.assertThat(entries.get(0).getTransactions())
+                    .usingElementComparatorIgnoringFields("dateTime")
+                    .containsExactlyElementsOf(second);
+            Assertions.assertThat(entries.get(0).getTransactions().get(0).getDateTime().getMillis())
+                    .isEqualTo(second.get(0).getDateTime().getMillis());
+
+            // The next record follows the ones read again
+            Assertions.assertThat(log.append(first)).isEqualTo(3L);
+        }
+    }
+
+    @Test
+    public void open_TornRecordDiscarded_Test() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            log.append(transfer(debtorAccount, beneficiaryAccount, "1.00"));
+            log.append(transfer(debtorAccount, beneficiaryAccount, "2.00"));
+            log.append(transfer(debtorAccount, beneficiaryAccount, "3.00"));
+        }
+        // Two transactions: 8 bytes of header, 12 of body header and 44 each
+        corruptLastRecord(segments().get(0), 108, 3);
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            Assertions.assertThat(log.getLastSequence()).isEqualTo(2L);
+            Assertions.assertThat(log.append(transfer(debtorAccount, beneficiaryAccount, "4.00"))).isEqualTo(3L);
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            final List<LedgerEntry> entries = replay(log, 0L);
+            Assertions.assertThat(entries).extracting(LedgerEntry::getSequence).containsExactly(1L, 2L, 3L);
+            Assertions.assertThat(entries.get(2).getTransactions().get(0).getAmountMinorUnits()).isEqualTo(400L);
+        }
+    }
+
+    @Test
+    public void append_RollsSegmentsAndReleasesThePersistedOnes_Test() throws IOException {
+        // Room for 9 records of a transfer in every segment
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 1000, 0L)) {
+            for (int i = 0; i < 20; i++) {
+                log.append(transfer(debtorAccount, beneficiaryAccount, "1.00"));
+            }
+            Assertions.assertThat(log.getSegmentCount()).isEqualTo(3);
+            Assertions.assertThat(replay(log, 8L)).extracting(LedgerEntry::getSequence).startsWith(9L, 10L).hasSize(12);
+
+            // Record 9 is still to persist
+            Assertions.assertThat(log.release(8L)).isEqualTo(0);
+            Assertions.assertThat(log.release(9L)).isEqualTo(1);
+            // The current segment is never deleted
+            Assertions.assertThat(log.release(20L)).isEqualTo(1);
+            Assertions.assertThat(segments()).hasSize(1);
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 1000, 20L)) {
+            Assertions.assertThat(log.findFirstSequenceAfter(18L)).isEqualTo(19L);
+            Assertions.assertThat(log.append(transfer(debtorAccount, beneficiaryAccount, "1.00"))).isEqualTo(21L);
+        }
+    }
+
+    @Test
+    public void open_CorruptedSegmentFollowedByOthers_Test() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 1000, 0L)) {
+            for (int i = 0; i < 12; i++) {
+                log.append(transfer(debtorAccount, beneficiaryAccount, "1.00"));
+            }
+        }
+        corruptLastRecord(segments().get(0), 108, 9);
+
+        Assertions.assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> WriteAheadLog.open(directory, 1000, 0L))
+                .withMessageContaining("The journal cannot be recovered.");
+    }
+
+    @Test
+    public void open_ContinuesAfterThePersistedSequence_Test() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 41L)) {
+            Assertions.assertThat(log.findFirstSequenceAfter(0L)).isEqualTo(0L);
+            Assertions.assertThat(log.append(transfer(debtorAccount, beneficiaryAccount, "1.00"))).isEqualTo(42L);
+        }
+    }
+
+    @Test
+    public void recover_ReplaysTheRecordsAfterTheCheckpoint_Test() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 0L)) {
+            log.append(transfer(debtorAccount, beneficiaryAccount, "100.50"));
+            log.append(transfer(beneficiaryAccount, debtorAccount, "10.00"));
+            log.append(transfer(debtorAccount, beneficiaryAccount, "0.50"));
+        }
+
+        final LedgerEntryWriter entryWriter = new LedgerEntryWriter(accountRepository, transactionRepository, checkpointRepository);
+        final LedgerJournalRecovery recovery = new LedgerJournalRecovery(entryWriter, checkpointRepository, unitOfWorkRunner);
+        final JournalConfig journalConfig = journalConfig();
+        journalConfig.setBatchSize(2);
+
+        Assertions.assertThat(recovery.recover(journalConfig)).isEqualTo(3);
+        Assertions.assertThat(checkpoint()).isEqualTo(3L);
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(15000L - 10050L + 1000L - 50L);
+        Assertions.assertThat(storedTotalAmount(2L)).isEqualTo(2000L + 10050L - 1000L + 50L);
+        Assertions.assertThat(database.inTransaction(() -> transactionRepository.findByAccountId(1L))).hasSize(3);
+
+        // Nothing left to replay
+        Assertions.assertThat(recovery.recover(journalConfig)).isEqualTo(0);
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(5900L);
+    }
+
+    @Test
+    public void recover_LogNotFollowingTheDatabase_Test() throws IOException {
+        // As with an in-memory database created again: the checkpoint is back to 0
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 4L)) {
+            log.append(transfer(debtorAccount, beneficiaryAccount, "100.50"));
+        }
+
+        final LedgerEntryWriter entryWriter = new LedgerEntryWriter(accountRepository, transactionRepository, checkpointRepository);
+        final LedgerJournalRecovery recovery = new LedgerJournalRecovery(entryWriter, checkpointRepository, unitOfWorkRunner);
+
+        Assertions.assertThat(recovery.recover(journalConfig())).isEqualTo(0);
+        Assertions.assertThat(checkpoint()).isEqualTo(0L);
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(15000L);
+    }
+
+    @Test
+    public void journal_PersistsAndMovesTheCheckpoint_Test() throws Exception {
+        final ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.getTransfers().setEngine(TransferEngineType.IN_MEMORY);
+        applicationConfig.getTransfers().setJournal(journalConfig());
+        applicationConfig.getTransfers().getJournal().getWriteAheadLog().setFsync(FsyncPolicy.EVERY_WRITE);
+
+        final LedgerEntryWriter entryWriter = new LedgerEntryWriter(accountRepository, transactionRepository, checkpointRepository);
+        final LedgerJournal journal = new LedgerJournal(entryWriter, checkpointRepository, unitOfWorkRunner, applicationConfig);
+        journal.start();
+        Assertions.assertThat(journal.append(new LedgerEntry(transfer(debtorAccount, beneficiaryAccount, "100.50")))).isTrue();
+        Assertions.assertThat(journal.append(new LedgerEntry(transfer(beneficiaryAccount, debtorAccount, "10.00")))).isTrue();
+        journal.stop();
+
+        Assertions.assertThat(checkpoint()).isEqualTo(2L);
+        Assertions.assertThat(storedTotalAmount(1L)).isEqualTo(5950L);
+        Assertions.assertThat(storedTotalAmount(2L)).isEqualTo(11050L);
+
+        // The records stay in the current segment, but they are not replayed
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_SIZE, 2L)) {
+            Assertions.assertThat(log.getLastSequence()).isEqualTo(2L);
+            Assertions.assertThat(log.findFirstSequenceAfter(2L)).isEqualTo(0L);
+        }
+    }
+}